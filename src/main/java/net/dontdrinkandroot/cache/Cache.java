@@ -20,6 +20,10 @@ package net.dontdrinkandroot.cache;
 import net.dontdrinkandroot.cache.metadata.MetaData;
 import net.dontdrinkandroot.cache.statistics.CacheStatistics;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+
 /**
  * A cache is a component that transparently stores data so that future requests for that data can
  * be served faster. Usually caches are used to "remember" the results of computationally complex
@@ -86,6 +90,72 @@ public interface Cache<K, V>
      */
     <T extends V> T getWithErrors(K key) throws CacheException;
 
+    /**
+     * Retrieve an entry from the cache or load it if it is not available. It is guaranteed that there is at most one
+     * load in flight per key, concurrent callers that miss the same key wait for the result of that load instead of
+     * computing it themselves. Any errors (including those thrown by the loader) are swallowed, use
+     * {@link Cache#getWithErrors(Object, Function)} if you want to handle them.
+     *
+     * @param key    The unique key under which the entry is stored.
+     * @param loader Computes the entry if it is not available. If it returns null nothing is stored.
+     * @return The cache entry or the loaded entry, null if loading failed or the loader returned null.
+     */
+    <T extends V> T get(K key, Function<? super K, T> loader);
+
+    /**
+     * Retrieve an entry from the cache or load it if it is not available. It is guaranteed that there is at most one
+     * load in flight per key, concurrent callers that miss the same key wait for the result of that load instead of
+     * computing it themselves.
+     *
+     * @param key    The unique key under which the entry is stored.
+     * @param loader Computes the entry if it is not available. If it returns null nothing is stored.
+     * @return The cache entry or the loaded entry, null if the loader returned null.
+     * @throws CacheException Thrown on any errors encountered, exceptions thrown by the loader are wrapped.
+     */
+    <T extends V> T getWithErrors(K key, Function<? super K, T> loader) throws CacheException;
+
+    /**
+     * Store multiple entries in the cache with the default time to live. Any errors are swallowed, use
+     * {@link Cache#putAllWithErrors(Map)} if you want to handle them.
+     *
+     * @param entries The entries to store, mapped by their unique identifier. The same rules as for
+     *                {@link Cache#put(Object, Object)} apply to the data.
+     * @return The entries that have been stored in the cache, mapped by their key.
+     */
+    Map<K, V> putAll(Map<? extends K, ? extends V> entries);
+
+    /**
+     * Store multiple entries in the cache with the default time to live. Implementations perform the
+     * whole batch within a single lock acquisition.
+     *
+     * @param entries The entries to store, mapped by their unique identifier. The same rules as for
+     *                {@link Cache#put(Object, Object)} apply to the data.
+     * @return The entries that have been stored in the cache, mapped by their key.
+     * @throws CacheException Thrown on any errors encountered, supposed to include the stacktrace (if any).
+     */
+    Map<K, V> putAllWithErrors(Map<? extends K, ? extends V> entries) throws CacheException;
+
+    /**
+     * Retrieve multiple entries from the cache. Any errors are swallowed, use
+     * {@link Cache#getAllWithErrors(Collection)} if you want to handle them.
+     *
+     * @param keys The keys under which the entries were stored.
+     * @return The valid and not expired entries that were found, mapped by their key. Keys that were not
+     * found are not contained in the result.
+     */
+    Map<K, V> getAll(Collection<? extends K> keys);
+
+    /**
+     * Retrieve multiple entries from the cache. Implementations perform the whole batch within a single
+     * lock acquisition.
+     *
+     * @param keys The keys under which the entries were stored.
+     * @return The valid and not expired entries that were found, mapped by their key. Keys that were not
+     * found are not contained in the result.
+     * @throws CacheException Thrown on any errors encountered, supposed to include the stacktrace (if any).
+     */
+    Map<K, V> getAllWithErrors(Collection<? extends K> keys) throws CacheException;
+
     /**
      * Retrieve the {@link MetaData} of a cached entry if it is available.
      *
@@ -124,6 +194,14 @@ public interface Cache<K, V>
      */
     void delete(K key) throws CacheException;
 
+    /**
+     * Manually remove multiple entries from the cache.
+     *
+     * @param keys The keys under which the entries were stored.
+     * @throws CacheException Thrown on any errors encountered, supposed to include the stacktrace (if any).
+     */
+    void deleteAll(Collection<? extends K> keys) throws CacheException;
+
     /**
      * Cleanup the cache. Usually this means that expired entries are deleted but this can also
      * incorporate optimization functions etc. depending on the implementation.
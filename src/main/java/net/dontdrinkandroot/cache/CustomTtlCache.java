@@ -17,6 +17,8 @@
  */
 package net.dontdrinkandroot.cache;
 
+import java.util.Map;
+
 /**
  * A {@link Cache} that permits storing entries with an individual time to live and an individual
  * idle time.
@@ -85,4 +87,37 @@ public interface CustomTtlCache<K, V> extends Cache<K, V>
      * @throws CacheException Thrown if the storage fails.
      */
     <T extends V> T putWithErrors(K key, T data, long timeToLive, long maxIdleTime) throws CacheException;
+
+    /**
+     * Store multiple entries in the cache with a specific time to live. Any errors are swallowed, use
+     * {@link CustomTtlCache#putAllWithErrors(Map, long)} if you want to handle them.
+     *
+     * @param entries    The entries to store, mapped by their unique identifier.
+     * @param timeToLive The time (in milliseconds) after which the entries expire.
+     * @return The entries that have been stored in the cache, mapped by their key.
+     */
+    Map<K, V> putAll(Map<? extends K, ? extends V> entries, long timeToLive);
+
+    /**
+     * Store multiple entries in the cache with a specific time to live.
+     *
+     * @param entries    The entries to store, mapped by their unique identifier.
+     * @param timeToLive The time (in milliseconds) after which the entries expire.
+     * @return The entries that have been stored in the cache, mapped by their key.
+     * @throws CacheException Thrown if the storage fails.
+     */
+    Map<K, V> putAllWithErrors(Map<? extends K, ? extends V> entries, long timeToLive) throws CacheException;
+
+    /**
+     * Store multiple entries in the cache with a specific time to live and max idle time.
+     *
+     * @param entries     The entries to store, mapped by their unique identifier.
+     * @param timeToLive  The time (in milliseconds) after which the entries expire.
+     * @param maxIdleTime The time (in milliseconds) that an entry may idle (not being accessed) before
+     *                    being expunged.
+     * @return The entries that have been stored in the cache, mapped by their key.
+     * @throws CacheException Thrown if the storage fails.
+     */
+    Map<K, V> putAllWithErrors(Map<? extends K, ? extends V> entries, long timeToLive, long maxIdleTime)
+            throws CacheException;
 }
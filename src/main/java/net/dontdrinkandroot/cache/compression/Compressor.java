@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.compression;
+
+import net.dontdrinkandroot.cache.CacheException;
+
+/**
+ * Compresses the serialized values of a cache before they are stored.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public interface Compressor
+{
+    /**
+     * Compresses the given data.
+     *
+     * @param data The data to compress.
+     * @return The compressed data.
+     */
+    byte[] compress(byte[] data);
+
+    /**
+     * Restores data that was compressed by {@link #compress(byte[])}.
+     *
+     * @param data The compressed data.
+     * @return The original data.
+     * @throws CacheException Thrown if the data cannot be decompressed.
+     */
+    byte[] decompress(byte[] data) throws CacheException;
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.compression.impl;
+
+import net.dontdrinkandroot.cache.CacheException;
+import net.dontdrinkandroot.cache.compression.Compressor;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * {@link Compressor} based on the JDK {@link Deflater}. The compressed data is prefixed with the original length so
+ * decompressing allocates the result only once.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class DeflateCompressor implements Compressor
+{
+    private static final int LENGTH_PREFIX = 4;
+
+    private final int level;
+
+    /**
+     * Creates a compressor that favours speed over ratio.
+     */
+    public DeflateCompressor()
+    {
+        this(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param level The compression level, see {@link Deflater#setLevel(int)}.
+     */
+    public DeflateCompressor(final int level)
+    {
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+
+        this.level = level;
+    }
+
+    @Override
+    public byte[] compress(final byte[] data)
+    {
+        final Deflater deflater = new Deflater(this.level);
+        try {
+
+            deflater.setInput(data);
+            deflater.finish();
+
+            /* Deflate output is at most slightly larger than the input */
+            byte[] buffer = new byte[DeflateCompressor.LENGTH_PREFIX + data.length + data.length / 1000 + 64];
+            ByteBuffer.wrap(buffer).putInt(data.length);
+            int length = DeflateCompressor.LENGTH_PREFIX;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public byte[] decompress(final byte[] data) throws CacheException
+    {
+        if (data.length < DeflateCompressor.LENGTH_PREFIX) {
+            throw new CacheException("Compressed data too short: " + data.length);
+        }
+
+        final int length = ByteBuffer.wrap(data).getInt();
+        if (length < 0) {
+            throw new CacheException("Invalid decompressed length: " + length);
+        }
+
+        final Inflater inflater = new Inflater();
+        try {
+
+            inflater.setInput(data, DeflateCompressor.LENGTH_PREFIX, data.length - DeflateCompressor.LENGTH_PREFIX);
+            final byte[] result = new byte[length];
+            int inflated = 0;
+            while (inflated < length) {
+                final int count = inflater.inflate(result, inflated, length - inflated);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != length) {
+                throw new CacheException("Decompressed data does not match the expected length of " + length);
+            }
+
+            return result;
+        } catch (DataFormatException e) {
+            throw new CacheException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
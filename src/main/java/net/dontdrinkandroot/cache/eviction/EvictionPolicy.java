@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.eviction;
+
+import net.dontdrinkandroot.cache.metadata.MetaData;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Predicate;
+
+/**
+ * Decides which entries are expunged once a cache exceeds its size. Implementations may track the entries by the
+ * callbacks in order to select victims without inspecting all entries. All methods are called while holding the lock
+ * of the cache, so implementations do not need to be thread safe but must not be shared between caches.
+ *
+ * @param <K> Type of the keys.
+ * @param <M> Type of the metadata.
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public interface EvictionPolicy<K, M extends MetaData>
+{
+    /**
+     * Called after an entry was added to the cache, also if it replaced the metadata of an existing entry.
+     */
+    void onInsert(K key, M metaData);
+
+    /**
+     * Called after an entry was read from the cache.
+     */
+    void onAccess(K key, M metaData);
+
+    /**
+     * Called after an entry was removed from the cache.
+     */
+    void onRemove(K key, M metaData);
+
+    /**
+     * Selects the entries to expunge.
+     *
+     * @param entries    All entries of the cache, must not be modified.
+     * @param targetSize The number of entries that may remain in the cache.
+     * @param expired    Matches entries that are expired or stale and may be expunged regardless of the target size.
+     * @return The entries to expunge.
+     */
+    Collection<Entry<K, M>> selectVictims(Map<K, M> entries, int targetSize, Predicate<? super M> expired);
+}
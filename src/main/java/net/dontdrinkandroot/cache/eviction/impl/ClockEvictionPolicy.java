@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.eviction.impl;
+
+import net.dontdrinkandroot.cache.eviction.EvictionPolicy;
+import net.dontdrinkandroot.cache.metadata.MetaData;
+
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.function.Predicate;
+
+/**
+ * Approximates LRU with the CLOCK (second chance) algorithm. The entries occupy the slots of a ring that carry one
+ * reference bit each. A hit only sets the bit of the entry, nothing is reordered. Selecting victims sweeps a hand
+ * over the ring: referenced entries get their bit cleared and are skipped, unreferenced and expired ones are
+ * expunged. New entries start unreferenced, so entries that are never read again go first.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class ClockEvictionPolicy<K, M extends MetaData> implements EvictionPolicy<K, M>
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<K, Slot<K, M>> slotsByKey = new HashMap<>();
+
+    private Slot<K, M>[] ring = ClockEvictionPolicy.createRing(ClockEvictionPolicy.INITIAL_CAPACITY);
+
+    /**
+     * Number of ring positions that were ever used, positions below that are either occupied or free.
+     */
+    private int used = 0;
+
+    private int[] freePositions = new int[ClockEvictionPolicy.INITIAL_CAPACITY];
+
+    private int numFree = 0;
+
+    private int hand = 0;
+
+    /**
+     * Incremented on every sweep to mark the slots selected by it.
+     */
+    private int sweep = 0;
+
+    @Override
+    public void onInsert(final K key, final M metaData)
+    {
+        final Slot<K, M> existing = this.slotsByKey.get(key);
+        if (null != existing) {
+            existing.metaData = metaData;
+            existing.referenced = true;
+            return;
+        }
+
+        final Slot<K, M> slot = new Slot<>(key, metaData, this.allocatePosition());
+        this.ring[slot.position] = slot;
+        this.slotsByKey.put(key, slot);
+    }
+
+    @Override
+    public void onAccess(final K key, final M metaData)
+    {
+        final Slot<K, M> slot = this.slotsByKey.get(key);
+        if (null != slot) {
+            slot.referenced = true;
+        }
+    }
+
+    @Override
+    public void onRemove(final K key, final M metaData)
+    {
+        final Slot<K, M> slot = this.slotsByKey.remove(key);
+        if (null == slot) {
+            return;
+        }
+
+        this.ring[slot.position] = null;
+        if (this.numFree == this.freePositions.length) {
+            this.freePositions = Arrays.copyOf(this.freePositions, this.freePositions.length * 2);
+        }
+        this.freePositions[this.numFree++] = slot.position;
+    }
+
+    @Override
+    public Collection<Entry<K, M>> selectVictims(
+            final Map<K, M> entries,
+            final int targetSize,
+            final Predicate<? super M> expired
+    )
+    {
+        final int numToDelete = entries.size() - targetSize;
+        final List<Entry<K, M>> victims = new ArrayList<>(Math.max(numToDelete, 0));
+        if (numToDelete <= 0 || 0 == this.used) {
+            return victims;
+        }
+
+        this.sweep++;
+
+        /* After one revolution all reference bits are cleared, so two revolutions find enough victims */
+        final int maxSteps = 2 * this.used;
+        for (int step = 0; step < maxSteps && victims.size() < numToDelete; step++) {
+            if (this.hand >= this.used) {
+                this.hand = 0;
+            }
+
+            final Slot<K, M> slot = this.ring[this.hand++];
+            if (null == slot || slot.selectedInSweep == this.sweep) {
+                continue;
+            }
+
+            if (slot.referenced && !expired.test(slot.metaData)) {
+                slot.referenced = false;
+                continue;
+            }
+
+            slot.selectedInSweep = this.sweep;
+            victims.add(new AbstractMap.SimpleImmutableEntry<>(slot.key, slot.metaData));
+        }
+
+        return victims;
+    }
+
+    private int allocatePosition()
+    {
+        if (this.numFree > 0) {
+            return this.freePositions[--this.numFree];
+        }
+
+        if (this.used == this.ring.length) {
+            this.ring = Arrays.copyOf(this.ring, this.ring.length * 2);
+        }
+
+        return this.used++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, M extends MetaData> Slot<K, M>[] createRing(final int capacity)
+    {
+        return (Slot<K, M>[]) new Slot<?, ?>[capacity];
+    }
+
+    private static class Slot<K, M extends MetaData>
+    {
+        private final K key;
+
+        private final int position;
+
+        private M metaData;
+
+        private boolean referenced = false;
+
+        private int selectedInSweep = 0;
+
+        Slot(final K key, final M metaData, final int position)
+        {
+            this.key = key;
+            this.metaData = metaData;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.eviction.impl;
+
+import net.dontdrinkandroot.cache.eviction.EvictionPolicy;
+import net.dontdrinkandroot.cache.metadata.MetaData;
+import net.dontdrinkandroot.cache.metadata.comparator.MetaDataComparator;
+
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.function.Predicate;
+
+/**
+ * Expunges all expired entries and orders the remaining ones by a {@link MetaDataComparator}. Inspects all entries
+ * on every expunge, the hit counts of the entries are decayed afterwards.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class ComparatorEvictionPolicy<K, M extends MetaData> implements EvictionPolicy<K, M>
+{
+    private final MetaDataComparator<K, M> comparator;
+
+    public ComparatorEvictionPolicy(final MetaDataComparator<K, M> comparator)
+    {
+        this.comparator = comparator;
+    }
+
+    @Override
+    public void onInsert(final K key, final M metaData)
+    {
+        /* Noop */
+    }
+
+    @Override
+    public void onAccess(final K key, final M metaData)
+    {
+        /* Noop */
+    }
+
+    @Override
+    public void onRemove(final K key, final M metaData)
+    {
+        /* Noop */
+    }
+
+    @Override
+    public Collection<Entry<K, M>> selectVictims(
+            final Map<K, M> entries,
+            final int targetSize,
+            final Predicate<? super M> expired
+    )
+    {
+        final List<Entry<K, M>> victims = new ArrayList<>();
+        final TreeSet<Entry<K, M>> orderedSet = new TreeSet<>(this.comparator);
+
+		/* Select expired and idled away */
+        for (final Entry<K, M> entry : entries.entrySet()) {
+            if (expired.test(entry.getValue())) {
+                victims.add(entry);
+            } else {
+                orderedSet.add(entry);
+            }
+        }
+
+		/* Select from remaining */
+        final int numToDelete = entries.size() - victims.size() - targetSize;
+        final Iterator<Entry<K, M>> iterator = orderedSet.iterator();
+        int numDeleted = 0;
+        while (iterator.hasNext() && numDeleted < numToDelete) {
+            victims.add(iterator.next());
+            numDeleted++;
+        }
+
+        for (final M metaData : entries.values()) {
+            metaData.decay();
+        }
+
+        return victims;
+    }
+
+    public MetaDataComparator<K, M> getComparator()
+    {
+        return this.comparator;
+    }
+}
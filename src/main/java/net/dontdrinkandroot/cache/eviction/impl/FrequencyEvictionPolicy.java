@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.eviction.impl;
+
+import net.dontdrinkandroot.cache.eviction.EvictionPolicy;
+import net.dontdrinkandroot.cache.metadata.MetaData;
+
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.function.Predicate;
+
+/**
+ * Expunges all expired entries and the least frequently used of the remaining ones, ties are broken by the last
+ * access and the creation time. The frequencies are estimated by a shared {@link FrequencySketch} that ages by
+ * halving its counters, so neither the entries need a hit counter nor do they have to be decayed after expunging.
+ * Selecting victims inspects all entries but only keeps the ones to expunge ordered.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class FrequencyEvictionPolicy<K, M extends MetaData> implements EvictionPolicy<K, M>
+{
+    /**
+     * Limits the initial size of the sketch for caches whose maximum size is practically unlimited.
+     */
+    private static final long MAX_INITIAL_CAPACITY = 1 << 16;
+
+    private final FrequencySketch<K> sketch;
+
+    /**
+     * @param maximumSize The expected maximum number of entries, the sketch grows if the cache gets larger.
+     */
+    public FrequencyEvictionPolicy(final long maximumSize)
+    {
+        this.sketch = new FrequencySketch<>(Math.min(maximumSize, FrequencyEvictionPolicy.MAX_INITIAL_CAPACITY));
+    }
+
+    @Override
+    public void onInsert(final K key, final M metaData)
+    {
+        this.sketch.increment(key);
+    }
+
+    @Override
+    public void onAccess(final K key, final M metaData)
+    {
+        this.sketch.increment(key);
+    }
+
+    @Override
+    public void onRemove(final K key, final M metaData)
+    {
+        /* Noop, the frequency is retained in case the key is put again */
+    }
+
+    @Override
+    public Collection<Entry<K, M>> selectVictims(
+            final Map<K, M> entries,
+            final int targetSize,
+            final Predicate<? super M> expired
+    )
+    {
+        this.sketch.ensureCapacity(Math.min(entries.size(), targetSize + 1L));
+
+        final List<Entry<K, M>> victims = new ArrayList<>();
+        final List<Candidate<K, M>> candidates = new ArrayList<>(entries.size());
+        for (final Entry<K, M> entry : entries.entrySet()) {
+            if (expired.test(entry.getValue())) {
+                victims.add(entry);
+            } else {
+                candidates.add(new Candidate<>(entry, this.sketch.frequency(entry.getKey())));
+            }
+        }
+
+        final int numToDelete = candidates.size() - targetSize;
+        if (numToDelete <= 0) {
+            return victims;
+        }
+
+        /* Keep the least frequent candidates in a max heap of the size of the entries to delete */
+        final PriorityQueue<Candidate<K, M>> leastFrequent =
+                new PriorityQueue<>(numToDelete, Collections.reverseOrder());
+        for (final Candidate<K, M> candidate : candidates) {
+            if (leastFrequent.size() < numToDelete) {
+                leastFrequent.add(candidate);
+            } else if (candidate.compareTo(leastFrequent.peek()) < 0) {
+                leastFrequent.poll();
+                leastFrequent.add(candidate);
+            }
+        }
+
+        for (final Candidate<K, M> candidate : leastFrequent) {
+            victims.add(candidate.entry);
+        }
+
+        return victims;
+    }
+
+    public FrequencySketch<K> getSketch()
+    {
+        return this.sketch;
+    }
+
+    private static class Candidate<K, M extends MetaData> implements Comparable<Candidate<K, M>>
+    {
+        private final Entry<K, M> entry;
+
+        private final int frequency;
+
+        Candidate(final Entry<K, M> entry, final int frequency)
+        {
+            this.entry = entry;
+            this.frequency = frequency;
+        }
+
+        @Override
+        public int compareTo(final Candidate<K, M> other)
+        {
+            int comparison = Integer.compare(this.frequency, other.frequency);
+            if (comparison != 0) {
+                return comparison;
+            }
+
+            final MetaData metaData = this.entry.getValue();
+            final MetaData otherMetaData = other.entry.getValue();
+            comparison = Long.compare(metaData.getLastAccess(), otherMetaData.getLastAccess());
+            if (comparison != 0) {
+                return comparison;
+            }
+
+            return Long.compare(metaData.getCreated(), otherMetaData.getCreated());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.eviction.impl;
+
+/**
+ * Estimates how often keys were accessed with a count-min sketch of 4 bit counters, as used by TinyLFU. Each key
+ * maps to four counters in a table of longs, its frequency is the minimum of them. Once the number of increments
+ * reaches ten times the maximum size all counters are halved, so the estimates age without visiting the entries of
+ * the cache. Frequencies are kept independently of the entries, they survive deletion and re-insertion of a key.
+ * <p>
+ * Not thread safe, the caches only access it while holding their lock.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class FrequencySketch<K>
+{
+    public static final int MAX_FREQUENCY = 15;
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L,
+            0xb492b66fbe98f273L,
+            0x9ae16a3b2f90404fL,
+            0xcbf29ce484222325L};
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private static final int SAMPLE_FACTOR = 10;
+
+    private static final int MIN_TABLE_LENGTH = 8;
+
+    private long[] table;
+
+    private int tableMask;
+
+    private int sampleSize;
+
+    private int size;
+
+    /**
+     * @param maximumSize The number of entries whose frequencies should be told apart, usually the maximum size of
+     *                    the cache.
+     */
+    public FrequencySketch(final long maximumSize)
+    {
+        this.ensureCapacity(maximumSize);
+    }
+
+    /**
+     * Resizes the sketch if it is too small for the given number of entries, the collected frequencies are lost in
+     * that case.
+     */
+    public void ensureCapacity(final long maximumSize)
+    {
+        final int maximum = (int) Math.max(1, Math.min(maximumSize, Integer.MAX_VALUE >>> 2));
+        final int tableLength = Math.max(FrequencySketch.MIN_TABLE_LENGTH, FrequencySketch.ceilingPowerOfTwo(maximum));
+        if (null != this.table && this.table.length >= tableLength) {
+            return;
+        }
+
+        this.table = new long[tableLength];
+        this.tableMask = tableLength - 1;
+        this.sampleSize = FrequencySketch.SAMPLE_FACTOR * maximum;
+        this.size = 0;
+    }
+
+    /**
+     * Gets the estimated number of accesses of the key since the counters were last halved, at most
+     * {@link #MAX_FREQUENCY}.
+     */
+    public int frequency(final K key)
+    {
+        final int hash = FrequencySketch.spread(key.hashCode());
+        final int start = (hash & 3) << 2;
+        int frequency = FrequencySketch.MAX_FREQUENCY;
+        for (int i = 0; i < 4; i++) {
+            final int index = this.indexOf(hash, i);
+            final int count = (int) ((this.table[index] >>> ((start + i) << 2)) & 0xFL);
+            frequency = Math.min(frequency, count);
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Records an access of the key, halves all counters once the sample size is reached.
+     */
+    public void increment(final K key)
+    {
+        final int hash = FrequencySketch.spread(key.hashCode());
+        final int start = (hash & 3) << 2;
+
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= this.incrementAt(this.indexOf(hash, i), start + i);
+        }
+
+        if (added && ++this.size >= this.sampleSize) {
+            this.reset();
+        }
+    }
+
+    /**
+     * Halves all counters. Counters that were odd lose a fraction, which is accounted for in the size.
+     */
+    void reset()
+    {
+        int oddCounters = 0;
+        for (int i = 0; i < this.table.length; i++) {
+            oddCounters += Long.bitCount(this.table[i] & FrequencySketch.ONE_MASK);
+            this.table[i] = (this.table[i] >>> 1) & FrequencySketch.RESET_MASK;
+        }
+        this.size = Math.max(0, (this.size >>> 1) - (oddCounters >>> 2));
+    }
+
+    private boolean incrementAt(final int index, final int counter)
+    {
+        final int offset = counter << 2;
+        final long mask = 0xFL << offset;
+        if ((this.table[index] & mask) != mask) {
+            this.table[index] += 1L << offset;
+            return true;
+        }
+
+        return false;
+    }
+
+    private int indexOf(final int hash, final int i)
+    {
+        long value = (hash + FrequencySketch.SEEDS[i]) * FrequencySketch.SEEDS[i];
+        value += value >>> 32;
+
+        return ((int) value) & this.tableMask;
+    }
+
+    /**
+     * Spreads the bits of the hash code as hash codes of similar keys often only differ in a few bits.
+     */
+    private static int spread(int x)
+    {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+
+        return (x >>> 16) ^ x;
+    }
+
+    private static int ceilingPowerOfTwo(final int x)
+    {
+        return 1 << -Integer.numberOfLeadingZeros(x - 1);
+    }
+}
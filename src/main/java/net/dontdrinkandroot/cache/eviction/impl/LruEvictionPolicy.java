@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.eviction.impl;
+
+import net.dontdrinkandroot.cache.eviction.EvictionPolicy;
+import net.dontdrinkandroot.cache.metadata.MetaData;
+
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.function.Predicate;
+
+/**
+ * Expunges the least recently used entries. Keeps the entries in access order, so selecting victims only visits the
+ * entries that are expunged. Expired entries are not searched for, they are removed on access or by the clean up.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class LruEvictionPolicy<K, M extends MetaData> implements EvictionPolicy<K, M>
+{
+    private final LinkedHashMap<K, M> accessOrder = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Override
+    public void onInsert(final K key, final M metaData)
+    {
+        this.accessOrder.put(key, metaData);
+    }
+
+    @Override
+    public void onAccess(final K key, final M metaData)
+    {
+        this.accessOrder.get(key);
+    }
+
+    @Override
+    public void onRemove(final K key, final M metaData)
+    {
+        this.accessOrder.remove(key);
+    }
+
+    @Override
+    public Collection<Entry<K, M>> selectVictims(
+            final Map<K, M> entries,
+            final int targetSize,
+            final Predicate<? super M> expired
+    )
+    {
+        final int numToDelete = entries.size() - targetSize;
+        final List<Entry<K, M>> victims = new ArrayList<>(Math.max(numToDelete, 0));
+        final Iterator<Entry<K, M>> iterator = this.accessOrder.entrySet().iterator();
+        while (iterator.hasNext() && victims.size() < numToDelete) {
+            final Entry<K, M> entry = iterator.next();
+            victims.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+        }
+
+        return victims;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.hashing;
+
+import net.dontdrinkandroot.cache.utils.Md5;
+
+/**
+ * Maps the keys of a cache to fixed length hashes, e.g. to name the files of a
+ * {@link net.dontdrinkandroot.cache.impl.disk.file.FileCache}. Implementations must be thread safe and must return
+ * the same hash for equal keys across restarts.
+ *
+ * @param <K> Type of the keys.
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+@FunctionalInterface
+public interface KeyHasher<K>
+{
+    /**
+     * Computes the hash of the given key. The hash is returned as {@link Md5} as that is the key type of the file
+     * cache, it does not need to be an actual md5.
+     *
+     * @param key The key to hash, not null.
+     * @return The 128 bit hash of the key.
+     */
+    Md5 hash(K key);
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.hashing.impl;
+
+import net.dontdrinkandroot.cache.hashing.KeyHasher;
+import net.dontdrinkandroot.cache.utils.Md5;
+import net.dontdrinkandroot.cache.utils.Serializer;
+
+import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Base class of the {@link KeyHasher}s that hash the byte representation of the keys. Strings are hashed by their
+ * UTF-8 bytes, byte arrays as they are and all other keys by their serialized form, which is considerably slower.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public abstract class AbstractKeyHasher<K> implements KeyHasher<K>
+{
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final VarHandle INT_LE =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    @Override
+    public Md5 hash(final K key)
+    {
+        return this.hashBytes(this.toBytes(key));
+    }
+
+    /**
+     * Computes the hash of the byte representation of a key.
+     */
+    protected abstract Md5 hashBytes(byte[] data);
+
+    protected byte[] toBytes(final K key)
+    {
+        if (key instanceof String) {
+            return ((String) key).getBytes(StandardCharsets.UTF_8);
+        }
+
+        if (key instanceof byte[]) {
+            return (byte[]) key;
+        }
+
+        if (key instanceof Serializable) {
+            return Serializer.serialize((Serializable) key);
+        }
+
+        throw new IllegalArgumentException("Cannot hash key of type " + key.getClass().getName());
+    }
+
+    protected static long getLong(final byte[] data, final int offset)
+    {
+        return (long) AbstractKeyHasher.LONG_LE.get(data, offset);
+    }
+
+    protected static long getUnsignedInt(final byte[] data, final int offset)
+    {
+        return (int) AbstractKeyHasher.INT_LE.get(data, offset) & 0xFFFFFFFFL;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.hashing.impl;
+
+import net.dontdrinkandroot.cache.utils.Md5;
+
+/**
+ * Hashes the keys with md5, which is what callers of the file cache did before. String keys result in the same
+ * hashes as {@link Md5#Md5(String)}, so existing cache directories stay valid. {@link Md5} keys are used as they
+ * are.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class Md5KeyHasher<K> extends AbstractKeyHasher<K>
+{
+    @Override
+    public Md5 hash(final K key)
+    {
+        if (key instanceof Md5) {
+            return (Md5) key;
+        }
+
+        return super.hash(key);
+    }
+
+    @Override
+    protected Md5 hashBytes(final byte[] data)
+    {
+        return Md5.digest(data);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.hashing.impl;
+
+import net.dontdrinkandroot.cache.utils.Md5;
+
+/**
+ * 128 bit MurmurHash3 (x64 variant) by Austin Appleby. It is not cryptographic but fast and well distributed, the
+ * two halves of the hash are the high and low part of the returned {@link Md5}.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class Murmur3KeyHasher<K> extends AbstractKeyHasher<K>
+{
+    private static final long C1 = 0x87c37b91114253d5L;
+
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final long seed;
+
+    public Murmur3KeyHasher()
+    {
+        this(0);
+    }
+
+    /**
+     * @param seed The seed, changing it changes all hashes and thereby invalidates existing cache directories.
+     */
+    public Murmur3KeyHasher(final int seed)
+    {
+        this.seed = seed & 0xFFFFFFFFL;
+    }
+
+    @SuppressWarnings("fallthrough")
+    @Override
+    protected Md5 hashBytes(final byte[] data)
+    {
+        final int length = data.length;
+        long h1 = this.seed;
+        long h2 = this.seed;
+
+        final int blocksEnd = length & ~15;
+        for (int i = 0; i < blocksEnd; i += 16) {
+            h1 ^= Murmur3KeyHasher.mixK1(AbstractKeyHasher.getLong(data, i));
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= Murmur3KeyHasher.mixK2(AbstractKeyHasher.getLong(data, i + 8));
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        switch (length & 15) {
+            case 15:
+                k2 ^= (long) (data[blocksEnd + 14] & 0xFF) << 48;
+                // fall through
+            case 14:
+                k2 ^= (long) (data[blocksEnd + 13] & 0xFF) << 40;
+                // fall through
+            case 13:
+                k2 ^= (long) (data[blocksEnd + 12] & 0xFF) << 32;
+                // fall through
+            case 12:
+                k2 ^= (long) (data[blocksEnd + 11] & 0xFF) << 24;
+                // fall through
+            case 11:
+                k2 ^= (long) (data[blocksEnd + 10] & 0xFF) << 16;
+                // fall through
+            case 10:
+                k2 ^= (long) (data[blocksEnd + 9] & 0xFF) << 8;
+                // fall through
+            case 9:
+                k2 ^= data[blocksEnd + 8] & 0xFF;
+                h2 ^= Murmur3KeyHasher.mixK2(k2);
+                // fall through
+            case 8:
+                k1 ^= (long) (data[blocksEnd + 7] & 0xFF) << 56;
+                // fall through
+            case 7:
+                k1 ^= (long) (data[blocksEnd + 6] & 0xFF) << 48;
+                // fall through
+            case 6:
+                k1 ^= (long) (data[blocksEnd + 5] & 0xFF) << 40;
+                // fall through
+            case 5:
+                k1 ^= (long) (data[blocksEnd + 4] & 0xFF) << 32;
+                // fall through
+            case 4:
+                k1 ^= (long) (data[blocksEnd + 3] & 0xFF) << 24;
+                // fall through
+            case 3:
+                k1 ^= (long) (data[blocksEnd + 2] & 0xFF) << 16;
+                // fall through
+            case 2:
+                k1 ^= (long) (data[blocksEnd + 1] & 0xFF) << 8;
+                // fall through
+            case 1:
+                k1 ^= data[blocksEnd] & 0xFF;
+                h1 ^= Murmur3KeyHasher.mixK1(k1);
+                // fall through
+            default:
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = Murmur3KeyHasher.fmix(h1);
+        h2 = Murmur3KeyHasher.fmix(h2);
+
+        h1 += h2;
+        h2 += h1;
+
+        return new Md5(h1, h2);
+    }
+
+    private static long mixK1(long k1)
+    {
+        k1 *= Murmur3KeyHasher.C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * Murmur3KeyHasher.C2;
+    }
+
+    private static long mixK2(long k2)
+    {
+        k2 *= Murmur3KeyHasher.C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * Murmur3KeyHasher.C1;
+    }
+
+    private static long fmix(long k)
+    {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        return k ^ (k >>> 33);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.hashing.impl;
+
+import net.dontdrinkandroot.cache.utils.Md5;
+
+/**
+ * 64 bit xxHash by Yann Collet, the fastest of the hashers on longer keys. The hash forms the high part of the
+ * returned {@link Md5}, the low part is the length of the key. With only 64 bits collisions become likely for
+ * billions of keys, so enable the key verification of the
+ * {@link net.dontdrinkandroot.cache.impl.disk.file.HashedFileCache} or use the {@link Murmur3KeyHasher} if that is a
+ * concern.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class XxHash64KeyHasher<K> extends AbstractKeyHasher<K>
+{
+    private static final long P1 = 0x9E3779B185EBCA87L;
+
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+
+    private static final long P3 = 0x165667B19E3779F9L;
+
+    private static final long P4 = 0x85EBCA77C2B2CA63L;
+
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private final long seed;
+
+    public XxHash64KeyHasher()
+    {
+        this(0);
+    }
+
+    /**
+     * @param seed The seed, changing it changes all hashes and thereby invalidates existing cache directories.
+     */
+    public XxHash64KeyHasher(final long seed)
+    {
+        this.seed = seed;
+    }
+
+    @Override
+    protected Md5 hashBytes(final byte[] data)
+    {
+        return new Md5(this.hash64(data), data.length);
+    }
+
+    /**
+     * Computes the plain 64 bit xxHash of the data.
+     */
+    public long hash64(final byte[] data)
+    {
+        final int length = data.length;
+        int offset = 0;
+        long hash;
+
+        if (length >= 32) {
+            long v1 = this.seed + XxHash64KeyHasher.P1 + XxHash64KeyHasher.P2;
+            long v2 = this.seed + XxHash64KeyHasher.P2;
+            long v3 = this.seed;
+            long v4 = this.seed - XxHash64KeyHasher.P1;
+
+            final int limit = length - 32;
+            do {
+                v1 = XxHash64KeyHasher.round(v1, AbstractKeyHasher.getLong(data, offset));
+                v2 = XxHash64KeyHasher.round(v2, AbstractKeyHasher.getLong(data, offset + 8));
+                v3 = XxHash64KeyHasher.round(v3, AbstractKeyHasher.getLong(data, offset + 16));
+                v4 = XxHash64KeyHasher.round(v4, AbstractKeyHasher.getLong(data, offset + 24));
+                offset += 32;
+            } while (offset <= limit);
+
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12)
+                    + Long.rotateLeft(v4, 18);
+            hash = XxHash64KeyHasher.merge(hash, v1);
+            hash = XxHash64KeyHasher.merge(hash, v2);
+            hash = XxHash64KeyHasher.merge(hash, v3);
+            hash = XxHash64KeyHasher.merge(hash, v4);
+        } else {
+            hash = this.seed + XxHash64KeyHasher.P5;
+        }
+
+        hash += length;
+
+        while (offset + 8 <= length) {
+            hash ^= XxHash64KeyHasher.round(0, AbstractKeyHasher.getLong(data, offset));
+            hash = Long.rotateLeft(hash, 27) * XxHash64KeyHasher.P1 + XxHash64KeyHasher.P4;
+            offset += 8;
+        }
+
+        if (offset + 4 <= length) {
+            hash ^= AbstractKeyHasher.getUnsignedInt(data, offset) * XxHash64KeyHasher.P1;
+            hash = Long.rotateLeft(hash, 23) * XxHash64KeyHasher.P2 + XxHash64KeyHasher.P3;
+            offset += 4;
+        }
+
+        while (offset < length) {
+            hash ^= (data[offset] & 0xFF) * XxHash64KeyHasher.P5;
+            hash = Long.rotateLeft(hash, 11) * XxHash64KeyHasher.P1;
+            offset++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= XxHash64KeyHasher.P2;
+        hash ^= hash >>> 29;
+        hash *= XxHash64KeyHasher.P3;
+
+        return hash ^ (hash >>> 32);
+    }
+
+    private static long round(long accumulator, final long input)
+    {
+        accumulator += input * XxHash64KeyHasher.P2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * XxHash64KeyHasher.P1;
+    }
+
+    private static long merge(long accumulator, final long value)
+    {
+        accumulator ^= XxHash64KeyHasher.round(0, value);
+        return accumulator * XxHash64KeyHasher.P1 + XxHash64KeyHasher.P4;
+    }
+}
@@ -18,14 +18,39 @@
 package net.dontdrinkandroot.cache.impl;
 
 import net.dontdrinkandroot.cache.Cache;
+import net.dontdrinkandroot.cache.CacheException;
+import net.dontdrinkandroot.cache.jmx.CacheMXBean;
+import net.dontdrinkandroot.cache.jmx.impl.CacheMXBeanAdapter;
+import net.dontdrinkandroot.cache.statistics.LatencyMetric;
+import net.dontdrinkandroot.cache.time.Ticker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
 /**
  * @author Philip Washington Sorst <philip@sorst.net>
  */
 public abstract class AbstractCache<K, V> implements Cache<K, V>
 {
+    public static final String MX_BEAN_DOMAIN = "net.dontdrinkandroot.cache";
+
+    /**
+     * Caches that currently own a registration with the platform MBean server. Makes sure a cache only
+     * unregisters its MBean if it was not replaced by a newer cache with the same name in the meantime.
+     */
+    private static final ConcurrentMap<ObjectName, AbstractCache<?, ?>> registeredMXBeans = new ConcurrentHashMap<>();
+
     private final String name;
 
     /**
@@ -41,12 +66,24 @@ public abstract class AbstractCache<K, V> implements Cache<K, V>
     /**
      * Default time to live for cache entries
      */
-    private long defaultTimeToLive;
+    private volatile long defaultTimeToLive;
 
     /**
      * Default max idle time for cache entries
      */
-    private long defaultMaxIdleTime;
+    private volatile long defaultMaxIdleTime;
+
+    /**
+     * Source of the time for expiry and idle checks
+     */
+    private volatile Ticker ticker = Ticker.SYSTEM;
+
+    /**
+     * Loads that are currently in flight, at most one per key
+     */
+    private final ConcurrentMap<K, CompletableFuture<V>> loadsInFlight = new ConcurrentHashMap<>();
+
+    private ObjectName mxBeanName;
 
     public AbstractCache(final String name, long defaultTimeToLive)
     {
@@ -78,6 +115,89 @@ public abstract class AbstractCache<K, V> implements Cache<K, V>
         return this.defaultMaxIdleTime;
     }
 
+    @Override
+    public <T extends V> T get(final K key, final Function<? super K, T> loader)
+    {
+        try {
+
+            return this.getWithErrors(key, loader);
+        } catch (CacheException e) {
+            this.getLogger().error(this.getName() + ": Getting or loading " + key + " failed", e);
+            return null;
+        }
+    }
+
+    /**
+     * Not synchronized on purpose: the loader is executed outside of the cache monitor so that loads of different
+     * keys do not block each other or plain gets and puts.
+     */
+    @Override
+    public final <T extends V> T getWithErrors(final K key, final Function<? super K, T> loader)
+            throws CacheException
+    {
+        T data = this.getWithErrors(key);
+        if (null != data) {
+            return data;
+        }
+
+        final CompletableFuture<V> load = new CompletableFuture<>();
+        final CompletableFuture<V> inFlight = this.loadsInFlight.putIfAbsent(key, load);
+        if (null != inFlight) {
+            this.getLogger().trace(this.getName() + ": Waiting for load in flight of '{}'", key);
+            return this.awaitLoad(key, inFlight);
+        }
+
+        try {
+
+            /* Another load might have finished between the miss and the registration of this one */
+            if (null != this.getMetaData(key)) {
+                data = this.getWithErrors(key);
+            }
+
+            if (null == data) {
+                data = this.load(key, loader);
+                if (null != data) {
+                    data = this.putWithErrors(key, data);
+                }
+            }
+
+            load.complete(data);
+
+            return data;
+        } catch (CacheException e) {
+
+            /* Fall back to the expired entry if it may still be served */
+            final T staleData = this.getStaleIfError(key);
+            if (null != staleData) {
+                this.getLogger().warn(this.getName() + ": Loading " + key + " failed, serving stale entry", e);
+                load.complete(staleData);
+                return staleData;
+            }
+
+            load.completeExceptionally(e);
+            throw e;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.loadsInFlight.remove(key, load);
+        }
+    }
+
+    public Ticker getTicker()
+    {
+        return this.ticker;
+    }
+
+    /**
+     * Sets the source of the time, defaults to {@link Ticker#SYSTEM}. Should be set before the cache is used as
+     * entries created with a different ticker are compared against the new one.
+     */
+    public void setTicker(final Ticker ticker)
+    {
+        this.ticker = ticker;
+    }
+
     public final Logger getLogger()
     {
         return this.logger;
@@ -98,4 +218,164 @@ public abstract class AbstractCache<K, V> implements Cache<K, V>
     {
         this.defaultMaxIdleTime = defaultMaxIdleTime;
     }
+
+    /**
+     * Registers the cache with the platform MBean server, call it once the cache was constructed. An MBean that was
+     * registered under the same name by another cache is replaced. Failures are logged but do not prevent the cache
+     * from working. The MBean server keeps the cache reachable until {@link #unregisterMXBean()} is called, which
+     * closeable caches do on close.
+     */
+    public final void registerMXBean()
+    {
+        try {
+
+            final ObjectName objectName = this.createMXBeanName();
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            synchronized (AbstractCache.registeredMXBeans) {
+                if (mBeanServer.isRegistered(objectName)) {
+                    this.getLogger().warn(
+                            "{}: Replacing MBean {} that was registered by another cache",
+                            this.getName(),
+                            objectName
+                    );
+                    mBeanServer.unregisterMBean(objectName);
+                }
+                mBeanServer.registerMBean(this.createMXBean(), objectName);
+                AbstractCache.registeredMXBeans.put(objectName, this);
+            }
+            this.mxBeanName = objectName;
+        } catch (JMException e) {
+            this.getLogger().warn(this.getName() + ": Registering MBean failed", e);
+        }
+    }
+
+    /**
+     * Unregisters the cache from the platform MBean server if it is still registered.
+     */
+    public final void unregisterMXBean()
+    {
+        if (null == this.mxBeanName) {
+            return;
+        }
+
+        try {
+
+            synchronized (AbstractCache.registeredMXBeans) {
+                if (AbstractCache.registeredMXBeans.remove(this.mxBeanName, this)) {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.mxBeanName);
+                }
+            }
+            this.mxBeanName = null;
+        } catch (JMException e) {
+            this.getLogger().warn(this.getName() + ": Unregistering MBean failed", e);
+        }
+    }
+
+    /**
+     * Get the name under which the cache is registered with the platform MBean server, null if it is not
+     * registered.
+     */
+    public final ObjectName getMXBeanName()
+    {
+        return this.mxBeanName;
+    }
+
+    /**
+     * Creates the MBean that is registered for this cache by {@link #registerMXBean()}.
+     */
+    protected StandardMBean createMXBean() throws NotCompliantMBeanException
+    {
+        return new StandardMBean(new CacheMXBeanAdapter(this), CacheMXBean.class, true);
+    }
+
+    protected ObjectName createMXBeanName() throws JMException
+    {
+        String type = this.getClass().getSimpleName();
+        if (type.isEmpty()) {
+            type = this.getClass().getName();
+        }
+
+        return new ObjectName(
+                AbstractCache.MX_BEAN_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(this.getName())
+        );
+    }
+
+    /**
+     * Retrieves an expired entry that may still be served because loading a fresh one failed. By default expired
+     * entries are never served.
+     *
+     * @param key The key of the entry.
+     * @return The expired entry or null if there is none that may be served.
+     * @throws CacheException Thrown on any errors encountered.
+     */
+    protected <T extends V> T getStaleIfError(final K key) throws CacheException
+    {
+        return null;
+    }
+
+    /**
+     * Registers a load for the given key if there is none in flight yet. Callers that miss the key in the meantime
+     * wait for the registered load, so it must be completed and unregistered in any case.
+     *
+     * @return The newly registered load or null if there already is one in flight.
+     */
+    protected final CompletableFuture<V> registerLoad(final K key)
+    {
+        final CompletableFuture<V> load = new CompletableFuture<>();
+        if (null != this.loadsInFlight.putIfAbsent(key, load)) {
+            return null;
+        }
+
+        return load;
+    }
+
+    /**
+     * Unregisters a load that was registered by {@link #registerLoad(Object)}.
+     */
+    protected final void unregisterLoad(final K key, final CompletableFuture<V> load)
+    {
+        this.loadsInFlight.remove(key, load);
+    }
+
+    /**
+     * Executes the loader and wraps any exception it throws in a {@link CacheException}.
+     */
+    protected final <T extends V> T load(final K key, final Function<? super K, T> loader) throws CacheException
+    {
+        final long start = System.nanoTime();
+        try {
+            return loader.apply(key);
+        } catch (RuntimeException e) {
+            throw new CacheException(this.getName() + ": Loading " + key + " failed", e);
+        } finally {
+            this.recordLatency(LatencyMetric.LOAD, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records the latency of an operation or phase, by default latencies are not recorded.
+     *
+     * @param metric The operation or phase.
+     * @param nanos  The latency in nanoseconds.
+     */
+    protected void recordLatency(final LatencyMetric metric, final long nanos)
+    {
+        /* Noop */
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends V> T awaitLoad(final K key, final CompletableFuture<V> load) throws CacheException
+    {
+        try {
+            return (T) load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheException(this.getName() + ": Interrupted while waiting for load of " + key, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CacheException) {
+                throw new CacheException(e.getCause().getMessage(), e.getCause());
+            }
+            throw new CacheException(this.getName() + ": Loading " + key + " failed", e.getCause());
+        }
+    }
 }
@@ -20,14 +20,27 @@ package net.dontdrinkandroot.cache.impl;
 import net.dontdrinkandroot.cache.Cache;
 import net.dontdrinkandroot.cache.CacheException;
 import net.dontdrinkandroot.cache.RecyclingCache;
+import net.dontdrinkandroot.cache.eviction.EvictionPolicy;
+import net.dontdrinkandroot.cache.eviction.impl.ComparatorEvictionPolicy;
+import net.dontdrinkandroot.cache.eviction.impl.FrequencyEvictionPolicy;
+import net.dontdrinkandroot.cache.listener.RemovalCause;
+import net.dontdrinkandroot.cache.listener.RemovalListener;
+import net.dontdrinkandroot.cache.listener.RemovalNotification;
 import net.dontdrinkandroot.cache.metadata.MetaData;
 import net.dontdrinkandroot.cache.metadata.comparator.MetaDataComparator;
 import net.dontdrinkandroot.cache.metadata.comparator.impl.LfuComparator;
-import net.dontdrinkandroot.cache.statistics.impl.SimpleCacheStatistics;
+import net.dontdrinkandroot.cache.statistics.LatencyMetric;
+import net.dontdrinkandroot.cache.statistics.impl.ConcurrentCacheStatistics;
 import net.dontdrinkandroot.cache.utils.Duration;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 
 /**
  * @author Philip Washington Sorst <philip@sorst.net>
@@ -38,19 +51,57 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
     /**
      * Statistics for this cache (e.g hit rate)
      */
-    private final SimpleCacheStatistics statistics;
+    private final ConcurrentCacheStatistics statistics;
 
     private final Map<K, M> entriesMetaDataMap;
 
-    private long lastCleanUp = System.currentTimeMillis();
+    private long lastCleanUp = this.getTicker().currentTimeMillis();
 
-    private long cleanUpInterval = Duration.hours(1);
+    private volatile long cleanUpInterval = Duration.hours(1);
 
     private final MetaDataComparator<K, M> comparator = new LfuComparator<>();
 
-    private int maxSize;
+    private EvictionPolicy<K, M> evictionPolicy;
 
-    private int recycleSize;
+    private volatile int maxSize;
+
+    private volatile int recycleSize;
+
+    /**
+     * Loader used to refresh entries ahead of their expiry, null if refresh-ahead is disabled.
+     */
+    private Function<? super K, ? extends V> refreshLoader = null;
+
+    /**
+     * Fraction of the time to live before the expiry in which a hit triggers a refresh.
+     */
+    private double refreshAheadFactor = 0;
+
+    private Executor refreshExecutor = ForkJoinPool.commonPool();
+
+    /**
+     * Time past the expiry during which an expired entry is still served while it is being refreshed.
+     */
+    private volatile long staleWhileRevalidate = 0;
+
+    /**
+     * Time past the expiry during which an expired entry is still served if reloading it failed.
+     */
+    private volatile long staleIfError = 0;
+
+    private final List<RemovalListener<K, V>> removalListeners = new CopyOnWriteArrayList<>();
+
+    private Executor removalListenerExecutor = ForkJoinPool.commonPool();
+
+    /**
+     * Listener that is notified while the cache is locked, null if there is none.
+     */
+    private RemovalListener<K, V> synchronousRemovalListener = null;
+
+    /**
+     * Removals of the current operation that still need to be dispatched to the listeners.
+     */
+    private List<RemovalNotification<K, V>> pendingRemovals = new ArrayList<>();
 
     /**
      * Construct a new {@link AbstractMapBackedCache}.
@@ -90,14 +141,15 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
         super(name, defaultTimeToLive, defaultMaxIdleTime);
 
         this.entriesMetaDataMap = new HashMap<>();
-        this.statistics = new SimpleCacheStatistics();
+        this.statistics = new ConcurrentCacheStatistics();
 
         this.maxSize = maxSize;
         this.recycleSize = recycleSize;
+        this.evictionPolicy = new FrequencyEvictionPolicy<>(maxSize);
     }
 
     @Override
-    public synchronized <T extends V> T put(K key, T data)
+    public <T extends V> T put(K key, T data)
     {
         try {
             return this.putWithErrors(key, data);
@@ -108,7 +160,26 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
     }
 
     @Override
-    public final synchronized <T extends V> T putWithErrors(final K key, final T data) throws CacheException
+    public final <T extends V> T putWithErrors(final K key, final T data) throws CacheException
+    {
+        final long start = System.nanoTime();
+        final T preparedData = this.preparePut(key, data);
+        try {
+            synchronized (this) {
+                this.recordLatency(LatencyMetric.LOCK_WAIT, System.nanoTime() - start);
+                try {
+                    return this.putLocked(key, preparedData);
+                } finally {
+                    this.dispatchRemovals();
+                    this.recordLatency(LatencyMetric.PUT, System.nanoTime() - start);
+                }
+            }
+        } finally {
+            this.finishPut(key, preparedData);
+        }
+    }
+
+    private <T extends V> T putLocked(final K key, final T data) throws CacheException
     {
         if (key == null) {
             throw new CacheException("Key must not be null");
@@ -122,7 +193,7 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
 		 */
         final M metaData = this.getEntry(key);
         if (metaData != null) {
-            this.delete(key, metaData);
+            this.delete(key, metaData, RemovalCause.REPLACED);
         }
 
         if (this.triggerExpunge()) {
@@ -137,51 +208,136 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
     }
 
     @Override
-    public final synchronized void delete(final K key) throws CacheException
+    public Map<K, V> putAll(final Map<? extends K, ? extends V> entries)
     {
-        final M metaData = this.entriesMetaDataMap.get(key);
-
-        if (metaData != null) {
-            this.delete(key, metaData);
+        try {
+            return this.putAllWithErrors(entries);
+        } catch (CacheException e) {
+            this.getLogger().warn(this.getName() + ": Putting " + entries.size() + " entries to cache failed", e);
+            return new LinkedHashMap<>(entries);
         }
     }
 
     @Override
-    public final synchronized void expunge() throws CacheException
+    public final Map<K, V> putAllWithErrors(final Map<? extends K, ? extends V> entries)
+            throws CacheException
     {
-        Set<Entry<K, M>> entrySet = this.entriesMetaDataMap.entrySet();
+        this.checkKeys(entries.keySet());
 
-        List<Entry<K, M>> toExpunge = new ArrayList<Entry<K, M>>();
-        TreeSet<Entry<K, M>> orderedSet = new TreeSet<Entry<K, M>>(this.comparator);
+        this.getLogger().trace(this.getName() + ": Putting {} entries to cache", entries.size());
 
-		/* Select expired and idled away */
-        for (final Entry<K, M> entry : entrySet) {
+        final Map<K, V> preparedEntries = new LinkedHashMap<>();
+        try {
+            for (final Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+                preparedEntries.put(entry.getKey(), this.preparePut(entry.getKey(), entry.getValue()));
+            }
 
-            MetaData metaData = entry.getValue();
+            final long start = System.nanoTime();
+            synchronized (this) {
+                this.recordLatency(LatencyMetric.LOCK_WAIT, System.nanoTime() - start);
+                try {
+                    return this.putAllLocked(preparedEntries);
+                } finally {
+                    this.recordLatency(LatencyMetric.PUT, System.nanoTime() - start);
+                }
+            }
+        } finally {
+            for (final Entry<K, V> preparedEntry : preparedEntries.entrySet()) {
+                this.finishPut(preparedEntry.getKey(), preparedEntry.getValue());
+            }
+        }
+    }
 
-            if (metaData.isExpired() || metaData.isStale()) {
-                toExpunge.add(entry);
-            } else {
-                orderedSet.add(entry);
+    private Map<K, V> putAllLocked(final Map<K, V> entries) throws CacheException
+    {
+        final Map<K, V> result = new LinkedHashMap<>();
+        try {
+
+            for (final Entry<K, V> entry : entries.entrySet()) {
+
+                final K key = entry.getKey();
+                final M metaData = this.getEntry(key);
+                if (metaData != null) {
+                    this.delete(key, metaData, RemovalCause.REPLACED);
+                }
+
+                if (this.triggerExpunge()) {
+                    this.expunge();
+                }
+
+                result.put(key, this.doPut(key, entry.getValue()));
             }
+        } finally {
+            this.dispatchRemovals();
         }
 
-		/* Select from remaining */
-        final int numToDelete = entrySet.size() - toExpunge.size() + 1 - this.maxSize;
-        final Iterator<Entry<K, M>> iterator = orderedSet.iterator();
+        this.statistics.increasePutCount(result.size());
+
+        return result;
+    }
+
+    @Override
+    public final void delete(final K key) throws CacheException
+    {
+        final long start = System.nanoTime();
+        synchronized (this) {
+            this.recordLatency(LatencyMetric.LOCK_WAIT, System.nanoTime() - start);
+            try {
+                this.deleteLocked(key);
+            } finally {
+                this.dispatchRemovals();
+                this.recordLatency(LatencyMetric.DELETE, System.nanoTime() - start);
+            }
+        }
+    }
 
-        int numDeleted = 0;
-        while (iterator.hasNext() && numDeleted < numToDelete) {
-            Entry<K, M> entry = iterator.next();
-            toExpunge.add(entry);
-            numDeleted++;
+    private void deleteLocked(final K key) throws CacheException
+    {
+        final M metaData = this.entriesMetaDataMap.get(key);
+
+        if (metaData != null) {
+            this.delete(key, metaData);
+        }
+    }
+
+    @Override
+    public final void deleteAll(final Collection<? extends K> keys) throws CacheException
+    {
+        final long start = System.nanoTime();
+        synchronized (this) {
+            this.recordLatency(LatencyMetric.LOCK_WAIT, System.nanoTime() - start);
+            try {
+                for (final K key : keys) {
+                    this.deleteLocked(key);
+                }
+            } finally {
+                this.dispatchRemovals();
+                this.recordLatency(LatencyMetric.DELETE, System.nanoTime() - start);
+            }
         }
+    }
 
-        this.expunge(toExpunge);
+    @Override
+    public final synchronized void expunge() throws CacheException
+    {
+        final long start = System.nanoTime();
+        final long now = this.getTicker().currentTimeMillis();
+
+        final Collection<Entry<K, M>> toExpunge = this.evictionPolicy.selectVictims(
+                this.entriesMetaDataMap,
+                this.maxSize - 1,
+                metaData -> (metaData.isExpired(now) && !this.isWithinGracePeriod(metaData, now))
+                        || metaData.isStale(now)
+        );
 
-        for (M metaData : this.entriesMetaDataMap.values()) {
-            metaData.decay();
+        try {
+            this.expunge(toExpunge);
+        } finally {
+            this.dispatchRemovals();
         }
+        this.statistics.increaseEvictions(toExpunge.size());
+
+        this.recordLatency(LatencyMetric.EVICTION, System.nanoTime() - start);
     }
 
     @Override
@@ -190,24 +346,31 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
         Iterator<Entry<K, M>> entriesIterator = this.entriesMetaDataMap.entrySet().iterator();
         long numExpired = 0;
         long numStale = 0;
+        final long now = this.getTicker().currentTimeMillis();
         while (entriesIterator.hasNext()) {
 
             Entry<K, M> entry = entriesIterator.next();
             M metaData = entry.getValue();
 
-            if (metaData.isExpired()) {
+            if (metaData.isExpired(now) && !this.isWithinGracePeriod(metaData, now)) {
                 numExpired++;
+                this.notifyRemoval(entry.getKey(), metaData, RemovalCause.EXPIRED);
                 this.doDelete(entry.getKey(), metaData);
                 entriesIterator.remove();
-            }
-
-            if (metaData.isStale()) {
+                this.evictionPolicy.onRemove(entry.getKey(), metaData);
+            } else if (metaData.isStale(now)) {
                 numStale++;
+                this.notifyRemoval(entry.getKey(), metaData, RemovalCause.STALE);
                 this.doDelete(entry.getKey(), metaData);
                 entriesIterator.remove();
+                this.evictionPolicy.onRemove(entry.getKey(), metaData);
             }
         }
 
+        this.statistics.setCurrentSize(this.entriesMetaDataMap.size());
+        this.dispatchRemovals();
+        this.statistics.increaseEvictions(numExpired + numStale);
+
         this.getLogger().info(this.getName() + ": Cleaned up {} expired and {} stale entries", numExpired, numStale);
         this.getCleanUpLogger().info(
                 this.getName() + ": Cleaned up {} expired and {} stale entries",
@@ -215,7 +378,7 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
                 numStale
         );
 
-        this.lastCleanUp = System.currentTimeMillis();
+        this.lastCleanUp = now;
     }
 
     @Override
@@ -230,9 +393,13 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
         }
 
 		/* Expired */
-        if (metaData.isExpired()) {
+        final long now = this.getTicker().currentTimeMillis();
+        if (metaData.isExpired(now) && !this.isServableStale(metaData, now)) {
 
-            this.delete(key, metaData);
+            if (!this.isWithinGracePeriod(metaData, now)) {
+                this.delete(key, metaData, RemovalCause.EXPIRED);
+                this.dispatchRemovals();
+            }
 
             return null;
         }
@@ -241,7 +408,7 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
     }
 
     @Override
-    public synchronized <T extends V> T get(K key)
+    public <T extends V> T get(K key)
     {
         try {
 
@@ -253,9 +420,45 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
     }
 
     @Override
-    public final synchronized <T extends V> T getWithErrors(final K key) throws CacheException
+    public final <T extends V> T getWithErrors(final K key) throws CacheException
     {
-        if (this.lastCleanUp + this.cleanUpInterval < System.currentTimeMillis()) {
+        final long start = System.nanoTime();
+        synchronized (this) {
+            this.recordLatency(LatencyMetric.LOCK_WAIT, System.nanoTime() - start);
+            try {
+                return this.getLocked(key, this::doGet);
+            } finally {
+                this.dispatchRemovals();
+                this.recordLatency(LatencyMetric.GET, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Accesses an entry like {@link #getWithErrors(Object)} including expiry handling and statistics, but passes the
+     * entry to the given reader instead of retrieving it with {@link #doGet(Object, MetaData)}. Used to access the
+     * data of an entry without materializing it, e.g. to stream it.
+     *
+     * @return The result of the reader, null if there was no servable entry.
+     */
+    protected final <R> R readWithErrors(final K key, final EntryReader<K, M, R> reader) throws CacheException
+    {
+        final long start = System.nanoTime();
+        synchronized (this) {
+            this.recordLatency(LatencyMetric.LOCK_WAIT, System.nanoTime() - start);
+            try {
+                return this.getLocked(key, reader);
+            } finally {
+                this.dispatchRemovals();
+                this.recordLatency(LatencyMetric.GET, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private <R> R getLocked(final K key, final EntryReader<K, M, R> reader) throws CacheException
+    {
+        final long now = this.getTicker().currentTimeMillis();
+        if (this.lastCleanUp + this.cleanUpInterval < now) {
             this.cleanUp();
         }
 
@@ -271,14 +474,18 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
             return null;
         }
 
-        if (metaData.isExpired()) {
+        final boolean expired = metaData.isExpired(now);
+        if (expired && !this.isServableStale(metaData, now)) {
 
 			/* Entry expired: cache miss expired */
             this.statistics.increaseCacheMissesExpired();
             this.statistics.increaseGetCount();
             this.getLogger().trace(this.getName() + ": Cache Miss expired '{}'", key);
 
-            this.delete(key, metaData);
+            /* Entries within the grace period are retained as fallback for failing loads */
+            if (!this.isWithinGracePeriod(metaData, now)) {
+                this.delete(key, metaData, RemovalCause.EXPIRED);
+            }
 
             return null;
         }
@@ -286,13 +493,21 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
 		/* Cache hit: return */
         try {
 
-            final T result = this.doGet(key, metaData);
+            final R result = reader.read(key, metaData);
 
             this.statistics.increaseCacheHits();
             this.statistics.increaseGetCount();
-            this.getLogger().trace(this.getName() + ": Cache Hit for '{}'", key);
+            if (expired) {
+                this.statistics.increaseStaleHits();
+                metaData.setServedStale(true);
+                this.getLogger().trace(this.getName() + ": Stale Cache Hit for '{}'", key);
+            } else {
+                this.getLogger().trace(this.getName() + ": Cache Hit for '{}'", key);
+            }
 
-            metaData.update();
+            metaData.update(now);
+            this.evictionPolicy.onAccess(key, metaData);
+            this.refreshAheadIfNeeded(key, metaData, now);
 
             return result;
         } catch (final CacheException e) {
@@ -304,17 +519,135 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
     }
 
     @Override
-    public synchronized SimpleCacheStatistics getStatistics()
+    public Map<K, V> getAll(final Collection<? extends K> keys)
+    {
+        try {
+
+            return this.getAllWithErrors(keys);
+        } catch (CacheException e) {
+            this.getLogger().error(this.getName() + ": Getting " + keys.size() + " entries from cache failed", e);
+            return new HashMap<>();
+        }
+    }
+
+    @Override
+    public final Map<K, V> getAllWithErrors(final Collection<? extends K> keys) throws CacheException
+    {
+        final long start = System.nanoTime();
+        synchronized (this) {
+            this.recordLatency(LatencyMetric.LOCK_WAIT, System.nanoTime() - start);
+            try {
+                return this.getAllLocked(keys);
+            } finally {
+                this.dispatchRemovals();
+                this.recordLatency(LatencyMetric.GET, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private Map<K, V> getAllLocked(final Collection<? extends K> keys) throws CacheException
+    {
+        final long now = this.getTicker().currentTimeMillis();
+        if (this.lastCleanUp + this.cleanUpInterval < now) {
+            this.cleanUp();
+        }
+
+        long numNotFound = 0;
+        long numExpired = 0;
+        final Map<K, M> found = new LinkedHashMap<>();
+        for (final K key : new LinkedHashSet<K>(keys)) {
+
+            final M metaData = this.entriesMetaDataMap.get(key);
+
+            if (null == metaData) {
+
+                /* Entry not found: cache miss */
+                numNotFound++;
+
+            } else if (metaData.isExpired(now) && !this.isServableStale(metaData, now)) {
+
+                /* Entry expired: cache miss expired */
+                numExpired++;
+                if (!this.isWithinGracePeriod(metaData, now)) {
+                    this.delete(key, metaData, RemovalCause.EXPIRED);
+                }
+
+            } else {
+
+                found.put(key, metaData);
+            }
+        }
+
+        final Map<K, V> result = this.doGetAll(found);
+
+        long numStale = 0;
+        for (final Entry<K, M> entry : found.entrySet()) {
+            if (entry.getValue().isExpired(now)) {
+                entry.getValue().setServedStale(true);
+                numStale++;
+            }
+            entry.getValue().update(now);
+            this.evictionPolicy.onAccess(entry.getKey(), entry.getValue());
+            this.refreshAheadIfNeeded(entry.getKey(), entry.getValue(), now);
+        }
+
+        /* Update statistics once for the whole batch */
+        this.statistics.increaseStaleHits(numStale);
+        this.statistics.increaseCacheMissesNotFound(numNotFound);
+        this.statistics.increaseCacheMissesExpired(numExpired);
+        this.statistics.increaseCacheHits(result.size());
+        this.statistics.increaseGetCount(numNotFound + numExpired + result.size());
+        this.getLogger().trace(
+                this.getName() + ": Bulk get: {} hits, {} misses",
+                result.size(),
+                numNotFound + numExpired
+        );
+
+        return result;
+    }
+
+    /**
+     * Not synchronized: the statistics are updated without contention and the current size is maintained on
+     * every change of the entries.
+     */
+    @Override
+    public ConcurrentCacheStatistics getStatistics()
     {
-        this.statistics.setCurrentSize(this.entriesMetaDataMap.size());
         return this.statistics;
     }
 
+    @Override
+    protected void recordLatency(final LatencyMetric metric, final long nanos)
+    {
+        this.statistics.recordLatency(metric, nanos);
+    }
+
+    /**
+     * Gets the comparator of the {@link ComparatorEvictionPolicy}, the default policy does not use it anymore.
+     */
+    @Deprecated
     public MetaDataComparator<K, M> getComparator()
     {
         return this.comparator;
     }
 
+    public EvictionPolicy<K, M> getEvictionPolicy()
+    {
+        return this.evictionPolicy;
+    }
+
+    /**
+     * Sets the policy that selects the entries to expunge, defaults to a {@link FrequencyEvictionPolicy}. The
+     * existing entries are handed over to the new policy.
+     */
+    public synchronized void setEvictionPolicy(final EvictionPolicy<K, M> evictionPolicy)
+    {
+        for (final Entry<K, M> entry : this.entriesMetaDataMap.entrySet()) {
+            evictionPolicy.onInsert(entry.getKey(), entry.getValue());
+        }
+        this.evictionPolicy = evictionPolicy;
+    }
+
     @Override
     public int getMaxSize()
     {
@@ -349,9 +682,88 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
         this.cleanUpInterval = cleanUpInterval;
     }
 
+    /**
+     * Enables refresh-ahead using the common {@link ForkJoinPool}, see
+     * {@link #setRefreshAhead(Function, double, Executor)}.
+     */
+    public void setRefreshAhead(final Function<? super K, ? extends V> loader, final double refreshAheadFactor)
+    {
+        this.setRefreshAhead(loader, refreshAheadFactor, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Enables refresh-ahead: if a hit lands within the given fraction of the time to live before the expiry of the
+     * entry, the entry is reloaded asynchronously while the old value is still served.
+     *
+     * @param loader             Loads the fresh value of an entry, null disables refresh-ahead.
+     * @param refreshAheadFactor Fraction of the time to live before the expiry in which a hit triggers a refresh,
+     *                           e.g. 0.2 to refresh entries that are accessed within the last 20% of their time to
+     *                           live.
+     * @param executor           The executor that performs the refresh.
+     */
+    public synchronized void setRefreshAhead(
+            final Function<? super K, ? extends V> loader,
+            final double refreshAheadFactor,
+            final Executor executor
+    )
+    {
+        if (refreshAheadFactor < 0 || refreshAheadFactor > 1) {
+            throw new IllegalArgumentException("Refresh ahead factor must be between 0 and 1");
+        }
+
+        this.refreshLoader = loader;
+        this.refreshAheadFactor = refreshAheadFactor;
+        this.refreshExecutor = executor;
+    }
+
+    public double getRefreshAheadFactor()
+    {
+        return this.refreshAheadFactor;
+    }
+
+    public boolean isRefreshAheadEnabled()
+    {
+        return null != this.refreshLoader;
+    }
+
+    public long getStaleWhileRevalidate()
+    {
+        return this.staleWhileRevalidate;
+    }
+
+    /**
+     * Sets the time past the expiry during which an expired entry is still served while it is refreshed in the
+     * background. Only has an effect if refresh-ahead is enabled.
+     *
+     * @param staleWhileRevalidate The grace period in milliseconds.
+     */
+    public void setStaleWhileRevalidate(final long staleWhileRevalidate)
+    {
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    public long getStaleIfError()
+    {
+        return this.staleIfError;
+    }
+
+    /**
+     * Sets the time past the expiry during which an expired entry is still served if reloading it failed, either
+     * by the refresh-ahead loader or by the loader passed to {@link #getWithErrors(Object, Function)}. Expired
+     * entries are retained for this period.
+     *
+     * @param staleIfError The grace period in milliseconds.
+     */
+    public void setStaleIfError(final long staleIfError)
+    {
+        this.staleIfError = staleIfError;
+    }
+
     protected void putEntry(K key, M metaData)
     {
         this.entriesMetaDataMap.put(key, metaData);
+        this.evictionPolicy.onInsert(key, metaData);
+        this.statistics.setCurrentSize(this.entriesMetaDataMap.size());
     }
 
     protected M getEntry(K key)
@@ -368,8 +780,9 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
      */
     protected void expunge(final Collection<Entry<K, M>> expungeEntriesMetaData) throws CacheException
     {
+        final long now = this.getTicker().currentTimeMillis();
         for (final Entry<K, M> metaData : expungeEntriesMetaData) {
-            this.delete(metaData.getKey(), metaData.getValue());
+            this.delete(metaData.getKey(), metaData.getValue(), this.getEvictionCause(metaData.getValue(), now));
         }
 
         this.getLogger().info(this.getName() + ": Expunged {} entries", expungeEntriesMetaData.size());
@@ -378,12 +791,57 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
 
     public synchronized void delete(K key, M metaData) throws CacheException
     {
+        this.delete(key, metaData, RemovalCause.EXPLICIT);
+    }
+
+    /**
+     * Deletes the entry and notifies the removal listeners about it. The notifications are queued until
+     * {@link #dispatchRemovals()} is called at the end of the current operation.
+     */
+    protected synchronized void delete(final K key, final M metaData, final RemovalCause cause)
+            throws CacheException
+    {
+        this.notifyRemoval(key, metaData, cause);
         this.doDelete(key, metaData);
 
         this.entriesMetaDataMap.remove(key);
+        this.evictionPolicy.onRemove(key, metaData);
         this.statistics.setCurrentSize(this.entriesMetaDataMap.size());
     }
 
+    /**
+     * Registers a listener that is notified about all entries that are removed from the cache.
+     */
+    public void addRemovalListener(final RemovalListener<K, V> listener)
+    {
+        this.removalListeners.add(listener);
+    }
+
+    public void removeRemovalListener(final RemovalListener<K, V> listener)
+    {
+        this.removalListeners.remove(listener);
+    }
+
+    /**
+     * Sets a listener that is notified about removed entries right away, while the cache is still locked and before
+     * the removal listeners are. Meant for caches that are built on top of this one and need to track its entries
+     * without a gap, e.g. to demote evicted entries. The listener must be fast and must not access the cache.
+     *
+     * @param listener The listener, null removes it.
+     */
+    public synchronized void setSynchronousRemovalListener(final RemovalListener<K, V> listener)
+    {
+        this.synchronousRemovalListener = listener;
+    }
+
+    /**
+     * Sets the executor the removal notifications are dispatched on, defaults to the common {@link ForkJoinPool}.
+     */
+    public synchronized void setRemovalListenerExecutor(final Executor removalListenerExecutor)
+    {
+        this.removalListenerExecutor = removalListenerExecutor;
+    }
+
     /**
      * Returns a copy of the List of all metadata entries.
      *
@@ -394,6 +852,270 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
         return new ArrayList<>(this.entriesMetaDataMap.values());
     }
 
+    /**
+     * Returns an unmodifiable view of the metadata mapped by key, callers must hold the cache lock while using it.
+     */
+    protected Map<K, M> getEntriesMetaDataMap()
+    {
+        return Collections.unmodifiableMap(this.entriesMetaDataMap);
+    }
+
+    /**
+     * Performs retrieval of the data belonging to multiple entries. By default every entry is retrieved by
+     * {@link #doGet(Object, MetaData)}, implementations can override this in order to optimize batched
+     * access. Entries that fail to be retrieved are deleted.
+     *
+     * @param entries The keys and metadata of the entries to retrieve, all of them exist and are not expired.
+     * @return The data of the entries mapped by their key.
+     * @throws CacheException Thrown on any errors encountered.
+     */
+    protected Map<K, V> doGetAll(final Map<K, M> entries) throws CacheException
+    {
+        final Map<K, V> result = new LinkedHashMap<>();
+        for (final Entry<K, M> entry : entries.entrySet()) {
+            try {
+
+                final V data = this.doGet(entry.getKey(), entry.getValue());
+                result.put(entry.getKey(), data);
+            } catch (final CacheException e) {
+
+                /* Delete entry on fail */
+                this.delete(entry.getKey(), entry.getValue());
+                throw e;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Replaces the data of an existing entry after it was refreshed ahead of its expiry. By default the entry is
+     * deleted and the data is put again with the default time to live, implementations can override this in order
+     * to keep the time to live or to rewrite the data in place.
+     *
+     * @param key      The key of the entry.
+     * @param metaData The current metadata of the entry.
+     * @param data     The refreshed data.
+     * @throws CacheException Thrown on any errors encountered.
+     */
+    protected void doRefresh(final K key, final M metaData, final V data) throws CacheException
+    {
+        this.delete(key, metaData, RemovalCause.REPLACED);
+        this.doPut(key, data);
+    }
+
+    /**
+     * Queues a removal notification for the entry if there are any listeners. Must be called before the data of
+     * the entry is deleted.
+     */
+    protected void notifyRemoval(final K key, final M metaData, final RemovalCause cause)
+    {
+        if (this.removalListeners.isEmpty() && null == this.synchronousRemovalListener) {
+            return;
+        }
+
+        final RemovalNotification<K, V> notification =
+                new RemovalNotification<>(key, this.getRemovedValue(key, metaData), metaData, cause);
+
+        if (null != this.synchronousRemovalListener) {
+            try {
+                this.synchronousRemovalListener.onRemoval(notification);
+            } catch (RuntimeException e) {
+                this.getLogger().warn(this.getName() + ": Removal listener failed on " + notification, e);
+            }
+        }
+
+        if (!this.removalListeners.isEmpty()) {
+            this.pendingRemovals.add(notification);
+        }
+    }
+
+    /**
+     * Get the value of an entry that is about to be removed for the removal notification. Only implementations that
+     * hold the value in memory should return it, by default null is returned.
+     */
+    protected V getRemovedValue(final K key, final M metaData)
+    {
+        return null;
+    }
+
+    /**
+     * Hands the removals of the current operation over to the executor. A single task is scheduled per operation, so
+     * the time the lock is held does not depend on the number of listeners.
+     */
+    protected void dispatchRemovals()
+    {
+        if (this.pendingRemovals.isEmpty()) {
+            return;
+        }
+
+        final List<RemovalNotification<K, V>> notifications = this.pendingRemovals;
+        this.pendingRemovals = new ArrayList<>();
+
+        try {
+            this.removalListenerExecutor.execute(() -> this.dispatch(notifications));
+        } catch (RejectedExecutionException e) {
+            this.getLogger().warn(this.getName() + ": Dispatching " + notifications.size() + " removals failed", e);
+        }
+    }
+
+    protected void checkKeys(final Collection<? extends K> keys) throws CacheException
+    {
+        for (final K key : keys) {
+            if (key == null) {
+                throw new CacheException("Key must not be null");
+            }
+        }
+    }
+
+    @Override
+    protected synchronized <T extends V> T getStaleIfError(final K key) throws CacheException
+    {
+        final M metaData = this.entriesMetaDataMap.get(key);
+        final long now = this.getTicker().currentTimeMillis();
+        if (null == metaData || !metaData.isExpired(now) || metaData.getExpiry() + this.staleIfError < now) {
+            return null;
+        }
+
+        try {
+
+            final T result = this.doGet(key, metaData);
+
+            this.statistics.increaseStaleHits();
+            metaData.setServedStale(true);
+            metaData.setRevalidationFailed(true);
+
+            return result;
+        } catch (final CacheException e) {
+
+			/* Delete entry on fail */
+            this.delete(key, metaData);
+            this.dispatchRemovals();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks if an expired entry may still be served: within the stale-while-revalidate period or within the
+     * stale-if-error period if the last refresh failed. Requires refresh-ahead as otherwise nobody revalidates.
+     */
+    private boolean isServableStale(final MetaData metaData, final long now)
+    {
+        if (!this.isRefreshAheadEnabled()) {
+            return false;
+        }
+
+        final long overdue = now - metaData.getExpiry();
+        if (overdue <= this.staleWhileRevalidate) {
+            return true;
+        }
+
+        return metaData.isRevalidationFailed() && overdue <= this.staleIfError;
+    }
+
+    /**
+     * Checks if an expired entry is still within the period in which it may be served stale.
+     */
+    private boolean isWithinGracePeriod(final MetaData metaData, final long now)
+    {
+        final long gracePeriod = Math.max(this.staleWhileRevalidate, this.staleIfError);
+
+        return now - metaData.getExpiry() <= gracePeriod;
+    }
+
+    /**
+     * Schedules a refresh of the entry if refresh-ahead is enabled and the entry is about to expire. At most one
+     * refresh or load is in flight per key.
+     */
+    private void refreshAheadIfNeeded(final K key, final M metaData, final long now)
+    {
+        final Function<? super K, ? extends V> loader = this.refreshLoader;
+        if (null == loader) {
+            return;
+        }
+
+        final long timeLeft = metaData.getExpiry() - now;
+        if (timeLeft > metaData.getTimeToLive() * this.refreshAheadFactor) {
+            return;
+        }
+
+        final CompletableFuture<V> load = this.registerLoad(key);
+        if (null == load) {
+            /* Already refreshing or loading */
+            return;
+        }
+
+        this.getLogger().trace(this.getName() + ": Refreshing '{}' ahead of expiry", key);
+        try {
+            this.refreshExecutor.execute(() -> this.refresh(key, metaData, loader, load));
+        } catch (RejectedExecutionException e) {
+            this.getLogger().warn(this.getName() + ": Scheduling refresh of " + key + " failed", e);
+            load.completeExceptionally(e);
+            this.unregisterLoad(key, load);
+        }
+    }
+
+    private void refresh(
+            final K key,
+            final M metaData,
+            final Function<? super K, ? extends V> loader,
+            final CompletableFuture<V> load
+    )
+    {
+        try {
+
+            final V data = this.load(key, loader);
+            if (null != data) {
+                synchronized (this) {
+                    /* Only replace the entry if it was not changed or removed in the meantime */
+                    if (this.getEntry(key) == metaData) {
+                        try {
+                            this.doRefresh(key, metaData, data);
+                        } finally {
+                            this.dispatchRemovals();
+                        }
+                    }
+                }
+            }
+
+            load.complete(data);
+        } catch (CacheException | RuntimeException e) {
+            this.getLogger().warn(this.getName() + ": Refreshing " + key + " failed", e);
+            synchronized (this) {
+                metaData.setRevalidationFailed(true);
+            }
+            load.completeExceptionally(e);
+        } finally {
+            this.unregisterLoad(key, load);
+        }
+    }
+
+    private void dispatch(final List<RemovalNotification<K, V>> notifications)
+    {
+        for (final RemovalListener<K, V> listener : this.removalListeners) {
+            for (final RemovalNotification<K, V> notification : notifications) {
+                try {
+                    listener.onRemoval(notification);
+                } catch (RuntimeException e) {
+                    this.getLogger().warn(this.getName() + ": Removal listener failed on " + notification, e);
+                }
+            }
+        }
+    }
+
+    private RemovalCause getEvictionCause(final MetaData metaData, final long now)
+    {
+        if (metaData.isExpired(now) && !this.isWithinGracePeriod(metaData, now)) {
+            return RemovalCause.EXPIRED;
+        }
+
+        if (metaData.isStale(now)) {
+            return RemovalCause.STALE;
+        }
+
+        return RemovalCause.SIZE;
+    }
+
     protected boolean triggerExpunge()
     {
         return this.entriesMetaDataMap.size() >= this.maxSize + this.recycleSize;
@@ -409,8 +1131,36 @@ public abstract class AbstractMapBackedCache<K, V, M extends MetaData> extends A
      */
     protected abstract <T extends V> T doGet(K key, M metaData) throws CacheException;
 
+    /**
+     * Prepares data for a put before the cache is locked, so implementations can do expensive work like I/O without
+     * blocking other operations. The result is passed to {@link #doPut(Object, Object)}, by default the data is
+     * returned as is.
+     */
+    protected <T extends V> T preparePut(final K key, final T data) throws CacheException
+    {
+        return data;
+    }
+
+    /**
+     * Called once the cache is unlocked after a put succeeded or failed, e.g. to release prepared data that was not
+     * used.
+     */
+    protected void finishPut(final K key, final V preparedData)
+    {
+        /* Noop */
+    }
+
     /**
      * Performs storage of the given data and adds new metadata to the map.
      */
     protected abstract <T extends V> T doPut(K key, T data) throws CacheException;
+
+    /**
+     * Accesses the data of an entry in place of {@link #doGet(Object, MetaData)}, see
+     * {@link #readWithErrors(Object, EntryReader)}.
+     */
+    protected interface EntryReader<K, M, R>
+    {
+        R read(K key, M metaData) throws CacheException;
+    }
 }
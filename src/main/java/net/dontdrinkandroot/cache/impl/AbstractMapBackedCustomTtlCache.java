@@ -19,7 +19,12 @@ package net.dontdrinkandroot.cache.impl;
 
 import net.dontdrinkandroot.cache.CacheException;
 import net.dontdrinkandroot.cache.CustomTtlCache;
+import net.dontdrinkandroot.cache.listener.RemovalCause;
 import net.dontdrinkandroot.cache.metadata.MetaData;
+import net.dontdrinkandroot.cache.statistics.LatencyMetric;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * @author Philip Washington Sorst <philip@sorst.net>
@@ -72,7 +77,7 @@ public abstract class AbstractMapBackedCustomTtlCache<K, V, M extends MetaData>
     }
 
     @Override
-    public synchronized <T extends V> T put(K key, T data, long timeToLive, long maxIdleTime)
+    public <T extends V> T put(K key, T data, long timeToLive, long maxIdleTime)
     {
         try {
             return this.putWithErrors(key, data, timeToLive, maxIdleTime);
@@ -83,12 +88,27 @@ public abstract class AbstractMapBackedCustomTtlCache<K, V, M extends MetaData>
     }
 
     @Override
-    public final synchronized <T extends V> T putWithErrors(
+    public final <T extends V> T putWithErrors(
             final K key,
             final T data,
             final long timeToLive,
             final long maxIdleTime
     ) throws CacheException
+    {
+        final long start = System.nanoTime();
+        synchronized (this) {
+            this.recordLatency(LatencyMetric.LOCK_WAIT, System.nanoTime() - start);
+            try {
+                return this.putLocked(key, data, timeToLive, maxIdleTime);
+            } finally {
+                this.dispatchRemovals();
+                this.recordLatency(LatencyMetric.PUT, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private <T extends V> T putLocked(final K key, final T data, final long timeToLive, final long maxIdleTime)
+            throws CacheException
     {
         if (key == null) {
             throw new CacheException("Key must not be null");
@@ -100,7 +120,7 @@ public abstract class AbstractMapBackedCustomTtlCache<K, V, M extends MetaData>
 
 		/* If the key is already known, delete entry first */
         if (metaData != null) {
-            this.delete(key, metaData);
+            this.delete(key, metaData, RemovalCause.REPLACED);
         }
 
         if (this.triggerExpunge()) {
@@ -115,18 +135,104 @@ public abstract class AbstractMapBackedCustomTtlCache<K, V, M extends MetaData>
     }
 
     @Override
-    public final synchronized <T extends V> T putWithErrors(final K key, final T data, final long timeToLive)
+    public final <T extends V> T putWithErrors(final K key, final T data, final long timeToLive)
             throws CacheException
     {
         return this.putWithErrors(key, data, timeToLive, this.getDefaultMaxIdleTime());
     }
 
+    @Override
+    public Map<K, V> putAll(final Map<? extends K, ? extends V> entries, final long timeToLive)
+    {
+        try {
+            return this.putAllWithErrors(entries, timeToLive, this.getDefaultMaxIdleTime());
+        } catch (CacheException e) {
+            this.getLogger().warn("Putting " + entries.size() + " entries to cache failed", e);
+            return new LinkedHashMap<>(entries);
+        }
+    }
+
+    @Override
+    public final Map<K, V> putAllWithErrors(
+            final Map<? extends K, ? extends V> entries,
+            final long timeToLive
+    ) throws CacheException
+    {
+        return this.putAllWithErrors(entries, timeToLive, this.getDefaultMaxIdleTime());
+    }
+
+    @Override
+    public final Map<K, V> putAllWithErrors(
+            final Map<? extends K, ? extends V> entries,
+            final long timeToLive,
+            final long maxIdleTime
+    ) throws CacheException
+    {
+        this.checkKeys(entries.keySet());
+
+        this.getLogger().trace("Putting {} entries to cache", entries.size());
+
+        final long start = System.nanoTime();
+        synchronized (this) {
+            this.recordLatency(LatencyMetric.LOCK_WAIT, System.nanoTime() - start);
+            try {
+                return this.putAllLocked(entries, timeToLive, maxIdleTime);
+            } finally {
+                this.recordLatency(LatencyMetric.PUT, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private Map<K, V> putAllLocked(
+            final Map<? extends K, ? extends V> entries,
+            final long timeToLive,
+            final long maxIdleTime
+    ) throws CacheException
+    {
+        final Map<K, V> result = new LinkedHashMap<>();
+        try {
+
+            for (final Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+
+                final K key = entry.getKey();
+                final M metaData = this.getEntry(key);
+
+                /* If the key is already known, delete entry first */
+                if (metaData != null) {
+                    this.delete(key, metaData, RemovalCause.REPLACED);
+                }
+
+                if (this.triggerExpunge()) {
+                    this.expunge();
+                }
+
+                result.put(key, this.doPut(key, entry.getValue(), timeToLive, maxIdleTime));
+            }
+        } finally {
+            this.dispatchRemovals();
+        }
+
+        this.getStatistics().increasePutCount(result.size());
+
+        return result;
+    }
+
     @Override
     protected <T extends V> T doPut(final K key, final T data) throws CacheException
     {
         return this.doPut(key, data, this.getDefaultTtl(), this.getDefaultMaxIdleTime());
     }
 
+    /**
+     * Keeps the time to live and max idle time of the refreshed entry.
+     */
+    @Override
+    protected void doRefresh(final K key, final M metaData, final V data) throws CacheException
+    {
+        this.delete(key, metaData, RemovalCause.REPLACED);
+        this.doPut(key, data, metaData.getTimeToLive(), metaData.getMaxIdleTime());
+    }
+
     /**
      * Performs storage of the given data and adds new metadata to the map.
      */
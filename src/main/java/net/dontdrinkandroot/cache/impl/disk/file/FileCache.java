@@ -17,31 +17,132 @@
  */
 package net.dontdrinkandroot.cache.impl.disk.file;
 
+import net.dontdrinkandroot.cache.Cache;
 import net.dontdrinkandroot.cache.CacheException;
+import net.dontdrinkandroot.cache.eviction.impl.ComparatorEvictionPolicy;
 import net.dontdrinkandroot.cache.impl.AbstractMapBackedCache;
 import net.dontdrinkandroot.cache.metadata.impl.SimpleMetaData;
 import net.dontdrinkandroot.cache.utils.FileUtils;
 import net.dontdrinkandroot.cache.utils.Md5;
 import net.dontdrinkandroot.cache.utils.Md5Exception;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
 
 /**
+ * Stores files in a tree of hex directories named after the md5 of their key.
+ * <p>
+ * File system work is kept out of the cache lock: files are copied, moved or linked to a staged file next to their
+ * target before the cache is locked and only renamed into place while it is locked. Files of removed entries are
+ * deleted asynchronously once the cache is unlocked. Renames and deletes are serialized by a lock per hex prefix
+ * directory, so a file is never deleted after it was replaced by a new entry.
+ * <p>
+ * The metadata of the entries is kept in a {@link MetaDataJournal} in the base directory, so expiry, hit counts and
+ * last access survive restarts. Files without journaled metadata are loaded based on their modification date. Changes
+ * are recorded in memory while the cache is locked and written to the journal in the background, as are snapshots.
+ *
  * @author Philip Washington Sorst <philip@sorst.net>
  */
-public class FileCache extends AbstractMapBackedCache<Md5, File, SimpleMetaData>
+public class FileCache extends AbstractMapBackedCache<Md5, File, SimpleMetaData> implements Closeable
 {
     public static Pattern MD5_PATTERN = Pattern.compile("[a-fA-F\\d]{32}");
 
     private final static int hexLength = 16;
 
+    /**
+     * Initialization is bound by file system latency rather than CPU, so use a few threads even on small machines.
+     */
+    private static final int MIN_INITIALIZATION_PARALLELISM = 4;
+
+    private static final String STAGED_FILE_SUFFIX = ".staged";
+
+    private static final long STREAM_TRANSFER_SIZE = FileUtils.ONE_MB * 8;
+
+    /**
+     * Number of directory levels that get their own lock, limits the number of locks to 256.
+     */
+    private static final int MAX_STRIPE_DEPTH = 2;
+
+    /**
+     * Number of directory levels whose paths are cached, limits the number of cached paths to 65536.
+     */
+    private static final int MAX_CACHED_DIRECTORY_DEPTH = 4;
+
     private final int directoryDepth;
 
     private final File baseDir;
 
+    private volatile PutMode putMode = PutMode.COPY;
+
+    private final int cachedDirectoryDepth;
+
+    private final Path[] directories;
+
+    private final int stripeDepth;
+
+    private final ReentrantLock[] stripes;
+
+    /**
+     * Keys of removed entries whose files were not deleted yet, a put of the key cancels the deletion.
+     */
+    private final Set<Md5> pendingDeletes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Temporary files written by the cache itself that are always moved into place, from preparing a put until it
+     * is finished.
+     */
+    private final Map<File, StagedFile> stagedFiles = new ConcurrentHashMap<>();
+
+    /**
+     * Keys removed by the current operation, guarded by the cache lock.
+     */
+    private List<Md5> removedKeys = new ArrayList<>();
+
+    private volatile Executor deleteExecutor = ForkJoinPool.commonPool();
+
+    private final MetaDataJournal journal;
+
+    private final AtomicBoolean journalFlushScheduled = new AtomicBoolean();
+
+    /**
+     * Metadata read from the journal, only set during initialization.
+     */
+    private Map<Md5, SimpleMetaData> restoredMetaData = Collections.emptyMap();
+
     public FileCache(
             final String name,
             final long defaultTimeToLive,
@@ -61,43 +162,420 @@ public class FileCache extends AbstractMapBackedCache<Md5, File, SimpleMetaData>
         }
         this.createDirStructure(baseDir, directoryDepth);
 
+        this.cachedDirectoryDepth = Math.min(directoryDepth, FileCache.MAX_CACHED_DIRECTORY_DEPTH);
+        this.directories =
+                FileCache.createDirectoryPaths(baseDir.getAbsoluteFile().toPath(), this.cachedDirectoryDepth);
+
+        this.stripeDepth = Math.min(directoryDepth, FileCache.MAX_STRIPE_DEPTH);
+        this.stripes = new ReentrantLock[(int) Math.pow(FileCache.hexLength, this.stripeDepth)];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+
+        this.journal = new MetaDataJournal(baseDir);
+
         this.initialize();
     }
 
     @Override
     protected void doDelete(Md5 key, final SimpleMetaData metaData) throws CacheException
     {
-        final File file = new File(this.getFileName(key));
-        if (!file.delete()) {
-            throw new CacheException("Couldn't delete file");
+        /* The file is deleted once the cache is unlocked, see dispatchRemovals() */
+        this.pendingDeletes.add(key);
+        this.removedKeys.add(key);
+
+        this.journal.recordDelete(key);
+        this.scheduleJournalFlush();
+    }
+
+    @Override
+    protected void dispatchRemovals()
+    {
+        super.dispatchRemovals();
+
+        if (this.removedKeys.isEmpty()) {
+            return;
         }
+
+        final List<Md5> keys = this.removedKeys;
+        this.removedKeys = new ArrayList<>();
+
+        this.executeInBackground(() -> this.deleteFiles(keys), "deletion of " + keys.size() + " files");
     }
 
     @SuppressWarnings("unchecked")
     @Override
     protected File doGet(Md5 key, final SimpleMetaData metaData) throws CacheException
     {
-        return new File(this.getFileName(key));
+        this.journalAccess(key);
+
+        return this.getFilePath(key).toFile();
     }
 
     @SuppressWarnings("unchecked")
     @Override
     protected File doPut(final Md5 md5, final File data) throws CacheException
     {
-        final SimpleMetaData metaData = new SimpleMetaData(this.getDefaultTtl());
+        final SimpleMetaData metaData =
+                new SimpleMetaData(this.getTicker(), this.getDefaultTtl(), Cache.UNLIMITED_IDLE_TIME);
 
-        final File targetFile = new File(this.getFileName(md5));
+        final File targetFile = this.getFilePath(md5).toFile();
+        final ReentrantLock stripe = this.getStripe(md5);
+        stripe.lock();
         try {
-            FileUtils.copyFile(data, targetFile);
+            this.pendingDeletes.remove(md5);
+            if (this.stagedFiles.containsKey(data)) {
+                Files.move(data.toPath(), targetFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                this.ingest(data.toPath(), targetFile.toPath());
+            }
         } catch (final IOException e) {
-            throw new CacheException("Couldn't copy file", e);
+            throw new CacheException("Couldn't put file " + data, e);
+        } finally {
+            stripe.unlock();
         }
 
         this.putEntry(md5, metaData);
 
+        this.journal.recordUpdate(md5, metaData);
+        this.scheduleJournalFlush();
+
         return targetFile;
     }
 
+    /**
+     * Takes a snapshot after expunging if the eviction policy changed the metadata of all entries, i.e. the
+     * {@link ComparatorEvictionPolicy} decayed their hit counts.
+     */
+    @Override
+    protected void expunge(final Collection<Entry<Md5, SimpleMetaData>> expungeEntriesMetaData) throws CacheException
+    {
+        super.expunge(expungeEntriesMetaData);
+
+        if (!(this.getEvictionPolicy() instanceof ComparatorEvictionPolicy)) {
+            return;
+        }
+
+        this.scheduleSnapshot();
+    }
+
+    /**
+     * Writes a snapshot of the metadata, closes the journal and unregisters the MBean. The cache must not be used
+     * afterwards.
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        try {
+            this.journal.snapshot(this.getEntriesMetaDataMap());
+        } finally {
+            try {
+                this.journal.close();
+            } finally {
+                this.unregisterMXBean();
+            }
+        }
+    }
+
+    /**
+     * Copies, moves or links the file to a staged file next to its target according to the {@link PutMode}, so
+     * only a rename is left to do while the cache is locked.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <T extends File> T preparePut(final Md5 md5, final T data) throws CacheException
+    {
+        if (md5 == null || data == null || this.stagedFiles.containsKey(data)) {
+            return data;
+        }
+
+        final StagedFile stagedFile = this.createStagedFile(md5);
+        try {
+            this.ingest(data.toPath(), stagedFile.getPath());
+        } catch (final IOException e) {
+            this.finishPut(md5, stagedFile.getFile());
+            throw new CacheException("Couldn't put file " + data, e);
+        }
+        if (PutMode.MOVE == this.putMode) {
+            stagedFile.setSource(data.toPath());
+        }
+
+        return (T) stagedFile.getFile();
+    }
+
+    /**
+     * Removes the staged file if it was not moved into place, i.e. the put failed. A file that was moved from the
+     * source of the put is moved back instead, so a failing put does not destroy the file of the caller.
+     */
+    @Override
+    protected void finishPut(final Md5 md5, final File preparedData)
+    {
+        final StagedFile stagedFile = null == preparedData ? null : this.stagedFiles.remove(preparedData);
+        if (null == stagedFile || !preparedData.exists()) {
+            return;
+        }
+
+        final Path source = stagedFile.getSource();
+        if (null != source) {
+            try {
+                Files.move(preparedData.toPath(), source);
+            } catch (final IOException e) {
+                this.getLogger().error(
+                        this.getName() + ": Moving " + preparedData + " back to " + source + " failed",
+                        e
+                );
+            }
+
+            return;
+        }
+
+        if (!preparedData.delete()) {
+            this.getLogger().warn("{}: Deleting temporary file {} failed", this.getName(), preparedData);
+        }
+    }
+
+    /**
+     * Opens a channel on the file of the entry that supports positional reads and zero copy transfers. The channel
+     * remains valid if the entry is removed while it is open, callers must close it.
+     *
+     * @return The channel, null if there is no servable entry for the key.
+     */
+    public FileChannel openChannel(final Md5 md5) throws CacheException
+    {
+        return this.readWithErrors(md5, (key, metaData) -> {
+            this.journalAccess(key);
+            try {
+                return FileChannel.open(this.getFilePath(key), StandardOpenOption.READ);
+            } catch (final IOException e) {
+                throw new CacheException("Couldn't open file for " + key, e);
+            }
+        });
+    }
+
+    /**
+     * Transfers the file of the entry to the target channel without copying it to the heap. The cache is not locked
+     * during the transfer.
+     *
+     * @return The number of bytes transferred, -1 if there is no servable entry for the key.
+     */
+    public long transferTo(final Md5 md5, final WritableByteChannel target) throws CacheException
+    {
+        try (FileChannel channel = this.openChannel(md5)) {
+            if (channel == null) {
+                return -1;
+            }
+
+            final long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                final long count = channel.transferTo(position, size - position, target);
+                if (count <= 0) {
+                    break;
+                }
+                position += count;
+            }
+
+            return position;
+        } catch (final IOException e) {
+            throw new CacheException("Couldn't transfer file for " + md5, e);
+        }
+    }
+
+    /**
+     * Puts the content read from the given stream to the cache. The content is written to a temporary file in the
+     * base directory first and then renamed into place, so the cache lock is not held while reading the stream.
+     */
+    public File putWithErrors(final Md5 md5, final InputStream inputStream) throws CacheException
+    {
+        return this.putWithErrors(md5, Channels.newChannel(inputStream));
+    }
+
+    /**
+     * Puts the content read from the given channel to the cache, see {@link #putWithErrors(Md5, InputStream)}.
+     */
+    public File putWithErrors(final Md5 md5, final ReadableByteChannel channel) throws CacheException
+    {
+        final StagedFile stagedFile = this.createStagedFile(md5);
+        try {
+            try (FileChannel output = FileChannel.open(stagedFile.getPath(), StandardOpenOption.WRITE)) {
+                long position = 0;
+                long count;
+                while ((count = output.transferFrom(channel, position, FileCache.STREAM_TRANSFER_SIZE)) > 0) {
+                    position += count;
+                }
+            }
+
+            return this.putWithErrors(md5, stagedFile.getFile());
+        } catch (final IOException e) {
+            throw new CacheException("Couldn't write stream to " + stagedFile.getFile(), e);
+        } finally {
+            this.finishPut(md5, stagedFile.getFile());
+        }
+    }
+
+    public PutMode getPutMode()
+    {
+        return this.putMode;
+    }
+
+    /**
+     * Sets how files passed to put are taken over, defaults to {@link PutMode#COPY}.
+     */
+    public void setPutMode(final PutMode putMode)
+    {
+        this.putMode = putMode;
+    }
+
+    private void ingest(final Path source, final Path target) throws IOException
+    {
+        switch (this.putMode) {
+            case MOVE:
+                try {
+                    Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (final AtomicMoveNotSupportedException e) {
+                    Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                break;
+            case LINK:
+                try {
+                    Files.deleteIfExists(target);
+                    Files.createLink(target, source);
+                } catch (final IOException | UnsupportedOperationException e) {
+                    this.getLogger().debug("{}: Linking {} failed, copying", this.getName(), source, e);
+                    FileUtils.copyFile(source.toFile(), target.toFile());
+                }
+                break;
+            default:
+                FileUtils.copyFile(source.toFile(), target.toFile());
+        }
+    }
+
+    /**
+     * Writes the recorded metadata changes to the journal. This happens in the background after each change, so
+     * calling it is only needed to make sure the changes are on disk right away.
+     */
+    public void flushJournal() throws IOException
+    {
+        this.journal.flush();
+    }
+
+    /**
+     * Sets the executor that deletes the files of removed entries and writes the metadata journal, defaults to the
+     * common fork join pool.
+     */
+    public void setDeleteExecutor(final Executor deleteExecutor)
+    {
+        this.deleteExecutor = deleteExecutor;
+    }
+
+    /**
+     * Creates a staged file next to the target of the entry, it is tracked until the put is finished.
+     */
+    private StagedFile createStagedFile(final Md5 md5) throws CacheException
+    {
+        final Path targetDir = this.getFilePath(md5).getParent();
+        final StagedFile stagedFile;
+        try {
+            stagedFile = new StagedFile(Files.createTempFile(targetDir, md5.getHex(), FileCache.STAGED_FILE_SUFFIX));
+        } catch (final IOException e) {
+            throw new CacheException("Couldn't create temporary file in " + targetDir, e);
+        }
+        this.stagedFiles.put(stagedFile.getFile(), stagedFile);
+
+        return stagedFile;
+    }
+
+    /**
+     * Deletes the files of removed entries unless the entry was put again in the meantime.
+     */
+    private void deleteFiles(final List<Md5> keys)
+    {
+        for (final Md5 key : keys) {
+            final ReentrantLock stripe = this.getStripe(key);
+            stripe.lock();
+            try {
+                if (this.pendingDeletes.remove(key)) {
+                    this.deleteQuietly(this.getFilePath(key));
+                }
+            } finally {
+                stripe.unlock();
+            }
+        }
+    }
+
+    private void journalAccess(final Md5 md5)
+    {
+        this.journal.recordAccess(md5, this.getTicker().currentTimeMillis());
+        this.scheduleJournalFlush();
+    }
+
+    /**
+     * Schedules writing the recorded changes to the journal unless that is scheduled already. If the journal grew
+     * too large a snapshot is scheduled instead, which takes over the recorded changes.
+     */
+    private void scheduleJournalFlush()
+    {
+        if (this.journal.isSnapshotDue(this.getEntriesMetaDataMap().size())) {
+            this.scheduleSnapshot();
+            return;
+        }
+
+        if (!this.journalFlushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        this.executeInBackground(
+                () -> {
+                    this.journalFlushScheduled.set(false);
+                    try {
+                        this.journal.flush();
+                    } catch (final IOException e) {
+                        this.getLogger().warn(this.getName() + ": Writing metadata journal failed", e);
+                    }
+                },
+                "writing the metadata journal"
+        );
+    }
+
+    /**
+     * Copies the metadata of all entries while the cache is locked and schedules writing it to a snapshot.
+     */
+    private void scheduleSnapshot()
+    {
+        this.journal.prepareSnapshot(this.getEntriesMetaDataMap());
+        this.executeInBackground(
+                () -> {
+                    try {
+                        this.journal.writeSnapshot();
+                    } catch (final IOException e) {
+                        this.getLogger().warn(this.getName() + ": Writing metadata snapshot failed", e);
+                    }
+                },
+                "writing a metadata snapshot"
+        );
+    }
+
+    /**
+     * Executes the task on the delete executor, or right away if the executor rejects it.
+     */
+    private void executeInBackground(final Runnable task, final String description)
+    {
+        try {
+            this.deleteExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            this.getLogger().warn(this.getName() + ": Scheduling " + description + " failed", e);
+            task.run();
+        }
+    }
+
+    /**
+     * Returns the lock of the hex prefix directory the file of the entry is stored in.
+     */
+    private ReentrantLock getStripe(final Md5 md5)
+    {
+        return this.stripes[FileCache.getPrefix(md5, this.stripeDepth)];
+    }
+
     public final File getBaseDir()
     {
         return this.baseDir;
@@ -124,41 +602,275 @@ public class FileCache extends AbstractMapBackedCache<Md5, File, SimpleMetaData>
 
     protected String getFileName(final Md5 md5)
     {
-        final String md5Hex = md5.getHex();
-        final StringBuffer fileName = new StringBuffer(this.getBaseDir().getAbsolutePath() + File.separator);
-        for (int i = 0; i < this.directoryDepth; i++) {
-            fileName.append(md5Hex.charAt(i) + File.separator);
+        return this.getFilePath(md5).toString();
+    }
+
+    /**
+     * Resolves the path of the file of the entry, the directories of the upper levels are taken from the cache.
+     */
+    protected Path getFilePath(final Md5 md5)
+    {
+        Path directory = this.directories[FileCache.getPrefix(md5, this.cachedDirectoryDepth)];
+        if (this.cachedDirectoryDepth < this.directoryDepth) {
+            final String md5Hex = md5.getHex();
+            for (int i = this.cachedDirectoryDepth; i < this.directoryDepth; i++) {
+                directory = directory.resolve(String.valueOf(md5Hex.charAt(i)));
+            }
+        }
+
+        return directory.resolve(md5.getHex());
+    }
+
+    /**
+     * Creates the paths of all directories down to the given depth, indexed by their hex prefix.
+     */
+    private static Path[] createDirectoryPaths(final Path baseDir, final int depth)
+    {
+        final Path[] directories = new Path[(int) Math.pow(FileCache.hexLength, depth)];
+        for (int i = 0; i < directories.length; i++) {
+            Path directory = baseDir;
+            for (int level = depth - 1; level >= 0; level--) {
+                directory = directory.resolve(Integer.toHexString((i >>> (4 * level)) & 0x0F));
+            }
+            directories[i] = directory;
         }
-        fileName.append(md5Hex);
 
-        return fileName.toString();
+        return directories;
     }
 
+    /**
+     * Returns the value of the first hex digits of the md5.
+     */
+    private static int getPrefix(final Md5 md5, final int numDigits)
+    {
+        if (numDigits == 0) {
+            return 0;
+        }
+
+        return (int) (md5.getHigh() >>> (64 - 4 * numDigits));
+    }
+
+    /**
+     * Reads the entries from the directory structure. The hex subdirectories are walked in parallel and each
+     * directory is added to the index as soon as it was read, so the file list is never materialized as a whole.
+     */
     protected void initialize() throws CacheException
     {
         // TODO Check correct directory structure
 
-        final Collection<File> files = FileUtils.listFilesRecursive(this.getBaseDir());
+        try {
+            this.restoredMetaData = this.journal.read();
+        } catch (final IOException e) {
+            this.getLogger().warn(this.getName() + ": Reading metadata journal failed, using file dates", e);
+        }
+
+        final AtomicInteger numSuccessfullyRead = new AtomicInteger();
+        final ForkJoinPool pool = new ForkJoinPool(
+                Math.max(FileCache.MIN_INITIALIZATION_PARALLELISM, Runtime.getRuntime().availableProcessors())
+        );
+        try {
+            pool.invoke(new InitializeDirectoryTask(
+                    this,
+                    this.getBaseDir().toPath(),
+                    this.directoryDepth,
+                    numSuccessfullyRead
+            ));
+        } catch (final UncheckedIOException e) {
+            throw new CacheException("Reading " + this.getBaseDir() + " failed", e.getCause());
+        } finally {
+            pool.shutdown();
+            this.restoredMetaData = Collections.emptyMap();
+        }
+
+        synchronized (this) {
+            try {
+                this.journal.snapshot(this.getEntriesMetaDataMap());
+            } catch (final IOException e) {
+                throw new CacheException("Writing metadata snapshot failed", e);
+            }
+        }
+
+        this.getLogger().info("{}: Loaded {} entries", this.getName(), numSuccessfullyRead.get());
+    }
 
-        int numSuccessfullyRead = 0;
-        for (final File file : files) {
-            final String md5Hex = file.getName();
-            if (FileCache.MD5_PATTERN.matcher(md5Hex).matches()) {
-                Md5 md5;
+    /**
+     * Adds the entries for the given files, files that are no cache entries or that already expired are ignored.
+     *
+     * @return The number of entries added.
+     */
+    private int addEntries(final Map<Path, BasicFileAttributes> files)
+    {
+        final Map<Md5, SimpleMetaData> entries = new HashMap<>();
+        final long now = this.getTicker().currentTimeMillis();
+        for (final Entry<Path, BasicFileAttributes> file : files.entrySet()) {
+            final String md5Hex = file.getKey().getFileName().toString();
+            if (md5Hex.endsWith(FileCache.STAGED_FILE_SUFFIX)) {
+                /* Left over from a put that was interrupted */
+                this.deleteQuietly(file.getKey());
+            } else if (FileCache.MD5_PATTERN.matcher(md5Hex).matches()) {
+                final Md5 md5;
                 try {
                     md5 = Md5.fromMd5Hex(md5Hex);
                 } catch (final Md5Exception e) {
-                    throw new CacheException("Couldn't add file " + file, e);
+                    /* Cannot happen as the name matched the pattern */
+                    throw new IllegalStateException("Couldn't add file " + file.getKey(), e);
+                }
+                SimpleMetaData entry = this.restoredMetaData.get(md5);
+                if (entry == null) {
+                    if (this.restoredMetaData.containsKey(md5)) {
+                        /* Deleted, but the file was not removed before shutdown */
+                        this.deleteQuietly(file.getKey());
+                        continue;
+                    }
+                    final long lastModified = file.getValue().lastModifiedTime().toMillis();
+                    entry = new SimpleMetaData(lastModified, this.getDefaultTtl(), Cache.UNLIMITED_IDLE_TIME, now);
                 }
-                long lastModified = file.lastModified();
-                final SimpleMetaData entry = new SimpleMetaData(lastModified, this.getDefaultTtl());
-                if (!entry.isExpired() && !entry.isStale()) {
-                    this.putEntry(md5, entry);
-                    numSuccessfullyRead++;
+                if (!entry.isExpired(now) && !entry.isStale(now)) {
+                    entries.put(md5, entry);
                 }
             }
         }
 
-        this.getLogger().info("{}: Loaded {} entries", this.getName(), numSuccessfullyRead);
+        synchronized (this) {
+            for (final Entry<Md5, SimpleMetaData> entry : entries.entrySet()) {
+                this.putEntry(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return entries.size();
+    }
+
+    private void deleteQuietly(final Path path)
+    {
+        try {
+            Files.deleteIfExists(path);
+        } catch (final IOException e) {
+            this.getLogger().warn(this.getName() + ": Deleting " + path + " failed", e);
+        }
+    }
+
+    /**
+     * Reads the files of one directory and forks a task for each subdirectory, below the configured depth the
+     * remaining tree is walked in one go.
+     */
+    private static class InitializeDirectoryTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final FileCache cache;
+
+        private final Path dir;
+
+        private final int remainingDepth;
+
+        private final AtomicInteger numSuccessfullyRead;
+
+        public InitializeDirectoryTask(
+                final FileCache cache,
+                final Path dir,
+                final int remainingDepth,
+                final AtomicInteger numSuccessfullyRead
+        )
+        {
+            this.cache = cache;
+            this.dir = dir;
+            this.remainingDepth = remainingDepth;
+            this.numSuccessfullyRead = numSuccessfullyRead;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (this.remainingDepth == 0) {
+                this.numSuccessfullyRead.addAndGet(this.cache.addEntries(this.walkTree()));
+                return;
+            }
+
+            final Map<Path, BasicFileAttributes> files = new HashMap<>();
+            final List<InitializeDirectoryTask> subTasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.dir)) {
+                for (final Path path : stream) {
+                    final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (attributes.isDirectory()) {
+                        subTasks.add(
+                                new InitializeDirectoryTask(
+                                        this.cache,
+                                        path,
+                                        this.remainingDepth - 1,
+                                        this.numSuccessfullyRead
+                                )
+                        );
+                    } else if (attributes.isRegularFile()) {
+                        files.put(path, attributes);
+                    }
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            this.numSuccessfullyRead.addAndGet(this.cache.addEntries(files));
+            ForkJoinTask.invokeAll(subTasks);
+        }
+
+        private Map<Path, BasicFileAttributes> walkTree()
+        {
+            final Map<Path, BasicFileAttributes> files = new HashMap<>();
+            try {
+                Files.walkFileTree(this.dir, new SimpleFileVisitor<Path>()
+                {
+                    @Override
+                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes)
+                    {
+                        if (attributes.isRegularFile()) {
+                            files.put(file, attributes);
+                        }
+
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            return files;
+        }
+    }
+
+    /**
+     * A temporary file written by the cache itself that is always moved into place.
+     */
+    private static class StagedFile
+    {
+        private final File file;
+
+        /**
+         * The file the staged file was moved from, null if it was copied, linked or written by the cache.
+         */
+        private Path source;
+
+        public StagedFile(final Path path)
+        {
+            this.file = path.toFile();
+        }
+
+        public File getFile()
+        {
+            return this.file;
+        }
+
+        public Path getPath()
+        {
+            return this.file.toPath();
+        }
+
+        public Path getSource()
+        {
+            return this.source;
+        }
+
+        public void setSource(final Path source)
+        {
+            this.source = source;
+        }
     }
 }
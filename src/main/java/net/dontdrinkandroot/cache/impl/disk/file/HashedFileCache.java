@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.impl.disk.file;
+
+import net.dontdrinkandroot.cache.CacheException;
+import net.dontdrinkandroot.cache.hashing.KeyHasher;
+import net.dontdrinkandroot.cache.impl.AbstractCache;
+import net.dontdrinkandroot.cache.metadata.MetaData;
+import net.dontdrinkandroot.cache.statistics.CacheStatistics;
+import net.dontdrinkandroot.cache.time.Ticker;
+import net.dontdrinkandroot.cache.utils.Md5;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Makes a {@link FileCache} usable with arbitrary keys by hashing them with a {@link KeyHasher}, so callers do not
+ * need to compute md5 digests themselves and can pick a faster non cryptographic hash instead.
+ * <p>
+ * Optionally the keys are verified: the key of every successful put is remembered and a get or delete with a
+ * different key that has the same hash is treated as a miss. The keys are only kept in memory, entries that were
+ * read from disk on startup or whose key was dropped concurrently to an eviction are served without verification.
+ *
+ * @param <K> Type of the keys.
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class HashedFileCache<K> extends AbstractCache<K, File> implements Closeable
+{
+    private final FileCache delegate;
+
+    private final KeyHasher<? super K> keyHasher;
+
+    private final Map<Md5, K> keys = new ConcurrentHashMap<>();
+
+    private volatile boolean verifyKeys = false;
+
+    /**
+     * @param delegate  The cache that stores the files under the hashes of the keys.
+     * @param keyHasher Computes the hashes of the keys, must not change for an existing cache directory.
+     */
+    public HashedFileCache(final FileCache delegate, final KeyHasher<? super K> keyHasher)
+    {
+        super(delegate.getName(), delegate.getDefaultTtl(), delegate.getDefaultMaxIdleTime());
+
+        this.delegate = delegate;
+        this.keyHasher = keyHasher;
+        this.delegate.addRemovalListener(notification -> {
+            /* Replaced entries keep their key, deletes are handled in delete() */
+            if (notification.wasEvicted()) {
+                this.keys.remove(notification.getKey());
+            }
+        });
+    }
+
+    @Override
+    public <T extends File> T put(final K key, final T data)
+    {
+        try {
+            return this.putWithErrors(key, data);
+        } catch (CacheException e) {
+            this.getLogger().warn(this.getName() + ": Putting " + key + " to cache failed", e);
+            return data;
+        }
+    }
+
+    @Override
+    public <T extends File> T putWithErrors(final K key, final T data) throws CacheException
+    {
+        final Md5 hash = this.hash(key);
+        final T result = this.delegate.putWithErrors(hash, data);
+        this.rememberKey(hash, key);
+
+        return result;
+    }
+
+    /**
+     * See {@link FileCache#putWithErrors(Md5, InputStream)}.
+     */
+    public File putWithErrors(final K key, final InputStream inputStream) throws CacheException
+    {
+        final Md5 hash = this.hash(key);
+        final File result = this.delegate.putWithErrors(hash, inputStream);
+        this.rememberKey(hash, key);
+
+        return result;
+    }
+
+    @Override
+    public <T extends File> T get(final K key)
+    {
+        final Md5 hash = this.hashForGet(key);
+        if (null == hash) {
+            return null;
+        }
+
+        return this.delegate.get(hash);
+    }
+
+    @Override
+    public <T extends File> T getWithErrors(final K key) throws CacheException
+    {
+        final Md5 hash = this.hashForGet(key);
+        if (null == hash) {
+            return null;
+        }
+
+        return this.delegate.getWithErrors(hash);
+    }
+
+    /**
+     * See {@link FileCache#openChannel(Md5)}.
+     */
+    public FileChannel openChannel(final K key) throws CacheException
+    {
+        final Md5 hash = this.hashForGet(key);
+        if (null == hash) {
+            return null;
+        }
+
+        return this.delegate.openChannel(hash);
+    }
+
+    /**
+     * See {@link FileCache#transferTo(Md5, WritableByteChannel)}.
+     */
+    public long transferTo(final K key, final WritableByteChannel target) throws CacheException
+    {
+        final Md5 hash = this.hashForGet(key);
+        if (null == hash) {
+            return -1;
+        }
+
+        return this.delegate.transferTo(hash, target);
+    }
+
+    @Override
+    public MetaData getMetaData(final K key) throws CacheException
+    {
+        final Md5 hash = this.hashForGet(key);
+        if (null == hash) {
+            return null;
+        }
+
+        return this.delegate.getMetaData(hash);
+    }
+
+    @Override
+    public void delete(final K key) throws CacheException
+    {
+        final Md5 hash = this.hashForGet(key);
+        if (null == hash) {
+            return;
+        }
+
+        this.delegate.delete(hash);
+        this.keys.remove(hash, key);
+    }
+
+    @Override
+    public Map<K, File> putAll(final Map<? extends K, ? extends File> entries)
+    {
+        try {
+            return this.putAllWithErrors(entries);
+        } catch (CacheException e) {
+            this.getLogger().warn(this.getName() + ": Putting " + entries.size() + " entries to cache failed", e);
+            return new LinkedHashMap<>(entries);
+        }
+    }
+
+    @Override
+    public Map<K, File> putAllWithErrors(final Map<? extends K, ? extends File> entries) throws CacheException
+    {
+        final Map<Md5, K> hashedKeys = new HashMap<>();
+        final Map<Md5, File> hashedEntries = new LinkedHashMap<>();
+        for (final Map.Entry<? extends K, ? extends File> entry : entries.entrySet()) {
+            final Md5 hash = this.hash(entry.getKey());
+            hashedKeys.put(hash, entry.getKey());
+            hashedEntries.put(hash, entry.getValue());
+        }
+
+        final Map<K, File> result = new LinkedHashMap<>();
+        for (final Map.Entry<Md5, File> entry : this.delegate.putAllWithErrors(hashedEntries).entrySet()) {
+            final K key = hashedKeys.get(entry.getKey());
+            this.rememberKey(entry.getKey(), key);
+            result.put(key, entry.getValue());
+        }
+
+        return result;
+    }
+
+    @Override
+    public Map<K, File> getAll(final Collection<? extends K> keys)
+    {
+        try {
+            return this.getAllWithErrors(keys);
+        } catch (CacheException e) {
+            this.getLogger().error(this.getName() + ": Getting " + keys.size() + " entries from cache failed", e);
+            return new HashMap<>();
+        }
+    }
+
+    @Override
+    public Map<K, File> getAllWithErrors(final Collection<? extends K> keys) throws CacheException
+    {
+        final Map<Md5, K> hashedKeys = new LinkedHashMap<>();
+        for (final K key : keys) {
+            final Md5 hash = this.hashForGet(key);
+            if (null != hash) {
+                hashedKeys.put(hash, key);
+            }
+        }
+
+        final Map<Md5, File> found = this.delegate.getAllWithErrors(hashedKeys.keySet());
+
+        final Map<K, File> result = new LinkedHashMap<>();
+        for (final Map.Entry<Md5, K> hashedKey : hashedKeys.entrySet()) {
+            final File file = found.get(hashedKey.getKey());
+            if (null != file) {
+                result.put(hashedKey.getValue(), file);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void deleteAll(final Collection<? extends K> keys) throws CacheException
+    {
+        for (final K key : keys) {
+            this.delete(key);
+        }
+    }
+
+    @Override
+    public void expunge() throws CacheException
+    {
+        this.delegate.expunge();
+    }
+
+    @Override
+    public void cleanUp() throws CacheException
+    {
+        this.delegate.cleanUp();
+    }
+
+    @Override
+    public CacheStatistics getStatistics()
+    {
+        return this.delegate.getStatistics();
+    }
+
+    /**
+     * Closes the underlying {@link FileCache}.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try {
+            this.delegate.close();
+        } finally {
+            this.unregisterMXBean();
+        }
+    }
+
+    /**
+     * Sets the ticker of the underlying {@link FileCache} as well.
+     */
+    @Override
+    public void setTicker(final Ticker ticker)
+    {
+        super.setTicker(ticker);
+        this.delegate.setTicker(ticker);
+    }
+
+    public FileCache getDelegate()
+    {
+        return this.delegate;
+    }
+
+    public boolean isVerifyKeys()
+    {
+        return this.verifyKeys;
+    }
+
+    /**
+     * Enables remembering the keys to detect hash collisions, see the class documentation. Costs the memory of the
+     * keys, so mainly useful with hashes of 64 bit or less.
+     */
+    public void setVerifyKeys(final boolean verifyKeys)
+    {
+        this.verifyKeys = verifyKeys;
+        if (!verifyKeys) {
+            this.keys.clear();
+        }
+    }
+
+    /**
+     * Computes the hash of the key, the hash of a null key is null so the delegate rejects it.
+     */
+    protected Md5 hash(final K key)
+    {
+        if (null == key) {
+            return null;
+        }
+
+        return this.keyHasher.hash(key);
+    }
+
+    /**
+     * Remembers the key of an entry that was put successfully, a failed put must not claim the hash.
+     */
+    private void rememberKey(final Md5 hash, final K key)
+    {
+        if (this.verifyKeys && null != hash) {
+            this.keys.put(hash, key);
+        }
+    }
+
+    /**
+     * Computes the hash of the key, returns null if it is known to belong to a different key.
+     */
+    private Md5 hashForGet(final K key)
+    {
+        final Md5 hash = this.hash(key);
+        if (this.verifyKeys && null != hash) {
+            final K storedKey = this.keys.get(hash);
+            if (null != storedKey && !storedKey.equals(key)) {
+                this.getLogger().debug("{}: Hash collision of {} and {}", this.getName(), key, storedKey);
+                return null;
+            }
+        }
+
+        return hash;
+    }
+}
@@ -0,0 +1,512 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.impl.disk.file;
+
+import net.dontdrinkandroot.cache.metadata.impl.SimpleMetaData;
+import net.dontdrinkandroot.cache.utils.Md5;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Persists the metadata of a {@link FileCache} so it survives restarts. Changes are appended to a journal, from time
+ * to time the complete metadata is written to a snapshot and the journal is started over.
+ * <p>
+ * Recording changes and preparing a snapshot only touch memory, so both can be done while the cache is locked. The
+ * records are written to the journal file by {@link #flush()} and prepared snapshots by {@link #writeSnapshot()},
+ * which callers run in the background. Records made after a snapshot was prepared are held back until it was
+ * written, they belong to the journal the snapshot starts.
+ * <p>
+ * Snapshot and journal carry a generation. A journal is only replayed on top of a snapshot of the same generation,
+ * so a crash between writing a snapshot and resetting the journal does not apply changes twice. Each journal record
+ * is checksummed, replaying stops at the first incomplete or corrupted record.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class MetaDataJournal implements Closeable
+{
+    public static final String JOURNAL_FILE_NAME = "metadata.journal";
+
+    public static final String SNAPSHOT_FILE_NAME = "metadata.snapshot";
+
+    private static final int JOURNAL_MAGIC = 0x44444a4e;
+
+    private static final int SNAPSHOT_MAGIC = 0x4444534e;
+
+    private static final byte RECORD_UPDATE = 1;
+
+    private static final byte RECORD_ACCESS = 2;
+
+    private static final byte RECORD_DELETE = 3;
+
+    /**
+     * Created, time to live, max idle time, last access and hit count.
+     */
+    private static final int METADATA_LENGTH = 4 * 8 + 4;
+
+    /**
+     * Minimum number of journal records before a snapshot is due, regardless of the number of entries.
+     */
+    private static final long MIN_RECORDS_BEFORE_SNAPSHOT = 10000;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final File journalFile;
+
+    private final File snapshotFile;
+
+    /**
+     * Guards the journal file, the snapshot file and the generation.
+     */
+    private final Object writeLock = new Object();
+
+    private DataOutputStream journal;
+
+    private long generation = 0;
+
+    /**
+     * Records that were not written to the journal file yet, guarded by this.
+     */
+    private final ByteArrayOutputStream pendingRecords = new ByteArrayOutputStream();
+
+    /**
+     * Snapshot that was prepared but not written yet, guarded by this.
+     */
+    private PendingSnapshot pendingSnapshot;
+
+    private long numRecords = 0;
+
+    public MetaDataJournal(final File baseDir)
+    {
+        this.journalFile = new File(baseDir, MetaDataJournal.JOURNAL_FILE_NAME);
+        this.snapshotFile = new File(baseDir, MetaDataJournal.SNAPSHOT_FILE_NAME);
+    }
+
+    /**
+     * Reads the snapshot and replays the journal. Keys that were deleted after the snapshot are mapped to null, so
+     * callers can tell them apart from unknown keys. Afterwards {@link #snapshot(Map)} has to be called before
+     * recording any changes.
+     */
+    public Map<Md5, SimpleMetaData> read() throws IOException
+    {
+        final Map<Md5, SimpleMetaData> entries = new HashMap<>();
+
+        synchronized (this.writeLock) {
+            if (this.snapshotFile.exists()) {
+                try {
+                    this.generation = this.readSnapshot(entries);
+                } catch (final IOException e) {
+                    this.logger.warn("Reading snapshot " + this.snapshotFile + " failed, ignoring it", e);
+                    entries.clear();
+                }
+            }
+
+            if (this.journalFile.exists()) {
+                this.replayJournal(entries);
+            }
+        }
+
+        return entries;
+    }
+
+    public synchronized void recordUpdate(final Md5 md5, final SimpleMetaData metaData)
+    {
+        final ByteBuffer record = MetaDataJournal.allocateRecord(MetaDataJournal.RECORD_UPDATE, md5);
+        MetaDataJournal.putMetaData(record, metaData);
+        this.appendRecord(record);
+    }
+
+    public synchronized void recordAccess(final Md5 md5, final long time)
+    {
+        final ByteBuffer record = MetaDataJournal.allocateRecord(MetaDataJournal.RECORD_ACCESS, md5);
+        record.putLong(time);
+        this.appendRecord(record);
+    }
+
+    public synchronized void recordDelete(final Md5 md5)
+    {
+        this.appendRecord(MetaDataJournal.allocateRecord(MetaDataJournal.RECORD_DELETE, md5));
+    }
+
+    /**
+     * Writes the recorded changes to the journal file. Does nothing while a snapshot is pending, the changes are
+     * written once the snapshot was written.
+     */
+    public void flush() throws IOException
+    {
+        synchronized (this.writeLock) {
+            final byte[] records;
+            synchronized (this) {
+                if (null != this.pendingSnapshot) {
+                    return;
+                }
+                records = this.takePendingRecords();
+            }
+            this.writeRecords(records);
+        }
+    }
+
+    /**
+     * Checks if the journal grew large enough compared to the number of entries that a snapshot should be taken.
+     */
+    public synchronized boolean isSnapshotDue(final int numEntries)
+    {
+        return this.numRecords > Math.max(MetaDataJournal.MIN_RECORDS_BEFORE_SNAPSHOT, numEntries);
+    }
+
+    /**
+     * Writes a snapshot of the given entries and starts a new journal.
+     */
+    public void snapshot(final Map<Md5, SimpleMetaData> entries) throws IOException
+    {
+        synchronized (this.writeLock) {
+            this.prepareSnapshot(entries);
+            this.writeSnapshot();
+        }
+    }
+
+    /**
+     * Copies the given entries to memory for a snapshot that is written by {@link #writeSnapshot()}. Changes that
+     * are recorded afterwards go to the journal started by that snapshot. A snapshot that was prepared before but
+     * not written yet is replaced.
+     */
+    public synchronized void prepareSnapshot(final Map<Md5, SimpleMetaData> entries)
+    {
+        final int entryLength = Md5.LENGTH + MetaDataJournal.METADATA_LENGTH;
+        final ByteBuffer buffer = ByteBuffer.allocate(4 + entries.size() * entryLength);
+        buffer.putInt(entries.size());
+        for (final Entry<Md5, SimpleMetaData> entry : entries.entrySet()) {
+            MetaDataJournal.putMd5(buffer, entry.getKey());
+            MetaDataJournal.putMetaData(buffer, entry.getValue());
+        }
+
+        /* The records of a replaced snapshot were not written either, they precede the current ones */
+        final ByteArrayOutputStream records = new ByteArrayOutputStream();
+        if (null != this.pendingSnapshot) {
+            records.writeBytes(this.pendingSnapshot.records);
+        }
+        records.writeBytes(this.takePendingRecords());
+
+        this.pendingSnapshot = new PendingSnapshot(buffer.array(), records.toByteArray());
+        this.numRecords = 0;
+    }
+
+    /**
+     * Writes the prepared snapshot if there is one and starts a new journal. The snapshot is synced to disk before
+     * it replaces the previous one.
+     */
+    public void writeSnapshot() throws IOException
+    {
+        synchronized (this.writeLock) {
+            final PendingSnapshot snapshot;
+            synchronized (this) {
+                snapshot = this.pendingSnapshot;
+                this.pendingSnapshot = null;
+            }
+            if (null == snapshot) {
+                return;
+            }
+
+            /* Complete the current journal first, so it is still valid if writing the snapshot fails */
+            try {
+                this.writeRecords(snapshot.records);
+            } catch (final IOException e) {
+                this.logger.warn("Writing records to " + this.journalFile + " failed, writing snapshot anyway", e);
+            }
+
+            final long nextGeneration = this.generation + 1;
+
+            final File tempFile = new File(this.snapshotFile.getPath() + ".tmp");
+            final FileOutputStream fileStream = new FileOutputStream(tempFile);
+            final CheckedOutputStream checkedStream =
+                    new CheckedOutputStream(new BufferedOutputStream(fileStream), new CRC32C());
+            try (DataOutputStream outputStream = new DataOutputStream(checkedStream)) {
+                outputStream.writeInt(MetaDataJournal.SNAPSHOT_MAGIC);
+                outputStream.writeLong(nextGeneration);
+                outputStream.write(snapshot.entries);
+                outputStream.writeInt((int) checkedStream.getChecksum().getValue());
+                outputStream.flush();
+                fileStream.getFD().sync();
+            }
+            Files.move(tempFile.toPath(), this.snapshotFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+            this.generation = nextGeneration;
+            this.closeJournal();
+            this.journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.journalFile)));
+            this.journal.writeInt(MetaDataJournal.JOURNAL_MAGIC);
+            this.journal.writeLong(this.generation);
+            this.journal.flush();
+        }
+    }
+
+    /**
+     * Writes the recorded changes and closes the journal.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        synchronized (this.writeLock) {
+            try {
+                this.writeSnapshot();
+                this.flush();
+            } finally {
+                this.closeJournal();
+            }
+        }
+    }
+
+    private long readSnapshot(final Map<Md5, SimpleMetaData> entries) throws IOException
+    {
+        final CheckedInputStream checkedStream = new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(this.snapshotFile)),
+                new CRC32C()
+        );
+        try (DataInputStream inputStream = new DataInputStream(checkedStream)) {
+            if (inputStream.readInt() != MetaDataJournal.SNAPSHOT_MAGIC) {
+                throw new IOException("Not a snapshot file");
+            }
+            final long snapshotGeneration = inputStream.readLong();
+            final int numEntries = inputStream.readInt();
+            final byte[] entryBytes = new byte[Md5.LENGTH + MetaDataJournal.METADATA_LENGTH];
+            for (int i = 0; i < numEntries; i++) {
+                inputStream.readFully(entryBytes);
+                final ByteBuffer buffer = ByteBuffer.wrap(entryBytes);
+                final Md5 md5 = MetaDataJournal.getMd5(buffer);
+                entries.put(md5, MetaDataJournal.getMetaData(buffer));
+            }
+            final int checksum = (int) checkedStream.getChecksum().getValue();
+            if (inputStream.readInt() != checksum) {
+                throw new IOException("Checksum of snapshot does not match");
+            }
+
+            return snapshotGeneration;
+        }
+    }
+
+    private void replayJournal(final Map<Md5, SimpleMetaData> entries) throws IOException
+    {
+        try (DataInputStream inputStream =
+                     new DataInputStream(new BufferedInputStream(new FileInputStream(this.journalFile)))) {
+
+            if (inputStream.readInt() != MetaDataJournal.JOURNAL_MAGIC) {
+                this.logger.warn("{} is not a journal file, ignoring it", this.journalFile);
+                return;
+            }
+            final long journalGeneration = inputStream.readLong();
+            if (journalGeneration != this.generation) {
+                /* The snapshot was written after this journal, so it already contains its changes */
+                return;
+            }
+
+            int numReplayed = 0;
+            while (true) {
+                final int type = inputStream.read();
+                if (type == -1) {
+                    break;
+                }
+                final int length = MetaDataJournal.getRecordLength((byte) type);
+                if (length < 0) {
+                    this.logger.warn("Unknown record type {} in {}, stopping replay", type, this.journalFile);
+                    break;
+                }
+                final byte[] recordBytes = new byte[length];
+                recordBytes[0] = (byte) type;
+                inputStream.readFully(recordBytes, 1, length - 1);
+                final ByteBuffer record = ByteBuffer.wrap(recordBytes);
+                if (record.getInt(length - 4) != MetaDataJournal.checksum(recordBytes, length - 4)) {
+                    this.logger.warn("Corrupted record in {}, stopping replay", this.journalFile);
+                    break;
+                }
+
+                record.position(1);
+                final Md5 md5 = MetaDataJournal.getMd5(record);
+                switch (type) {
+                    case MetaDataJournal.RECORD_UPDATE:
+                        entries.put(md5, MetaDataJournal.getMetaData(record));
+                        break;
+                    case MetaDataJournal.RECORD_ACCESS:
+                        final SimpleMetaData metaData = entries.get(md5);
+                        if (metaData != null) {
+                            entries.put(md5, MetaDataJournal.accessed(metaData, record.getLong()));
+                        }
+                        break;
+                    default:
+                        entries.put(md5, null);
+                }
+                numReplayed++;
+            }
+
+            this.logger.info("Replayed {} records from {}", numReplayed, this.journalFile);
+        } catch (final EOFException e) {
+            this.logger.warn("Incomplete record at the end of {}, stopping replay", this.journalFile);
+        }
+    }
+
+    private void appendRecord(final ByteBuffer record)
+    {
+        final byte[] recordBytes = record.array();
+        record.putInt(MetaDataJournal.checksum(recordBytes, recordBytes.length - 4));
+        this.pendingRecords.writeBytes(recordBytes);
+        this.numRecords++;
+    }
+
+    private byte[] takePendingRecords()
+    {
+        final byte[] records = this.pendingRecords.toByteArray();
+        this.pendingRecords.reset();
+
+        return records;
+    }
+
+    private void writeRecords(final byte[] records) throws IOException
+    {
+        if (0 == records.length) {
+            return;
+        }
+
+        if (this.journal == null) {
+            throw new IOException("Journal is not open");
+        }
+
+        this.journal.write(records);
+        this.journal.flush();
+    }
+
+    private void closeJournal() throws IOException
+    {
+        if (this.journal != null) {
+            this.journal.close();
+            this.journal = null;
+        }
+    }
+
+    private static ByteBuffer allocateRecord(final byte type, final Md5 md5)
+    {
+        final ByteBuffer record = ByteBuffer.allocate(MetaDataJournal.getRecordLength(type));
+        record.put(type);
+        MetaDataJournal.putMd5(record, md5);
+
+        return record;
+    }
+
+    /**
+     * Returns the length of records of the given type including type, key and checksum, -1 for unknown types.
+     */
+    private static int getRecordLength(final byte type)
+    {
+        final int baseLength = 1 + Md5.LENGTH + 4;
+        switch (type) {
+            case MetaDataJournal.RECORD_UPDATE:
+                return baseLength + MetaDataJournal.METADATA_LENGTH;
+            case MetaDataJournal.RECORD_ACCESS:
+                return baseLength + 8;
+            case MetaDataJournal.RECORD_DELETE:
+                return baseLength;
+            default:
+                return -1;
+        }
+    }
+
+    private static int checksum(final byte[] data, final int length)
+    {
+        final CRC32C crc = new CRC32C();
+        crc.update(data, 0, length);
+
+        return (int) crc.getValue();
+    }
+
+    private static void putMetaData(final ByteBuffer buffer, final SimpleMetaData metaData)
+    {
+        buffer.putLong(metaData.getCreated());
+        buffer.putLong(metaData.getTimeToLive());
+        buffer.putLong(metaData.getMaxIdleTime());
+        buffer.putLong(metaData.getLastAccess());
+        buffer.putInt(metaData.getHitCount());
+    }
+
+    private static SimpleMetaData getMetaData(final ByteBuffer buffer)
+    {
+        final long created = buffer.getLong();
+        final long timeToLive = buffer.getLong();
+        final long maxIdleTime = buffer.getLong();
+        final long lastAccess = buffer.getLong();
+        final int hitCount = buffer.getInt();
+
+        return new SimpleMetaData(created, timeToLive, maxIdleTime, lastAccess, hitCount);
+    }
+
+    private static void putMd5(final ByteBuffer buffer, final Md5 md5)
+    {
+        buffer.putLong(md5.getHigh());
+        buffer.putLong(md5.getLow());
+    }
+
+    private static Md5 getMd5(final ByteBuffer buffer)
+    {
+        final long high = buffer.getLong();
+        final long low = buffer.getLong();
+
+        return new Md5(high, low);
+    }
+
+    /**
+     * Applies an access like {@link SimpleMetaData#update()} does, but with the recorded time.
+     */
+    private static SimpleMetaData accessed(final SimpleMetaData metaData, final long time)
+    {
+        final SimpleMetaData accessed = new SimpleMetaData(
+                metaData.getCreated(),
+                metaData.getTimeToLive(),
+                metaData.getMaxIdleTime(),
+                time,
+                metaData.getHitCount()
+        );
+        accessed.increaseHitCount();
+
+        return accessed;
+    }
+
+    private static class PendingSnapshot
+    {
+        /**
+         * The number of entries followed by the entries as stored in the snapshot file.
+         */
+        private final byte[] entries;
+
+        /**
+         * Records made before the snapshot was prepared that were not written to the journal yet.
+         */
+        private final byte[] records;
+
+        public PendingSnapshot(final byte[] entries, final byte[] records)
+        {
+            this.entries = entries;
+            this.records = records;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.impl.disk.file;
+
+/**
+ * Controls how {@link FileCache} takes over the files that are put.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public enum PutMode
+{
+    /**
+     * The file is copied, the source is left untouched.
+     */
+    COPY,
+
+    /**
+     * The file is renamed into the cache directory, the source is gone afterwards. Falls back to copying and
+     * deleting the source if the file is on a different file system.
+     */
+    MOVE,
+
+    /**
+     * The file is hard linked into the cache directory. As cache entry and source share their content, the source
+     * must not be modified afterwards. Falls back to copying if linking is not supported, e.g. across file systems.
+     */
+    LINK
+}
@@ -19,17 +19,35 @@ package net.dontdrinkandroot.cache.impl.disk.indexed;
 
 import net.dontdrinkandroot.cache.Cache;
 import net.dontdrinkandroot.cache.CacheException;
+import net.dontdrinkandroot.cache.compression.Compressor;
 import net.dontdrinkandroot.cache.impl.AbstractMapBackedCustomTtlCache;
 import net.dontdrinkandroot.cache.impl.disk.indexed.storage.*;
+import net.dontdrinkandroot.cache.jmx.IndexedDiskCacheMXBean;
+import net.dontdrinkandroot.cache.jmx.impl.IndexedDiskCacheMXBeanAdapter;
+import net.dontdrinkandroot.cache.listener.RemovalCause;
 import net.dontdrinkandroot.cache.metadata.impl.BlockMetaData;
+import net.dontdrinkandroot.cache.metadata.impl.CheckSumNotMatchingException;
 import net.dontdrinkandroot.cache.metadata.impl.SimpleMetaData;
+import net.dontdrinkandroot.cache.statistics.LatencyMetric;
 import net.dontdrinkandroot.cache.utils.SerializationException;
 import net.dontdrinkandroot.cache.utils.Serializer;
 
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.Collection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
  * A disk cache that stores its content in a data file and its index in an index file. A writer thread is responsible
@@ -39,21 +57,40 @@ import java.util.Collection;
  * @author Philip Washington Sorst <philip@sorst.net>
  */
 public abstract class AbstractIndexedDiskCache<K extends Serializable, V extends Serializable>
-        extends AbstractMapBackedCustomTtlCache<K, V, BlockMetaData>
+        extends AbstractMapBackedCustomTtlCache<K, V, BlockMetaData> implements Closeable
 {
     private static final int DEFAULT_QUEUE_SIZE_WARNING_LIMIT = 1000;
 
+    /**
+     * Number of entries that are validated together when building the index, the blocks of a batch are read in a
+     * single coalesced pass.
+     */
+    private static final int VALIDATION_BATCH_SIZE = 256;
+
     protected final Object indexFileLock = new Object();
 
     protected final Object dataFileLock = new Object();
 
     protected final IndexFile indexFile;
 
-    protected final DataFile dataFile;
+    protected final SegmentedDataFile dataFile;
 
     protected final File lockFile;
 
-    protected int queueSizeWarningLimit = AbstractIndexedDiskCache.DEFAULT_QUEUE_SIZE_WARNING_LIMIT;
+    private final FileLock lock;
+
+    /**
+     * Whether the lock file was left behind by an unclean shutdown, all records are validated in that case.
+     */
+    private final boolean recovered;
+
+    protected volatile int queueSizeWarningLimit = AbstractIndexedDiskCache.DEFAULT_QUEUE_SIZE_WARNING_LIMIT;
+
+    private volatile Durability durability = Durability.NONE;
+
+    private volatile Compressor compressor = null;
+
+    private volatile int compressionThreshold = 0;
 
     private final File baseDir;
 
@@ -83,14 +120,22 @@ public abstract class AbstractIndexedDiskCache<K extends Serializable, V extends
 
         this.baseDir = baseDir;
         baseDir.mkdirs();
-        this.lockFile = this.createLockFile();
+        this.lockFile = new File(baseDir, name + ".lock");
+        this.recovered = this.lockFile.exists();
+        this.lock = this.acquireLock();
+
+        try {
 
-		/* Open block files */
-        this.indexFile = new IndexFile(new File(baseDir, name + ".index"));
-        this.dataFile = new DataFile(new File(baseDir, name + ".data"));
+			/* Open block files */
+            this.indexFile = new IndexFile(new File(baseDir, name + ".index"));
+            this.dataFile = new SegmentedDataFile(new File(baseDir, name + ".data"));
 
-		/* Read index */
-        this.buildIndex();
+			/* Read index */
+            this.buildIndex();
+        } catch (IOException | RuntimeException e) {
+            this.releaseLock();
+            throw e;
+        }
 
         this.writerThread = new WriterThread<K, V>(this);
         this.writerThread.start();
@@ -106,6 +151,11 @@ public abstract class AbstractIndexedDiskCache<K extends Serializable, V extends
         this.queueSizeWarningLimit = limit;
     }
 
+    public int getQueueSizeWarningLimit()
+    {
+        return this.queueSizeWarningLimit;
+    }
+
     /**
      * Get the length of the writer thread queue.
      *
@@ -116,6 +166,40 @@ public abstract class AbstractIndexedDiskCache<K extends Serializable, V extends
         return this.writerThread.getQueueLength();
     }
 
+    /**
+     * Sets when written entries are forced to the storage device, defaults to {@link Durability#NONE}.
+     *
+     * @param durability The durability mode.
+     */
+    public void setDurability(final Durability durability)
+    {
+        this.durability = durability;
+    }
+
+    public Durability getDurability()
+    {
+        return this.durability;
+    }
+
+    /**
+     * Enables compression of stored values. Each entry records whether it was compressed, so entries stored before
+     * compression was enabled or changed remain readable as long as the compressor stays compatible.
+     *
+     * @param compressor The compressor to use, null disables compression of new entries.
+     * @param threshold  The minimum size in bytes of serialized values that get compressed, smaller values as
+     *                   well as values that do not shrink are stored raw.
+     */
+    public void setCompression(final Compressor compressor, final int threshold)
+    {
+        this.compressor = compressor;
+        this.compressionThreshold = threshold;
+    }
+
+    public Compressor getCompressor()
+    {
+        return this.compressor;
+    }
+
     /**
      * Checks if the writer thread is alive.
      *
@@ -126,6 +210,59 @@ public abstract class AbstractIndexedDiskCache<K extends Serializable, V extends
         return this.writerThread.isAlive();
     }
 
+    /**
+     * Whether the cache was opened after an unclean shutdown. In that case the checksums of all values were
+     * validated while building the index and corrupted entries were dropped.
+     */
+    public boolean isRecovered()
+    {
+        return this.recovered;
+    }
+
+    /**
+     * Set the size a data file segment may grow to before entries are written to another segment.
+     *
+     * @param maxSegmentSize The maximum segment size in bytes.
+     */
+    public void setMaxSegmentSize(final long maxSegmentSize)
+    {
+        this.dataFile.setMaxSegmentSize(maxSegmentSize);
+    }
+
+    public long getMaxSegmentSize()
+    {
+        return this.dataFile.getMaxSegmentSize();
+    }
+
+    /**
+     * Get the number of data file segments.
+     */
+    public int getNumDataFileSegments()
+    {
+        return this.dataFile.getNumSegments();
+    }
+
+    /**
+     * Get the length of the data file in bytes, summed over all segments.
+     */
+    public long getDataFileLength()
+    {
+        try {
+            return this.dataFile.length();
+        } catch (IOException e) {
+            this.getLogger().warn(this.getName() + ": Determining data file length failed", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Get the number of bytes of the data file that are occupied by entries.
+     */
+    public long getDataFileAllocated()
+    {
+        return this.dataFile.getAllocatedBytes();
+    }
+
     /**
      * Flushes the writer thread.
      */
@@ -138,6 +275,7 @@ public abstract class AbstractIndexedDiskCache<K extends Serializable, V extends
      * Closes the cache. You need to call this in order to shutdown the writer thread and the index files correctly.
      * Otherwise the cache will remain in locked state.
      */
+    @Override
     public synchronized void close() throws IOException
     {
         this.flush();
@@ -155,17 +293,24 @@ public abstract class AbstractIndexedDiskCache<K extends Serializable, V extends
                 this.dataFile.close();
             }
         }
-        if (this.lockFile.exists() && !this.lockFile.delete()) {
+
+        /* Delete the lock file while still holding the lock so no other instance can pick it up in between */
+        final boolean lockFileDeleted = this.lockFile.delete();
+        this.releaseLock();
+        if (!lockFileDeleted && this.lockFile.exists() && !this.lockFile.delete()) {
             throw new IOException(String.format("Could not delete lock file at %s", this.lockFile.getPath()));
         }
 
+        this.unregisterMXBean();
+
         this.getLogger().info("{}: Shutdown complete", this.getName());
     }
 
     /**
-     * Get the {@link DataFile} of this cache. Only perform altering operations if you know what you are doing.
+     * Get the {@link SegmentedDataFile} of this cache. Only perform altering operations if you know what you are
+     * doing.
      */
-    DataFile getDataFile()
+    SegmentedDataFile getDataFile()
     {
         return this.dataFile;
     }
@@ -178,54 +323,71 @@ public abstract class AbstractIndexedDiskCache<K extends Serializable, V extends
         return this.indexFile;
     }
 
+    /**
+     * Reads the index and validates the referenced records. The key/metadata blocks of all entries are read in
+     * position order and verified against their checksums, batches are processed in parallel. After an unclean
+     * shutdown the value blocks are verified as well. Corrupted entries are dropped.
+     */
     protected void buildIndex() throws IOException
     {
+        if (this.recovered) {
+            this.getLogger().warn("{}: Lock file found, recovering from unclean shutdown", this.getName());
+        }
         this.getLogger().info("{}: Reading index", this.getName());
-        long lastTimeLogged = System.currentTimeMillis();
 
-        long dataLength = 0;
         final Collection<IndexData> indexDataEntries = this.indexFile.initialize();
 
-        int numRead = 0;
-        int numSuccessfullyRead = 0;
-        for (IndexData indexData : indexDataEntries) {
+        /* Allocate all blocks up front so the batches can be read concurrently */
+        final List<IndexData> allocatedEntries = new ArrayList<>(indexDataEntries.size());
+        for (final IndexData indexData : indexDataEntries) {
+            if (this.allocate(indexData)) {
+                allocatedEntries.add(indexData);
+            }
+        }
+        allocatedEntries.sort(Comparator.comparing(IndexData::getKeyMetaBlock));
 
-            DataBlock keyMetaBlock = indexData.getKeyMetaBlock();
-            DataBlock valueBlock = indexData.getValueBlock();
+        final List<List<IndexData>> batches = new ArrayList<>();
+        for (int i = 0; i < allocatedEntries.size(); i += AbstractIndexedDiskCache.VALIDATION_BATCH_SIZE) {
+            batches.add(allocatedEntries.subList(
+                    i,
+                    Math.min(allocatedEntries.size(), i + AbstractIndexedDiskCache.VALIDATION_BATCH_SIZE)
+            ));
+        }
 
-            try {
+        final ValidationProgress progress = new ValidationProgress(allocatedEntries.size());
+        final List<ValidatedEntry<K>> validatedEntries = batches.parallelStream()
+                .flatMap(batch -> this.validate(batch, progress).stream())
+                .collect(Collectors.toList());
 
-                this.dataFile.allocateSpace(keyMetaBlock);
-                byte[] keyMetaBytes = this.dataFile.read(keyMetaBlock);
-                @SuppressWarnings("unchecked")
-                KeyedMetaData<K> keyedMetaData = (KeyedMetaData<K>) Serializer.deserialize(keyMetaBytes);
-                K key = keyedMetaData.getKey();
-                BlockMetaData blockMetaData = new BlockMetaData(indexData, keyedMetaData.getMetaData());
-                this.dataFile.allocateSpace(valueBlock);
-                this.putEntry(key, blockMetaData);
-
-                dataLength += keyMetaBlock.getLength() + valueBlock.getLength();
-                numSuccessfullyRead++;
-            } catch (SerializationException e) {
-
-				/* Reading metadata failed, deallocate indexblocks */
-                this.getLogger().warn("Reading {} failed", keyMetaBlock);
-                this.indexFile.delete(indexData);
-                this.dataFile.delete(keyMetaBlock, false);
-            }
+        final long now = this.getTicker().currentTimeMillis();
+        long dataLength = 0;
+        int numSuccessfullyRead = 0;
+        for (final ValidatedEntry<K> validatedEntry : validatedEntries) {
 
-            numRead++;
+            IndexData indexData = validatedEntry.indexData;
+            if (validatedEntry.keyedMetaData == null) {
+                this.getLogger().warn("{}: Dropping corrupted entry {}", this.getName(), indexData);
+                if (indexData.isStored()) {
+                    this.indexFile.delete(indexData);
+                }
+                this.dataFile.delete(indexData.getKeyMetaBlock(), false);
+                this.dataFile.delete(indexData.getValueBlock(), false);
+                continue;
+            }
 
-			/* Log every 10 seconds if reading index takes a long time */
-            if (System.currentTimeMillis() > lastTimeLogged + 1000L * 10) {
-                this.getLogger().info(
-                        "{}: {}% read",
-                        new Object[]{this.getName(), numRead * 100 / indexDataEntries.size()}
-                );
-                lastTimeLogged = System.currentTimeMillis();
+            /* Entries of a legacy index are written again now that their checksums are known */
+            if (!indexData.isStored()) {
+                indexData = this.indexFile.write(indexData);
             }
+
+            final KeyedMetaData<K> keyedMetaData = validatedEntry.keyedMetaData;
+            this.putEntry(keyedMetaData.getKey(), new BlockMetaData(indexData, keyedMetaData.getMetaData(now)));
+            dataLength += indexData.getKeyMetaBlock().getLength() + indexData.getValueBlock().getLength();
+            numSuccessfullyRead++;
         }
 
+        this.dataFile.releaseEmptySegments();
+
         final int dataSpaceUsedPercent = (int) (dataLength * 100 / Math.max(1, this.dataFile.length()));
 
         if (!this.dataFile.checkConsistency()) {
@@ -233,11 +395,17 @@ public abstract class AbstractIndexedDiskCache<K extends Serializable, V extends
         }
 
         this.getLogger().info(
-                "{}: Read index: {} entries, {}% dataSpace utilization",
-                this.getName(), numSuccessfullyRead, dataSpaceUsedPercent
+                "{}: Read index: {} entries, {} dropped, {}% dataSpace utilization",
+                this.getName(), numSuccessfullyRead, indexDataEntries.size() - numSuccessfullyRead, dataSpaceUsedPercent
         );
     }
 
+    @Override
+    protected StandardMBean createMXBean() throws NotCompliantMBeanException
+    {
+        return new StandardMBean(new IndexedDiskCacheMXBeanAdapter(this), IndexedDiskCacheMXBean.class, true);
+    }
+
     @Override
     protected void doDelete(K key, final BlockMetaData metaData) throws CacheException
     {
@@ -250,6 +418,9 @@ public abstract class AbstractIndexedDiskCache<K extends Serializable, V extends
                         this.indexFile.delete(indexData);
                         this.dataFile.delete(indexData.getKeyMetaBlock(), true);
                         this.dataFile.delete(indexData.getValueBlock(), true);
+                        if (this.durability == Durability.SYNC) {
+                            this.indexFile.force();
+                        }
                     }
                 }
             }
@@ -269,54 +440,490 @@ public abstract class AbstractIndexedDiskCache<K extends Serializable, V extends
                 if (metaData.getIndexData() == null) {
                     throw new CacheException("Inconsistent data");
                 }
-                synchronized (this.dataFileLock) {
-                    data = this.dataFile.read(metaData.getIndexData().getValueBlock());
-                }
+                /* Segments are locked individually, so reads do not need to wait for the writer */
+                final IndexData indexData = metaData.getIndexData();
+                final long readStart = System.nanoTime();
+                data = this.dataFile.read(indexData.getValueBlock());
+                this.recordLatency(LatencyMetric.DISK_READ, System.nanoTime() - readStart);
+                this.verifyChecksum(key, indexData, data);
             }
 
-            return this.dataFromBytes(data);
+            return this.decode(data, metaData);
         } catch (final IOException e) {
             throw new CacheException(e);
         }
     }
 
+    /**
+     * Transfers a range of the stored bytes of an entry to the target channel. Entries on disk are transferred
+     * without copying them to the heap, entries that are still queued for writing or that are compressed are
+     * transferred from memory. The bytes are not verified against the checksum of the entry.
+     * <p>
+     * The cache is locked during the transfer, so large transfers to slow targets should be split into ranges.
+     *
+     * @param position The offset within the stored bytes.
+     * @param count    The maximum number of bytes to transfer.
+     * @return The number of bytes transferred, -1 if there is no servable entry for the key.
+     */
+    protected long transferStoredBytes(
+            final K key,
+            final long position,
+            final long count,
+            final WritableByteChannel target
+    ) throws CacheException
+    {
+        final Long transferred = this.readWithErrors(key, (k, metaData) -> {
+            try {
+
+                final byte[] data = this.findInMemoryBytes(k, metaData);
+                if (data != null) {
+                    final ByteBuffer buffer = AbstractIndexedDiskCache.window(data, position, count);
+                    final int length = buffer.remaining();
+                    while (buffer.hasRemaining()) {
+                        if (target.write(buffer) == 0) {
+                            break;
+                        }
+                    }
+                    return (long) (length - buffer.remaining());
+                }
+
+                return this.dataFile.transferTo(metaData.getIndexData().getValueBlock(), position, count, target);
+            } catch (final IOException e) {
+                throw new CacheException(e);
+            }
+        });
+
+        return transferred == null ? -1 : transferred;
+    }
+
+    /**
+     * Reads a range of the stored bytes of an entry into the buffer, see
+     * {@link #transferStoredBytes(Serializable, long, long, WritableByteChannel)}.
+     *
+     * @param position The offset within the stored bytes.
+     * @return The number of bytes read, -1 if there is no servable entry for the key or the position is at or behind
+     * the end of the stored bytes.
+     */
+    protected int readStoredBytes(final K key, final long position, final ByteBuffer target) throws CacheException
+    {
+        final Integer read = this.readWithErrors(key, (k, metaData) -> {
+            try {
+
+                final byte[] data = this.findInMemoryBytes(k, metaData);
+                if (data != null) {
+                    if (position >= data.length) {
+                        return -1;
+                    }
+                    final ByteBuffer buffer = AbstractIndexedDiskCache.window(data, position, target.remaining());
+                    final int length = buffer.remaining();
+                    target.put(buffer);
+                    return length;
+                }
+
+                return this.dataFile.read(metaData.getIndexData().getValueBlock(), position, target);
+            } catch (final IOException e) {
+                throw new CacheException(e);
+            }
+        });
+
+        return read == null ? -1 : read;
+    }
+
+    /**
+     * Returns the stored bytes if they are still queued for writing or need to be decompressed, null if they can be
+     * read from the data file directly.
+     */
+    private byte[] findInMemoryBytes(final K key, final BlockMetaData metaData) throws CacheException, IOException
+    {
+        byte[] data = this.writerThread.findDataBytes(key);
+        if (data == null) {
+            if (metaData.getIndexData() == null) {
+                throw new CacheException("Inconsistent data");
+            }
+            if (!metaData.isCompressed()) {
+                return null;
+            }
+            final IndexData indexData = metaData.getIndexData();
+            data = this.dataFile.read(indexData.getValueBlock());
+            this.verifyChecksum(key, indexData, data);
+        }
+
+        return this.decompress(data, metaData);
+    }
+
+    private static ByteBuffer window(final byte[] data, final long position, final long count)
+    {
+        final int offset = (int) Math.min(position, data.length);
+        final int length = (int) Math.min(count, data.length - offset);
+
+        return ByteBuffer.wrap(data, offset, length);
+    }
+
+    /**
+     * Retrieves the data of multiple entries. Entries that are still part of the writer thread are taken from
+     * there, all others are read from the data file in a single pass ordered by their position.
+     */
+    @Override
+    protected Map<K, V> doGetAll(final Map<K, BlockMetaData> entries) throws CacheException
+    {
+        final Map<K, byte[]> dataBytes = new HashMap<>();
+        final Map<K, IndexData> readIndexData = new HashMap<>();
+        final Map<DataBlock, K> blocksToRead = new HashMap<>();
+        for (final Map.Entry<K, BlockMetaData> entry : entries.entrySet()) {
+
+            final byte[] data = this.writerThread.findDataBytes(entry.getKey());
+            if (data != null) {
+                dataBytes.put(entry.getKey(), data);
+            } else {
+                final IndexData indexData = entry.getValue().getIndexData();
+                if (indexData == null) {
+                    throw new CacheException("Inconsistent data");
+                }
+                blocksToRead.put(indexData.getValueBlock(), entry.getKey());
+                readIndexData.put(entry.getKey(), indexData);
+            }
+        }
+
+        if (!blocksToRead.isEmpty()) {
+            try {
+
+                final long readStart = System.nanoTime();
+                final Map<DataBlock, byte[]> readBlocks = this.dataFile.read(blocksToRead.keySet());
+                this.recordLatency(LatencyMetric.DISK_READ, System.nanoTime() - readStart);
+                for (final Map.Entry<DataBlock, byte[]> readBlock : readBlocks.entrySet()) {
+                    dataBytes.put(blocksToRead.get(readBlock.getKey()), readBlock.getValue());
+                }
+            } catch (final IOException e) {
+                throw new CacheException(e);
+            }
+        }
+
+        final Map<K, V> result = new LinkedHashMap<>();
+        for (final Map.Entry<K, BlockMetaData> entry : entries.entrySet()) {
+            try {
+
+                final IndexData indexData = readIndexData.get(entry.getKey());
+                if (indexData != null) {
+                    this.verifyChecksum(entry.getKey(), indexData, dataBytes.get(entry.getKey()));
+                }
+                final V data = this.decode(dataBytes.get(entry.getKey()), entry.getValue());
+                result.put(entry.getKey(), data);
+            } catch (final CacheException e) {
+
+                /* Delete entry on fail */
+                this.delete(entry.getKey(), entry.getValue());
+                throw e;
+            }
+        }
+
+        return result;
+    }
+
     @Override
     protected <T extends V> T doPut(final K key, final T data, final long timeToLive, final long maxIdleTime)
             throws CacheException
     {
-        SimpleMetaData simpleMetaData = new SimpleMetaData(System.currentTimeMillis(), timeToLive, maxIdleTime);
-        final byte[] dataBytes = this.dataToBytes(data);
+        SimpleMetaData simpleMetaData = new SimpleMetaData(this.getTicker(), timeToLive, maxIdleTime);
         BlockMetaData metaData = new BlockMetaData(simpleMetaData);
+        final byte[] dataBytes = this.encode(data, metaData);
         this.writerThread.add(key, metaData, dataBytes);
         this.putEntry(key, metaData);
+        this.syncIfRequired();
 
         return data;
     }
 
     /**
-     * Creates the lock file or throws an exception if it already exists.
+     * Rewrites the refreshed entry in place: the index block is reused and data blocks are overwritten if their
+     * length did not change. The entry keeps its time to live and max idle time.
+     */
+    @Override
+    protected void doRefresh(final K key, final BlockMetaData metaData, final V data) throws CacheException
+    {
+        SimpleMetaData simpleMetaData =
+                new SimpleMetaData(this.getTicker(), metaData.getTimeToLive(), metaData.getMaxIdleTime());
+        BlockMetaData refreshedMetaData = new BlockMetaData(simpleMetaData);
+        final byte[] dataBytes = this.encode(data, refreshedMetaData);
+        this.notifyRemoval(key, metaData, RemovalCause.REPLACED);
+
+        if (this.writerThread.remove(key)) {
+
+            /* Entry was not written yet, so there is nothing to rewrite */
+            this.writerThread.add(key, refreshedMetaData, dataBytes);
+        } else {
+
+            if (metaData.getIndexData() == null) {
+                throw new CacheException("Inconsistent data");
+            }
+            refreshedMetaData.setIndexData(metaData.getIndexData());
+            this.writerThread.rewrite(key, refreshedMetaData, dataBytes);
+        }
+
+        this.putEntry(key, refreshedMetaData);
+        this.syncIfRequired();
+    }
+
+    /**
+     * Waits until all queued writes reached the disk if the durability is {@link Durability#SYNC}.
+     */
+    private void syncIfRequired() throws CacheException
+    {
+        if (this.durability == Durability.SYNC) {
+            try {
+                this.writerThread.sync();
+            } catch (IOException e) {
+                throw new CacheException(e);
+            }
+        }
+    }
+
+    /**
+     * Locks the lock file. A lock file that exists but is not locked was left behind by an unclean shutdown and is
+     * taken over.
      *
-     * @return The created lock file.
-     * @throws IOException Thrown if lock file already exists.
+     * @return The acquired lock.
+     * @throws IOException Thrown if the lock is held by another cache instance.
      */
-    private File createLockFile() throws IOException
+    private FileLock acquireLock() throws IOException
     {
-        File newLockFile = new File(this.baseDir, this.getName() + ".lock");
+        final FileChannel channel =
+                FileChannel.open(this.lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+        FileLock acquiredLock = null;
+        try {
+            acquiredLock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            /* Held by another instance within this JVM */
+        }
 
-        if (newLockFile.exists()) {
+        if (acquiredLock == null) {
+            channel.close();
             throw new IOException(String.format(
-                    "Lock file found, this usually means that another cache was already instantiated under "
-                            + "the same name or was not shut down correctly. In the latter case you can delete the "
-                            + "lock file at %s and reinstantiate the cache.",
-                    newLockFile.getPath()
+                    "Lock file %s is held by another cache that was instantiated under the same name",
+                    this.lockFile.getPath()
             ));
         }
-        newLockFile.createNewFile();
 
-        return newLockFile;
+        return acquiredLock;
+    }
+
+    private void releaseLock() throws IOException
+    {
+        try {
+            this.lock.release();
+        } finally {
+            this.lock.channel().close();
+        }
+    }
+
+    private boolean allocate(final IndexData indexData) throws IOException
+    {
+        try {
+
+            this.dataFile.allocateSpace(indexData.getKeyMetaBlock());
+            try {
+                this.dataFile.allocateSpace(indexData.getValueBlock());
+            } catch (AllocationException e) {
+                this.dataFile.delete(indexData.getKeyMetaBlock(), false);
+                throw e;
+            }
+
+            return true;
+        } catch (AllocationException e) {
+            this.getLogger().warn("{}: Allocating {} failed: {}", this.getName(), indexData, e.getMessage());
+            if (indexData.isStored()) {
+                this.indexFile.delete(indexData);
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Reads and verifies the records of a batch of index entries. Entries that fail validation are returned
+     * without metadata. Entries of a legacy index get their checksums computed instead.
+     */
+    private List<ValidatedEntry<K>> validate(final List<IndexData> batch, final ValidationProgress progress)
+    {
+        final List<DataBlock> blocks = new ArrayList<>();
+        for (final IndexData indexData : batch) {
+            blocks.add(indexData.getKeyMetaBlock());
+            if (this.recovered || !indexData.isStored()) {
+                blocks.add(indexData.getValueBlock());
+            }
+        }
+
+        Map<DataBlock, byte[]> data;
+        try {
+            data = this.dataFile.read(blocks);
+        } catch (IOException e) {
+            /* Fall back to reading the blocks one by one to isolate the failing ones */
+            data = new HashMap<>();
+            for (final DataBlock block : blocks) {
+                try {
+                    data.put(block, this.dataFile.read(block));
+                } catch (IOException blockException) {
+                    this.getLogger().warn("{}: Reading {} failed", this.getName(), block);
+                }
+            }
+        }
+
+        final List<ValidatedEntry<K>> validatedEntries = new ArrayList<>(batch.size());
+        for (final IndexData indexData : batch) {
+            validatedEntries.add(this.validate(indexData, data));
+        }
+        progress.advance(batch.size());
+
+        return validatedEntries;
+    }
+
+    private ValidatedEntry<K> validate(final IndexData indexData, final Map<DataBlock, byte[]> data)
+    {
+        final byte[] keyMetaBytes = data.get(indexData.getKeyMetaBlock());
+        if (keyMetaBytes == null
+                || indexData.isStored() && IndexData.checksum(keyMetaBytes) != indexData.getKeyMetaChecksum()) {
+            return new ValidatedEntry<>(indexData, null);
+        }
+
+        final KeyedMetaData<K> keyedMetaData;
+        try {
+            @SuppressWarnings("unchecked")
+            final KeyedMetaData<K> deserialized = (KeyedMetaData<K>) Serializer.deserialize(keyMetaBytes);
+            keyedMetaData = deserialized;
+        } catch (SerializationException | ClassCastException e) {
+            return new ValidatedEntry<>(indexData, null);
+        }
+
+        if (!indexData.isStored()) {
+            final byte[] valueBytes = data.get(indexData.getValueBlock());
+            if (valueBytes == null) {
+                return new ValidatedEntry<>(indexData, null);
+            }
+            final IndexData checksummedIndexData = new IndexData(
+                    indexData.getKeyMetaBlock(),
+                    indexData.getValueBlock(),
+                    IndexData.checksum(keyMetaBytes),
+                    IndexData.checksum(valueBytes)
+            );
+
+            return new ValidatedEntry<>(checksummedIndexData, keyedMetaData);
+        }
+
+        if (this.recovered) {
+            final byte[] valueBytes = data.get(indexData.getValueBlock());
+            if (valueBytes == null || IndexData.checksum(valueBytes) != indexData.getValueChecksum()) {
+                return new ValidatedEntry<>(indexData, null);
+            }
+        }
+
+        return new ValidatedEntry<>(indexData, keyedMetaData);
+    }
+
+    private void verifyChecksum(final K key, final IndexData indexData, final byte[] data)
+            throws CheckSumNotMatchingException
+    {
+        if (IndexData.checksum(data) != indexData.getValueChecksum()) {
+            throw new CheckSumNotMatchingException(this.getName() + ": Checksum of " + key + " does not match");
+        }
+    }
+
+    private <T extends V> T decode(final byte[] data, final BlockMetaData metaData) throws CacheException
+    {
+        final long start = System.nanoTime();
+        try {
+            return this.dataFromBytes(this.decompress(data, metaData));
+        } finally {
+            this.recordLatency(LatencyMetric.CODEC, System.nanoTime() - start);
+        }
+    }
+
+    private byte[] decompress(final byte[] data, final BlockMetaData metaData) throws CacheException
+    {
+        if (!metaData.isCompressed()) {
+            return data;
+        }
+
+        final Compressor currentCompressor = this.compressor;
+        if (currentCompressor == null) {
+            throw new CacheException("Entry is compressed but no compressor is set");
+        }
+
+        return currentCompressor.decompress(data);
+    }
+
+    /**
+     * Serializes the data and compresses it if a compressor is set and the data is large enough, the metadata
+     * records whether the stored bytes are compressed.
+     */
+    private <T extends V> byte[] encode(final T data, final BlockMetaData metaData) throws CacheException
+    {
+        final long start = System.nanoTime();
+        try {
+
+            final byte[] bytes = this.dataToBytes(data);
+            final Compressor currentCompressor = this.compressor;
+            if (currentCompressor != null && bytes.length >= this.compressionThreshold) {
+                final byte[] compressedBytes = currentCompressor.compress(bytes);
+                if (compressedBytes.length < bytes.length) {
+                    metaData.setCompressed(true);
+                    return compressedBytes;
+                }
+            }
+
+            return bytes;
+        } finally {
+            this.recordLatency(LatencyMetric.CODEC, System.nanoTime() - start);
+        }
     }
 
     protected abstract <T extends V> T dataFromBytes(final byte[] data) throws CacheException;
 
     protected abstract <T extends V> byte[] dataToBytes(T data) throws CacheException;
+
+    private static class ValidatedEntry<K extends Serializable>
+    {
+        private final IndexData indexData;
+
+        /**
+         * The metadata that was read, null if the entry is corrupted.
+         */
+        private final KeyedMetaData<K> keyedMetaData;
+
+        private ValidatedEntry(final IndexData indexData, final KeyedMetaData<K> keyedMetaData)
+        {
+            this.indexData = indexData;
+            this.keyedMetaData = keyedMetaData;
+        }
+    }
+
+    /**
+     * Logs the progress of building the index every 10 seconds.
+     */
+    private class ValidationProgress
+    {
+        private final int total;
+
+        private final AtomicInteger numValidated = new AtomicInteger();
+
+        private final AtomicLong lastTimeLogged = new AtomicLong(System.currentTimeMillis());
+
+        private ValidationProgress(final int total)
+        {
+            this.total = total;
+        }
+
+        private void advance(final int count)
+        {
+            final int validated = this.numValidated.addAndGet(count);
+            final long lastLogged = this.lastTimeLogged.get();
+            final long now = System.currentTimeMillis();
+            if (now > lastLogged + 1000L * 10 && this.lastTimeLogged.compareAndSet(lastLogged, now)) {
+                AbstractIndexedDiskCache.this.getLogger().info(
+                        "{}: {}% read",
+                        AbstractIndexedDiskCache.this.getName(),
+                        validated * 100 / this.total
+                );
+            }
+        }
+    }
 }
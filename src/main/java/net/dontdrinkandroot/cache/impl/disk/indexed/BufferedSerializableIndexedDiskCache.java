@@ -20,37 +20,44 @@ package net.dontdrinkandroot.cache.impl.disk.indexed;
 import net.dontdrinkandroot.cache.BufferedRecyclingCache;
 import net.dontdrinkandroot.cache.Cache;
 import net.dontdrinkandroot.cache.CacheException;
+import net.dontdrinkandroot.cache.jmx.BufferedIndexedDiskCacheMXBean;
+import net.dontdrinkandroot.cache.jmx.impl.BufferedIndexedDiskCacheMXBeanAdapter;
 import net.dontdrinkandroot.cache.metadata.impl.BlockMetaData;
-import net.dontdrinkandroot.cache.statistics.impl.SimpleCacheStatistics;
+import net.dontdrinkandroot.cache.statistics.impl.ConcurrentCacheStatistics;
 import net.dontdrinkandroot.cache.utils.Serializer;
 
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TreeSet;
 
 /**
  * A {@link SerializableIndexedDiskCache} that buffers entries in memory on successful disk put and
- * get operations in order to avoid disk access.
+ * get operations in order to avoid disk access. The buffer holds the most recently used entries,
+ * admission and eviction take constant time regardless of the buffer size.
  *
  * @author Philip Washington Sorst <philip@sorst.net>
  */
 public class BufferedSerializableIndexedDiskCache<K extends Serializable, V extends Serializable> extends SerializableIndexedDiskCache<K, V>
         implements BufferedRecyclingCache<K, V>
 {
-    private final Map<K, Serializable> buffer;
+    /**
+     * Buffered values in access order, least recently used first.
+     */
+    private final LinkedHashMap<K, Serializable> buffer;
 
-    private final SimpleCacheStatistics bufferStatistics;
+    private final ConcurrentCacheStatistics bufferStatistics;
 
     private boolean copyOnRead = true;
 
     private boolean copyOnWrite = true;
 
-    private int bufferSize;
+    private volatile int bufferSize;
 
     public BufferedSerializableIndexedDiskCache(
             final String name,
@@ -77,8 +84,8 @@ public class BufferedSerializableIndexedDiskCache<K extends Serializable, V exte
         super(name, defaultTimeToLive, defaultMaxIdleTime, maxSize, recycleSize, baseDir);
 
         this.bufferSize = bufferSize;
-        this.buffer = new HashMap<>();
-        this.bufferStatistics = new SimpleCacheStatistics();
+        this.buffer = new LinkedHashMap<>(16, 0.75f, true);
+        this.bufferStatistics = new ConcurrentCacheStatistics();
     }
 
     /**
@@ -88,9 +95,8 @@ public class BufferedSerializableIndexedDiskCache<K extends Serializable, V exte
      * reflects gets and puts to the buffer, not the cache itself, the size is the current size of
      * the buffer.
      */
-    public synchronized SimpleCacheStatistics getBufferStatistics()
+    public ConcurrentCacheStatistics getBufferStatistics()
     {
-        this.bufferStatistics.setCurrentSize(this.buffer.size());
         return this.bufferStatistics;
     }
 
@@ -125,6 +131,36 @@ public class BufferedSerializableIndexedDiskCache<K extends Serializable, V exte
         return data;
     }
 
+    @Override
+    protected Map<K, V> doGetAll(Map<K, BlockMetaData> entries) throws CacheException
+    {
+        final Map<K, V> result = new LinkedHashMap<>();
+        final Map<K, BlockMetaData> notBuffered = new LinkedHashMap<>();
+        for (final Entry<K, BlockMetaData> entry : entries.entrySet()) {
+
+            @SuppressWarnings("unchecked")
+            V bufferedValue = (V) this.buffer.get(entry.getKey());
+            if (bufferedValue != null) {
+                result.put(entry.getKey(), this.copyOnRead ? this.copyData(bufferedValue) : bufferedValue);
+            } else {
+                notBuffered.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        this.bufferStatistics.increaseGetCount(entries.size());
+        this.bufferStatistics.increaseCacheHits(result.size());
+        this.bufferStatistics.increaseCacheMissesNotFound(notBuffered.size());
+
+        /* Get remaining data from disk and store it in the buffer */
+        final Map<K, V> diskData = super.doGetAll(notBuffered);
+        for (final Entry<K, V> entry : diskData.entrySet()) {
+            this.addToBuffer(entry.getKey(), entry.getValue());
+        }
+        result.putAll(diskData);
+
+        return result;
+    }
+
     @Override
     protected <T extends V> T doPut(
             K key,
@@ -151,9 +187,39 @@ public class BufferedSerializableIndexedDiskCache<K extends Serializable, V exte
     protected void doDelete(K key, final BlockMetaData metaData) throws CacheException {
         /* Remove entry from buffer and from disk */
         this.buffer.remove(key);
+        this.bufferStatistics.setCurrentSize(this.buffer.size());
         super.doDelete(key, metaData);
     }
 
+    /**
+     * Only buffered values are handed to the removal listeners, others would need to be read from disk.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected V getRemovedValue(final K key, final BlockMetaData metaData)
+    {
+        return (V) this.buffer.get(key);
+    }
+
+    @Override
+    protected void doRefresh(K key, BlockMetaData metaData, V data) throws CacheException
+    {
+        /* Rewrite entry on disk and replace it in the buffer */
+        super.doRefresh(key, metaData, data);
+        this.buffer.remove(key);
+        this.addToBuffer(key, data);
+    }
+
+    @Override
+    protected StandardMBean createMXBean() throws NotCompliantMBeanException
+    {
+        return new StandardMBean(
+                new BufferedIndexedDiskCacheMXBeanAdapter(this),
+                BufferedIndexedDiskCacheMXBean.class,
+                true
+        );
+    }
+
     @Override
     public int getBufferSize()
     {
@@ -205,52 +271,18 @@ public class BufferedSerializableIndexedDiskCache<K extends Serializable, V exte
     }
 
     /**
-     * Adds an entry to the buffer.
+     * Adds an entry to the buffer. The buffer is kept in access order, so making room only removes the least
+     * recently used entries from its head.
      */
     private void addToBuffer(K key, final Serializable data) {
-        if (this.buffer.size() >= this.bufferSize) {
-
-            int toDelete = this.buffer.size() - this.bufferSize + 1;
-            TreeSet<Entry<K, BlockMetaData>> orderedSet =
-                    new TreeSet<>(this.getComparator());
-            orderedSet.addAll(this.buildBufferMetaDataMap().entrySet());
-
-            Iterator<Entry<K, BlockMetaData>> iterator = orderedSet.iterator();
-            int numDeleted = 0;
-            while (iterator.hasNext() && numDeleted < toDelete) {
-                this.buffer.remove(iterator.next().getKey());
-                numDeleted++;
-            }
+        final Iterator<K> iterator = this.buffer.keySet().iterator();
+        while (this.buffer.size() >= this.bufferSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
         }
 
         this.bufferStatistics.increasePutCount();
         this.buffer.put(key, data);
-    }
-
-    /**
-     * Builds a map that holds the key metadata mapping of the buffer. Needed to run an expunge
-     * strategy on the buffer.
-     */
-    private Map<K, BlockMetaData> buildBufferMetaDataMap() {
-        Map<K, BlockMetaData> bufferEntries = new HashMap<>();
-        Iterator<K> keyIterator = this.buffer.keySet().iterator();
-        while (keyIterator.hasNext()) {
-
-            K key = keyIterator.next();
-            BlockMetaData metaData = this.getEntry(key);
-
-            if (metaData == null) {
-                /*
-                 * Strange, metadata was not found anymore, so entry does not exist on disk. Warn
-                 * and also delete in buffer
-                 */
-                this.getLogger().warn(this.getName() + ": Metadata for {} was null", key.toString());
-                keyIterator.remove();
-            } else {
-                bufferEntries.put(key, metaData);
-            }
-        }
-
-        return bufferEntries;
+        this.bufferStatistics.setCurrentSize(this.buffer.size());
     }
 }
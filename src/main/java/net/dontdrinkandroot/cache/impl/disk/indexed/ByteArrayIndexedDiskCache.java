@@ -22,6 +22,8 @@ import net.dontdrinkandroot.cache.CacheException;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * @author Philip Washington Sorst <philip@sorst.net>
@@ -63,6 +65,43 @@ public class ByteArrayIndexedDiskCache extends AbstractIndexedDiskCache<Serializ
         return data;
     }
 
+    /**
+     * Transfers the value of the entry to the target channel without copying it to the heap if possible, see
+     * {@link #transferStoredBytes(Serializable, long, long, WritableByteChannel)}.
+     *
+     * @return The number of bytes transferred, -1 if there is no servable entry for the key.
+     */
+    public long transferTo(final Serializable key, final WritableByteChannel target) throws CacheException
+    {
+        return this.transferStoredBytes(key, 0, Long.MAX_VALUE, target);
+    }
+
+    /**
+     * Transfers a range of the value of the entry to the target channel.
+     *
+     * @return The number of bytes transferred, -1 if there is no servable entry for the key.
+     */
+    public long transferTo(
+            final Serializable key,
+            final long position,
+            final long count,
+            final WritableByteChannel target
+    ) throws CacheException
+    {
+        return this.transferStoredBytes(key, position, count, target);
+    }
+
+    /**
+     * Reads a range of the value of the entry into the buffer.
+     *
+     * @return The number of bytes read, -1 if there is no servable entry for the key or the position is at or behind
+     * the end of the value.
+     */
+    public int read(final Serializable key, final long position, final ByteBuffer target) throws CacheException
+    {
+        return this.readStoredBytes(key, position, target);
+    }
+
     public int getMetaFileNumAllocatedBlocks()
     {
         return this.indexFile.getNumAllocated();
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.impl.disk.indexed;
+
+/**
+ * Controls when the indexed disk caches force written entries to the storage device.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public enum Durability
+{
+    /**
+     * Never force, flushing to the device is left to the operating system. Entries written shortly before a crash
+     * may be lost.
+     */
+    NONE,
+
+    /**
+     * The writer thread forces the files once its queue is drained, but at least every second while it is busy.
+     */
+    BATCH,
+
+    /**
+     * Every put is written and forced before it returns.
+     */
+    SYNC
+}
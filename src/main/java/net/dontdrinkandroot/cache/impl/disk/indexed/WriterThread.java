@@ -33,6 +33,12 @@ import java.util.Map.Entry;
 
 class WriterThread<K extends Serializable, V extends Serializable> extends Thread
 {
+    /**
+     * Maximum time in milliseconds written entries stay unforced in {@link Durability#BATCH} mode while the queue
+     * does not drain.
+     */
+    static final long BATCH_FORCE_INTERVAL = 1000L;
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     /**
@@ -80,6 +86,13 @@ class WriterThread<K extends Serializable, V extends Serializable> extends Threa
      */
     private boolean skipWrite = false;
 
+    /**
+     * Whether entries were written since the files were last forced.
+     */
+    private boolean unforcedWrites = false;
+
+    private long lastForced = System.currentTimeMillis();
+
     public WriterThread(AbstractIndexedDiskCache<K, V> cache)
     {
         super(cache.getName() + ".writer");
@@ -103,18 +116,41 @@ class WriterThread<K extends Serializable, V extends Serializable> extends Threa
 
             this.logger.info(this.getName() + ": Flushing " + this.queue.size() + " entries");
 
+            try {
+                this.sync();
+            } catch (IOException e) {
+                this.logger.error(this.getName() + ": Forcing written entries failed", e);
+            }
+
+            this.logger.info(this.getName() + ": Flushing done");
+        }
+    }
+
+    /**
+     * Writes all entries to disk and forces them to the storage device unless the durability is
+     * {@link Durability#NONE}.
+     *
+     * @throws IOException Thrown if forcing fails.
+     */
+    public void sync() throws IOException
+    {
+        synchronized (this) {
+
             Iterator<Entry<K, QueueEntry>> iterator = this.queue.entrySet().iterator();
             while (iterator.hasNext()) {
                 Entry<K, QueueEntry> entry = iterator.next();
                 try {
                     this.write(entry.getKey(), entry.getValue());
+                    this.unforcedWrites = true;
                 } catch (IOException e) {
                     this.logger.error(this.getName() + ": Writing " + entry.getKey() + " failed", e);
                 }
                 iterator.remove();
             }
 
-            this.logger.info(this.getName() + ": Flushing done");
+            if (this.unforcedWrites && this.cache.getDurability() != Durability.NONE) {
+                this.force();
+            }
         }
     }
 
@@ -175,11 +211,35 @@ class WriterThread<K extends Serializable, V extends Serializable> extends Threa
         this.interrupt();
     }
 
+    /**
+     * Adds a refreshed cache entry that replaces the data of an entry that is already stored on disk. The index
+     * block is reused and data blocks are overwritten in place if the length did not change. Until the entry is
+     * written the metadata must still point to the index data of the stored entry.
+     *
+     * @param key       The key of the entry.
+     * @param metaData  The MetaData of the entry, pointing to the index data of the stored entry.
+     * @param dataBytes The Data of the entry.
+     */
+    public void rewrite(K key, BlockMetaData metaData, byte[] dataBytes)
+    {
+        synchronized (this.queueLock) {
+
+            QueueEntry queueEntry = new QueueEntry();
+            queueEntry.metaData = metaData;
+            queueEntry.dataBytes = dataBytes;
+            queueEntry.previousIndexData = metaData.getIndexData();
+            this.queue.put(key, queueEntry);
+        }
+
+        this.interrupt();
+    }
+
     /**
      * Removes the given key from the writer thread.
      *
      * @param key The key of the entry.
-     * @return True if the entry was part of the writer thread and it was removed, false otherwise.
+     * @return True if the entry was part of the writer thread and it was removed, false otherwise. Also false if
+     * the removed entry was a rewrite as the previously stored entry still needs to be deleted.
      */
     public boolean remove(K key)
     {
@@ -187,8 +247,8 @@ class WriterThread<K extends Serializable, V extends Serializable> extends Threa
 
 			/* If it is in queue, remove it, it cannot be the current unprocessed entry */
             if (this.queue.containsKey(key)) {
-                this.queue.remove(key);
-                return true;
+                QueueEntry queueEntry = this.queue.remove(key);
+                return !queueEntry.isRewrite();
             }
 
 			/* Check if entry is about to being processed */
@@ -204,7 +264,7 @@ class WriterThread<K extends Serializable, V extends Serializable> extends Threa
 
 						/* Entry was not written make sure it doesn't */
                         this.skipWrite = true;
-                        return true;
+                        return !this.currentQueueEntry.isRewrite();
                     }
                 }
             }
@@ -252,6 +312,7 @@ class WriterThread<K extends Serializable, V extends Serializable> extends Threa
                                 try {
                                     this.logger.debug(this.getName() + ": Writing {}, {} left", key, queueSize);
                                     this.write(key, queueEntry);
+                                    this.unforcedWrites = true;
                                 } catch (IOException e) {
                                     this.logger.error(this.getName() + ": Writing entry failed", e);
                                 } finally {
@@ -260,6 +321,18 @@ class WriterThread<K extends Serializable, V extends Serializable> extends Threa
                             }
                         }
 
+                        /* Force once the queue is drained or the last force is too long ago */
+                        if (this.unforcedWrites
+                                && this.cache.getDurability() != Durability.NONE
+                                && (queueSize == 0
+                                || System.currentTimeMillis() - this.lastForced >= WriterThread.BATCH_FORCE_INTERVAL)) {
+                            try {
+                                this.force();
+                            } catch (IOException e) {
+                                this.logger.error(this.getName() + ": Forcing written entries failed", e);
+                            }
+                        }
+
                         synchronized (this.queueLock) {
                             this.currentKey = null;
                             this.currentQueueEntry = null;
@@ -287,18 +360,76 @@ class WriterThread<K extends Serializable, V extends Serializable> extends Threa
     {
         KeyedMetaData<K> keyedMetaData = new KeyedMetaData<K>(key, queueEntry.metaData);
         byte[] keyedMetaDataBytes = Serializer.serialize(keyedMetaData);
+        final int keyMetaChecksum = IndexData.checksum(keyedMetaDataBytes);
+        final int valueChecksum = IndexData.checksum(queueEntry.dataBytes);
 
         synchronized (this.cache.indexFileLock) {
             synchronized (this.cache.dataFileLock) {
+
+                if (queueEntry.isRewrite()) {
+                    final IndexData previousIndexData = queueEntry.previousIndexData;
+                    final DataBlock keyMetaBlock =
+                            this.rewrite(previousIndexData.getKeyMetaBlock(), keyedMetaDataBytes);
+                    final DataBlock valueBlock = this.rewrite(previousIndexData.getValueBlock(), queueEntry.dataBytes);
+                    IndexData indexData = new IndexData(
+                            previousIndexData.getBlockNum(),
+                            keyMetaBlock,
+                            valueBlock,
+                            keyMetaChecksum,
+                            valueChecksum,
+                            queueEntry.metaData.isCompressed()
+                    );
+                    indexData = this.cache.indexFile.rewrite(indexData);
+                    queueEntry.metaData.setIndexData(indexData);
+                    return;
+                }
+
                 final DataBlock keyMetaBlock = this.cache.dataFile.write(keyedMetaDataBytes);
                 final DataBlock valueBlock = this.cache.dataFile.write(queueEntry.dataBytes);
-                IndexData indexData = new IndexData(keyMetaBlock, valueBlock);
+                IndexData indexData = new IndexData(
+                        keyMetaBlock,
+                        valueBlock,
+                        keyMetaChecksum,
+                        valueChecksum,
+                        queueEntry.metaData.isCompressed()
+                );
                 indexData = this.cache.indexFile.write(indexData);
                 queueEntry.metaData.setIndexData(indexData);
             }
         }
     }
 
+    /**
+     * Forces the data file and then the index file, callers must hold the monitor of this thread.
+     */
+    private void force() throws IOException
+    {
+        synchronized (this.cache.indexFileLock) {
+            synchronized (this.cache.dataFileLock) {
+                this.cache.dataFile.force();
+                this.cache.indexFile.force();
+            }
+        }
+        this.unforcedWrites = false;
+        this.lastForced = System.currentTimeMillis();
+    }
+
+    /**
+     * Overwrites the block in place if the length matches, otherwise writes a new block and releases the old one.
+     */
+    private DataBlock rewrite(DataBlock dataBlock, byte[] data) throws IOException
+    {
+        if (dataBlock.getLength() == data.length) {
+            this.cache.dataFile.write(dataBlock, data);
+            return dataBlock;
+        }
+
+        final DataBlock newDataBlock = this.cache.dataFile.write(data);
+        this.cache.dataFile.delete(dataBlock, true);
+
+        return newDataBlock;
+    }
+
     public void requestStop()
     {
         this.stopRequested = true;
@@ -312,6 +443,16 @@ class WriterThread<K extends Serializable, V extends Serializable> extends Threa
 
         byte[] dataBytes;
 
+        /**
+         * The index data of the stored entry that is replaced by this one, null if this is a new entry.
+         */
+        IndexData previousIndexData;
+
+        boolean isRewrite()
+        {
+            return this.previousIndexData != null;
+        }
+
         @Override
         public String toString()
         {
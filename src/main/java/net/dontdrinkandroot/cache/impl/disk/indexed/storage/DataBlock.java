@@ -18,12 +18,22 @@
 package net.dontdrinkandroot.cache.impl.disk.indexed.storage;
 
 /**
+ * A range of bytes in a data file. When used with a {@link SegmentedDataFile} the upper bits of the positions
+ * carry the id of the segment the block lives in, see {@link #getSegment()}.
+ *
  * @author Philip Washington Sorst <philip@sorst.net>
  */
 public class DataBlock implements Comparable<DataBlock>
 {
     public static final long LENGTH = 8 + 8;
 
+    /**
+     * Number of low bits of a position that address bytes within a segment.
+     */
+    public static final int SEGMENT_SHIFT = 40;
+
+    public static final long OFFSET_MASK = (1L << DataBlock.SEGMENT_SHIFT) - 1;
+
     private final long startPosition;
 
     private final long endPosition;
@@ -122,4 +132,36 @@ public class DataBlock implements Comparable<DataBlock>
     {
         return this.endPosition;
     }
+
+    /**
+     * Gets the id of the segment this block lives in, blocks of unsegmented data files are always in segment 0.
+     */
+    public int getSegment()
+    {
+        return (int) (this.startPosition >>> DataBlock.SEGMENT_SHIFT);
+    }
+
+    /**
+     * Gets the block with the segment id stripped, i.e. with positions relative to the start of its segment.
+     */
+    public DataBlock toSegmentBlock()
+    {
+        return new DataBlock(this.startPosition & DataBlock.OFFSET_MASK, this.endPosition & DataBlock.OFFSET_MASK);
+    }
+
+    /**
+     * Gets the block that addresses the given block of a segment.
+     *
+     * @param segment      The id of the segment.
+     * @param segmentBlock The block with positions relative to the start of the segment.
+     */
+    public static DataBlock inSegment(final int segment, final DataBlock segmentBlock)
+    {
+        final long segmentStart = (long) segment << DataBlock.SEGMENT_SHIFT;
+
+        return new DataBlock(
+                segmentStart | segmentBlock.getStartPosition(),
+                segmentStart | segmentBlock.getEndPosition()
+        );
+    }
 }
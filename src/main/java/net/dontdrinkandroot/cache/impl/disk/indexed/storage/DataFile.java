@@ -20,18 +20,28 @@ package net.dontdrinkandroot.cache.impl.disk.indexed.storage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.util.Iterator;
-import java.util.TreeSet;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
 
 /**
  * @author Philip Washington Sorst <philip@sorst.net>
  */
 public class DataFile
 {
+    /**
+     * Maximum number of unused bytes between two blocks that are still read in one go when reading multiple
+     * blocks.
+     */
+    public static final long COALESCE_GAP = 4096;
+
     protected final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     protected final RandomAccessFile randomAccessFile;
@@ -48,6 +58,11 @@ public class DataFile
 
     protected File file;
 
+    /**
+     * Number of bytes occupied by the used blocks.
+     */
+    protected long allocatedBytes = 0;
+
     public DataFile(final File file) throws FileNotFoundException
     {
         this.file = file;
@@ -96,6 +111,7 @@ public class DataFile
         this.logger.debug("Releasing {}", dataBlock.toString());
 
         this.usedBlocks.remove(dataBlock);
+        this.allocatedBytes -= dataBlock.getLength();
 
         if (truncate && this.lastBlock != null && dataBlock.equals(this.lastBlock)) {
 
@@ -121,11 +137,31 @@ public class DataFile
         }
     }
 
+    /**
+     * Forces all written data to the storage device.
+     *
+     * @throws IOException Thrown if forcing fails.
+     */
+    public synchronized void force() throws IOException
+    {
+        /* The channel would be closed if the calling thread gets interrupted, syncing the descriptor is not */
+        this.randomAccessFile.getFD().sync();
+    }
+
     public synchronized int getNumAllocated()
     {
         return this.usedBlocks.size();
     }
 
+    /**
+     * Gets the number of bytes occupied by the used blocks, the remaining bytes of {@link #length()} are
+     * fragmented free space.
+     */
+    public synchronized long getAllocatedBytes()
+    {
+        return this.allocatedBytes;
+    }
+
     public String getFileName()
     {
         return this.file.getPath();
@@ -152,6 +188,124 @@ public class DataFile
         return data;
     }
 
+    /**
+     * Reads a range of the block into the buffer, at most as many bytes as remain in the buffer.
+     *
+     * @param offset The offset within the block.
+     * @return The number of bytes read, -1 if the offset is at or behind the end of the block.
+     */
+    public int read(final DataBlock dataBlock, final long offset, final ByteBuffer target) throws IOException
+    {
+        synchronized (this) {
+            this.checkIfExists(dataBlock);
+        }
+
+        if (offset >= dataBlock.getLength()) {
+            return -1;
+        }
+
+        final int length = (int) Math.min(target.remaining(), dataBlock.getLength() - offset);
+        final ByteBuffer window = target.duplicate();
+        window.limit(window.position() + length);
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+            final long position = dataBlock.getStartPosition() + offset;
+            while (window.hasRemaining()) {
+                if (channel.read(window, position + window.position() - target.position()) < 0) {
+                    throw new EOFException("Unexpected end of " + this.file);
+                }
+            }
+        }
+        target.position(target.position() + length);
+
+        return length;
+    }
+
+    /**
+     * Transfers a range of the block to the target channel without copying it to the heap. The transfer stops early
+     * if the target does not accept any more bytes, e.g. a non-blocking socket.
+     * <p>
+     * Ranged reads use their own file channel, so interrupting the reading thread does not close the file used by
+     * the cache. The caller must make sure the block is not released during the transfer.
+     *
+     * @param offset The offset within the block.
+     * @param count  The maximum number of bytes to transfer.
+     * @return The number of bytes transferred.
+     */
+    public long transferTo(
+            final DataBlock dataBlock,
+            final long offset,
+            final long count,
+            final WritableByteChannel target
+    ) throws IOException
+    {
+        synchronized (this) {
+            this.checkIfExists(dataBlock);
+        }
+
+        final long length = Math.max(0, Math.min(count, dataBlock.getLength() - offset));
+        long transferred = 0;
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+            final long position = dataBlock.getStartPosition() + offset;
+            while (transferred < length) {
+                final long chunk = channel.transferTo(position + transferred, length - transferred, target);
+                if (chunk <= 0) {
+                    break;
+                }
+                transferred += chunk;
+            }
+        }
+
+        return transferred;
+    }
+
+    /**
+     * Reads multiple blocks in a single pass. The blocks are sorted by their position and neighbouring
+     * blocks that are at most {@link #COALESCE_GAP} bytes apart are coalesced, so each run of blocks is read
+     * with a single seek.
+     *
+     * @param dataBlocks The blocks to read.
+     * @return The data of the blocks mapped by the block.
+     * @throws IOException Thrown if reading fails.
+     */
+    public synchronized Map<DataBlock, byte[]> read(final Collection<DataBlock> dataBlocks) throws IOException
+    {
+        final List<DataBlock> sortedBlocks = new ArrayList<>(dataBlocks);
+        Collections.sort(sortedBlocks);
+
+        final Map<DataBlock, byte[]> result = new HashMap<>();
+        int runStart = 0;
+        while (runStart < sortedBlocks.size()) {
+
+            /* Extend the run as long as the next block starts close enough to the current one */
+            int runEnd = runStart;
+            this.checkIfExists(sortedBlocks.get(runStart));
+            while (runEnd + 1 < sortedBlocks.size()) {
+                final DataBlock next = sortedBlocks.get(runEnd + 1);
+                if (next.getStartPosition() - sortedBlocks.get(runEnd).getEndPosition() - 1 > DataFile.COALESCE_GAP) {
+                    break;
+                }
+                this.checkIfExists(next);
+                runEnd++;
+            }
+
+            final long runStartPosition = sortedBlocks.get(runStart).getStartPosition();
+            final long runEndPosition = sortedBlocks.get(runEnd).getEndPosition();
+            final byte[] runData = new byte[(int) (runEndPosition - runStartPosition + 1)];
+            this.randomAccessFile.seek(runStartPosition);
+            this.randomAccessFile.readFully(runData);
+
+            for (int i = runStart; i <= runEnd; i++) {
+                final DataBlock dataBlock = sortedBlocks.get(i);
+                final int from = (int) (dataBlock.getStartPosition() - runStartPosition);
+                result.put(dataBlock, Arrays.copyOfRange(runData, from, from + (int) dataBlock.getLength()));
+            }
+
+            runStart = runEnd + 1;
+        }
+
+        return result;
+    }
+
     public synchronized DataBlock write(final byte[] data) throws IOException
     {
         if (data.length <= 0) {
@@ -169,6 +323,60 @@ public class DataFile
         return dataBlock;
     }
 
+    /**
+     * Writes the data only if it fits into the file without growing it beyond the given length. An empty file
+     * always accepts the data so that entries larger than the limit can still be stored.
+     *
+     * @param data      The data to write.
+     * @param maxLength The maximum length the file may grow to.
+     * @return The block the data was written to or null if it did not fit.
+     * @throws IOException Thrown if writing fails.
+     */
+    public synchronized DataBlock write(final byte[] data, final long maxLength) throws IOException
+    {
+        if (data.length <= 0) {
+            throw new IllegalArgumentException("Cannot write data with length smaller equals 0 (was "
+                    + data.length
+                    + ")");
+        }
+
+        final long startPosition = this.findFreeStartPosition(data.length);
+        if (!this.usedBlocks.isEmpty() && startPosition + data.length > maxLength) {
+            return null;
+        }
+
+        final DataBlock dataBlock = new DataBlock(startPosition, startPosition + data.length - 1);
+        this.logger.debug("Allocating {}", dataBlock.toString());
+        this.checkIfNotExists(dataBlock);
+        this.addBlock(dataBlock);
+
+        this.randomAccessFile.seek(dataBlock.getStartPosition());
+        this.randomAccessFile.write(data);
+
+        return dataBlock;
+    }
+
+    /**
+     * Overwrites the data of an allocated block in place.
+     *
+     * @param dataBlock The block to overwrite.
+     * @param data      The new data, must match the length of the block.
+     * @throws IOException Thrown if writing fails.
+     */
+    public synchronized void write(final DataBlock dataBlock, final byte[] data) throws IOException
+    {
+        this.checkIfExists(dataBlock);
+        if (data.length != dataBlock.getLength()) {
+            throw new IllegalArgumentException("Data length "
+                    + data.length
+                    + " does not match length of "
+                    + dataBlock);
+        }
+
+        this.randomAccessFile.seek(dataBlock.getStartPosition());
+        this.randomAccessFile.write(data);
+    }
+
     /**
      * Delays the write process, only for tests.
      */
@@ -199,35 +407,15 @@ public class DataFile
         }
 
         this.usedBlocks.add(dataBlock);
+        this.allocatedBytes += dataBlock.getLength();
     }
 
     private DataBlock allocateSpace(final long length) throws AllocationException
     {
-        /* Remember start and end position for new used space */
-        long foundFreeStartPosition = 0;
-        long foundFreeEndPosition = 0;
-
-		/* Find start and end position and insertion index */
-        final Iterator<DataBlock> usedSpaceIterator = this.usedBlocks.iterator();
-        while (usedSpaceIterator.hasNext()) {
-            final DataBlock usedSpace = usedSpaceIterator.next();
-            if (usedSpace.getStartPosition() - foundFreeStartPosition >= length) {
-                /* Possible to insert new space before the one found */
-                foundFreeEndPosition = foundFreeStartPosition + length - 1;
-                break;
-            } else {
-                /* Not possible to insert, advance start position */
-                foundFreeStartPosition = usedSpace.getEndPosition() + 1;
-            }
-        }
-
-		/* Prolong if not long enough (can only be the last one) */
-        if (foundFreeEndPosition - foundFreeStartPosition < length) {
-            foundFreeEndPosition = foundFreeStartPosition + length - 1;
-        }
+        final long foundFreeStartPosition = this.findFreeStartPosition(length);
 
 		/* Create new used space */
-        final DataBlock dataBlock = new DataBlock(foundFreeStartPosition, foundFreeEndPosition);
+        final DataBlock dataBlock = new DataBlock(foundFreeStartPosition, foundFreeStartPosition + length - 1);
         this.logger.debug("Allocating {}", dataBlock.toString());
 
         this.checkIfNotExists(dataBlock);
@@ -238,6 +426,26 @@ public class DataFile
         return dataBlock;
     }
 
+    /**
+     * Finds the start of the first gap that can hold the given length, or the end of the last block if there is
+     * none.
+     */
+    private long findFreeStartPosition(final long length)
+    {
+        long foundFreeStartPosition = 0;
+        for (final DataBlock usedSpace : this.usedBlocks) {
+            if (usedSpace.getStartPosition() - foundFreeStartPosition >= length) {
+                /* Possible to insert new space before the one found */
+                return foundFreeStartPosition;
+            }
+
+            /* Not possible to insert, advance start position */
+            foundFreeStartPosition = usedSpace.getEndPosition() + 1;
+        }
+
+        return foundFreeStartPosition;
+    }
+
     private void checkIfExists(final DataBlock dataBlock)
     {
         if (!this.usedBlocks.contains(dataBlock)) {
@@ -17,12 +17,40 @@
  */
 package net.dontdrinkandroot.cache.impl.disk.indexed.storage;
 
+import net.dontdrinkandroot.cache.metadata.impl.CheckSumNotMatchingException;
+
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
 
+/**
+ * A slot of the {@link IndexFile} that references the key/metadata block and the value block of an entry. Each
+ * slot stores the CRC32C checksums of both data blocks and a checksum of the slot itself.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
 public class IndexData
 {
-    public static final long LENGTH = 1 + 2 * DataBlock.LENGTH;
+    /**
+     * Allocation marker and flags, the two blocks, the two block checksums and the slot checksum.
+     */
+    public static final long LENGTH = 1 + 2 * DataBlock.LENGTH + 3 * 4;
+
+    /**
+     * Flag of the first byte of a slot that marks it as allocated.
+     */
+    private static final byte FLAG_ALLOCATED = 1;
+
+    /**
+     * Flag of the first byte of a slot that marks the value as compressed.
+     */
+    private static final byte FLAG_COMPRESSED = 2;
+
+    /**
+     * Block number of index data that was not written to the index file yet.
+     */
+    public static final int UNSTORED = -1;
 
     public int blockNum;
 
@@ -30,17 +58,43 @@ public class IndexData
 
     public DataBlock valueBlock;
 
-    public IndexData(int blockNum, DataBlock keyMetaBlock, DataBlock valueBlock)
+    private final int keyMetaChecksum;
+
+    private final int valueChecksum;
+
+    private final boolean compressed;
+
+    public IndexData(
+            int blockNum,
+            DataBlock keyMetaBlock,
+            DataBlock valueBlock,
+            int keyMetaChecksum,
+            int valueChecksum,
+            boolean compressed
+    )
     {
         this.blockNum = blockNum;
         this.keyMetaBlock = keyMetaBlock;
         this.valueBlock = valueBlock;
+        this.keyMetaChecksum = keyMetaChecksum;
+        this.valueChecksum = valueChecksum;
+        this.compressed = compressed;
     }
 
-    public IndexData(DataBlock keyMetaBlock, DataBlock valueBlock)
+    public IndexData(
+            DataBlock keyMetaBlock,
+            DataBlock valueBlock,
+            int keyMetaChecksum,
+            int valueChecksum,
+            boolean compressed
+    )
     {
-        this.keyMetaBlock = keyMetaBlock;
-        this.valueBlock = valueBlock;
+        this(IndexData.UNSTORED, keyMetaBlock, valueBlock, keyMetaChecksum, valueChecksum, compressed);
+    }
+
+    public IndexData(DataBlock keyMetaBlock, DataBlock valueBlock, int keyMetaChecksum, int valueChecksum)
+    {
+        this(keyMetaBlock, valueBlock, keyMetaChecksum, valueChecksum, false);
     }
 
     public int getBlockNum()
@@ -53,6 +107,14 @@ public class IndexData
         this.blockNum = blockNum;
     }
 
+    /**
+     * Whether this index data occupies a slot of the index file.
+     */
+    public boolean isStored()
+    {
+        return this.blockNum != IndexData.UNSTORED;
+    }
+
     public DataBlock getKeyMetaBlock()
     {
         return this.keyMetaBlock;
@@ -63,42 +125,116 @@ public class IndexData
         return this.valueBlock;
     }
 
-    public static IndexData read(RandomAccessFile randomAccessFile, int blockNum) throws IOException
+    public int getKeyMetaChecksum()
+    {
+        return this.keyMetaChecksum;
+    }
+
+    public int getValueChecksum()
     {
-        final long position = IndexData.LENGTH * blockNum;
+        return this.valueChecksum;
+    }
+
+    /**
+     * Whether the value block holds compressed data.
+     */
+    public boolean isCompressed()
+    {
+        return this.compressed;
+    }
+
+    /**
+     * Computes the CRC32C checksum of the given data.
+     */
+    public static int checksum(final byte[] data)
+    {
+        final CRC32C crc = new CRC32C();
+        crc.update(data, 0, data.length);
+
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads a single slot from the index file.
+     *
+     * @return The index data or null if the slot is not allocated.
+     * @throws CheckSumNotMatchingException Thrown if the slot is corrupted.
+     */
+    public static IndexData read(RandomAccessFile randomAccessFile, int blockNum)
+            throws IOException, CheckSumNotMatchingException
+    {
+        randomAccessFile.seek(IndexFile.getPosition(blockNum));
+        final byte[] bytes = new byte[(int) IndexData.LENGTH];
+        randomAccessFile.readFully(bytes);
 
-        randomAccessFile.seek(position);
+        return IndexData.read(ByteBuffer.wrap(bytes), blockNum);
+    }
+
+    /**
+     * Reads a single slot from the current position of the buffer, the position is advanced by {@link #LENGTH}.
+     *
+     * @return The index data or null if the slot is not allocated.
+     * @throws CheckSumNotMatchingException Thrown if the slot is corrupted.
+     */
+    public static IndexData read(ByteBuffer buffer, int blockNum) throws CheckSumNotMatchingException
+    {
+        final int slotStart = buffer.position();
+        final int checksumPosition = slotStart + (int) IndexData.LENGTH - 4;
 
-        boolean allocated = randomAccessFile.readBoolean();
-        if (!allocated) {
+        final byte flags = buffer.get();
+        if ((flags & IndexData.FLAG_ALLOCATED) == 0) {
+            buffer.position(checksumPosition + 4);
             return null;
         }
 
-        long keyMetaStart = randomAccessFile.readLong();
-        long keyMetaEnd = randomAccessFile.readLong();
-        long valueStart = randomAccessFile.readLong();
-        long valueEnd = randomAccessFile.readLong();
+        long keyMetaStart = buffer.getLong();
+        long keyMetaEnd = buffer.getLong();
+        long valueStart = buffer.getLong();
+        long valueEnd = buffer.getLong();
+        int keyMetaChecksum = buffer.getInt();
+        int valueChecksum = buffer.getInt();
+        int slotChecksum = buffer.getInt();
+
+        final CRC32C crc = new CRC32C();
+        final ByteBuffer slot = buffer.duplicate();
+        slot.position(slotStart).limit(checksumPosition);
+        crc.update(slot);
+        if ((int) crc.getValue() != slotChecksum || keyMetaEnd < keyMetaStart || valueEnd < valueStart) {
+            throw new CheckSumNotMatchingException("Index slot " + blockNum + " is corrupted");
+        }
 
-        return new IndexData(blockNum, new DataBlock(keyMetaStart, keyMetaEnd), new DataBlock(valueStart, valueEnd));
+        return new IndexData(
+                blockNum,
+                new DataBlock(keyMetaStart, keyMetaEnd),
+                new DataBlock(valueStart, valueEnd),
+                keyMetaChecksum,
+                valueChecksum,
+                (flags & IndexData.FLAG_COMPRESSED) != 0
+        );
     }
 
-    public IndexData write(RandomAccessFile randomAccessFile, int blockNum) throws IOException
+    /**
+     * Serializes this index data into a slot including the allocation marker and the slot checksum.
+     */
+    public byte[] toBytes()
     {
-        this.blockNum = blockNum;
-
-        final long position = IndexData.LENGTH * blockNum;
+        final ByteBuffer buffer = ByteBuffer.allocate((int) IndexData.LENGTH);
 
-        randomAccessFile.seek(position);
+		/* Allocation marker and flags */
+        buffer.put((byte) (IndexData.FLAG_ALLOCATED | (this.compressed ? IndexData.FLAG_COMPRESSED : 0)));
 
-		/* Allocation marker */
-        randomAccessFile.writeBoolean(true);
+        buffer.putLong(this.keyMetaBlock.getStartPosition());
+        buffer.putLong(this.keyMetaBlock.getEndPosition());
+        buffer.putLong(this.valueBlock.getStartPosition());
+        buffer.putLong(this.valueBlock.getEndPosition());
+        buffer.putInt(this.keyMetaChecksum);
+        buffer.putInt(this.valueChecksum);
 
-        randomAccessFile.writeLong(this.keyMetaBlock.getStartPosition());
-        randomAccessFile.writeLong(this.keyMetaBlock.getEndPosition());
-        randomAccessFile.writeLong(this.valueBlock.getStartPosition());
-        randomAccessFile.writeLong(this.valueBlock.getEndPosition());
+        final CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
 
-        return this;
+        return buffer.array();
     }
 
     @Override
@@ -110,6 +246,12 @@ public class IndexData
         sb.append("keyMetaBlock=" + this.keyMetaBlock);
         sb.append(",");
         sb.append("valueBlock=" + this.valueBlock);
+        sb.append(",");
+        sb.append("keyMetaChecksum=" + this.keyMetaChecksum);
+        sb.append(",");
+        sb.append("valueChecksum=" + this.valueChecksum);
+        sb.append(",");
+        sb.append("compressed=" + this.compressed);
         sb.append("]");
 
         return sb.toString();
@@ -17,13 +17,14 @@
  */
 package net.dontdrinkandroot.cache.impl.disk.indexed.storage;
 
+import net.dontdrinkandroot.cache.metadata.impl.CheckSumNotMatchingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -36,6 +37,26 @@ public class IndexFile
 {
     public static float GOLDEN_RATIO = 1.61803399f;
 
+    /**
+     * Magic number at the start of the index file, index files without it are of the legacy format that did not
+     * store checksums.
+     */
+    public static final int MAGIC = 0x44444958;
+
+    public static final int VERSION = 2;
+
+    public static final long HEADER_LENGTH = 4 + 4;
+
+    /**
+     * Length of the slots of the legacy format: allocation marker and the two blocks.
+     */
+    private static final long LEGACY_SLOT_LENGTH = 1 + 2 * DataBlock.LENGTH;
+
+    /**
+     * Number of slots that are read at once when initializing.
+     */
+    private static final int READ_BATCH_SLOTS = 1024;
+
     private final RandomAccessFile randomAccessFile;
 
     private boolean[] blockMap;
@@ -44,13 +65,17 @@ public class IndexFile
 
     private int numAllocated = 0;
 
-    public IndexFile(final File file) throws FileNotFoundException
+    public IndexFile(final File file) throws IOException
     {
         this.randomAccessFile = new RandomAccessFile(file, "rw");
 
         this.blockMap = new boolean[2];
         this.blockMap[0] = false;
         this.blockMap[1] = false;
+
+        if (this.randomAccessFile.length() == 0) {
+            this.writeHeader();
+        }
     }
 
     /**
@@ -80,13 +105,23 @@ public class IndexFile
     public synchronized void delete(final int blockNum) throws IOException
     {
         /* Seek to the block, invalidate by writing 0 and deallocate block */
-        this.randomAccessFile.seek(blockNum * IndexData.LENGTH);
+        this.randomAccessFile.seek(IndexFile.getPosition(blockNum));
         this.randomAccessFile.writeBoolean(false);
         this.blockMap[blockNum] = false;
         this.numAllocated--;
         this.logger.debug("Invalidating {}, {} allocated", blockNum, this.numAllocated);
     }
 
+    /**
+     * Forces all written slots to the storage device.
+     *
+     * @throws IOException Thrown if forcing fails.
+     */
+    public synchronized void force() throws IOException
+    {
+        this.randomAccessFile.getFD().sync();
+    }
+
     /**
      * Gets the number of allocated blocks.
      */
@@ -95,28 +130,59 @@ public class IndexFile
         return this.numAllocated;
     }
 
+    /**
+     * Reads all allocated slots in a single sequential pass. Slots whose checksum does not match are released, a
+     * trailing partially written slot is cut off. Index files of the legacy format are reset and their entries are
+     * returned as unstored index data without checksums, see {@link IndexData#isStored()}.
+     */
     public synchronized Collection<IndexData> initialize() throws IOException
     {
-        List<IndexData> entries = new ArrayList<IndexData>();
-
-        final int numBlocks = this.getNumPossibleBlocks(this.randomAccessFile.length());
-
-        for (int currentBlockNum = 0; currentBlockNum < numBlocks; currentBlockNum++) {
-
-            try {
+        if (!this.hasHeader()) {
+            return this.migrateLegacyIndex();
+        }
 
-                IndexData data = IndexData.read(this.randomAccessFile, currentBlockNum);
-                if (data != null) {
-                    this.allocateBlock(currentBlockNum);
-                    entries.add(data);
+        final List<IndexData> entries = new ArrayList<IndexData>();
+        final List<Integer> corruptedBlockNums = new ArrayList<>();
+
+        /* Read through the random access file, a file channel would be closed if the thread gets interrupted */
+        final long length = this.randomAccessFile.length();
+        final int numBlocks = (int) ((length - IndexFile.HEADER_LENGTH) / IndexData.LENGTH);
+        final byte[] bytes = new byte[(int) IndexData.LENGTH * IndexFile.READ_BATCH_SLOTS];
+
+        int currentBlockNum = 0;
+        while (currentBlockNum < numBlocks) {
+
+            final int numSlots = Math.min(IndexFile.READ_BATCH_SLOTS, numBlocks - currentBlockNum);
+            this.randomAccessFile.seek(IndexFile.getPosition(currentBlockNum));
+            this.randomAccessFile.readFully(bytes, 0, numSlots * (int) IndexData.LENGTH);
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, numSlots * (int) IndexData.LENGTH);
+
+            for (int i = 0; i < numSlots; i++) {
+                try {
+
+                    IndexData data = IndexData.read(buffer, currentBlockNum);
+                    if (data != null) {
+                        this.allocateBlock(currentBlockNum);
+                        entries.add(data);
+                    }
+                } catch (final CheckSumNotMatchingException e) {
+                    this.logger.warn("Reading failed at {}: {}", currentBlockNum, e.getMessage());
+                    corruptedBlockNums.add(currentBlockNum);
                 }
-            } catch (final AllocationException e) {
-                this.logger.error("Allocating " + currentBlockNum + " failed");
-            } catch (final IOException e) {
-                this.logger.warn("Reading failed at {}: {}", new Object[]{currentBlockNum, e.getMessage()});
+                currentBlockNum++;
             }
         }
 
+        if (length > IndexFile.getPosition(numBlocks)) {
+            this.logger.warn("Cutting off partially written slot at the end of the index");
+            this.randomAccessFile.setLength(IndexFile.getPosition(numBlocks));
+        }
+
+        for (final int corruptedBlockNum : corruptedBlockNums) {
+            this.randomAccessFile.seek(IndexFile.getPosition(corruptedBlockNum));
+            this.randomAccessFile.writeBoolean(false);
+        }
+
         return entries;
     }
 
@@ -128,10 +194,103 @@ public class IndexFile
         return this.randomAccessFile.length();
     }
 
-    public IndexData write(IndexData indexData) throws IOException
+    public synchronized IndexData write(IndexData indexData) throws IOException
     {
         final int blockNum = this.allocateBlock();
-        return indexData.write(this.randomAccessFile, blockNum);
+        return this.writeSlot(indexData, blockNum);
+    }
+
+    /**
+     * Writes the index data to the block it already occupies.
+     */
+    public synchronized IndexData rewrite(IndexData indexData) throws IOException
+    {
+        final int blockNum = indexData.getBlockNum();
+        if (blockNum >= this.blockMap.length || !this.blockMap[blockNum]) {
+            throw new AllocationException("Block " + blockNum + " is not in use");
+        }
+
+        return this.writeSlot(indexData, blockNum);
+    }
+
+    /**
+     * Gets the position of the slot with the given number.
+     */
+    static long getPosition(final int blockNum)
+    {
+        return IndexFile.HEADER_LENGTH + blockNum * IndexData.LENGTH;
+    }
+
+    private IndexData writeSlot(final IndexData indexData, final int blockNum) throws IOException
+    {
+        indexData.setBlockNum(blockNum);
+        this.randomAccessFile.seek(IndexFile.getPosition(blockNum));
+        this.randomAccessFile.write(indexData.toBytes());
+
+        return indexData;
+    }
+
+    private void writeHeader() throws IOException
+    {
+        this.randomAccessFile.seek(0);
+        this.randomAccessFile.writeInt(IndexFile.MAGIC);
+        this.randomAccessFile.writeInt(IndexFile.VERSION);
+    }
+
+    private boolean hasHeader() throws IOException
+    {
+        if (this.randomAccessFile.length() < IndexFile.HEADER_LENGTH) {
+            return false;
+        }
+
+        this.randomAccessFile.seek(0);
+        if (this.randomAccessFile.readInt() != IndexFile.MAGIC) {
+            return false;
+        }
+
+        final int version = this.randomAccessFile.readInt();
+        if (version != IndexFile.VERSION) {
+            throw new IOException("Unsupported index file version " + version);
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads the entries of an index file without header and checksums and resets the file to the current format.
+     * The entries need to be written again once their checksums have been computed.
+     */
+    private List<IndexData> migrateLegacyIndex() throws IOException
+    {
+        this.logger.info("Migrating index file without checksums");
+
+        final List<IndexData> entries = new ArrayList<IndexData>();
+        final long length = this.randomAccessFile.length();
+        final int numBlocks = (int) (length / IndexFile.LEGACY_SLOT_LENGTH);
+        for (int currentBlockNum = 0; currentBlockNum < numBlocks; currentBlockNum++) {
+
+            this.randomAccessFile.seek(currentBlockNum * IndexFile.LEGACY_SLOT_LENGTH);
+            if (!this.randomAccessFile.readBoolean()) {
+                continue;
+            }
+
+            final long keyMetaStart = this.randomAccessFile.readLong();
+            final long keyMetaEnd = this.randomAccessFile.readLong();
+            final long valueStart = this.randomAccessFile.readLong();
+            final long valueEnd = this.randomAccessFile.readLong();
+            if (keyMetaEnd < keyMetaStart || valueEnd < valueStart) {
+                this.logger.warn("Reading failed at {}: invalid blocks", currentBlockNum);
+                continue;
+            }
+
+            final DataBlock keyMetaBlock = new DataBlock(keyMetaStart, keyMetaEnd);
+            entries.add(new IndexData(keyMetaBlock, new DataBlock(valueStart, valueEnd), 0, 0));
+        }
+
+        this.randomAccessFile.setLength(0);
+        this.writeHeader();
+
+        return entries;
     }
 
     /**
@@ -174,14 +333,4 @@ public class IndexFile
         final int newLength = Math.max(neededBlockNum + 1, (int) (this.blockMap.length * IndexFile.GOLDEN_RATIO));
         this.blockMap = Arrays.copyOf(this.blockMap, newLength);
     }
-
-    private int getNumPossibleBlocks(final long length)
-    {
-        int numRequiredBlocks = (int) (length / IndexData.LENGTH);
-        if (length % IndexData.LENGTH > 0) {
-            numRequiredBlocks++;
-        }
-
-        return numRequiredBlocks;
-    }
 }
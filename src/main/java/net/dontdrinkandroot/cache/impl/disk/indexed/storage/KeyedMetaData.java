@@ -55,8 +55,11 @@ public class KeyedMetaData<K extends Serializable> implements Serializable
         return this.maxIdleTime;
     }
 
-    public SimpleMetaData getMetaData()
+    /**
+     * Restores the metadata, the last access is not persisted and set to the given time.
+     */
+    public SimpleMetaData getMetaData(final long lastAccess)
     {
-        return new SimpleMetaData(this.created, this.timeToLive, this.maxIdleTime);
+        return new SimpleMetaData(this.created, this.timeToLive, this.maxIdleTime, lastAccess);
     }
 }
@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.impl.disk.indexed.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+
+/**
+ * A data file that is split into segment files of bounded size. Segment 0 is stored in the base file, all other
+ * segments are stored next to it with the segment id appended to the file name. The segment id of a block is
+ * encoded in the upper bits of its positions (see {@link DataBlock#getSegment()}) so the index format does not
+ * change and existing unsegmented data files are read as segment 0.
+ * <p>
+ * Each segment is guarded by its own monitor, so reads of different segments do not block each other. Allocating
+ * and releasing blocks is serialized on this instance. Segments other than segment 0 are deleted as soon as their
+ * last block is released.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class SegmentedDataFile
+{
+    public static final long DEFAULT_MAX_SEGMENT_SIZE = 256L * 1024 * 1024;
+
+    protected final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final File baseFile;
+
+    /**
+     * The segments by id, missing segments are null. Replaced on every change so it can be read without locking.
+     */
+    private volatile DataFile[] segments;
+
+    private volatile long maxSegmentSize = SegmentedDataFile.DEFAULT_MAX_SEGMENT_SIZE;
+
+    public SegmentedDataFile(final File baseFile) throws FileNotFoundException
+    {
+        this.baseFile = baseFile;
+
+        final SortedMap<Integer, DataFile> existingSegments = new TreeMap<>();
+        existingSegments.put(0, new DataFile(baseFile));
+        final String prefix = baseFile.getName() + ".";
+        final File[] files = baseFile.getAbsoluteFile().getParentFile().listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                final String fileName = file.getName();
+                if (fileName.startsWith(prefix) && fileName.substring(prefix.length()).matches("[1-9][0-9]{0,6}")) {
+                    final int segment = Integer.parseInt(fileName.substring(prefix.length()));
+                    existingSegments.put(segment, new DataFile(file));
+                }
+            }
+        }
+
+        this.segments = new DataFile[existingSegments.lastKey() + 1];
+        for (final Map.Entry<Integer, DataFile> entry : existingSegments.entrySet()) {
+            this.segments[entry.getKey()] = entry.getValue();
+        }
+    }
+
+    /**
+     * Sets the size a segment may grow to before new blocks are written to another segment. Only affects new
+     * allocations, a single block larger than the limit is written to a segment of its own.
+     */
+    public void setMaxSegmentSize(final long maxSegmentSize)
+    {
+        if (maxSegmentSize <= 0 || maxSegmentSize > DataBlock.OFFSET_MASK) {
+            throw new IllegalArgumentException("Invalid maximum segment size: " + maxSegmentSize);
+        }
+
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    public long getMaxSegmentSize()
+    {
+        return this.maxSegmentSize;
+    }
+
+    public synchronized void allocateSpace(final DataBlock dataBlock) throws IOException
+    {
+        this.getOrCreateSegment(dataBlock.getSegment()).allocateSpace(dataBlock.toSegmentBlock());
+    }
+
+    public boolean checkConsistency()
+    {
+        for (final DataFile segment : this.segments) {
+            if (segment != null && !segment.checkConsistency()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Closes all segment files.
+     */
+    public synchronized void close() throws IOException
+    {
+        IOException exception = null;
+        for (final DataFile segment : this.segments) {
+            if (segment == null) {
+                continue;
+            }
+            try {
+                segment.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Forces the written data of all segments to the storage device.
+     *
+     * @throws IOException Thrown if forcing fails.
+     */
+    public synchronized void force() throws IOException
+    {
+        for (final DataFile segment : this.segments) {
+            if (segment != null) {
+                segment.force();
+            }
+        }
+    }
+
+    public synchronized void delete(final DataBlock dataBlock, final boolean truncate)
+    {
+        final int segmentId = dataBlock.getSegment();
+        final DataFile segment = this.getSegment(segmentId);
+        segment.delete(dataBlock.toSegmentBlock(), truncate);
+
+        if (truncate) {
+            this.releaseIfEmpty(segmentId);
+        }
+    }
+
+    /**
+     * Deletes all segments except segment 0 that do not contain any blocks, e.g. segments left over by entries
+     * that could not be read from the index.
+     */
+    public synchronized void releaseEmptySegments()
+    {
+        for (int segmentId = 1; segmentId < this.segments.length; segmentId++) {
+            this.releaseIfEmpty(segmentId);
+        }
+    }
+
+    public int getNumAllocated()
+    {
+        int numAllocated = 0;
+        for (final DataFile segment : this.segments) {
+            if (segment != null) {
+                numAllocated += segment.getNumAllocated();
+            }
+        }
+
+        return numAllocated;
+    }
+
+    /**
+     * Gets the number of bytes occupied by the used blocks of all segments.
+     */
+    public long getAllocatedBytes()
+    {
+        long allocatedBytes = 0;
+        for (final DataFile segment : this.segments) {
+            if (segment != null) {
+                allocatedBytes += segment.getAllocatedBytes();
+            }
+        }
+
+        return allocatedBytes;
+    }
+
+    /**
+     * Gets the number of segment files that currently exist.
+     */
+    public int getNumSegments()
+    {
+        int numSegments = 0;
+        for (final DataFile segment : this.segments) {
+            if (segment != null) {
+                numSegments++;
+            }
+        }
+
+        return numSegments;
+    }
+
+    /**
+     * Gets the name of the base file which holds segment 0.
+     */
+    public String getFileName()
+    {
+        return this.baseFile.getPath();
+    }
+
+    /**
+     * Gets the file a segment is stored in.
+     */
+    public File getSegmentFile(final int segmentId)
+    {
+        if (segmentId == 0) {
+            return this.baseFile;
+        }
+
+        return new File(this.baseFile.getAbsoluteFile().getParentFile(), this.baseFile.getName() + "." + segmentId);
+    }
+
+    /**
+     * Returns the summed length of all segment files.
+     *
+     * @throws IOException Thrown if a length cannot be determined.
+     */
+    public long length() throws IOException
+    {
+        long length = 0;
+        for (final DataFile segment : this.segments) {
+            if (segment != null) {
+                length += segment.length();
+            }
+        }
+
+        return length;
+    }
+
+    public byte[] read(final DataBlock dataBlock) throws IOException
+    {
+        return this.getSegment(dataBlock.getSegment()).read(dataBlock.toSegmentBlock());
+    }
+
+    /**
+     * Reads a range of the block, see {@link DataFile#read(DataBlock, long, ByteBuffer)}.
+     */
+    public int read(final DataBlock dataBlock, final long offset, final ByteBuffer target) throws IOException
+    {
+        return this.getSegment(dataBlock.getSegment()).read(dataBlock.toSegmentBlock(), offset, target);
+    }
+
+    /**
+     * Transfers a range of the block, see {@link DataFile#transferTo(DataBlock, long, long, WritableByteChannel)}.
+     */
+    public long transferTo(
+            final DataBlock dataBlock,
+            final long offset,
+            final long count,
+            final WritableByteChannel target
+    ) throws IOException
+    {
+        return this.getSegment(dataBlock.getSegment()).transferTo(dataBlock.toSegmentBlock(), offset, count, target);
+    }
+
+    /**
+     * Reads multiple blocks, the blocks of each segment are read in a single coalesced pass (see
+     * {@link DataFile#read(Collection)}).
+     *
+     * @param dataBlocks The blocks to read.
+     * @return The data of the blocks mapped by the block.
+     * @throws IOException Thrown if reading fails.
+     */
+    public Map<DataBlock, byte[]> read(final Collection<DataBlock> dataBlocks) throws IOException
+    {
+        final Map<Integer, List<DataBlock>> blocksBySegment = new HashMap<>();
+        for (final DataBlock dataBlock : dataBlocks) {
+            blocksBySegment.computeIfAbsent(dataBlock.getSegment(), segmentId -> new ArrayList<>()).add(dataBlock);
+        }
+
+        final Map<DataBlock, byte[]> result = new HashMap<>();
+        for (final Map.Entry<Integer, List<DataBlock>> entry : blocksBySegment.entrySet()) {
+
+            final List<DataBlock> segmentBlocks = new ArrayList<>(entry.getValue().size());
+            for (final DataBlock dataBlock : entry.getValue()) {
+                segmentBlocks.add(dataBlock.toSegmentBlock());
+            }
+
+            final Map<DataBlock, byte[]> segmentResult = this.getSegment(entry.getKey()).read(segmentBlocks);
+            for (final DataBlock dataBlock : entry.getValue()) {
+                result.put(dataBlock, segmentResult.get(dataBlock.toSegmentBlock()));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes the data to the first segment that can hold it without exceeding the maximum segment size, a new
+     * segment is created if there is none.
+     */
+    public synchronized DataBlock write(final byte[] data) throws IOException
+    {
+        final DataFile[] segments = this.segments;
+        int freeSegmentId = -1;
+        for (int segmentId = 0; segmentId < segments.length; segmentId++) {
+            final DataFile segment = segments[segmentId];
+            if (segment == null) {
+                if (freeSegmentId == -1) {
+                    freeSegmentId = segmentId;
+                }
+                continue;
+            }
+
+            final DataBlock segmentBlock = segment.write(data, this.maxSegmentSize);
+            if (segmentBlock != null) {
+                return DataBlock.inSegment(segmentId, segmentBlock);
+            }
+        }
+
+        if (freeSegmentId == -1) {
+            freeSegmentId = segments.length;
+        }
+        final DataFile segment = this.getOrCreateSegment(freeSegmentId);
+
+        return DataBlock.inSegment(freeSegmentId, segment.write(data));
+    }
+
+    /**
+     * Overwrites the data of an allocated block in place.
+     *
+     * @param dataBlock The block to overwrite.
+     * @param data      The new data, must match the length of the block.
+     * @throws IOException Thrown if writing fails.
+     */
+    public void write(final DataBlock dataBlock, final byte[] data) throws IOException
+    {
+        this.getSegment(dataBlock.getSegment()).write(dataBlock.toSegmentBlock(), data);
+    }
+
+    private DataFile getSegment(final int segmentId)
+    {
+        final DataFile[] segments = this.segments;
+        if (segmentId >= segments.length || segments[segmentId] == null) {
+            throw new RuntimeException("Segment not found: " + segmentId);
+        }
+
+        return segments[segmentId];
+    }
+
+    private DataFile getOrCreateSegment(final int segmentId) throws FileNotFoundException
+    {
+        DataFile[] segments = this.segments;
+        if (segmentId < segments.length && segments[segmentId] != null) {
+            return segments[segmentId];
+        }
+
+        final File file = this.getSegmentFile(segmentId);
+        this.logger.info("Creating segment {}", file);
+        final DataFile segment = new DataFile(file);
+
+        segments = Arrays.copyOf(segments, Math.max(segments.length, segmentId + 1));
+        segments[segmentId] = segment;
+        this.segments = segments;
+
+        return segment;
+    }
+
+    private void releaseIfEmpty(final int segmentId)
+    {
+        final DataFile[] segments = this.segments;
+        final DataFile segment = segments[segmentId];
+        if (segmentId == 0 || segment == null || segment.getNumAllocated() > 0) {
+            return;
+        }
+
+        final DataFile[] newSegments = Arrays.copyOf(segments, segments.length);
+        newSegments[segmentId] = null;
+        this.segments = newSegments;
+
+        final File file = this.getSegmentFile(segmentId);
+        this.logger.info("Deleting empty segment {}", file);
+        try {
+            segment.close();
+        } catch (IOException e) {
+            this.logger.error("Closing segment " + file + " failed", e);
+        }
+        if (!file.delete()) {
+            this.logger.error("Deleting segment " + file + " failed");
+        }
+    }
+}
@@ -17,6 +17,7 @@
  */
 package net.dontdrinkandroot.cache.impl.memory;
 
+import net.dontdrinkandroot.cache.Cache;
 import net.dontdrinkandroot.cache.CacheException;
 import net.dontdrinkandroot.cache.impl.AbstractMapBackedCustomTtlCache;
 import net.dontdrinkandroot.cache.metadata.impl.SimpleMetaData;
@@ -58,7 +59,7 @@ public class MemoryCache<K, V> extends AbstractMapBackedCustomTtlCache<K, V, Sim
     protected <T extends V> T doPut(final K key, final T data, final long timeToLive, final long maxIdleTime)
             throws CacheException
     {
-        final SimpleMetaData metaData = new SimpleMetaData(timeToLive);
+        final SimpleMetaData metaData = new SimpleMetaData(this.getTicker(), timeToLive, Cache.UNLIMITED_IDLE_TIME);
         this.putEntry(key, metaData);
         this.dataMap.put(key, data);
 
@@ -76,6 +77,15 @@ public class MemoryCache<K, V> extends AbstractMapBackedCustomTtlCache<K, V, Sim
         this.dataMap.remove(key);
     }
 
+    /**
+     * The data is removed from the cache, so it can be handed to the removal listeners without copying it.
+     */
+    @Override
+    protected V getRemovedValue(final K key, final SimpleMetaData metaData)
+    {
+        return this.dataMap.get(key);
+    }
+
     @Override
     protected <T extends V> T doGet(K key, final SimpleMetaData metaData) throws CacheException
     {
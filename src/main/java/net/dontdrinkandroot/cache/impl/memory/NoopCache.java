@@ -23,6 +23,12 @@ import net.dontdrinkandroot.cache.metadata.MetaData;
 import net.dontdrinkandroot.cache.statistics.CacheStatistics;
 import net.dontdrinkandroot.cache.statistics.impl.SimpleCacheStatistics;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
 /**
  * A serializable cache that does not actually perform any caching operation.
  *
@@ -50,6 +56,26 @@ public class NoopCache<K, V> implements CustomTtlCache<K, V>
         return null;
     }
 
+    @Override
+    public <T extends V> T get(final K key, final Function<? super K, T> loader)
+    {
+        try {
+            return loader.apply(key);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public <T extends V> T getWithErrors(final K key, final Function<? super K, T> loader) throws CacheException
+    {
+        try {
+            return loader.apply(key);
+        } catch (RuntimeException e) {
+            throw new CacheException(e);
+        }
+    }
+
     @Override
     public MetaData getMetaData(K key) throws CacheException
     {
@@ -136,6 +162,54 @@ public class NoopCache<K, V> implements CustomTtlCache<K, V>
         return data;
     }
 
+    @Override
+    public Map<K, V> putAll(Map<? extends K, ? extends V> entries)
+    {
+        return new LinkedHashMap<>(entries);
+    }
+
+    @Override
+    public Map<K, V> putAllWithErrors(Map<? extends K, ? extends V> entries) throws CacheException
+    {
+        return new LinkedHashMap<>(entries);
+    }
+
+    @Override
+    public Map<K, V> putAll(Map<? extends K, ? extends V> entries, long timeToLive)
+    {
+        return new LinkedHashMap<>(entries);
+    }
+
+    @Override
+    public Map<K, V> putAllWithErrors(Map<? extends K, ? extends V> entries, long timeToLive) throws CacheException
+    {
+        return new LinkedHashMap<>(entries);
+    }
+
+    @Override
+    public Map<K, V> putAllWithErrors(Map<? extends K, ? extends V> entries, long timeToLive, long maxIdleTime)
+            throws CacheException
+    {
+        return new LinkedHashMap<>(entries);
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys)
+    {
+        return new HashMap<>();
+    }
+
+    @Override
+    public Map<K, V> getAllWithErrors(Collection<? extends K> keys) throws CacheException
+    {
+        return new HashMap<>();
+    }
+
+    @Override
+    public void deleteAll(Collection<? extends K> keys) throws CacheException
+    {
+    }
+
     @Override
     public void cleanUp() throws CacheException
     {
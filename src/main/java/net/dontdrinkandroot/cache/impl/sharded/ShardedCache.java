@@ -0,0 +1,470 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.impl.sharded;
+
+import net.dontdrinkandroot.cache.CacheException;
+import net.dontdrinkandroot.cache.CustomTtlCache;
+import net.dontdrinkandroot.cache.impl.AbstractCache;
+import net.dontdrinkandroot.cache.metadata.MetaData;
+import net.dontdrinkandroot.cache.statistics.CacheStatistics;
+import net.dontdrinkandroot.cache.statistics.impl.AggregatedCacheStatistics;
+import net.dontdrinkandroot.cache.time.Ticker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Partitions the keys by their hash code across a number of independent caches, e.g. one
+ * {@link net.dontdrinkandroot.cache.impl.disk.indexed.SerializableIndexedDiskCache} per subdirectory of a base
+ * directory, so that operations on different shards do not contend for the same lock, files or writer thread. Bulk
+ * operations are split by shard and executed on the shards in parallel.
+ * <p>
+ * Puts without an explicit time to live use the default time to live of the shard.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class ShardedCache<K, V> extends AbstractCache<K, V> implements CustomTtlCache<K, V>, Closeable
+{
+    private final List<CustomTtlCache<K, V>> shards;
+
+    private final Executor executor;
+
+    private final AggregatedCacheStatistics statistics;
+
+    /**
+     * Construct a new {@link ShardedCache} that executes bulk operations on the common {@link ForkJoinPool}.
+     *
+     * @param name         The name of the cache.
+     * @param numShards    The number of shards.
+     * @param shardFactory Creates the shard with the given index.
+     * @throws IOException Thrown if creating a shard failed, the shards created so far are closed.
+     */
+    public ShardedCache(final String name, final int numShards, final ShardFactory<K, V> shardFactory)
+            throws IOException
+    {
+        this(name, ShardedCache.createShards(numShards, shardFactory), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construct a new {@link ShardedCache}.
+     *
+     * @param name     The name of the cache.
+     * @param shards   The caches to partition the keys across, must not be empty.
+     * @param executor The executor that performs the operations on the individual shards of bulk operations.
+     */
+    public ShardedCache(final String name, final List<? extends CustomTtlCache<K, V>> shards, final Executor executor)
+    {
+        super(name, shards.get(0).getDefaultTtl(), shards.get(0).getDefaultMaxIdleTime());
+
+        this.shards = new ArrayList<>(shards);
+        this.executor = executor;
+        this.statistics = new AggregatedCacheStatistics(this.shards);
+    }
+
+    @Override
+    public <T extends V> T put(final K key, final T data)
+    {
+        return this.getShard(key).put(key, data);
+    }
+
+    @Override
+    public <T extends V> T putWithErrors(final K key, final T data) throws CacheException
+    {
+        return this.getShard(key).putWithErrors(key, data);
+    }
+
+    @Override
+    public <T extends V> T put(final K key, final T data, final long timeToLive)
+    {
+        return this.getShard(key).put(key, data, timeToLive);
+    }
+
+    @Override
+    public <T extends V> T putWithErrors(final K key, final T data, final long timeToLive) throws CacheException
+    {
+        return this.getShard(key).putWithErrors(key, data, timeToLive);
+    }
+
+    @Override
+    public <T extends V> T put(final K key, final T data, final long timeToLive, final long maxIdleTime)
+    {
+        return this.getShard(key).put(key, data, timeToLive, maxIdleTime);
+    }
+
+    @Override
+    public <T extends V> T putWithErrors(final K key, final T data, final long timeToLive, final long maxIdleTime)
+            throws CacheException
+    {
+        return this.getShard(key).putWithErrors(key, data, timeToLive, maxIdleTime);
+    }
+
+    @Override
+    public <T extends V> T get(final K key)
+    {
+        return this.getShard(key).get(key);
+    }
+
+    @Override
+    public <T extends V> T getWithErrors(final K key) throws CacheException
+    {
+        return this.getShard(key).getWithErrors(key);
+    }
+
+    @Override
+    public MetaData getMetaData(final K key) throws CacheException
+    {
+        return this.getShard(key).getMetaData(key);
+    }
+
+    @Override
+    public void delete(final K key) throws CacheException
+    {
+        this.getShard(key).delete(key);
+    }
+
+    @Override
+    public Map<K, V> putAll(final Map<? extends K, ? extends V> entries)
+    {
+        try {
+            return this.putAllWithErrors(entries);
+        } catch (CacheException e) {
+            this.getLogger().warn(this.getName() + ": Putting " + entries.size() + " entries to cache failed", e);
+            return new LinkedHashMap<>(entries);
+        }
+    }
+
+    @Override
+    public Map<K, V> putAllWithErrors(final Map<? extends K, ? extends V> entries) throws CacheException
+    {
+        return this.putAllPerShard(entries, CustomTtlCache::putAllWithErrors);
+    }
+
+    @Override
+    public Map<K, V> putAll(final Map<? extends K, ? extends V> entries, final long timeToLive)
+    {
+        try {
+            return this.putAllWithErrors(entries, timeToLive);
+        } catch (CacheException e) {
+            this.getLogger().warn(this.getName() + ": Putting " + entries.size() + " entries to cache failed", e);
+            return new LinkedHashMap<>(entries);
+        }
+    }
+
+    @Override
+    public Map<K, V> putAllWithErrors(final Map<? extends K, ? extends V> entries, final long timeToLive)
+            throws CacheException
+    {
+        return this.putAllPerShard(entries, (shard, shardEntries) -> shard.putAllWithErrors(shardEntries, timeToLive));
+    }
+
+    @Override
+    public Map<K, V> putAllWithErrors(
+            final Map<? extends K, ? extends V> entries,
+            final long timeToLive,
+            final long maxIdleTime
+    ) throws CacheException
+    {
+        return this.putAllPerShard(
+                entries,
+                (shard, shardEntries) -> shard.putAllWithErrors(shardEntries, timeToLive, maxIdleTime)
+        );
+    }
+
+    @Override
+    public Map<K, V> getAll(final Collection<? extends K> keys)
+    {
+        try {
+            return this.getAllWithErrors(keys);
+        } catch (CacheException e) {
+            this.getLogger().error(this.getName() + ": Getting " + keys.size() + " entries from cache failed", e);
+            return new HashMap<>();
+        }
+    }
+
+    @Override
+    public Map<K, V> getAllWithErrors(final Collection<? extends K> keys) throws CacheException
+    {
+        final Map<K, V> found = new HashMap<>();
+        for (final Map<K, V> shardResult : this.executePerShard(
+                this.partition(keys),
+                CustomTtlCache::getAllWithErrors
+        )) {
+            found.putAll(shardResult);
+        }
+
+        /* Restore the order of the requested keys */
+        final Map<K, V> result = new LinkedHashMap<>();
+        for (final K key : keys) {
+            final V value = found.get(key);
+            if (null != value) {
+                result.put(key, value);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void deleteAll(final Collection<? extends K> keys) throws CacheException
+    {
+        this.executePerShard(this.partition(keys), (shard, shardKeys) -> {
+            shard.deleteAll(shardKeys);
+            return null;
+        });
+    }
+
+    @Override
+    public void expunge() throws CacheException
+    {
+        this.executePerShard(this.partitionAll(), (shard, none) -> {
+            shard.expunge();
+            return null;
+        });
+    }
+
+    @Override
+    public void cleanUp() throws CacheException
+    {
+        this.executePerShard(this.partitionAll(), (shard, none) -> {
+            shard.cleanUp();
+            return null;
+        });
+    }
+
+    /**
+     * The statistics sum up the statistics of all shards.
+     */
+    @Override
+    public CacheStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    /**
+     * Sets the ticker of all shards that are {@link AbstractCache}s as well.
+     */
+    @Override
+    public void setTicker(final Ticker ticker)
+    {
+        super.setTicker(ticker);
+        for (final CustomTtlCache<K, V> shard : this.shards) {
+            if (shard instanceof AbstractCache) {
+                ((AbstractCache<?, ?>) shard).setTicker(ticker);
+            }
+        }
+    }
+
+    public List<CustomTtlCache<K, V>> getShards()
+    {
+        return Collections.unmodifiableList(this.shards);
+    }
+
+    /**
+     * Get the shard that is responsible for the given key.
+     */
+    public CustomTtlCache<K, V> getShard(final K key)
+    {
+        return this.shards.get(this.getShardIndex(key));
+    }
+
+    /**
+     * Closes all shards that are {@link Closeable}, e.g. disk caches.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        IOException failure = null;
+        for (final CustomTtlCache<K, V> shard : this.shards) {
+            if (shard instanceof Closeable) {
+                try {
+                    ((Closeable) shard).close();
+                } catch (IOException e) {
+                    if (null == failure) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+
+        this.unregisterMXBean();
+
+        if (null != failure) {
+            throw failure;
+        }
+    }
+
+    protected int getShardIndex(final K key)
+    {
+        if (null == key) {
+            /* Let the shard reject the key */
+            return 0;
+        }
+
+        /* Spread the higher bits as hash codes often differ in them only */
+        final int hash = key.hashCode();
+
+        return Math.floorMod(hash ^ (hash >>> 16), this.shards.size());
+    }
+
+    private Map<Integer, List<K>> partition(final Collection<? extends K> keys)
+    {
+        final Map<Integer, List<K>> partitions = new HashMap<>();
+        for (final K key : keys) {
+            partitions.computeIfAbsent(this.getShardIndex(key), index -> new ArrayList<>()).add(key);
+        }
+
+        return partitions;
+    }
+
+    private Map<Integer, Void> partitionAll()
+    {
+        final Map<Integer, Void> partitions = new HashMap<>();
+        for (int i = 0; i < this.shards.size(); i++) {
+            partitions.put(i, null);
+        }
+
+        return partitions;
+    }
+
+    private Map<K, V> putAllPerShard(
+            final Map<? extends K, ? extends V> entries,
+            final ShardOperation<K, V, Map<K, V>, Map<K, V>> operation
+    ) throws CacheException
+    {
+        final Map<Integer, Map<K, V>> partitions = new HashMap<>();
+        for (final Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            partitions.computeIfAbsent(this.getShardIndex(entry.getKey()), index -> new LinkedHashMap<>())
+                    .put(entry.getKey(), entry.getValue());
+        }
+
+        final Map<K, V> result = new LinkedHashMap<>();
+        for (final Map<K, V> shardResult : this.executePerShard(partitions, operation)) {
+            result.putAll(shardResult);
+        }
+
+        return result;
+    }
+
+    /**
+     * Executes the operation on all shards that are part of the partitions. A single shard is handled on the calling
+     * thread, otherwise the shards are processed in parallel on the executor and all of them are awaited before the
+     * first failure is rethrown.
+     */
+    private <T, R> List<R> executePerShard(
+            final Map<Integer, T> partitions,
+            final ShardOperation<K, V, T, R> operation
+    ) throws CacheException
+    {
+        final List<R> results = new ArrayList<>();
+        if (partitions.isEmpty()) {
+            return results;
+        }
+
+        if (partitions.size() == 1) {
+            final Map.Entry<Integer, T> partition = partitions.entrySet().iterator().next();
+            results.add(operation.execute(this.shards.get(partition.getKey()), partition.getValue()));
+            return results;
+        }
+
+        final List<CompletableFuture<R>> futures = new ArrayList<>();
+        for (final Map.Entry<Integer, T> partition : partitions.entrySet()) {
+            final CustomTtlCache<K, V> shard = this.shards.get(partition.getKey());
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return operation.execute(shard, partition.getValue());
+                } catch (CacheException e) {
+                    throw new CompletionException(e);
+                }
+            }, this.executor));
+        }
+
+        CacheException failure = null;
+        for (final CompletableFuture<R> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                final CacheException cause = e.getCause() instanceof CacheException
+                        ? (CacheException) e.getCause()
+                        : new CacheException(e.getCause());
+                if (null == failure) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+
+        if (null != failure) {
+            throw failure;
+        }
+
+        return results;
+    }
+
+    private static <K, V> List<CustomTtlCache<K, V>> createShards(
+            final int numShards,
+            final ShardFactory<K, V> shardFactory
+    ) throws IOException
+    {
+        if (numShards < 1) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+
+        final List<CustomTtlCache<K, V>> shards = new ArrayList<>(numShards);
+        try {
+            for (int i = 0; i < numShards; i++) {
+                shards.add(shardFactory.createShard(i));
+            }
+        } catch (IOException e) {
+            for (final CustomTtlCache<K, V> shard : shards) {
+                if (shard instanceof Closeable) {
+                    try {
+                        ((Closeable) shard).close();
+                    } catch (IOException closeException) {
+                        e.addSuppressed(closeException);
+                    }
+                }
+            }
+            throw e;
+        }
+
+        return shards;
+    }
+
+    /**
+     * Creates the shards of a {@link ShardedCache}, e.g. a disk cache in a subdirectory named after the index.
+     */
+    @FunctionalInterface
+    public interface ShardFactory<K, V>
+    {
+        CustomTtlCache<K, V> createShard(int index) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface ShardOperation<K, V, T, R>
+    {
+        R execute(CustomTtlCache<K, V> shard, T partition) throws CacheException;
+    }
+}
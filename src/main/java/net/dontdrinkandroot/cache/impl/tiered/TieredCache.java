@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.impl.tiered;
+
+import net.dontdrinkandroot.cache.CacheException;
+import net.dontdrinkandroot.cache.eviction.impl.LruEvictionPolicy;
+import net.dontdrinkandroot.cache.impl.AbstractCache;
+import net.dontdrinkandroot.cache.impl.AbstractMapBackedCustomTtlCache;
+import net.dontdrinkandroot.cache.listener.RemovalCause;
+import net.dontdrinkandroot.cache.listener.RemovalNotification;
+import net.dontdrinkandroot.cache.metadata.MetaData;
+import net.dontdrinkandroot.cache.statistics.CacheStatistics;
+import net.dontdrinkandroot.cache.statistics.LatencyMetric;
+import net.dontdrinkandroot.cache.statistics.impl.ConcurrentCacheStatistics;
+import net.dontdrinkandroot.cache.time.Ticker;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Combines a fast first tier (e.g. a {@link net.dontdrinkandroot.cache.impl.memory.MemoryCache}) with a large second
+ * tier (e.g. a disk cache). The tiers are exclusive: entries the first tier evicts due to its size are demoted to the
+ * second tier asynchronously, entries found in the second tier are promoted back to the first tier. Demoted and
+ * promoted entries keep their expiry and max idle time.
+ * <p>
+ * The first tier is switched to a {@link LruEvictionPolicy} and reports its removals to the tiered cache while it is
+ * locked, so evicted entries are never missing from both tiers. Writing to the second tier happens on the demotion
+ * executor. Each tier keeps its own statistics, the statistics of the tiered cache reflect the combined view.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class TieredCache<K, V> extends AbstractCache<K, V>
+{
+    private final AbstractMapBackedCustomTtlCache<K, V, ?> firstTier;
+
+    private final AbstractMapBackedCustomTtlCache<K, V, ?> secondTier;
+
+    private final Executor demotionExecutor;
+
+    /**
+     * Entries evicted from the first tier that were not written to the second tier yet.
+     */
+    private final ConcurrentMap<K, RemovalNotification<K, V>> pendingDemotions = new ConcurrentHashMap<>();
+
+    private final ConcurrentCacheStatistics statistics = new ConcurrentCacheStatistics();
+
+    public TieredCache(
+            final String name,
+            final AbstractMapBackedCustomTtlCache<K, V, ?> firstTier,
+            final AbstractMapBackedCustomTtlCache<K, V, ?> secondTier
+    )
+    {
+        this(name, firstTier, secondTier, ForkJoinPool.commonPool());
+    }
+
+    public TieredCache(
+            final String name,
+            final AbstractMapBackedCustomTtlCache<K, V, ?> firstTier,
+            final AbstractMapBackedCustomTtlCache<K, V, ?> secondTier,
+            final Executor demotionExecutor
+    )
+    {
+        super(name, firstTier.getDefaultTtl(), firstTier.getDefaultMaxIdleTime());
+
+        this.firstTier = firstTier;
+        this.secondTier = secondTier;
+        this.demotionExecutor = demotionExecutor;
+
+        this.useLruEviction(firstTier);
+        firstTier.setSynchronousRemovalListener(this::scheduleDemotion);
+    }
+
+    @Override
+    public <T extends V> T put(final K key, final T data)
+    {
+        try {
+            return this.putWithErrors(key, data);
+        } catch (CacheException e) {
+            this.getLogger().warn(this.getName() + ": Putting " + key + " to cache failed", e);
+            return data;
+        }
+    }
+
+    @Override
+    public synchronized <T extends V> T putWithErrors(final K key, final T data) throws CacheException
+    {
+        final long start = System.nanoTime();
+        try {
+
+            /* Discard older versions in the lower tier */
+            this.pendingDemotions.remove(key);
+            this.secondTier.delete(key);
+
+            final T result = this.firstTier.putWithErrors(key, data, this.getDefaultTtl(), this.getDefaultMaxIdleTime());
+            this.statistics.increasePutCount();
+
+            return result;
+        } finally {
+            this.recordLatency(LatencyMetric.PUT, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T extends V> T get(final K key)
+    {
+        try {
+            return this.getWithErrors(key);
+        } catch (CacheException e) {
+            this.getLogger().error(this.getName() + ": Getting " + key + " from cache failed", e);
+            return null;
+        }
+    }
+
+    /**
+     * Hits of the first tier do not acquire the lock of the tiered cache.
+     */
+    @Override
+    public <T extends V> T getWithErrors(final K key) throws CacheException
+    {
+        final long start = System.nanoTime();
+        try {
+
+            T result = this.firstTier.getWithErrors(key);
+            if (null == result) {
+                synchronized (this) {
+                    result = this.getFromLowerTier(key);
+                }
+            }
+
+            this.statistics.increaseGetCount();
+            if (null == result) {
+                this.statistics.increaseCacheMissesNotFound();
+            } else {
+                this.statistics.increaseCacheHits();
+            }
+
+            return result;
+        } finally {
+            this.recordLatency(LatencyMetric.GET, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Map<K, V> putAll(final Map<? extends K, ? extends V> entries)
+    {
+        try {
+            return this.putAllWithErrors(entries);
+        } catch (CacheException e) {
+            this.getLogger().warn(this.getName() + ": Putting " + entries.size() + " entries to cache failed", e);
+            return new LinkedHashMap<>(entries);
+        }
+    }
+
+    @Override
+    public synchronized Map<K, V> putAllWithErrors(final Map<? extends K, ? extends V> entries)
+            throws CacheException
+    {
+        final Map<K, V> result = new LinkedHashMap<>();
+        for (final Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            result.put(entry.getKey(), this.putWithErrors(entry.getKey(), entry.getValue()));
+        }
+
+        return result;
+    }
+
+    @Override
+    public Map<K, V> getAll(final Collection<? extends K> keys)
+    {
+        try {
+            return this.getAllWithErrors(keys);
+        } catch (CacheException e) {
+            this.getLogger().error(this.getName() + ": Getting " + keys.size() + " entries from cache failed", e);
+            return new HashMap<>();
+        }
+    }
+
+    @Override
+    public Map<K, V> getAllWithErrors(final Collection<? extends K> keys) throws CacheException
+    {
+        final Map<K, V> result = new LinkedHashMap<>();
+        for (final K key : new LinkedHashSet<K>(keys)) {
+            final V value = this.getWithErrors(key);
+            if (null != value) {
+                result.put(key, value);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized MetaData getMetaData(final K key) throws CacheException
+    {
+        final MetaData metaData = this.firstTier.getMetaData(key);
+        if (null != metaData) {
+            return metaData;
+        }
+
+        final RemovalNotification<K, V> demotion = this.pendingDemotions.get(key);
+        if (null != demotion && !demotion.getMetaData().isExpired(this.getTicker().currentTimeMillis())) {
+            return demotion.getMetaData();
+        }
+
+        return this.secondTier.getMetaData(key);
+    }
+
+    @Override
+    public synchronized void delete(final K key) throws CacheException
+    {
+        final long start = System.nanoTime();
+        try {
+            this.pendingDemotions.remove(key);
+            this.firstTier.delete(key);
+            this.secondTier.delete(key);
+        } finally {
+            this.recordLatency(LatencyMetric.DELETE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public synchronized void deleteAll(final Collection<? extends K> keys) throws CacheException
+    {
+        for (final K key : keys) {
+            this.delete(key);
+        }
+    }
+
+    @Override
+    public void expunge() throws CacheException
+    {
+        this.firstTier.expunge();
+        this.secondTier.expunge();
+    }
+
+    @Override
+    public void cleanUp() throws CacheException
+    {
+        this.firstTier.cleanUp();
+        this.secondTier.cleanUp();
+    }
+
+    /**
+     * Sets the ticker of both tiers as well.
+     */
+    @Override
+    public void setTicker(final Ticker ticker)
+    {
+        super.setTicker(ticker);
+        this.firstTier.setTicker(ticker);
+        this.secondTier.setTicker(ticker);
+    }
+
+    /**
+     * The sizes are the sums of the sizes of the tiers.
+     */
+    @Override
+    public CacheStatistics getStatistics()
+    {
+        this.statistics.setCurrentSize(
+                this.firstTier.getStatistics().getCurrentSize() + this.secondTier.getStatistics().getCurrentSize()
+        );
+
+        return this.statistics;
+    }
+
+    public CacheStatistics getFirstTierStatistics()
+    {
+        return this.firstTier.getStatistics();
+    }
+
+    public CacheStatistics getSecondTierStatistics()
+    {
+        return this.secondTier.getStatistics();
+    }
+
+    public AbstractMapBackedCustomTtlCache<K, V, ?> getFirstTier()
+    {
+        return this.firstTier;
+    }
+
+    public AbstractMapBackedCustomTtlCache<K, V, ?> getSecondTier()
+    {
+        return this.secondTier;
+    }
+
+    /**
+     * Get the number of entries that were evicted from the first tier but not yet written to the second tier.
+     */
+    public int getPendingDemotions()
+    {
+        return this.pendingDemotions.size();
+    }
+
+    @Override
+    protected void recordLatency(final LatencyMetric metric, final long nanos)
+    {
+        this.statistics.recordLatency(metric, nanos);
+    }
+
+    /**
+     * Looks up an entry that is not in the first tier and promotes it if found.
+     */
+    private <T extends V> T getFromLowerTier(final K key) throws CacheException
+    {
+        /* Evicted but not demoted yet, move it straight back */
+        final RemovalNotification<K, V> demotion = this.pendingDemotions.remove(key);
+        if (null != demotion) {
+            return this.promote(key, demotion.getValue(), demotion.getMetaData());
+        }
+
+        final MetaData metaData = this.secondTier.getMetaData(key);
+        if (null == metaData) {
+            return null;
+        }
+
+        final V value = this.secondTier.getWithErrors(key);
+        if (null == value) {
+            return null;
+        }
+
+        this.secondTier.delete(key);
+
+        return this.promote(key, value, metaData);
+    }
+
+    private <T extends V> T promote(final K key, final V value, final MetaData metaData) throws CacheException
+    {
+        final long timeToLive = metaData.getExpiry() - this.getTicker().currentTimeMillis();
+        if (timeToLive <= 0) {
+            return null;
+        }
+
+        this.getLogger().trace(this.getName() + ": Promoting '{}'", key);
+
+        @SuppressWarnings("unchecked")
+        final T result = (T) this.firstTier.putWithErrors(key, value, timeToLive, metaData.getMaxIdleTime());
+
+        return result;
+    }
+
+    /**
+     * Called while the first tier holds its lock, so only registers the demotion and leaves writing to the second
+     * tier to the executor.
+     */
+    private void scheduleDemotion(final RemovalNotification<K, V> notification)
+    {
+        if (RemovalCause.SIZE != notification.getCause() || null == notification.getValue()) {
+            return;
+        }
+
+        this.pendingDemotions.put(notification.getKey(), notification);
+        try {
+            this.demotionExecutor.execute(() -> this.demote(notification));
+        } catch (RejectedExecutionException e) {
+            this.getLogger().warn(this.getName() + ": Scheduling demotion of " + notification.getKey() + " failed", e);
+            this.pendingDemotions.remove(notification.getKey(), notification);
+        }
+    }
+
+    private synchronized void demote(final RemovalNotification<K, V> notification)
+    {
+        /* Skip if the entry was promoted, replaced or deleted in the meantime */
+        if (!this.pendingDemotions.remove(notification.getKey(), notification)) {
+            return;
+        }
+
+        final MetaData metaData = notification.getMetaData();
+        final long timeToLive = metaData.getExpiry() - this.getTicker().currentTimeMillis();
+        if (timeToLive <= 0) {
+            return;
+        }
+
+        this.getLogger().trace(this.getName() + ": Demoting '{}'", notification.getKey());
+        try {
+            this.secondTier.putWithErrors(
+                    notification.getKey(),
+                    notification.getValue(),
+                    timeToLive,
+                    metaData.getMaxIdleTime()
+            );
+        } catch (CacheException e) {
+            this.getLogger().warn(this.getName() + ": Demoting " + notification.getKey() + " failed", e);
+        }
+    }
+
+    private <M extends MetaData> void useLruEviction(final AbstractMapBackedCustomTtlCache<K, V, M> cache)
+    {
+        cache.setEvictionPolicy(new LruEvictionPolicy<>());
+    }
+}
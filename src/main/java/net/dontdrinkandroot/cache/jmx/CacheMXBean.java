@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.jmx;
+
+import java.util.Map;
+
+/**
+ * Management interface that every cache registers with the platform MBean server.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public interface CacheMXBean
+{
+    String getName();
+
+    long getDefaultTtl();
+
+    void setDefaultTtl(long defaultTtl);
+
+    long getDefaultMaxIdleTime();
+
+    /**
+     * Get the maximum number of entries, -1 if the cache is not limited in size.
+     */
+    int getMaxSize();
+
+    void setMaxSize(int maxSize);
+
+    /**
+     * Get how many entries can be added on top of the maximum size before expunge is triggered, -1 if the cache
+     * is not limited in size.
+     */
+    int getRecycleSize();
+
+    void setRecycleSize(int recycleSize);
+
+    int getSize();
+
+    long getGetCount();
+
+    long getPutCount();
+
+    long getCacheHits();
+
+    long getCacheMissesNotFound();
+
+    long getCacheMissesExpired();
+
+    long getStaleHits();
+
+    long getEvictions();
+
+    float getHitRate();
+
+    /**
+     * Get the 50th, 99th and 99.9th percentile of the latencies in nanoseconds, keyed by operation and percentile,
+     * e.g. "GET.p99".
+     */
+    Map<String, Long> getLatencyPercentiles();
+
+    void resetStatistics();
+
+    void expunge() throws Exception;
+
+    void cleanUp() throws Exception;
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.jmx;
+
+import net.dontdrinkandroot.cache.impl.disk.indexed.Durability;
+
+/**
+ * Management interface of the indexed disk caches.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public interface IndexedDiskCacheMXBean extends CacheMXBean
+{
+    int getWriteQueueLength();
+
+    int getQueueSizeWarningLimit();
+
+    void setQueueSizeWarningLimit(int queueSizeWarningLimit);
+
+    boolean isWriterThreadAlive();
+
+    Durability getDurability();
+
+    void setDurability(Durability durability);
+
+    /**
+     * Get the length of the data file in bytes.
+     */
+    long getDataFileLength();
+
+    /**
+     * Get the number of bytes of the data file that are occupied by entries.
+     */
+    long getDataFileAllocated();
+
+    /**
+     * Get the ratio of allocated bytes to the length of the data file, a value in [0,1].
+     */
+    float getDataFileUtilization();
+
+    /**
+     * Get the number of segment files the data file is split into.
+     */
+    int getDataFileSegments();
+
+    void flush();
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.jmx.impl;
+
+import net.dontdrinkandroot.cache.impl.disk.indexed.BufferedSerializableIndexedDiskCache;
+import net.dontdrinkandroot.cache.jmx.BufferedIndexedDiskCacheMXBean;
+
+/**
+ * Exposes a {@link BufferedSerializableIndexedDiskCache} as {@link BufferedIndexedDiskCacheMXBean}.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class BufferedIndexedDiskCacheMXBeanAdapter extends IndexedDiskCacheMXBeanAdapter
+        implements BufferedIndexedDiskCacheMXBean
+{
+    private final BufferedSerializableIndexedDiskCache<?, ?> cache;
+
+    public BufferedIndexedDiskCacheMXBeanAdapter(final BufferedSerializableIndexedDiskCache<?, ?> cache)
+    {
+        super(cache);
+        this.cache = cache;
+    }
+
+    @Override
+    public int getBufferSize()
+    {
+        return this.cache.getBufferSize();
+    }
+
+    @Override
+    public void setBufferSize(final int bufferSize)
+    {
+        this.cache.setBufferSize(bufferSize);
+    }
+
+    @Override
+    public int getBufferCurrentSize()
+    {
+        return this.cache.getBufferStatistics().getCurrentSize();
+    }
+
+    @Override
+    public long getBufferHits()
+    {
+        return this.cache.getBufferStatistics().getCacheHits();
+    }
+
+    @Override
+    public long getBufferMisses()
+    {
+        return this.cache.getBufferStatistics().getCacheMisses();
+    }
+
+    @Override
+    public float getBufferHitRate()
+    {
+        return this.cache.getBufferStatistics().getHitRate();
+    }
+}
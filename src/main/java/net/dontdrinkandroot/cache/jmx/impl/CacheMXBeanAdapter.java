@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.jmx.impl;
+
+import net.dontdrinkandroot.cache.RecyclingCache;
+import net.dontdrinkandroot.cache.impl.AbstractCache;
+import net.dontdrinkandroot.cache.jmx.CacheMXBean;
+import net.dontdrinkandroot.cache.statistics.CacheStatistics;
+import net.dontdrinkandroot.cache.statistics.Histogram;
+import net.dontdrinkandroot.cache.statistics.LatencyMetric;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exposes an {@link AbstractCache} as {@link CacheMXBean}.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class CacheMXBeanAdapter implements CacheMXBean
+{
+    private final AbstractCache<?, ?> cache;
+
+    public CacheMXBeanAdapter(final AbstractCache<?, ?> cache)
+    {
+        this.cache = cache;
+    }
+
+    @Override
+    public String getName()
+    {
+        return this.cache.getName();
+    }
+
+    @Override
+    public long getDefaultTtl()
+    {
+        return this.cache.getDefaultTtl();
+    }
+
+    @Override
+    public void setDefaultTtl(final long defaultTtl)
+    {
+        this.cache.setDefaultTtl(defaultTtl);
+    }
+
+    @Override
+    public long getDefaultMaxIdleTime()
+    {
+        return this.cache.getDefaultMaxIdleTime();
+    }
+
+    @Override
+    public int getMaxSize()
+    {
+        if (this.cache instanceof RecyclingCache) {
+            return ((RecyclingCache<?, ?>) this.cache).getMaxSize();
+        }
+
+        return -1;
+    }
+
+    @Override
+    public void setMaxSize(final int maxSize)
+    {
+        this.getRecyclingCache().setMaxSize(maxSize);
+    }
+
+    @Override
+    public int getRecycleSize()
+    {
+        if (this.cache instanceof RecyclingCache) {
+            return ((RecyclingCache<?, ?>) this.cache).getRecycleSize();
+        }
+
+        return -1;
+    }
+
+    @Override
+    public void setRecycleSize(final int recycleSize)
+    {
+        this.getRecyclingCache().setRecycleSize(recycleSize);
+    }
+
+    @Override
+    public int getSize()
+    {
+        return this.getStatistics().getCurrentSize();
+    }
+
+    @Override
+    public long getGetCount()
+    {
+        return this.getStatistics().getGetCount();
+    }
+
+    @Override
+    public long getPutCount()
+    {
+        return this.getStatistics().getPutCount();
+    }
+
+    @Override
+    public long getCacheHits()
+    {
+        return this.getStatistics().getCacheHits();
+    }
+
+    @Override
+    public long getCacheMissesNotFound()
+    {
+        return this.getStatistics().getCacheMissesNotFound();
+    }
+
+    @Override
+    public long getCacheMissesExpired()
+    {
+        return this.getStatistics().getCacheMissesExpired();
+    }
+
+    @Override
+    public long getStaleHits()
+    {
+        return this.getStatistics().getStaleHits();
+    }
+
+    @Override
+    public long getEvictions()
+    {
+        return this.getStatistics().getEvictions();
+    }
+
+    @Override
+    public float getHitRate()
+    {
+        return this.getStatistics().getHitRate();
+    }
+
+    @Override
+    public Map<String, Long> getLatencyPercentiles()
+    {
+        final Map<String, Long> percentiles = new LinkedHashMap<>();
+        for (final LatencyMetric metric : LatencyMetric.values()) {
+            final Histogram histogram = this.getStatistics().getLatency(metric);
+            percentiles.put(metric.name() + ".p50", histogram.getValueAtPercentile(50));
+            percentiles.put(metric.name() + ".p99", histogram.getValueAtPercentile(99));
+            percentiles.put(metric.name() + ".p999", histogram.getValueAtPercentile(99.9));
+        }
+
+        return percentiles;
+    }
+
+    @Override
+    public void resetStatistics()
+    {
+        this.getStatistics().reset();
+    }
+
+    @Override
+    public void expunge() throws Exception
+    {
+        this.cache.expunge();
+    }
+
+    @Override
+    public void cleanUp() throws Exception
+    {
+        this.cache.cleanUp();
+    }
+
+    protected CacheStatistics getStatistics()
+    {
+        return this.cache.getStatistics();
+    }
+
+    private RecyclingCache<?, ?> getRecyclingCache()
+    {
+        if (!(this.cache instanceof RecyclingCache)) {
+            throw new UnsupportedOperationException(this.cache.getName() + " is not limited in size");
+        }
+
+        return (RecyclingCache<?, ?>) this.cache;
+    }
+}
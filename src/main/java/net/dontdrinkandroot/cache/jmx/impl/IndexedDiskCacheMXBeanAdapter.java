@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.jmx.impl;
+
+import net.dontdrinkandroot.cache.impl.disk.indexed.AbstractIndexedDiskCache;
+import net.dontdrinkandroot.cache.impl.disk.indexed.Durability;
+import net.dontdrinkandroot.cache.jmx.IndexedDiskCacheMXBean;
+
+/**
+ * Exposes an {@link AbstractIndexedDiskCache} as {@link IndexedDiskCacheMXBean}.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class IndexedDiskCacheMXBeanAdapter extends CacheMXBeanAdapter implements IndexedDiskCacheMXBean
+{
+    private final AbstractIndexedDiskCache<?, ?> cache;
+
+    public IndexedDiskCacheMXBeanAdapter(final AbstractIndexedDiskCache<?, ?> cache)
+    {
+        super(cache);
+        this.cache = cache;
+    }
+
+    @Override
+    public int getWriteQueueLength()
+    {
+        return this.cache.getWriteQueueLength();
+    }
+
+    @Override
+    public int getQueueSizeWarningLimit()
+    {
+        return this.cache.getQueueSizeWarningLimit();
+    }
+
+    @Override
+    public void setQueueSizeWarningLimit(final int queueSizeWarningLimit)
+    {
+        this.cache.setQueueSizeWarningLimit(queueSizeWarningLimit);
+    }
+
+    @Override
+    public boolean isWriterThreadAlive()
+    {
+        return this.cache.isWriterThreadAlive();
+    }
+
+    @Override
+    public Durability getDurability()
+    {
+        return this.cache.getDurability();
+    }
+
+    @Override
+    public void setDurability(final Durability durability)
+    {
+        this.cache.setDurability(durability);
+    }
+
+    @Override
+    public long getDataFileLength()
+    {
+        return this.cache.getDataFileLength();
+    }
+
+    @Override
+    public long getDataFileAllocated()
+    {
+        return this.cache.getDataFileAllocated();
+    }
+
+    @Override
+    public float getDataFileUtilization()
+    {
+        final long length = this.getDataFileLength();
+        if (length == 0) {
+            return 1f;
+        }
+
+        return (float) this.getDataFileAllocated() / length;
+    }
+
+    @Override
+    public int getDataFileSegments()
+    {
+        return this.cache.getNumDataFileSegments();
+    }
+
+    @Override
+    public void flush()
+    {
+        this.cache.flush();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.listener;
+
+/**
+ * The reason why an entry was removed from a cache.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public enum RemovalCause
+{
+    /**
+     * The time to live of the entry was exceeded.
+     */
+    EXPIRED,
+
+    /**
+     * The entry was not accessed within its max idle time.
+     */
+    STALE,
+
+    /**
+     * The entry was evicted as the cache exceeded its maximum size.
+     */
+    SIZE,
+
+    /**
+     * The entry was overwritten by a put or a refresh.
+     */
+    REPLACED,
+
+    /**
+     * The entry was deleted by the user or because it could not be read.
+     */
+    EXPLICIT;
+
+    /**
+     * Checks if the entry was removed by the cache itself and not as a result of a modification by the user.
+     */
+    public boolean wasEvicted()
+    {
+        return this == EXPIRED || this == STALE || this == SIZE;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.listener;
+
+/**
+ * Gets notified about entries that were removed from a cache. Notifications are dispatched asynchronously after
+ * the removal took place, so implementations must be thread safe and must not expect the cache to reflect the state
+ * at the time of the removal.
+ *
+ * @param <K> Type of the keys.
+ * @param <V> Type of the values.
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+@FunctionalInterface
+public interface RemovalListener<K, V>
+{
+    void onRemoval(RemovalNotification<K, V> notification);
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.listener;
+
+import net.dontdrinkandroot.cache.metadata.MetaData;
+
+/**
+ * Describes an entry that was removed from a cache.
+ *
+ * @param <K> Type of the key.
+ * @param <V> Type of the value.
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class RemovalNotification<K, V>
+{
+    private final K key;
+
+    private final V value;
+
+    private final MetaData metaData;
+
+    private final RemovalCause cause;
+
+    public RemovalNotification(final K key, final V value, final MetaData metaData, final RemovalCause cause)
+    {
+        this.key = key;
+        this.value = value;
+        this.metaData = metaData;
+        this.cause = cause;
+    }
+
+    public K getKey()
+    {
+        return this.key;
+    }
+
+    /**
+     * Get the removed value. Only available if the cache holds its values in memory, e.g. null for entries that
+     * were only stored on disk as reading them back would slow down the removal.
+     */
+    public V getValue()
+    {
+        return this.value;
+    }
+
+    /**
+     * Get the metadata of the entry at the time of the removal.
+     */
+    public MetaData getMetaData()
+    {
+        return this.metaData;
+    }
+
+    public RemovalCause getCause()
+    {
+        return this.cause;
+    }
+
+    public boolean wasEvicted()
+    {
+        return this.cause.wasEvicted();
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.getClass().getSimpleName() + "[key=" + this.key + ",cause=" + this.cause + "]";
+    }
+}
@@ -27,12 +27,28 @@ public interface MetaData extends Serializable
     /**
      * Check if the entry is expired.
      */
-    boolean isExpired();
+    default boolean isExpired()
+    {
+        return this.isExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * Check if the entry is expired at the given time, see {@link net.dontdrinkandroot.cache.time.Ticker}.
+     */
+    boolean isExpired(long now);
 
     /**
      * Check if the entry has not been accessed within the idle period.
      */
-    boolean isStale();
+    default boolean isStale()
+    {
+        return this.isStale(System.currentTimeMillis());
+    }
+
+    /**
+     * Check if the entry has not been accessed within the idle period before the given time.
+     */
+    boolean isStale(long now);
 
     /**
      * Get the timestamp when the entry expires.
@@ -48,7 +64,15 @@ public interface MetaData extends Serializable
     /**
      * Update the entry after a cache hit.
      */
-    void update();
+    default void update()
+    {
+        this.update(System.currentTimeMillis());
+    }
+
+    /**
+     * Update the entry after a cache hit at the given time.
+     */
+    void update(long now);
 
     /**
      * Get the number of hits.
@@ -74,4 +98,25 @@ public interface MetaData extends Serializable
      * Gets the time to live of this entry (in milliseconds).
      */
     long getTimeToLive();
+
+    /**
+     * Check if the entry was served after it expired, either while being revalidated or because revalidation
+     * failed.
+     */
+    boolean isServedStale();
+
+    /**
+     * Flag that the entry was served after it expired.
+     */
+    void setServedStale(boolean servedStale);
+
+    /**
+     * Check if the last attempt to revalidate (reload) the expired entry failed.
+     */
+    boolean isRevalidationFailed();
+
+    /**
+     * Flag that the last attempt to revalidate (reload) the entry failed.
+     */
+    void setRevalidationFailed(boolean revalidationFailed);
 }
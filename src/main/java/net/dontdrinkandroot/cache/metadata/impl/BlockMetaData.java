@@ -29,10 +29,16 @@ public class BlockMetaData implements MetaData
 
     private final SimpleMetaData metaData;
 
+    /**
+     * Whether the stored value is compressed, kept here as well as the entry may not have been written yet.
+     */
+    private boolean compressed;
+
     public BlockMetaData(IndexData indexData, SimpleMetaData metaData)
     {
         this.indexData = indexData;
         this.metaData = metaData;
+        this.compressed = indexData.isCompressed();
     }
 
     public BlockMetaData(SimpleMetaData metaData)
@@ -41,15 +47,15 @@ public class BlockMetaData implements MetaData
     }
 
     @Override
-    public boolean isExpired()
+    public boolean isExpired(final long now)
     {
-        return this.metaData.isExpired();
+        return this.metaData.isExpired(now);
     }
 
     @Override
-    public boolean isStale()
+    public boolean isStale(final long now)
     {
-        return this.metaData.isStale();
+        return this.metaData.isStale(now);
     }
 
     @Override
@@ -65,9 +71,9 @@ public class BlockMetaData implements MetaData
     }
 
     @Override
-    public void update()
+    public void update(final long now)
     {
-        this.metaData.update();
+        this.metaData.update(now);
     }
 
     @Override
@@ -100,6 +106,30 @@ public class BlockMetaData implements MetaData
         return this.metaData.getTimeToLive();
     }
 
+    @Override
+    public boolean isServedStale()
+    {
+        return this.metaData.isServedStale();
+    }
+
+    @Override
+    public void setServedStale(boolean servedStale)
+    {
+        this.metaData.setServedStale(servedStale);
+    }
+
+    @Override
+    public boolean isRevalidationFailed()
+    {
+        return this.metaData.isRevalidationFailed();
+    }
+
+    @Override
+    public void setRevalidationFailed(boolean revalidationFailed)
+    {
+        this.metaData.setRevalidationFailed(revalidationFailed);
+    }
+
     public SimpleMetaData getMetaData()
     {
         return this.metaData;
@@ -115,6 +145,16 @@ public class BlockMetaData implements MetaData
         this.indexData = indexData;
     }
 
+    public boolean isCompressed()
+    {
+        return this.compressed;
+    }
+
+    public void setCompressed(boolean compressed)
+    {
+        this.compressed = compressed;
+    }
+
     @Override
     public String toString()
     {
@@ -32,4 +32,9 @@ public class CheckSumNotMatchingException extends CacheException
     {
         super();
     }
+
+    public CheckSumNotMatchingException(final String message)
+    {
+        super(message);
+    }
 }
@@ -19,12 +19,15 @@ package net.dontdrinkandroot.cache.metadata.impl;
 
 import net.dontdrinkandroot.cache.Cache;
 import net.dontdrinkandroot.cache.metadata.MetaData;
+import net.dontdrinkandroot.cache.time.Ticker;
 
 /**
  * @author Philip Washington Sorst <philip@sorst.net>
  */
 public class SimpleMetaData implements MetaData
 {
+    private static final long serialVersionUID = 7448448913078792771L;
+
     public static final double DECAY_FACTOR = 0.9;
 
     private final long timeToLive;
@@ -40,28 +43,50 @@ public class SimpleMetaData implements MetaData
      */
     private int hitCount = 1;
 
+    /**
+     * Runtime only flags, not persisted.
+     */
+    private transient boolean servedStale = false;
+
+    private transient boolean revalidationFailed = false;
+
     public SimpleMetaData(final long timeToLive)
     {
-        this.created = System.currentTimeMillis();
+        this(Ticker.SYSTEM, timeToLive, Cache.UNLIMITED_IDLE_TIME);
+    }
+
+    /**
+     * Creates the metadata of an entry that is created now according to the given ticker.
+     */
+    public SimpleMetaData(final Ticker ticker, final long timeToLive, final long maxIdleTime)
+    {
+        this.created = ticker.currentTimeMillis();
         this.timeToLive = timeToLive;
-        this.lastAccess = System.currentTimeMillis();
-        this.maxIdleTime = Cache.UNLIMITED_IDLE_TIME;
+        this.lastAccess = this.created;
+        this.maxIdleTime = maxIdleTime;
     }
 
-    public SimpleMetaData(long created, final long timeToLive)
+    /**
+     * Creates the metadata of an existing entry that was not accessed since the given time.
+     */
+    public SimpleMetaData(long created, final long timeToLive, long maxIdleTime, long lastAccess)
     {
         this.created = created;
         this.timeToLive = timeToLive;
-        this.lastAccess = System.currentTimeMillis();
-        this.maxIdleTime = Cache.UNLIMITED_IDLE_TIME;
+        this.lastAccess = lastAccess;
+        this.maxIdleTime = maxIdleTime;
     }
 
-    public SimpleMetaData(long created, final long timeToLive, long maxIdleTime)
+    /**
+     * Restores persisted metadata.
+     */
+    public SimpleMetaData(long created, final long timeToLive, long maxIdleTime, long lastAccess, int hitCount)
     {
         this.created = created;
         this.timeToLive = timeToLive;
-        this.lastAccess = System.currentTimeMillis();
+        this.lastAccess = lastAccess;
         this.maxIdleTime = maxIdleTime;
+        this.hitCount = hitCount;
     }
 
     @Override
@@ -77,10 +102,10 @@ public class SimpleMetaData implements MetaData
     }
 
     @Override
-    public final void update()
+    public final void update(final long now)
     {
         this.increaseHitCount();
-        this.lastAccess = System.currentTimeMillis();
+        this.lastAccess = now;
     }
 
     @Override
@@ -96,9 +121,9 @@ public class SimpleMetaData implements MetaData
     }
 
     @Override
-    public boolean isExpired()
+    public boolean isExpired(final long now)
     {
-        return this.created + this.timeToLive < System.currentTimeMillis();
+        return this.created + this.timeToLive < now;
     }
 
     @Override
@@ -108,13 +133,13 @@ public class SimpleMetaData implements MetaData
     }
 
     @Override
-    public boolean isStale()
+    public boolean isStale(final long now)
     {
         if (this.maxIdleTime == Cache.UNLIMITED_IDLE_TIME) {
             return false;
         }
 
-        return this.lastAccess + this.maxIdleTime < System.currentTimeMillis();
+        return this.lastAccess + this.maxIdleTime < now;
     }
 
     @Override
@@ -129,6 +154,30 @@ public class SimpleMetaData implements MetaData
         this.hitCount = (int) Math.floor(this.hitCount * SimpleMetaData.DECAY_FACTOR);
     }
 
+    @Override
+    public boolean isServedStale()
+    {
+        return this.servedStale;
+    }
+
+    @Override
+    public void setServedStale(boolean servedStale)
+    {
+        this.servedStale = servedStale;
+    }
+
+    @Override
+    public boolean isRevalidationFailed()
+    {
+        return this.revalidationFailed;
+    }
+
+    @Override
+    public void setRevalidationFailed(boolean revalidationFailed)
+    {
+        this.revalidationFailed = revalidationFailed;
+    }
+
     public final void increaseHitCount()
     {
         if (this.hitCount < Integer.MAX_VALUE) {
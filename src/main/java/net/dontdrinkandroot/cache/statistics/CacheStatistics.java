@@ -69,4 +69,21 @@ public interface CacheStatistics extends Serializable
      * Get the number of cache misses where the entry was expired.
      */
     long getCacheMissesExpired();
+
+    /**
+     * Get the number of times an expired entry was served, either while it was being revalidated or because
+     * revalidation failed.
+     */
+    long getStaleHits();
+
+    /**
+     * Get the number of entries that were removed by the cache itself because they expired, idled away or to make
+     * room for new entries.
+     */
+    long getEvictions();
+
+    /**
+     * Get the distribution of the latencies (in nanoseconds) recorded for the given operation or phase.
+     */
+    Histogram getLatency(LatencyMetric metric);
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.statistics;
+
+import java.io.Serializable;
+
+/**
+ * Distribution of recorded values, e.g. latencies in nanoseconds.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public interface Histogram extends Serializable
+{
+    /**
+     * Get the number of recorded values.
+     */
+    long getCount();
+
+    /**
+     * Get the smallest recorded value, 0 if no value was recorded.
+     */
+    long getMin();
+
+    /**
+     * Get the largest recorded value, 0 if no value was recorded.
+     */
+    long getMax();
+
+    /**
+     * Get the mean of the recorded values, 0 if no value was recorded.
+     */
+    double getMean();
+
+    /**
+     * Get the value below or at which the given percentage of recorded values fall. Implementations may
+     * approximate the value within a bounded relative error.
+     *
+     * @param percentile The percentile in the range [0,100], e.g. 99.9.
+     */
+    long getValueAtPercentile(double percentile);
+}
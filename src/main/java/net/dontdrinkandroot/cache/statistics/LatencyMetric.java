@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.statistics;
+
+/**
+ * The operations and phases for which latencies are recorded.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public enum LatencyMetric
+{
+    /**
+     * Complete get operation including lock acquisition.
+     */
+    GET,
+
+    /**
+     * Complete put operation including lock acquisition.
+     */
+    PUT,
+
+    /**
+     * Complete delete operation including lock acquisition.
+     */
+    DELETE,
+
+    /**
+     * Execution of a loader on a miss or refresh.
+     */
+    LOAD,
+
+    /**
+     * Waiting for the cache monitor.
+     */
+    LOCK_WAIT,
+
+    /**
+     * Reading data from disk.
+     */
+    DISK_READ,
+
+    /**
+     * Converting data from and to bytes.
+     */
+    CODEC,
+
+    /**
+     * Selecting and removing entries on expunge.
+     */
+    EVICTION
+}
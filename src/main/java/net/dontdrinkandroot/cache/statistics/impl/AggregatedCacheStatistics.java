@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.statistics.impl;
+
+import net.dontdrinkandroot.cache.Cache;
+import net.dontdrinkandroot.cache.statistics.CacheStatistics;
+import net.dontdrinkandroot.cache.statistics.LatencyMetric;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Live view that sums up the statistics of several caches, e.g. the shards of a
+ * {@link net.dontdrinkandroot.cache.impl.sharded.ShardedCache}. Resetting resets the statistics of all caches.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class AggregatedCacheStatistics implements CacheStatistics
+{
+    private static final long serialVersionUID = 1L;
+
+    private final List<Cache<?, ?>> caches;
+
+    public AggregatedCacheStatistics(final Collection<? extends Cache<?, ?>> caches)
+    {
+        this.caches = new ArrayList<>(caches);
+    }
+
+    @Override
+    public long getCacheHits()
+    {
+        long sum = 0;
+        for (final Cache<?, ?> cache : this.caches) {
+            sum += cache.getStatistics().getCacheHits();
+        }
+
+        return sum;
+    }
+
+    @Override
+    public long getCacheMissesNotFound()
+    {
+        long sum = 0;
+        for (final Cache<?, ?> cache : this.caches) {
+            sum += cache.getStatistics().getCacheMissesNotFound();
+        }
+
+        return sum;
+    }
+
+    @Override
+    public long getCacheMissesExpired()
+    {
+        long sum = 0;
+        for (final Cache<?, ?> cache : this.caches) {
+            sum += cache.getStatistics().getCacheMissesExpired();
+        }
+
+        return sum;
+    }
+
+    @Override
+    public long getPutCount()
+    {
+        long sum = 0;
+        for (final Cache<?, ?> cache : this.caches) {
+            sum += cache.getStatistics().getPutCount();
+        }
+
+        return sum;
+    }
+
+    @Override
+    public long getGetCount()
+    {
+        long sum = 0;
+        for (final Cache<?, ?> cache : this.caches) {
+            sum += cache.getStatistics().getGetCount();
+        }
+
+        return sum;
+    }
+
+    @Override
+    public long getStaleHits()
+    {
+        long sum = 0;
+        for (final Cache<?, ?> cache : this.caches) {
+            sum += cache.getStatistics().getStaleHits();
+        }
+
+        return sum;
+    }
+
+    @Override
+    public long getEvictions()
+    {
+        long sum = 0;
+        for (final Cache<?, ?> cache : this.caches) {
+            sum += cache.getStatistics().getEvictions();
+        }
+
+        return sum;
+    }
+
+    @Override
+    public int getCurrentSize()
+    {
+        int sum = 0;
+        for (final Cache<?, ?> cache : this.caches) {
+            sum += cache.getStatistics().getCurrentSize();
+        }
+
+        return sum;
+    }
+
+    @Override
+    public HistogramSnapshot getLatency(final LatencyMetric metric)
+    {
+        HistogramSnapshot merged = HistogramSnapshot.EMPTY;
+        for (final Cache<?, ?> cache : this.caches) {
+            merged = merged.plus(cache.getStatistics().getLatency(metric));
+        }
+
+        return merged;
+    }
+
+    @Override
+    public void reset()
+    {
+        for (final Cache<?, ?> cache : this.caches) {
+            cache.getStatistics().reset();
+        }
+    }
+
+    @Override
+    public long getCacheMisses()
+    {
+        return this.getCacheMissesExpired() + this.getCacheMissesNotFound();
+    }
+
+    @Override
+    public float getHitRate()
+    {
+        final long cacheHits = this.getCacheHits();
+        final long cacheMisses = this.getCacheMisses();
+
+		/* Avoid division by zero */
+        if (cacheMisses == 0 && cacheHits == 0) {
+            return 0f;
+        }
+
+        return (float) cacheHits / (cacheHits + cacheMisses);
+    }
+
+    @Override
+    public String toString()
+    {
+        return CacheStatisticsSnapshot.of(this).toString();
+    }
+}
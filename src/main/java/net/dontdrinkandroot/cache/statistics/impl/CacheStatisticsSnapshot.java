@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.statistics.impl;
+
+import net.dontdrinkandroot.cache.statistics.CacheStatistics;
+import net.dontdrinkandroot.cache.statistics.LatencyMetric;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Immutable view of {@link CacheStatistics} at a point in time. Subtracting an earlier snapshot yields the
+ * statistics of the interval in between, e.g. to compute hit rates or throughput over the last minute.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public final class CacheStatisticsSnapshot implements CacheStatistics
+{
+    private static final long serialVersionUID = 1L;
+
+    private final long timestamp;
+
+    private final long elapsed;
+
+    private final long cacheHits;
+
+    private final long cacheMissesNotFound;
+
+    private final long cacheMissesExpired;
+
+    private final long putCount;
+
+    private final long getCount;
+
+    private final long staleHits;
+
+    private final long evictions;
+
+    private final int currentSize;
+
+    private final Map<LatencyMetric, HistogramSnapshot> latencies;
+
+    private CacheStatisticsSnapshot(
+            final long timestamp,
+            final long elapsed,
+            final long cacheHits,
+            final long cacheMissesNotFound,
+            final long cacheMissesExpired,
+            final long putCount,
+            final long getCount,
+            final long staleHits,
+            final long evictions,
+            final int currentSize,
+            final Map<LatencyMetric, HistogramSnapshot> latencies
+    )
+    {
+        this.timestamp = timestamp;
+        this.elapsed = elapsed;
+        this.cacheHits = cacheHits;
+        this.cacheMissesNotFound = cacheMissesNotFound;
+        this.cacheMissesExpired = cacheMissesExpired;
+        this.putCount = putCount;
+        this.getCount = getCount;
+        this.staleHits = staleHits;
+        this.evictions = evictions;
+        this.currentSize = currentSize;
+        this.latencies = latencies;
+    }
+
+    /**
+     * Takes a snapshot of the given statistics.
+     */
+    public static CacheStatisticsSnapshot of(final CacheStatistics statistics)
+    {
+        if (statistics instanceof CacheStatisticsSnapshot) {
+            return (CacheStatisticsSnapshot) statistics;
+        }
+
+        return new CacheStatisticsSnapshot(
+                System.currentTimeMillis(),
+                0,
+                statistics.getCacheHits(),
+                statistics.getCacheMissesNotFound(),
+                statistics.getCacheMissesExpired(),
+                statistics.getPutCount(),
+                statistics.getGetCount(),
+                statistics.getStaleHits(),
+                statistics.getEvictions(),
+                statistics.getCurrentSize(),
+                CacheStatisticsSnapshot.snapshotLatencies(statistics)
+        );
+    }
+
+    private static Map<LatencyMetric, HistogramSnapshot> snapshotLatencies(final CacheStatistics statistics)
+    {
+        final Map<LatencyMetric, HistogramSnapshot> latencies = new EnumMap<>(LatencyMetric.class);
+        for (final LatencyMetric metric : LatencyMetric.values()) {
+            latencies.put(metric, HistogramSnapshot.of(statistics.getLatency(metric)));
+        }
+
+        return latencies;
+    }
+
+    /**
+     * Computes the statistics of the interval between an earlier snapshot and this one. The current size is the
+     * one of this snapshot.
+     *
+     * @param earlier The earlier statistics.
+     * @return The difference of the counters, {@link #getElapsed()} is the time between both snapshots.
+     */
+    public CacheStatisticsSnapshot minus(final CacheStatistics earlier)
+    {
+        final CacheStatisticsSnapshot other = CacheStatisticsSnapshot.of(earlier);
+
+        final Map<LatencyMetric, HistogramSnapshot> latencyDiffs = new EnumMap<>(LatencyMetric.class);
+        for (final LatencyMetric metric : LatencyMetric.values()) {
+            latencyDiffs.put(metric, this.latencies.get(metric).minus(other.latencies.get(metric)));
+        }
+
+        return new CacheStatisticsSnapshot(
+                this.timestamp,
+                this.timestamp - other.timestamp,
+                this.cacheHits - other.cacheHits,
+                this.cacheMissesNotFound - other.cacheMissesNotFound,
+                this.cacheMissesExpired - other.cacheMissesExpired,
+                this.putCount - other.putCount,
+                this.getCount - other.getCount,
+                this.staleHits - other.staleHits,
+                this.evictions - other.evictions,
+                this.currentSize,
+                latencyDiffs
+        );
+    }
+
+    /**
+     * Get the timestamp when the snapshot was taken.
+     */
+    public long getTimestamp()
+    {
+        return this.timestamp;
+    }
+
+    /**
+     * Get the time in milliseconds that this snapshot covers if it was computed by
+     * {@link #minus(CacheStatistics)}, 0 otherwise.
+     */
+    public long getElapsed()
+    {
+        return this.elapsed;
+    }
+
+    @Override
+    public long getCacheHits()
+    {
+        return this.cacheHits;
+    }
+
+    @Override
+    public long getCacheMissesNotFound()
+    {
+        return this.cacheMissesNotFound;
+    }
+
+    @Override
+    public long getCacheMissesExpired()
+    {
+        return this.cacheMissesExpired;
+    }
+
+    @Override
+    public long getPutCount()
+    {
+        return this.putCount;
+    }
+
+    @Override
+    public long getGetCount()
+    {
+        return this.getCount;
+    }
+
+    @Override
+    public long getStaleHits()
+    {
+        return this.staleHits;
+    }
+
+    @Override
+    public long getEvictions()
+    {
+        return this.evictions;
+    }
+
+    @Override
+    public HistogramSnapshot getLatency(final LatencyMetric metric)
+    {
+        return this.latencies.get(metric);
+    }
+
+    /**
+     * Snapshots are immutable.
+     *
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void reset()
+    {
+        throw new UnsupportedOperationException("Snapshots cannot be reset");
+    }
+
+    @Override
+    public float getHitRate()
+    {
+        final long cacheMisses = this.getCacheMisses();
+
+		/* Avoid division by zero */
+        if (cacheMisses == 0 && this.cacheHits == 0) {
+            return 0f;
+        }
+
+        return (float) this.cacheHits / (this.cacheHits + cacheMisses);
+    }
+
+    @Override
+    public long getCacheMisses()
+    {
+        return this.cacheMissesExpired + this.cacheMissesNotFound;
+    }
+
+    @Override
+    public int getCurrentSize()
+    {
+        return this.currentSize;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append("hitRate: " + this.getHitRate());
+        sb.append(",size: " + this.getCurrentSize());
+        sb.append(",hits: " + this.getCacheHits());
+        sb.append(",missesNotFound: " + this.getCacheMissesNotFound());
+        sb.append(",missesExpired: " + this.getCacheMissesExpired());
+        sb.append(",staleHits: " + this.getStaleHits());
+        sb.append(",evictions: " + this.getEvictions());
+        sb.append(",getCount: " + this.getGetCount());
+        sb.append(",putCount: " + this.getPutCount());
+        sb.append(",getLatency: [" + this.getLatency(LatencyMetric.GET) + "]");
+        sb.append(",putLatency: [" + this.getLatency(LatencyMetric.PUT) + "]");
+
+        return sb.toString();
+    }
+}
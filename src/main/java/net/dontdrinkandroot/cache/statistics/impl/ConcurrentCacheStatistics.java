@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.statistics.impl;
+
+import net.dontdrinkandroot.cache.statistics.CacheStatistics;
+import net.dontdrinkandroot.cache.statistics.LatencyMetric;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link CacheStatistics} that can be updated concurrently without contention: counters are striped
+ * {@link LongAdder}s, latencies are recorded into {@link ConcurrentHistogram}s and the current size is maintained
+ * by the cache instead of being computed on access. Use {@link #snapshot()} to obtain an immutable view that can
+ * be diffed in order to compute rates.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class ConcurrentCacheStatistics implements CacheStatistics
+{
+    private static final long serialVersionUID = 1L;
+
+    private final LongAdder cacheHits = new LongAdder();
+
+    private final LongAdder cacheMissesNotFound = new LongAdder();
+
+    private final LongAdder cacheMissesExpired = new LongAdder();
+
+    private final LongAdder putCount = new LongAdder();
+
+    private final LongAdder getCount = new LongAdder();
+
+    private final LongAdder staleHits = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private volatile int currentSize = 0;
+
+    private final Map<LatencyMetric, ConcurrentHistogram> latencies = new EnumMap<>(LatencyMetric.class);
+
+    public ConcurrentCacheStatistics()
+    {
+        for (final LatencyMetric metric : LatencyMetric.values()) {
+            this.latencies.put(metric, new ConcurrentHistogram());
+        }
+    }
+
+    @Override
+    public long getCacheHits()
+    {
+        return this.cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMissesNotFound()
+    {
+        return this.cacheMissesNotFound.sum();
+    }
+
+    @Override
+    public long getCacheMissesExpired()
+    {
+        return this.cacheMissesExpired.sum();
+    }
+
+    @Override
+    public long getPutCount()
+    {
+        return this.putCount.sum();
+    }
+
+    @Override
+    public long getGetCount()
+    {
+        return this.getCount.sum();
+    }
+
+    @Override
+    public long getStaleHits()
+    {
+        return this.staleHits.sum();
+    }
+
+    @Override
+    public long getEvictions()
+    {
+        return this.evictions.sum();
+    }
+
+    @Override
+    public ConcurrentHistogram getLatency(final LatencyMetric metric)
+    {
+        return this.latencies.get(metric);
+    }
+
+    /**
+     * Records the latency of an operation or phase.
+     *
+     * @param metric The operation or phase.
+     * @param nanos  The latency in nanoseconds.
+     */
+    public void recordLatency(final LatencyMetric metric, final long nanos)
+    {
+        this.latencies.get(metric).record(nanos);
+    }
+
+    /**
+     * Resets the counters and latencies. Updates that happen concurrently to the reset might get lost, use
+     * {@link #snapshot()} and {@link CacheStatisticsSnapshot#minus(CacheStatistics)} if you need exact numbers
+     * for an interval.
+     */
+    @Override
+    public void reset()
+    {
+        this.cacheHits.reset();
+        this.cacheMissesNotFound.reset();
+        this.cacheMissesExpired.reset();
+        this.putCount.reset();
+        this.getCount.reset();
+        this.staleHits.reset();
+        this.evictions.reset();
+        for (final ConcurrentHistogram histogram : this.latencies.values()) {
+            histogram.reset();
+        }
+    }
+
+    @Override
+    public float getHitRate()
+    {
+        return this.snapshot().getHitRate();
+    }
+
+    @Override
+    public long getCacheMisses()
+    {
+        return this.getCacheMissesExpired() + this.getCacheMissesNotFound();
+    }
+
+    @Override
+    public int getCurrentSize()
+    {
+        return this.currentSize;
+    }
+
+    public void setCurrentSize(final int currentSize)
+    {
+        this.currentSize = currentSize;
+    }
+
+    public void increasePutCount()
+    {
+        this.putCount.increment();
+    }
+
+    public void increasePutCount(final long delta)
+    {
+        this.putCount.add(delta);
+    }
+
+    public void increaseGetCount()
+    {
+        this.getCount.increment();
+    }
+
+    public void increaseGetCount(final long delta)
+    {
+        this.getCount.add(delta);
+    }
+
+    public void increaseCacheMissesNotFound()
+    {
+        this.cacheMissesNotFound.increment();
+    }
+
+    public void increaseCacheMissesNotFound(final long delta)
+    {
+        this.cacheMissesNotFound.add(delta);
+    }
+
+    public void increaseCacheMissesExpired()
+    {
+        this.cacheMissesExpired.increment();
+    }
+
+    public void increaseCacheMissesExpired(final long delta)
+    {
+        this.cacheMissesExpired.add(delta);
+    }
+
+    public void increaseCacheHits()
+    {
+        this.cacheHits.increment();
+    }
+
+    public void increaseCacheHits(final long delta)
+    {
+        this.cacheHits.add(delta);
+    }
+
+    public void increaseStaleHits()
+    {
+        this.staleHits.increment();
+    }
+
+    public void increaseStaleHits(final long delta)
+    {
+        this.staleHits.add(delta);
+    }
+
+    public void increaseEvictions(final long delta)
+    {
+        this.evictions.add(delta);
+    }
+
+    /**
+     * Takes an immutable snapshot of the current values.
+     */
+    public CacheStatisticsSnapshot snapshot()
+    {
+        return CacheStatisticsSnapshot.of(this);
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.snapshot().toString();
+    }
+}
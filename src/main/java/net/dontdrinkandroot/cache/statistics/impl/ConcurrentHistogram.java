@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.statistics.impl;
+
+import net.dontdrinkandroot.cache.statistics.Histogram;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link Histogram} with log-linear buckets that can be recorded to concurrently without locking. Every power of
+ * two is divided into {@link #SUB_BUCKET_COUNT} linear sub buckets, so percentiles are reported with a relative
+ * error of at most about 3% over the whole range of long values with constant memory.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class ConcurrentHistogram implements Histogram
+{
+    private static final long serialVersionUID = 1L;
+
+    static final int SUB_BUCKET_BITS = 5;
+
+    static final int SUB_BUCKET_COUNT = 1 << ConcurrentHistogram.SUB_BUCKET_BITS;
+
+    static final int BUCKET_COUNT = (64 - ConcurrentHistogram.SUB_BUCKET_BITS) * ConcurrentHistogram.SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(ConcurrentHistogram.BUCKET_COUNT);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a value, negative values are recorded as 0.
+     */
+    public void record(final long value)
+    {
+        final long recordedValue = Math.max(0, value);
+        this.counts.incrementAndGet(ConcurrentHistogram.getBucketIndex(recordedValue));
+        this.count.increment();
+        this.sum.add(recordedValue);
+        this.min.accumulate(recordedValue);
+        this.max.accumulate(recordedValue);
+    }
+
+    /**
+     * Resets the histogram. Values recorded concurrently to the reset might get lost.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < ConcurrentHistogram.BUCKET_COUNT; i++) {
+            this.counts.set(i, 0);
+        }
+        this.count.reset();
+        this.sum.reset();
+        this.min.reset();
+        this.max.reset();
+    }
+
+    /**
+     * Takes an immutable snapshot of the current distribution.
+     */
+    public HistogramSnapshot snapshot()
+    {
+        final long[] bucketCounts = new long[ConcurrentHistogram.BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < ConcurrentHistogram.BUCKET_COUNT; i++) {
+            bucketCounts[i] = this.counts.get(i);
+            total += bucketCounts[i];
+        }
+
+        /* Derive the count from the buckets so the snapshot is consistent with itself */
+        return new HistogramSnapshot(bucketCounts, total, this.sum.sum(), this.getMin(), this.getMax());
+    }
+
+    @Override
+    public long getCount()
+    {
+        return this.count.sum();
+    }
+
+    @Override
+    public long getMin()
+    {
+        final long currentMin = this.min.get();
+        if (currentMin == Long.MAX_VALUE) {
+            return 0;
+        }
+
+        return currentMin;
+    }
+
+    @Override
+    public long getMax()
+    {
+        return this.max.get();
+    }
+
+    @Override
+    public double getMean()
+    {
+        final long currentCount = this.count.sum();
+        if (currentCount == 0) {
+            return 0;
+        }
+
+        return (double) this.sum.sum() / currentCount;
+    }
+
+    @Override
+    public long getValueAtPercentile(final double percentile)
+    {
+        return this.snapshot().getValueAtPercentile(percentile);
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.snapshot().toString();
+    }
+
+    static int getBucketIndex(final long value)
+    {
+        if (value < ConcurrentHistogram.SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - ConcurrentHistogram.SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >>> shift) - ConcurrentHistogram.SUB_BUCKET_COUNT;
+
+        return (shift + 1) * ConcurrentHistogram.SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long getLowestValue(final int bucketIndex)
+    {
+        if (bucketIndex < ConcurrentHistogram.SUB_BUCKET_COUNT) {
+            return bucketIndex;
+        }
+
+        final int shift = bucketIndex / ConcurrentHistogram.SUB_BUCKET_COUNT - 1;
+        final long subBucket =
+                bucketIndex % ConcurrentHistogram.SUB_BUCKET_COUNT + ConcurrentHistogram.SUB_BUCKET_COUNT;
+
+        return subBucket << shift;
+    }
+
+    static long getHighestValue(final int bucketIndex)
+    {
+        if (bucketIndex == ConcurrentHistogram.BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+
+        return ConcurrentHistogram.getLowestValue(bucketIndex + 1) - 1;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.statistics.impl;
+
+import net.dontdrinkandroot.cache.statistics.Histogram;
+
+/**
+ * Immutable view of a {@link ConcurrentHistogram} at a point in time. Subtracting an earlier snapshot yields the
+ * distribution of the values recorded in between.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public final class HistogramSnapshot implements Histogram
+{
+    private static final long serialVersionUID = 1L;
+
+    public static final HistogramSnapshot EMPTY =
+            new HistogramSnapshot(new long[ConcurrentHistogram.BUCKET_COUNT], 0, 0, 0, 0);
+
+    private final long[] counts;
+
+    private final long count;
+
+    private final long sum;
+
+    private final long min;
+
+    private final long max;
+
+    HistogramSnapshot(final long[] counts, final long count, final long sum, final long min, final long max)
+    {
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Takes a snapshot of the given histogram.
+     */
+    public static HistogramSnapshot of(final Histogram histogram)
+    {
+        if (histogram instanceof HistogramSnapshot) {
+            return (HistogramSnapshot) histogram;
+        }
+
+        if (histogram instanceof ConcurrentHistogram) {
+            return ((ConcurrentHistogram) histogram).snapshot();
+        }
+
+        throw new IllegalArgumentException("Cannot take a snapshot of " + histogram.getClass());
+    }
+
+    /**
+     * Computes the distribution of the values recorded between an earlier snapshot and this one. Min and max are
+     * approximated by the bounds of the lowest and highest non empty bucket.
+     */
+    public HistogramSnapshot minus(final Histogram earlier)
+    {
+        final HistogramSnapshot other = HistogramSnapshot.of(earlier);
+
+        final long[] bucketCounts = new long[ConcurrentHistogram.BUCKET_COUNT];
+        long total = 0;
+        int lowest = -1;
+        int highest = -1;
+        for (int i = 0; i < ConcurrentHistogram.BUCKET_COUNT; i++) {
+            bucketCounts[i] = Math.max(0, this.counts[i] - other.counts[i]);
+            total += bucketCounts[i];
+            if (bucketCounts[i] > 0) {
+                if (lowest == -1) {
+                    lowest = i;
+                }
+                highest = i;
+            }
+        }
+
+        if (total == 0) {
+            return HistogramSnapshot.EMPTY;
+        }
+
+        return new HistogramSnapshot(
+                bucketCounts,
+                total,
+                this.sum - other.sum,
+                Math.max(this.min, ConcurrentHistogram.getLowestValue(lowest)),
+                Math.min(this.max, ConcurrentHistogram.getHighestValue(highest))
+        );
+    }
+
+    /**
+     * Merges the values recorded by another histogram into a new snapshot, e.g. to combine the latencies of
+     * several caches.
+     */
+    public HistogramSnapshot plus(final Histogram histogram)
+    {
+        final HistogramSnapshot other = HistogramSnapshot.of(histogram);
+        if (other.count == 0) {
+            return this;
+        }
+        if (this.count == 0) {
+            return other;
+        }
+
+        final long[] bucketCounts = new long[ConcurrentHistogram.BUCKET_COUNT];
+        for (int i = 0; i < ConcurrentHistogram.BUCKET_COUNT; i++) {
+            bucketCounts[i] = this.counts[i] + other.counts[i];
+        }
+
+        return new HistogramSnapshot(
+                bucketCounts,
+                this.count + other.count,
+                this.sum + other.sum,
+                Math.min(this.min, other.min),
+                Math.max(this.max, other.max)
+        );
+    }
+
+    @Override
+    public long getCount()
+    {
+        return this.count;
+    }
+
+    @Override
+    public long getMin()
+    {
+        return this.min;
+    }
+
+    @Override
+    public long getMax()
+    {
+        return this.max;
+    }
+
+    @Override
+    public double getMean()
+    {
+        if (this.count == 0) {
+            return 0;
+        }
+
+        return (double) this.sum / this.count;
+    }
+
+    @Override
+    public long getValueAtPercentile(final double percentile)
+    {
+        if (this.count == 0) {
+            return 0;
+        }
+
+        final double boundedPercentile = Math.min(100, Math.max(0, percentile));
+        final long targetCount = Math.max(1, (long) Math.ceil(boundedPercentile / 100 * this.count));
+
+        long cumulativeCount = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            cumulativeCount += this.counts[i];
+            if (cumulativeCount >= targetCount) {
+                return Math.max(this.min, Math.min(this.max, ConcurrentHistogram.getHighestValue(i)));
+            }
+        }
+
+        return this.max;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append("count: " + this.getCount());
+        sb.append(",mean: " + this.getMean());
+        sb.append(",p50: " + this.getValueAtPercentile(50));
+        sb.append(",p99: " + this.getValueAtPercentile(99));
+        sb.append(",p999: " + this.getValueAtPercentile(99.9));
+        sb.append(",max: " + this.getMax());
+
+        return sb.toString();
+    }
+}
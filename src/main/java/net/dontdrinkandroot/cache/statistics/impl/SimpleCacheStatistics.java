@@ -18,6 +18,8 @@
 package net.dontdrinkandroot.cache.statistics.impl;
 
 import net.dontdrinkandroot.cache.statistics.CacheStatistics;
+import net.dontdrinkandroot.cache.statistics.Histogram;
+import net.dontdrinkandroot.cache.statistics.LatencyMetric;
 
 /**
  * @author Philip Washington Sorst <philip@sorst.net>
@@ -36,6 +38,10 @@ public class SimpleCacheStatistics implements CacheStatistics
 
     private long getCount;
 
+    private long staleHits;
+
+    private long evictions;
+
     private int currentSize = 0;
 
     public SimpleCacheStatistics()
@@ -45,6 +51,8 @@ public class SimpleCacheStatistics implements CacheStatistics
         this.cacheMissesExpired = 0;
         this.putCount = 0;
         this.getCount = 0;
+        this.staleHits = 0;
+        this.evictions = 0;
     }
 
     @Override
@@ -102,6 +110,37 @@ public class SimpleCacheStatistics implements CacheStatistics
         this.getCount = getCount;
     }
 
+    @Override
+    public long getStaleHits()
+    {
+        return this.staleHits;
+    }
+
+    public void setStaleHits(final long staleHits)
+    {
+        this.staleHits = staleHits;
+    }
+
+    @Override
+    public long getEvictions()
+    {
+        return this.evictions;
+    }
+
+    public void setEvictions(final long evictions)
+    {
+        this.evictions = evictions;
+    }
+
+    /**
+     * Latencies are not recorded, always returns an empty histogram.
+     */
+    @Override
+    public Histogram getLatency(final LatencyMetric metric)
+    {
+        return HistogramSnapshot.EMPTY;
+    }
+
     @Override
     public void reset()
     {
@@ -110,6 +149,8 @@ public class SimpleCacheStatistics implements CacheStatistics
         this.cacheMissesExpired = 0;
         this.putCount = 0;
         this.getCount = 0;
+        this.staleHits = 0;
+        this.evictions = 0;
     }
 
     @Override
@@ -148,26 +189,66 @@ public class SimpleCacheStatistics implements CacheStatistics
         this.putCount++;
     }
 
+    public void increasePutCount(final long delta)
+    {
+        this.putCount += delta;
+    }
+
     public void increaseGetCount()
     {
         this.getCount++;
     }
 
+    public void increaseGetCount(final long delta)
+    {
+        this.getCount += delta;
+    }
+
     public void increaseCacheMissesNotFound()
     {
         this.cacheMissesNotFound++;
     }
 
+    public void increaseCacheMissesNotFound(final long delta)
+    {
+        this.cacheMissesNotFound += delta;
+    }
+
     public void increaseCacheMissesExpired()
     {
         this.cacheMissesExpired++;
     }
 
+    public void increaseCacheMissesExpired(final long delta)
+    {
+        this.cacheMissesExpired += delta;
+    }
+
     public void increaseCacheHits()
     {
         this.cacheHits++;
     }
 
+    public void increaseCacheHits(final long delta)
+    {
+        this.cacheHits += delta;
+    }
+
+    public void increaseStaleHits()
+    {
+        this.staleHits++;
+    }
+
+    public void increaseStaleHits(final long delta)
+    {
+        this.staleHits += delta;
+    }
+
+    public void increaseEvictions(final long delta)
+    {
+        this.evictions += delta;
+    }
+
     @Override
     public String toString()
     {
@@ -177,6 +258,8 @@ public class SimpleCacheStatistics implements CacheStatistics
         sb.append(",hits: " + this.getCacheHits());
         sb.append(",missesNotFound: " + this.getCacheMissesNotFound());
         sb.append(",missesExpired: " + this.getCacheMissesExpired());
+        sb.append(",staleHits: " + this.getStaleHits());
+        sb.append(",evictions: " + this.getEvictions());
         sb.append(",getCount: " + this.getGetCount());
         sb.append(",putCount: " + this.getPutCount());
 
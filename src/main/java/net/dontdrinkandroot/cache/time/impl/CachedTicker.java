@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.time.impl;
+
+import net.dontdrinkandroot.cache.time.Ticker;
+
+import java.io.Closeable;
+
+/**
+ * {@link Ticker} that caches the system time in a volatile field which a background thread refreshes at a fixed
+ * resolution, so reading the time costs a single volatile read. The time lags behind the system time by up to the
+ * resolution, which is negligible for time to live and idle times in the range of seconds and above.
+ * <p>
+ * A single instance is meant to be shared by all caches, the thread runs until the ticker is closed.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class CachedTicker implements Ticker, Closeable
+{
+    public static final long DEFAULT_RESOLUTION = 10;
+
+    private final long resolution;
+
+    private final Thread thread;
+
+    private volatile long currentTimeMillis = System.currentTimeMillis();
+
+    private volatile boolean running = true;
+
+    public CachedTicker()
+    {
+        this(CachedTicker.DEFAULT_RESOLUTION);
+    }
+
+    /**
+     * @param resolution The interval in milliseconds in which the time is refreshed.
+     */
+    public CachedTicker(final long resolution)
+    {
+        if (resolution < 1) {
+            throw new IllegalArgumentException("Resolution must be at least 1ms");
+        }
+
+        this.resolution = resolution;
+        this.thread = new Thread(this::run, "CachedTicker");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public long currentTimeMillis()
+    {
+        return this.currentTimeMillis;
+    }
+
+    public long getResolution()
+    {
+        return this.resolution;
+    }
+
+    /**
+     * Stops the background thread, the time is not refreshed anymore afterwards.
+     */
+    @Override
+    public void close()
+    {
+        this.running = false;
+        this.thread.interrupt();
+    }
+
+    private void run()
+    {
+        while (this.running) {
+            try {
+                Thread.sleep(this.resolution);
+            } catch (InterruptedException e) {
+                /* Closed */
+                return;
+            }
+            this.currentTimeMillis = System.currentTimeMillis();
+        }
+    }
+}
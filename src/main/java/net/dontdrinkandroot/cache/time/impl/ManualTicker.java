@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.time.impl;
+
+import net.dontdrinkandroot.cache.time.Ticker;
+
+/**
+ * {@link Ticker} whose time only changes when it is set or advanced explicitly, makes time dependent behaviour like
+ * expiry testable without sleeping.
+ *
+ * @author Philip Washington Sorst <philip@sorst.net>
+ */
+public class ManualTicker implements Ticker
+{
+    private volatile long currentTimeMillis;
+
+    /**
+     * Starts at the current system time.
+     */
+    public ManualTicker()
+    {
+        this(System.currentTimeMillis());
+    }
+
+    public ManualTicker(final long currentTimeMillis)
+    {
+        this.currentTimeMillis = currentTimeMillis;
+    }
+
+    @Override
+    public long currentTimeMillis()
+    {
+        return this.currentTimeMillis;
+    }
+
+    public void setCurrentTimeMillis(final long currentTimeMillis)
+    {
+        this.currentTimeMillis = currentTimeMillis;
+    }
+
+    /**
+     * Advances the time by the given number of milliseconds.
+     */
+    public synchronized void advance(final long millis)
+    {
+        this.currentTimeMillis += millis;
+    }
+}
@@ -17,16 +17,21 @@
  */
 package net.dontdrinkandroot.cache.utils;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
 
 /**
+ * An md5 hash stored as two longs. The hash code is computed on construction and the hex representation on first
+ * use, digests are reused per thread.
+ *
  * @author Philip Washington Sorst <philip@sorst.net>
  */
 public class Md5
 {
+    public static final int LENGTH = 16;
+
     private static final char[] HEX_DIGITS_LOWER = {
             '0',
             '1',
@@ -45,44 +50,108 @@ public class Md5
             'e',
             'f'};
 
-    private final byte[] md5Bytes;
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(Md5::createMd5Digest);
+
+    private final long high;
+
+    private final long low;
+
+    private final int hash;
+
+    /**
+     * Lazily computed, racy initialization is fine as the value is always the same.
+     */
+    private String hex;
 
     public Md5(final String s)
     {
-        this.md5Bytes = this.md5(s);
+        this(Md5.md5(s));
     }
 
     public Md5(final byte[] md5Bytes)
     {
-        this.md5Bytes = md5Bytes;
+        if (md5Bytes.length != Md5.LENGTH) {
+            throw new IllegalArgumentException("Md5 must be " + Md5.LENGTH + " bytes long: " + md5Bytes.length);
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(md5Bytes);
+        this.high = buffer.getLong();
+        this.low = buffer.getLong();
+        this.hash = Md5.hash(this.high, this.low);
+    }
+
+    public Md5(final long high, final long low)
+    {
+        this.high = high;
+        this.low = low;
+        this.hash = Md5.hash(high, low);
+    }
+
+    /**
+     * Computes the md5 of the given data.
+     */
+    public static Md5 digest(final byte[] data)
+    {
+        final MessageDigest digest = Md5.DIGEST.get();
+        digest.reset();
+
+        return new Md5(digest.digest(data));
     }
 
     public static Md5 fromMd5Hex(final String md5Hex) throws Md5Exception
     {
-        return new Md5(Md5.decodeHex(md5Hex.toCharArray()));
+        final byte[] md5Bytes = Md5.decodeHex(md5Hex.toCharArray());
+        if (md5Bytes.length != Md5.LENGTH) {
+            throw new Md5Exception("Md5 must have " + 2 * Md5.LENGTH + " hex digits: " + md5Hex);
+        }
+
+        return new Md5(md5Bytes);
     }
 
     public byte[] getBytes()
     {
-        return this.md5Bytes;
+        return ByteBuffer.allocate(Md5.LENGTH).putLong(this.high).putLong(this.low).array();
     }
 
-    public String getHex()
+    /**
+     * The first eight bytes of the hash.
+     */
+    public long getHigh()
     {
-        return new String(Md5.encodeHex(this.md5Bytes));
+        return this.high;
     }
 
-    private byte[] md5(String data)
+    /**
+     * The last eight bytes of the hash.
+     */
+    public long getLow()
     {
-        try {
-            return this.getMd5Digest().digest(data.getBytes("UTF-8"));
-        } catch (UnsupportedEncodingException e) {
-            /* This really shouldn't happen */
-            throw new RuntimeException(e);
+        return this.low;
+    }
+
+    public String getHex()
+    {
+        String hex = this.hex;
+        if (hex == null) {
+            final char[] out = new char[2 * Md5.LENGTH];
+            Md5.encodeHex(this.high, out, 0);
+            Md5.encodeHex(this.low, out, Md5.LENGTH);
+            hex = new String(out);
+            this.hex = hex;
         }
+
+        return hex;
+    }
+
+    private static byte[] md5(String data)
+    {
+        final MessageDigest digest = Md5.DIGEST.get();
+        digest.reset();
+
+        return digest.digest(data.getBytes(StandardCharsets.UTF_8));
     }
 
-    private MessageDigest getMd5Digest()
+    private static MessageDigest createMd5Digest()
     {
         try {
             return MessageDigest.getInstance("MD5");
@@ -92,6 +161,18 @@ public class Md5
         }
     }
 
+    private static void encodeHex(final long value, final char[] out, final int offset)
+    {
+        for (int i = 0; i < 16; i++) {
+            out[offset + i] = Md5.HEX_DIGITS_LOWER[(int) (value >>> (60 - 4 * i)) & 0x0F];
+        }
+    }
+
+    private static int hash(final long high, final long low)
+    {
+        return 31 * Long.hashCode(high) + Long.hashCode(low);
+    }
+
     public static char[] encodeHex(byte[] data)
     {
         int l = data.length;
@@ -138,11 +219,7 @@ public class Md5
     @Override
     public int hashCode()
     {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + Arrays.hashCode(this.md5Bytes);
-
-        return result;
+        return this.hash;
     }
 
     @Override
@@ -161,6 +238,6 @@ public class Md5
         }
 
         final Md5 other = (Md5) obj;
-        return Arrays.equals(this.md5Bytes, other.md5Bytes);
+        return this.high == other.high && this.low == other.low;
     }
 }
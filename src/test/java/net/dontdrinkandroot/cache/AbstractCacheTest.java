@@ -20,6 +20,16 @@ package net.dontdrinkandroot.cache;
 import net.dontdrinkandroot.cache.statistics.CacheStatistics;
 import org.junit.Assert;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public abstract class AbstractCacheTest<K, V>
 {
     private int currentId = 0;
@@ -58,6 +68,113 @@ public abstract class AbstractCacheTest<K, V>
         }
     }
 
+    protected void testBulkPutGetDelete(Cache<K, V> cache) throws Exception
+    {
+        /* Put multiple entries at once */
+        final Map<K, V> entries = new LinkedHashMap<>();
+        final List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final int id = this.increaseAndGetCurrentId();
+            ids.add(id);
+            entries.put(this.translateKey(id), this.createInputObject(id));
+        }
+        Assert.assertEquals(10, cache.putAllWithErrors(entries).size());
+        this.putCount += 10;
+        this.size += 10;
+        this.assertStatistics(cache);
+
+        /* Get all of them plus one that is unknown */
+        final List<K> keys = new ArrayList<>(entries.keySet());
+        keys.add(this.translateKey(this.increaseAndGetCurrentId()));
+        Map<K, V> result = cache.getAllWithErrors(keys);
+        Assert.assertEquals(10, result.size());
+        for (final Integer id : ids) {
+            this.assertValue(id, result.get(this.translateKey(id)));
+        }
+        this.getCount += 11;
+        this.hitCount += 10;
+        this.notFoundCount++;
+        this.assertStatistics(cache);
+
+        /* Delete half of them */
+        cache.deleteAll(keys.subList(0, 5));
+        this.size -= 5;
+        this.assertStatistics(cache);
+
+        result = cache.getAllWithErrors(keys.subList(0, 10));
+        Assert.assertEquals(5, result.size());
+        for (final Integer id : ids.subList(5, 10)) {
+            this.assertValue(id, result.get(this.translateKey(id)));
+        }
+        this.getCount += 10;
+        this.hitCount += 5;
+        this.notFoundCount += 5;
+        this.assertStatistics(cache);
+    }
+
+    /**
+     * Tests that concurrent misses on the same key only trigger a single load. Statistics are not tracked as the
+     * number of misses depends on the scheduling of the threads, so pass a dedicated cache instance.
+     */
+    protected void testSingleFlightLoad(final Cache<K, V> cache) throws Exception
+    {
+        final int id = this.increaseAndGetCurrentId();
+        final K key = this.translateKey(id);
+        final V value = this.createInputObject(id);
+        final AtomicInteger numLoads = new AtomicInteger();
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final int numThreads = 8;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final List<Future<V>> results = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                results.add(executor.submit(() -> {
+                    startLatch.await();
+                    return cache.getWithErrors(key, k -> {
+                        numLoads.incrementAndGet();
+                        try {
+                            Thread.sleep(100);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return value;
+                    });
+                }));
+            }
+            startLatch.countDown();
+
+            for (final Future<V> result : results) {
+                this.assertValue(id, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(1, numLoads.get());
+        this.assertValue(id, cache.getWithErrors(key));
+
+        /* Present entries are not loaded again */
+        this.assertValue(id, cache.getWithErrors(key, k -> {
+            throw new IllegalStateException("Must not be loaded");
+        }));
+
+        /* Loader failures are propagated and nothing is stored */
+        final K failingKey = this.translateKey(this.increaseAndGetCurrentId());
+        try {
+            cache.getWithErrors(failingKey, k -> {
+                throw new IllegalStateException("Failing loader");
+            });
+            Assert.fail("CacheException expected");
+        } catch (CacheException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertNull(cache.getWithErrors(failingKey));
+        Assert.assertNull(cache.get(failingKey, k -> {
+            throw new IllegalStateException("Failing loader");
+        }));
+    }
+
     protected void testDefaultExpiry(Cache<K, V> cache) throws Exception
     {
         Assert.assertEquals(0L, cache.getDefaultTtl());
@@ -131,6 +248,12 @@ public abstract class AbstractCacheTest<K, V>
 
     protected abstract void doAssertGet(int key, Cache<K, V> cache) throws Exception;
 
+    protected void assertValue(int key, V value) throws Exception
+    {
+        Assert.assertNotNull(value);
+        Assert.assertEquals(this.createInputObject(key), value);
+    }
+
     protected abstract V createInputObject(int key) throws Exception;
 
     // protected abstract O createOutputObject(String key);
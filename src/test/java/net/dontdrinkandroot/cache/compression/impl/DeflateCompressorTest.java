@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.compression.impl;
+
+import net.dontdrinkandroot.cache.CacheException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+public class DeflateCompressorTest
+{
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        final DeflateCompressor compressor = new DeflateCompressor();
+
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append("compressible text ");
+        }
+        final byte[] text = builder.toString().getBytes(StandardCharsets.UTF_8);
+        final byte[] compressedText = compressor.compress(text);
+        Assert.assertTrue(compressedText.length < text.length / 10);
+        Assert.assertArrayEquals(text, compressor.decompress(compressedText));
+
+        /* Incompressible data grows slightly but still round trips */
+        final byte[] random = new byte[10000];
+        new Random(42).nextBytes(random);
+        Assert.assertArrayEquals(random, compressor.decompress(compressor.compress(random)));
+
+        Assert.assertArrayEquals(new byte[0], compressor.decompress(compressor.compress(new byte[0])));
+    }
+
+    @Test
+    public void testInvalidData() throws Exception
+    {
+        final DeflateCompressor compressor = new DeflateCompressor();
+
+        try {
+            compressor.decompress(new byte[]{1, 2});
+            Assert.fail("Exception expected");
+        } catch (CacheException e) {
+            /* Expected */
+        }
+
+        final byte[] compressed = compressor.compress("some text to compress".getBytes(StandardCharsets.UTF_8));
+        try {
+            compressor.decompress(Arrays.copyOf(compressed, compressed.length / 2));
+            Assert.fail("Exception expected");
+        } catch (CacheException e) {
+            /* Expected */
+        }
+
+        try {
+            new DeflateCompressor(10);
+            Assert.fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            /* Expected */
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.eviction.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FrequencySketchTest
+{
+    @Test
+    public void testIncrement() throws Exception
+    {
+        final FrequencySketch<Integer> sketch = new FrequencySketch<>(512);
+        Assert.assertEquals(0, sketch.frequency(1));
+
+        sketch.increment(1);
+        sketch.increment(1);
+        Assert.assertEquals(2, sketch.frequency(1));
+
+        /* Counters saturate */
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(2);
+        }
+        Assert.assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency(2));
+        Assert.assertEquals(2, sketch.frequency(1));
+    }
+
+    @Test
+    public void testAging() throws Exception
+    {
+        final FrequencySketch<Integer> sketch = new FrequencySketch<>(64);
+        for (int i = 0; i < 8; i++) {
+            sketch.increment(1);
+        }
+        Assert.assertEquals(8, sketch.frequency(1));
+
+        /* Reaching ten times the maximum size halves all counters */
+        for (int i = 0; i < 10 * 64; i++) {
+            sketch.increment(1000 + i);
+        }
+        Assert.assertTrue(sketch.frequency(1) <= 4);
+        Assert.assertTrue(sketch.frequency(1) >= 3);
+    }
+
+    @Test
+    public void testEnsureCapacity() throws Exception
+    {
+        final FrequencySketch<Integer> sketch = new FrequencySketch<>(16);
+        sketch.increment(1);
+
+        /* Smaller sizes keep the frequencies */
+        sketch.ensureCapacity(8);
+        Assert.assertEquals(1, sketch.frequency(1));
+
+        sketch.ensureCapacity(1024);
+        Assert.assertEquals(0, sketch.frequency(1));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.hashing.impl;
+
+import net.dontdrinkandroot.cache.hashing.KeyHasher;
+import net.dontdrinkandroot.cache.utils.Md5;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+public class KeyHasherTest
+{
+    @Test
+    public void testMurmur3() throws Exception
+    {
+        final Murmur3KeyHasher<String> hasher = new Murmur3KeyHasher<>();
+
+        Assert.assertEquals(new Md5(0, 0), hasher.hash(""));
+        Assert.assertEquals(new Md5(0xcbd8a7b341bd9b02L, 0x5b1e906a48ae1d19L), hasher.hash("hello"));
+        Assert.assertEquals(
+                new Md5(0xe34bbc7bbc071b6cL, 0x7a433ca9c49a9347L),
+                hasher.hash("The quick brown fox jumps over the lazy dog")
+        );
+
+        Assert.assertNotEquals(hasher.hash("hello"), new Murmur3KeyHasher<String>(1).hash("hello"));
+        this.assertDistinct(hasher);
+    }
+
+    @Test
+    public void testXxHash64() throws Exception
+    {
+        final XxHash64KeyHasher<String> hasher = new XxHash64KeyHasher<>();
+
+        Assert.assertEquals(0xef46db3751d8e999L, hasher.hash64(new byte[0]));
+        Assert.assertEquals(0x44bc2cf5ad770999L, hasher.hash64("abc".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(new Md5(0x44bc2cf5ad770999L, 3), hasher.hash("abc"));
+
+        Assert.assertNotEquals(hasher.hash("hello"), new XxHash64KeyHasher<String>(1).hash("hello"));
+        this.assertDistinct(hasher);
+    }
+
+    @Test
+    public void testMd5() throws Exception
+    {
+        final Md5KeyHasher<Object> hasher = new Md5KeyHasher<>();
+
+        /* Compatible with the keys callers computed themselves */
+        Assert.assertEquals(new Md5("hello"), hasher.hash("hello"));
+        Assert.assertEquals(new Md5("hello"), hasher.hash("hello".getBytes(StandardCharsets.UTF_8)));
+        final Md5 md5 = new Md5("world");
+        Assert.assertSame(md5, hasher.hash(md5));
+
+        /* Serializable keys are hashed by their serialized form */
+        Assert.assertEquals(hasher.hash(42L), hasher.hash(42L));
+        Assert.assertNotEquals(hasher.hash(42L), hasher.hash(43L));
+
+        try {
+            hasher.hash(new Object());
+            Assert.fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            /* Expected */
+        }
+    }
+
+    /**
+     * Hashes keys of all lengths around the block sizes and checks that they are stable and unique.
+     */
+    private void assertDistinct(final KeyHasher<String> hasher)
+    {
+        final Set<Md5> hashes = new HashSet<>();
+        final StringBuilder key = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(hasher.hash(key.toString()), hasher.hash(key.toString()));
+            Assert.assertTrue(hashes.add(hasher.hash(key.toString())));
+            key.append((char) ('a' + i % 26));
+        }
+    }
+}
@@ -19,6 +19,8 @@ package net.dontdrinkandroot.cache.impl.disk.file;
 
 import net.dontdrinkandroot.cache.AbstractCacheTest;
 import net.dontdrinkandroot.cache.Cache;
+import net.dontdrinkandroot.cache.CacheException;
+import net.dontdrinkandroot.cache.metadata.MetaData;
 import net.dontdrinkandroot.cache.utils.Duration;
 import net.dontdrinkandroot.cache.utils.FileUtils;
 import net.dontdrinkandroot.cache.utils.Md5;
@@ -28,7 +30,13 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -103,6 +111,312 @@ public class FileCacheTest extends AbstractCacheTest<Md5, File>
         this.doAssertGet(2, cache);
     }
 
+    @Test
+    public void testReReadIndexParallel() throws Exception
+    {
+        FileCache cache =
+                new FileCache(
+                        "testCache",
+                        Duration.minutes(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        Integer.MAX_VALUE,
+                        Integer.MAX_VALUE,
+                        FileCacheTest.baseDir,
+                        2
+                );
+
+        for (int i = 0; i < 200; i++) {
+            cache.putWithErrors(this.translateKey(i), this.createInputObject(i));
+        }
+
+        /* Files that are not named like an entry are ignored */
+        this.writeLines(new File(FileCacheTest.baseDir, "a" + File.separator + "unrelated"), Collections.singleton("x"));
+
+        cache =
+                new FileCache(
+                        "testCache",
+                        Duration.minutes(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        Integer.MAX_VALUE,
+                        Integer.MAX_VALUE,
+                        FileCacheTest.baseDir,
+                        2
+                );
+
+        Assert.assertEquals(200, cache.getStatistics().getCurrentSize());
+        for (int i = 0; i < 200; i++) {
+            this.doAssertGet(i, cache);
+        }
+    }
+
+    @Test
+    public void testPutModes() throws Exception
+    {
+        final FileCache cache =
+                new FileCache(
+                        "testCache",
+                        Duration.minutes(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        Integer.MAX_VALUE,
+                        Integer.MAX_VALUE,
+                        FileCacheTest.baseDir,
+                        2
+                );
+
+        /* Moved files are gone afterwards, files are created in the temp dir which may be on another file system */
+        cache.setPutMode(PutMode.MOVE);
+        File source = this.createInputObject(1);
+        cache.putWithErrors(this.translateKey(1), source);
+        Assert.assertFalse(source.exists());
+        this.doAssertGet(1, cache);
+
+        /* Linked files remain, if linking was possible both refer to the same file */
+        cache.setPutMode(PutMode.LINK);
+        source = this.createInputObject(2);
+        cache.putWithErrors(this.translateKey(2), source);
+        Assert.assertTrue(source.exists());
+        this.doAssertGet(2, cache);
+
+        /* Files within the same file system can always be linked */
+        final File localSource = new File(FileCacheTest.baseDir, "source");
+        this.writeLines(localSource, Collections.singleton(this.translateKey(3).getHex()));
+        final File linked = cache.putWithErrors(this.translateKey(3), localSource);
+        Assert.assertTrue(Files.isSameFile(localSource.toPath(), linked.toPath()));
+        this.doAssertGet(3, cache);
+
+        cache.setPutMode(PutMode.COPY);
+        source = this.createInputObject(4);
+        cache.putWithErrors(this.translateKey(4), source);
+        Assert.assertTrue(source.exists());
+        this.doAssertGet(4, cache);
+    }
+
+    @Test
+    public void testFailedMoveKeepsSource() throws Exception
+    {
+        final FileCache cache =
+                new FileCache(
+                        "testCache",
+                        Duration.minutes(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        Integer.MAX_VALUE,
+                        Integer.MAX_VALUE,
+                        FileCacheTest.baseDir,
+                        2
+                );
+        cache.setPutMode(PutMode.MOVE);
+
+        /* A non empty directory in place of the target makes moving the staged file into place fail */
+        final File target = cache.getFilePath(this.translateKey(1)).toFile();
+        Assert.assertTrue(target.mkdir());
+        this.writeLines(new File(target, "blocker"), Collections.singleton("blocker"));
+
+        final File source = this.createInputObject(1);
+        try {
+            cache.putWithErrors(this.translateKey(1), source);
+            Assert.fail("Exception expected");
+        } catch (final CacheException e) {
+            /* Expected */
+        }
+
+        /* The source was moved back and no temporary files are left over */
+        Assert.assertTrue(source.exists());
+        Assert.assertEquals(Collections.singletonList(this.translateKey(1).getHex()), this.readLines(source));
+        final File[] stagedFiles = target.getParentFile().listFiles((dir, name) -> name.endsWith(".staged"));
+        Assert.assertNotNull(stagedFiles);
+        Assert.assertEquals(0, stagedFiles.length);
+        Assert.assertNull(cache.getWithErrors(this.translateKey(1)));
+    }
+
+    @Test
+    public void testPutStream() throws Exception
+    {
+        final FileCache cache =
+                new FileCache(
+                        "testCache",
+                        Duration.minutes(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        Integer.MAX_VALUE,
+                        Integer.MAX_VALUE,
+                        FileCacheTest.baseDir,
+                        2
+                );
+
+        final byte[] content = (this.translateKey(1).getHex() + "\n").getBytes(StandardCharsets.UTF_8);
+        cache.putWithErrors(this.translateKey(1), new ByteArrayInputStream(content));
+        this.doAssertGet(1, cache);
+        Assert.assertEquals(1, cache.getStatistics().getCurrentSize());
+
+        /* No temporary files are left over */
+        final File parentDir = cache.getWithErrors(this.translateKey(1)).getParentFile();
+        final File[] stagedFiles = parentDir.listFiles((dir, name) -> name.endsWith(".staged"));
+        Assert.assertNotNull(stagedFiles);
+        Assert.assertEquals(0, stagedFiles.length);
+    }
+
+    @Test
+    public void testChannelAccess() throws Exception
+    {
+        final FileCache cache =
+                new FileCache(
+                        "testCache",
+                        Duration.minutes(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        Integer.MAX_VALUE,
+                        Integer.MAX_VALUE,
+                        FileCacheTest.baseDir,
+                        2
+                );
+
+        cache.putWithErrors(this.translateKey(1), this.createInputObject(1));
+        final byte[] content = (this.translateKey(1).getHex() + "\n").getBytes(StandardCharsets.UTF_8);
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Assert.assertEquals(content.length, cache.transferTo(this.translateKey(1), Channels.newChannel(outputStream)));
+        Assert.assertArrayEquals(content, outputStream.toByteArray());
+
+        /* The channel remains readable after the entry was deleted */
+        try (FileChannel channel = cache.openChannel(this.translateKey(1))) {
+            cache.delete(this.translateKey(1));
+            final ByteBuffer buffer = ByteBuffer.allocate(8);
+            Assert.assertEquals(8, channel.read(buffer, 4));
+            Assert.assertArrayEquals(Arrays.copyOfRange(content, 4, 12), buffer.array());
+        }
+
+        Assert.assertNull(cache.openChannel(this.translateKey(1)));
+        Assert.assertEquals(-1, cache.transferTo(this.translateKey(1), Channels.newChannel(outputStream)));
+    }
+
+    @Test
+    public void testDeferredDelete() throws Exception
+    {
+        final FileCache cache =
+                new FileCache(
+                        "testCache",
+                        Duration.minutes(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        Integer.MAX_VALUE,
+                        Integer.MAX_VALUE,
+                        FileCacheTest.baseDir,
+                        2
+                );
+        final List<Runnable> deleteTasks = new ArrayList<>();
+        cache.setDeleteExecutor(deleteTasks::add);
+
+        final File file = cache.putWithErrors(this.translateKey(1), this.createInputObject(1));
+        cache.delete(this.translateKey(1));
+        Assert.assertNull(cache.getWithErrors(this.translateKey(1)));
+        Assert.assertTrue(file.exists());
+
+        /* The executor also writes the metadata journal */
+        Assert.assertEquals(2, deleteTasks.size());
+        deleteTasks.forEach(Runnable::run);
+        deleteTasks.clear();
+        Assert.assertFalse(file.exists());
+
+        /* A put after the delete wins over the pending deletion */
+        cache.putWithErrors(this.translateKey(2), this.createInputObject(2));
+        cache.delete(this.translateKey(2));
+        cache.putWithErrors(this.translateKey(2), this.createInputObject(2));
+        for (final Runnable deleteTask : deleteTasks) {
+            deleteTask.run();
+        }
+        this.doAssertGet(2, cache);
+
+        /* Replacing an entry keeps the new file */
+        deleteTasks.clear();
+        cache.putWithErrors(this.translateKey(2), this.createInputObject(2));
+        for (final Runnable deleteTask : deleteTasks) {
+            deleteTask.run();
+        }
+        this.doAssertGet(2, cache);
+
+        /* No staged files are left over */
+        final File parentDir = cache.getWithErrors(this.translateKey(2)).getParentFile();
+        final File[] stagedFiles = parentDir.listFiles((dir, name) -> name.endsWith(".staged"));
+        Assert.assertNotNull(stagedFiles);
+        Assert.assertEquals(0, stagedFiles.length);
+    }
+
+    @Test
+    public void testMetaDataJournal() throws Exception
+    {
+        FileCache cache = this.createJournalTestCache(Duration.minutes(1));
+        cache.setDeleteExecutor(task -> {
+            /* Never delete files, as if the cache crashed before */
+        });
+
+        cache.putWithErrors(this.translateKey(1), this.createInputObject(1));
+        for (int i = 0; i < 5; i++) {
+            this.doAssertGet(1, cache);
+        }
+        final MetaData metaData = cache.getMetaData(this.translateKey(1));
+        final File deletedFile = cache.putWithErrors(this.translateKey(2), this.createInputObject(2));
+        cache.delete(this.translateKey(2));
+        Assert.assertTrue(deletedFile.exists());
+
+        /* Changes are only recorded in memory until the journal is written in the background */
+        final File journalFile = new File(FileCacheTest.baseDir, MetaDataJournal.JOURNAL_FILE_NAME);
+        final long emptyJournalLength = journalFile.length();
+        cache.flushJournal();
+        Assert.assertTrue(journalFile.length() > emptyJournalLength);
+
+        /* Reopen without closing, the metadata is replayed from the journal */
+        cache = this.createJournalTestCache(Duration.hours(1));
+        this.assertMetaDataEquals(metaData, cache.getMetaData(this.translateKey(1)));
+        Assert.assertNull(cache.getMetaData(this.translateKey(2)));
+        Assert.assertFalse(deletedFile.exists());
+
+        /* Closing writes a snapshot, the time to live of the entry is kept */
+        cache.close();
+        cache = this.createJournalTestCache(Duration.hours(1));
+        this.assertMetaDataEquals(metaData, cache.getMetaData(this.translateKey(1)));
+        Assert.assertEquals(Duration.minutes(1), cache.getMetaData(this.translateKey(1)).getTimeToLive());
+        Assert.assertEquals(1, cache.getStatistics().getCurrentSize());
+        cache.close();
+    }
+
+    @Test
+    public void testSnapshotOnAccess() throws Exception
+    {
+        final FileCache cache = this.createJournalTestCache(Duration.minutes(1));
+        cache.setDeleteExecutor(Runnable::run);
+        cache.putWithErrors(this.translateKey(1), this.createInputObject(1));
+
+        /* Accesses alone grow the journal until a snapshot is taken that starts a new one */
+        final File journalFile = new File(FileCacheTest.baseDir, MetaDataJournal.JOURNAL_FILE_NAME);
+        for (int i = 0; i < 10001; i++) {
+            this.doAssertGet(1, cache);
+        }
+        cache.flushJournal();
+        Assert.assertTrue(journalFile.length() < 10000);
+
+        cache.close();
+    }
+
+    private FileCache createJournalTestCache(final long defaultTimeToLive) throws Exception
+    {
+        return new FileCache(
+                "testCache",
+                defaultTimeToLive,
+                Cache.UNLIMITED_IDLE_TIME,
+                Integer.MAX_VALUE,
+                Integer.MAX_VALUE,
+                FileCacheTest.baseDir,
+                2
+        );
+    }
+
+    private void assertMetaDataEquals(final MetaData expected, final MetaData actual)
+    {
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(expected.getCreated(), actual.getCreated());
+        Assert.assertEquals(expected.getTimeToLive(), actual.getTimeToLive());
+        Assert.assertEquals(expected.getMaxIdleTime(), actual.getMaxIdleTime());
+        Assert.assertEquals(expected.getLastAccess(), actual.getLastAccess());
+        Assert.assertEquals(expected.getHitCount(), actual.getHitCount());
+    }
+
     @Test
     public void testDefaultExpiry() throws Exception
     {
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.impl.disk.file;
+
+import net.dontdrinkandroot.cache.AbstractCacheTest;
+import net.dontdrinkandroot.cache.Cache;
+import net.dontdrinkandroot.cache.CacheException;
+import net.dontdrinkandroot.cache.hashing.KeyHasher;
+import net.dontdrinkandroot.cache.hashing.impl.Murmur3KeyHasher;
+import net.dontdrinkandroot.cache.utils.Duration;
+import net.dontdrinkandroot.cache.utils.FileUtils;
+import net.dontdrinkandroot.cache.utils.Md5;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class HashedFileCacheTest extends AbstractCacheTest<String, File>
+{
+    private final static File baseDir = new File(FileUtils.getTempDirectory(), "hashedfilecachetest");
+
+    @AfterClass
+    public static void afterClass() throws IOException
+    {
+        FileUtils.deleteDirectory(HashedFileCacheTest.baseDir);
+    }
+
+    @Before
+    public void before() throws IOException
+    {
+        FileUtils.deleteDirectory(HashedFileCacheTest.baseDir);
+    }
+
+    @Test
+    public void testDefaultGetPutDelete() throws Exception
+    {
+        try (HashedFileCache<String> cache = this.createCache(new Murmur3KeyHasher<>())) {
+            super.testDefaultPutGetDelete(cache);
+        }
+    }
+
+    @Test
+    public void testBulkPutGetDelete() throws Exception
+    {
+        try (HashedFileCache<String> cache = this.createCache(new Murmur3KeyHasher<>())) {
+            super.testBulkPutGetDelete(cache);
+        }
+    }
+
+    @Test
+    public void testVerifyKeys() throws Exception
+    {
+        /* Hash everything to the same value to force collisions */
+        final KeyHasher<String> collidingHasher = key -> new Md5(1, 2);
+
+        try (HashedFileCache<String> cache = this.createCache(collidingHasher)) {
+            cache.putWithErrors("a", this.createInputObject(1));
+            Assert.assertNotNull(cache.getWithErrors("b"));
+
+            cache.setVerifyKeys(true);
+            cache.putWithErrors("a", this.createInputObject(1));
+            Assert.assertNotNull(cache.getWithErrors("a"));
+            Assert.assertNull(cache.getWithErrors("b"));
+            Assert.assertNull(cache.getMetaData("b"));
+
+            /* Deleting a colliding key leaves the entry alone */
+            cache.delete("b");
+            Assert.assertNotNull(cache.getWithErrors("a"));
+
+            cache.delete("a");
+            Assert.assertNull(cache.getWithErrors("a"));
+
+            cache.putWithErrors("b", this.createInputObject(2));
+            Assert.assertNull(cache.getWithErrors("a"));
+            this.assertValue(2, cache.getWithErrors("b"));
+
+            /* A failed put does not take over the hash of the existing entry */
+            try {
+                cache.putWithErrors("a", new File(HashedFileCacheTest.baseDir, "missing"));
+                Assert.fail("Exception expected");
+            } catch (final CacheException e) {
+                /* Expected */
+            }
+            this.assertValue(2, cache.getWithErrors("b"));
+            Assert.assertNull(cache.getWithErrors("a"));
+        }
+    }
+
+    private HashedFileCache<String> createCache(final KeyHasher<String> keyHasher) throws Exception
+    {
+        final FileCache fileCache = new FileCache(
+                "testCache",
+                Duration.minutes(1),
+                Cache.UNLIMITED_IDLE_TIME,
+                Integer.MAX_VALUE,
+                Integer.MAX_VALUE,
+                HashedFileCacheTest.baseDir,
+                2
+        );
+
+        return new HashedFileCache<>(fileCache, keyHasher);
+    }
+
+    @Override
+    protected void doAssertGet(final int key, final Cache<String, File> cache) throws Exception
+    {
+        this.assertValue(key, cache.getWithErrors(this.translateKey(key)));
+    }
+
+    @Override
+    protected void assertValue(final int key, final File value) throws Exception
+    {
+        Assert.assertNotNull(value);
+        Assert.assertEquals(
+                this.translateKey(key),
+                new String(Files.readAllBytes(value.toPath()), StandardCharsets.UTF_8)
+        );
+    }
+
+    @Override
+    protected File createInputObject(final int key) throws Exception
+    {
+        final File file = File.createTempFile("hashedfilecachetest", ".tmp");
+        file.deleteOnExit();
+        Files.write(file.toPath(), this.translateKey(key).getBytes(StandardCharsets.UTF_8));
+
+        return file;
+    }
+
+    @Override
+    protected String translateKey(final int key)
+    {
+        return "key" + key;
+    }
+}
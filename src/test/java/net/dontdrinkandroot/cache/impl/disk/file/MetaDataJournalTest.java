@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.impl.disk.file;
+
+import net.dontdrinkandroot.cache.Cache;
+import net.dontdrinkandroot.cache.metadata.impl.SimpleMetaData;
+import net.dontdrinkandroot.cache.utils.FileUtils;
+import net.dontdrinkandroot.cache.utils.Md5;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class MetaDataJournalTest
+{
+    private File baseDir;
+
+    @Before
+    public void before() throws IOException
+    {
+        this.baseDir = File.createTempFile("cachetest", null);
+        this.baseDir.delete();
+        this.baseDir.mkdirs();
+    }
+
+    @After
+    public void after() throws IOException
+    {
+        FileUtils.deleteDirectory(this.baseDir);
+    }
+
+    @Test
+    public void testPendingSnapshot() throws Exception
+    {
+        final Md5 first = new Md5(1, 1);
+        final Md5 second = new Md5(2, 2);
+
+        final MetaDataJournal journal = new MetaDataJournal(this.baseDir);
+        journal.read();
+        journal.snapshot(Collections.emptyMap());
+
+        final Map<Md5, SimpleMetaData> entries = new HashMap<>();
+        entries.put(first, new SimpleMetaData(1000, 2000, Cache.UNLIMITED_IDLE_TIME, 1000));
+        journal.recordUpdate(first, entries.get(first));
+        journal.prepareSnapshot(entries);
+        journal.recordUpdate(second, new SimpleMetaData(3000, 4000, Cache.UNLIMITED_IDLE_TIME, 3000));
+
+        /* Records made after the snapshot was prepared are held back, the records before it are not written yet */
+        journal.flush();
+        Assert.assertTrue(new MetaDataJournal(this.baseDir).read().isEmpty());
+
+        /* Writing the snapshot completes the old journal, the held back records go to the new one */
+        journal.writeSnapshot();
+        Assert.assertEquals(entries.keySet(), new MetaDataJournal(this.baseDir).read().keySet());
+        journal.flush();
+        final Map<Md5, SimpleMetaData> restored = new MetaDataJournal(this.baseDir).read();
+        Assert.assertEquals(2, restored.size());
+        Assert.assertEquals(1000, restored.get(first).getCreated());
+        Assert.assertEquals(3000, restored.get(second).getCreated());
+
+        journal.close();
+        Assert.assertEquals(restored.keySet(), new MetaDataJournal(this.baseDir).read().keySet());
+    }
+}
@@ -69,6 +69,72 @@ public class BufferedSerializableIndexedCacheTest extends AbstractSerializableCu
         cache.close();
     }
 
+    @Test
+    public void testBulkPutGetDelete() throws Exception
+    {
+        final AbstractIndexedDiskCache<Serializable, Serializable> cache =
+                new BufferedSerializableIndexedDiskCache<>(
+                        "testCache",
+                        Duration.minutes(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        100000,
+                        100000,
+                        this.baseDir,
+                        5
+                );
+
+        /* Once from the writer queue and once from disk */
+        this.testBulkPutGetDelete(cache);
+        cache.flush();
+        this.testBulkPutGetDelete(cache);
+
+        cache.close();
+    }
+
+    @Test
+    public void testBufferLruEviction() throws Exception
+    {
+        final BufferedSerializableIndexedDiskCache<Serializable, Serializable> cache =
+                new BufferedSerializableIndexedDiskCache<>(
+                        "testCache",
+                        Duration.minutes(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        100000,
+                        100000,
+                        this.baseDir,
+                        2
+                );
+
+        cache.putWithErrors("1", "1");
+        cache.putWithErrors("2", "2");
+
+        /* Access makes "2" the least recently used entry */
+        Assert.assertEquals("1", cache.getWithErrors("1"));
+        cache.putWithErrors("3", "3");
+        Assert.assertEquals(2, cache.getBufferStatistics().getCurrentSize());
+        Assert.assertEquals(1, cache.getBufferStatistics().getCacheHits());
+
+        Assert.assertEquals("1", cache.getWithErrors("1"));
+        Assert.assertEquals("3", cache.getWithErrors("3"));
+        Assert.assertEquals(3, cache.getBufferStatistics().getCacheHits());
+
+        /* "2" is read from disk and evicts "1" */
+        Assert.assertEquals("2", cache.getWithErrors("2"));
+        Assert.assertEquals(1, cache.getBufferStatistics().getCacheMisses());
+        Assert.assertEquals("1", cache.getWithErrors("1"));
+        Assert.assertEquals(2, cache.getBufferStatistics().getCacheMisses());
+        Assert.assertEquals(2, cache.getBufferStatistics().getCurrentSize());
+
+        /* Shrinking the buffer takes effect on the next admission */
+        cache.setBufferSize(1);
+        cache.putWithErrors("4", "4");
+        Assert.assertEquals(1, cache.getBufferStatistics().getCurrentSize());
+        Assert.assertEquals("4", cache.getWithErrors("4"));
+        Assert.assertEquals(4, cache.getBufferStatistics().getCacheHits());
+
+        cache.close();
+    }
+
     /**
      * Tests if on putting the same key/value the filesize doesn't change as the entries get
      * overridden.
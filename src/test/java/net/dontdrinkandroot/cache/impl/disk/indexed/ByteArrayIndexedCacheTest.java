@@ -19,6 +19,7 @@ package net.dontdrinkandroot.cache.impl.disk.indexed;
 
 import net.dontdrinkandroot.cache.AbstractCustomTtlCacheTest;
 import net.dontdrinkandroot.cache.Cache;
+import net.dontdrinkandroot.cache.compression.impl.DeflateCompressor;
 import net.dontdrinkandroot.cache.utils.Duration;
 import net.dontdrinkandroot.cache.utils.FileUtils;
 import org.junit.After;
@@ -26,10 +27,15 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
 
 public class ByteArrayIndexedCacheTest extends AbstractCustomTtlCacheTest<Serializable, byte[]>
 {
@@ -70,6 +76,58 @@ public class ByteArrayIndexedCacheTest extends AbstractCustomTtlCacheTest<Serial
         cache.close();
     }
 
+    @Test
+    public void testChannelAccess() throws Exception
+    {
+        ByteArrayIndexedDiskCache cache =
+                new ByteArrayIndexedDiskCache(
+                        "testCache",
+                        Duration.minutes(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        Integer.MAX_VALUE,
+                        Integer.MAX_VALUE,
+                        this.baseDir
+                );
+
+        final byte[] value = new byte[100000];
+        new Random(42).nextBytes(value);
+        cache.put("raw", value);
+        cache.setCompression(new DeflateCompressor(), 0);
+        cache.put("compressed", new byte[100000]);
+
+        /* Queued entries are served from memory, written entries from the data file */
+        this.assertChannelAccess(cache, "raw", value);
+        this.assertChannelAccess(cache, "compressed", new byte[100000]);
+        cache.flush();
+        this.assertChannelAccess(cache, "raw", value);
+        this.assertChannelAccess(cache, "compressed", new byte[100000]);
+
+        Assert.assertEquals(-1, cache.transferTo("unknown", Channels.newChannel(new ByteArrayOutputStream())));
+        Assert.assertEquals(-1, cache.read("unknown", 0, ByteBuffer.allocate(10)));
+        Assert.assertEquals(-1, cache.read("raw", value.length, ByteBuffer.allocate(10)));
+
+        cache.close();
+    }
+
+    private void assertChannelAccess(final ByteArrayIndexedDiskCache cache, final String key, final byte[] value)
+            throws Exception
+    {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Assert.assertEquals(value.length, cache.transferTo(key, Channels.newChannel(outputStream)));
+        Assert.assertArrayEquals(value, outputStream.toByteArray());
+
+        final ByteArrayOutputStream rangeStream = new ByteArrayOutputStream();
+        Assert.assertEquals(1000, cache.transferTo(key, 5000, 1000, Channels.newChannel(rangeStream)));
+        Assert.assertArrayEquals(Arrays.copyOfRange(value, 5000, 6000), rangeStream.toByteArray());
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(1000);
+        Assert.assertEquals(500, cache.read(key, value.length - 500, buffer));
+        buffer.flip();
+        final byte[] tail = new byte[buffer.remaining()];
+        buffer.get(tail);
+        Assert.assertArrayEquals(Arrays.copyOfRange(value, value.length - 500, value.length), tail);
+    }
+
     @Override
     protected void doAssertGet(int key, Cache<Serializable, byte[]> cache) throws Exception
     {
@@ -18,7 +18,15 @@
 package net.dontdrinkandroot.cache.impl.disk.indexed;
 
 import net.dontdrinkandroot.cache.*;
+import net.dontdrinkandroot.cache.compression.impl.DeflateCompressor;
 import net.dontdrinkandroot.cache.impl.AbstractSerializableCustomTtlCacheTest;
+import net.dontdrinkandroot.cache.impl.disk.indexed.storage.IndexData;
+import net.dontdrinkandroot.cache.impl.disk.indexed.storage.IndexFile;
+import net.dontdrinkandroot.cache.listener.RemovalCause;
+import net.dontdrinkandroot.cache.listener.RemovalNotification;
+import net.dontdrinkandroot.cache.metadata.impl.BlockMetaData;
+import net.dontdrinkandroot.cache.statistics.LatencyMetric;
+import net.dontdrinkandroot.cache.time.impl.ManualTicker;
 import net.dontdrinkandroot.cache.utils.Duration;
 import net.dontdrinkandroot.cache.utils.FileUtils;
 import org.apache.log4j.Level;
@@ -29,7 +37,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class SerializableIndexedCacheTest extends AbstractSerializableCustomTtlCacheTest
@@ -67,6 +79,221 @@ public class SerializableIndexedCacheTest extends AbstractSerializableCustomTtlC
         // cache.close();
     }
 
+    @Test
+    public void testBulkPutGetDelete() throws Exception
+    {
+        final AbstractIndexedDiskCache<Serializable, Serializable> cache =
+                new SerializableIndexedDiskCache(
+                        "testCache",
+                        Duration.minutes(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        1000,
+                        1000,
+                        this.baseDir
+                );
+
+        /* Once from the writer queue and once from disk */
+        this.testBulkPutGetDelete(cache);
+        cache.flush();
+        this.testBulkPutGetDelete(cache);
+
+        /* Make sure at least one read hits the disk, independent of the progress of the writer */
+        cache.flush();
+        final Serializable lastKey = this.translateKey(this.getCurrentId() - 1);
+        Assert.assertEquals(1, cache.getAll(Collections.singletonList(lastKey)).size());
+
+        Assert.assertTrue(cache.getStatistics().getLatency(LatencyMetric.DISK_READ).getCount() > 0);
+        Assert.assertTrue(cache.getStatistics().getLatency(LatencyMetric.CODEC).getCount() > 0);
+
+        cache.close();
+    }
+
+    /**
+     * Entries that are both expired and stale are removed once, as expired.
+     */
+    @Test
+    public void testCleanUpExpiredAndStale() throws Exception
+    {
+        final SerializableIndexedDiskCache cache =
+                new SerializableIndexedDiskCache(
+                        "testCache",
+                        Duration.minutes(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        1000,
+                        1000,
+                        this.baseDir
+                );
+        final ManualTicker ticker = new ManualTicker();
+        cache.setTicker(ticker);
+        final List<RemovalNotification<Serializable, Serializable>> notifications = new ArrayList<>();
+        cache.setRemovalListenerExecutor(Runnable::run);
+        cache.addRemovalListener(notifications::add);
+
+        cache.putWithErrors("1", "1", 100, 100);
+        cache.putWithErrors("2", "2", Duration.minutes(1), 100);
+        ticker.advance(200);
+        cache.cleanUp();
+
+        Assert.assertEquals(2, notifications.size());
+        for (final RemovalNotification<Serializable, Serializable> notification : notifications) {
+            final RemovalCause expectedCause =
+                    "1".equals(notification.getKey()) ? RemovalCause.EXPIRED : RemovalCause.STALE;
+            Assert.assertEquals(expectedCause, notification.getCause());
+        }
+        Assert.assertEquals(0, cache.getStatistics().getCurrentSize());
+        Assert.assertEquals(2, cache.getStatistics().getEvictions());
+
+        cache.close();
+    }
+
+    @Test
+    public void testSingleFlightLoad() throws Exception
+    {
+        final AbstractIndexedDiskCache<Serializable, Serializable> cache =
+                new SerializableIndexedDiskCache(
+                        "testCache",
+                        Duration.minutes(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        1000,
+                        1000,
+                        this.baseDir
+                );
+
+        this.testSingleFlightLoad(cache);
+
+        cache.close();
+    }
+
+    @Test
+    public void testRefreshAhead() throws Exception
+    {
+        final SerializableIndexedDiskCache cache =
+                new SerializableIndexedDiskCache("testCache", 500, Cache.UNLIMITED_IDLE_TIME, 1000, 1000, this.baseDir);
+        final ManualTicker ticker = new ManualTicker();
+        cache.setTicker(ticker);
+        cache.setRefreshAhead(key -> "refresh" + key, 0.5, Runnable::run);
+
+        cache.put("1", "initial1");
+        cache.put("2", "initial2");
+        cache.flush();
+        final long dataFileLength = cache.getDataFile().length();
+        final int numIndexBlocks = cache.getIndexFile().getNumAllocated();
+
+        /* Within the refresh window the old value is still served */
+        ticker.advance(300);
+        Assert.assertEquals("initial1", cache.get("1"));
+        Assert.assertEquals("initial2", cache.get("2"));
+        cache.flush();
+
+        /* Values of the same size are rewritten in place */
+        Assert.assertEquals(dataFileLength, cache.getDataFile().length());
+        Assert.assertEquals(numIndexBlocks, cache.getIndexFile().getNumAllocated());
+
+        ticker.advance(300);
+        Assert.assertEquals("refresh1", cache.get("1"));
+        Assert.assertEquals("refresh2", cache.get("2"));
+
+        /* Deleting an entry whose rewrite is still queued releases the stored blocks */
+        ticker.advance(300);
+        Assert.assertEquals("refresh1", cache.get("1"));
+        cache.delete("1");
+        cache.delete("2");
+        cache.flush();
+        Assert.assertEquals(0, cache.getIndexFile().getNumAllocated());
+        Assert.assertEquals(0, cache.getDataFile().getNumAllocated());
+
+        cache.close();
+
+        final SerializableIndexedDiskCache reopened =
+                new SerializableIndexedDiskCache("testCache", 500, Cache.UNLIMITED_IDLE_TIME, 1000, 1000, this.baseDir);
+        Assert.assertEquals(0, reopened.getStatistics().getCurrentSize());
+        reopened.close();
+    }
+
+    @Test
+    public void testSegmentedDataFile() throws Exception
+    {
+        final SerializableIndexedDiskCache cache =
+                new SerializableIndexedDiskCache("testCache", 60000, Cache.UNLIMITED_IDLE_TIME, 1000, 1000, this.baseDir);
+        cache.setMaxSegmentSize(1024);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        cache.flush();
+        Assert.assertTrue(cache.getNumDataFileSegments() > 1);
+        cache.close();
+
+        /* Entries of all segments are found again after reopening */
+        final SerializableIndexedDiskCache reopened =
+                new SerializableIndexedDiskCache("testCache", 60000, Cache.UNLIMITED_IDLE_TIME, 1000, 1000, this.baseDir);
+        Assert.assertEquals(100, reopened.getStatistics().getCurrentSize());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("value" + i, reopened.get("key" + i));
+        }
+
+        /* Segments are deleted as soon as they are empty */
+        for (int i = 0; i < 100; i++) {
+            reopened.delete("key" + i);
+        }
+        reopened.flush();
+        Assert.assertEquals(1, reopened.getNumDataFileSegments());
+        Assert.assertEquals(0, reopened.getDataFileLength());
+        Assert.assertFalse(reopened.getDataFile().getSegmentFile(1).exists());
+        reopened.close();
+    }
+
+    @Test
+    public void testRecovery() throws Exception
+    {
+        SerializableIndexedDiskCache cache =
+                new SerializableIndexedDiskCache("testCache", 60000, Cache.UNLIMITED_IDLE_TIME, 1000, 1000, this.baseDir);
+        Assert.assertFalse(cache.isRecovered());
+        for (int i = 1; i <= 3; i++) {
+            cache.put(Integer.toString(i), "value" + i);
+            cache.flush();
+        }
+        IndexData secondIndexData = null;
+        for (final Object entry : cache.getEntriesMetaData()) {
+            final BlockMetaData metaData = (BlockMetaData) entry;
+            if (metaData.getIndexData().getBlockNum() == 1) {
+                secondIndexData = metaData.getIndexData();
+            }
+        }
+        cache.close();
+
+        /* Corrupt the value of the second entry and leave a lock file behind as after a crash */
+        try (RandomAccessFile data = new RandomAccessFile(cache.getDataFile().getFileName(), "rw")) {
+            data.seek(secondIndexData.getValueBlock().getEndPosition());
+            final int lastByte = data.read();
+            data.seek(secondIndexData.getValueBlock().getEndPosition());
+            data.write(lastByte ^ 0xFF);
+        }
+        Assert.assertTrue(new File(this.baseDir, "testCache.lock").createNewFile());
+
+        cache = new SerializableIndexedDiskCache("testCache", 60000, Cache.UNLIMITED_IDLE_TIME, 1000, 1000, this.baseDir);
+        Assert.assertTrue(cache.isRecovered());
+        Assert.assertEquals(2, cache.getStatistics().getCurrentSize());
+        Assert.assertEquals("value1", cache.get("1"));
+        Assert.assertNull(cache.get("2"));
+        Assert.assertEquals("value3", cache.get("3"));
+        cache.close();
+        Assert.assertFalse(new File(this.baseDir, "testCache.lock").exists());
+
+        /* A corrupted index slot is dropped on a clean start as well */
+        try (RandomAccessFile index = new RandomAccessFile(new File(this.baseDir, "testCache.index"), "rw")) {
+            index.seek(IndexFile.HEADER_LENGTH + 5);
+            final int slotByte = index.read();
+            index.seek(IndexFile.HEADER_LENGTH + 5);
+            index.write(slotByte ^ 0xFF);
+        }
+        cache = new SerializableIndexedDiskCache("testCache", 60000, Cache.UNLIMITED_IDLE_TIME, 1000, 1000, this.baseDir);
+        Assert.assertFalse(cache.isRecovered());
+        Assert.assertEquals(1, cache.getStatistics().getCurrentSize());
+        Assert.assertEquals("value3", cache.get("3"));
+        cache.close();
+    }
+
     /**
      * Tests if on putting the same key/value the filesize doesn't change as the entries get overridden.
      */
@@ -198,7 +425,7 @@ public class SerializableIndexedCacheTest extends AbstractSerializableCustomTtlC
             Assert.fail("IOException expected");
         } catch (IOException e) {
             /* Expected */
-            Assert.assertTrue(e.getMessage().startsWith("Lock file found"));
+            Assert.assertTrue(e.getMessage().startsWith("Lock file"));
         }
     }
 
@@ -241,6 +468,135 @@ public class SerializableIndexedCacheTest extends AbstractSerializableCustomTtlC
         cache.close();
     }
 
+    @Test
+    public void testSyncDurability() throws Exception
+    {
+        final SerializableIndexedDiskCache cache =
+                new SerializableIndexedDiskCache("testCache", 60000, Cache.UNLIMITED_IDLE_TIME, 1000, 1000, this.baseDir);
+        cache.setDurability(Durability.SYNC);
+
+        /* Entries are on disk as soon as the put returns */
+        cache.put("1", "value1");
+        Assert.assertEquals(0, cache.getWriteQueueLength());
+        Assert.assertEquals(1, cache.getIndexFileNumAllocatedBlocks());
+        Assert.assertEquals("value1", cache.get("1"));
+
+        /* Refreshed entries are rewritten before the access returns */
+        final ManualTicker ticker = new ManualTicker();
+        cache.setTicker(ticker);
+        cache.setRefreshAhead(key -> "refresh" + key, 0.5, Runnable::run);
+        cache.put("2", "value2");
+        ticker.advance(30001);
+        Assert.assertEquals("value2", cache.get("2"));
+        Assert.assertEquals(0, cache.getWriteQueueLength());
+        Assert.assertEquals("refresh2", cache.get("2"));
+
+        cache.delete("1");
+        cache.delete("2");
+        Assert.assertEquals(0, cache.getIndexFileNumAllocatedBlocks());
+        cache.close();
+    }
+
+    @Test
+    public void testCompression() throws Exception
+    {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append("compressible text ");
+        }
+        final String largeValue = builder.toString();
+
+        final SerializableIndexedDiskCache rawCache =
+                new SerializableIndexedDiskCache("rawCache", 60000, Cache.UNLIMITED_IDLE_TIME, 1000, 1000, this.baseDir);
+        rawCache.put("large", largeValue);
+        rawCache.flush();
+        final long rawLength = rawCache.getDataFileAllocated();
+        rawCache.close();
+
+        SerializableIndexedDiskCache cache = new SerializableIndexedDiskCache(
+                "compressedCache",
+                60000,
+                Cache.UNLIMITED_IDLE_TIME,
+                1000,
+                1000,
+                this.baseDir
+        );
+        cache.setCompression(new DeflateCompressor(), 256);
+        cache.put("large", largeValue);
+        cache.put("small", "small");
+        cache.flush();
+        Assert.assertTrue(cache.getDataFileAllocated() < rawLength / 4);
+        Assert.assertEquals(largeValue, cache.get("large"));
+        Assert.assertEquals("small", cache.get("small"));
+
+        final Set<Boolean> compressedFlags = new HashSet<>();
+        for (final Object metaData : cache.getEntriesMetaData()) {
+            compressedFlags.add(((BlockMetaData) metaData).isCompressed());
+        }
+        Assert.assertEquals(new HashSet<>(Arrays.asList(true, false)), compressedFlags);
+        cache.close();
+
+        /* The compression flag survives a restart */
+        cache = new SerializableIndexedDiskCache(
+                "compressedCache",
+                60000,
+                Cache.UNLIMITED_IDLE_TIME,
+                1000,
+                1000,
+                this.baseDir
+        );
+        cache.setCompression(new DeflateCompressor(), 256);
+        Assert.assertEquals(largeValue, cache.get("large"));
+        Assert.assertEquals("small", cache.get("small"));
+        cache.close();
+    }
+
+    /**
+     * Compares the put throughput of the durability modes, the entries are written to the default temporary
+     * directory so forcing hits a real device.
+     */
+    @Test
+    public void runDurabilityBenchmark() throws Exception
+    {
+        Assume.assumeTrue(Boolean.parseBoolean(System.getProperty("cache.test.runloadtest")));
+
+        final int numPuts = 2000;
+
+        /* Warm up so the first mode is not penalized */
+        this.measurePutThroughput("warmup", Durability.NONE, numPuts);
+
+        for (final Durability durability : Durability.values()) {
+            final long putsPerSecond = this.measurePutThroughput("durability" + durability, durability, numPuts);
+            this.getLogger().info(durability + ": " + putsPerSecond + " puts/s");
+        }
+    }
+
+    private long measurePutThroughput(final String name, final Durability durability, final int numPuts)
+            throws Exception
+    {
+        final SerializableIndexedDiskCache cache = new SerializableIndexedDiskCache(
+                name,
+                Duration.minutes(1),
+                Cache.UNLIMITED_IDLE_TIME,
+                numPuts * 2,
+                numPuts * 2,
+                this.baseDir
+        );
+        cache.setDurability(durability);
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < numPuts; i++) {
+            cache.put("key" + i, new ExampleObject(i));
+        }
+        cache.flush();
+        final long elapsed = Math.max(1, System.nanoTime() - start);
+
+        Assert.assertEquals(numPuts, cache.getIndexFileNumAllocatedBlocks());
+        cache.close();
+
+        return numPuts * 1000000000L / elapsed;
+    }
+
     @Test
     public void runLoadTest() throws Throwable
     {
@@ -22,6 +22,8 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
 
 public class DataFileTest
 {
@@ -82,6 +84,43 @@ public class DataFileTest
         dataFile.close();
     }
 
+    @Test
+    public void testReadMultiple() throws IOException
+    {
+        File file = File.createTempFile("file", ".data");
+        file.deleteOnExit();
+        DataFile dataFile = new DataFile(file);
+
+        final String s1 = "first";
+        final DataBlock db1 = dataFile.write(s1.getBytes());
+        final String s2 = "second";
+        final DataBlock db2 = dataFile.write(s2.getBytes());
+        final DataBlock gap = dataFile.write(new byte[(int) DataFile.COALESCE_GAP + 1]);
+        final String s3 = "third";
+        final DataBlock db3 = dataFile.write(s3.getBytes());
+
+        Map<DataBlock, byte[]> result = dataFile.read(Arrays.asList(db3, db1, db2));
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals(s1, new String(result.get(db1)));
+        Assert.assertEquals(s2, new String(result.get(db2)));
+        Assert.assertEquals(s3, new String(result.get(db3)));
+
+        dataFile.delete(db2, true);
+        try {
+            dataFile.read(Arrays.asList(db1, db2));
+            throw new Exception("Exception expected");
+        } catch (final Exception e) {
+            /* Expected */
+        }
+
+        dataFile.delete(gap, true);
+        result = dataFile.read(Arrays.asList(db1, db3));
+        Assert.assertEquals(s1, new String(result.get(db1)));
+        Assert.assertEquals(s3, new String(result.get(db3)));
+
+        dataFile.close();
+    }
+
     @Test
     public void testTruncation() throws IOException
     {
@@ -25,6 +25,7 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.Collection;
 import java.util.Iterator;
 
@@ -64,11 +65,11 @@ public class IndexFileTest
     }
 
     @Test
-    public void testWriteReadDelete() throws IOException
+    public void testWriteReadDelete() throws Exception
     {
-        IndexData id1 = new IndexData(new DataBlock(0, 1), new DataBlock(2, 3));
-        IndexData id2 = new IndexData(new DataBlock(4, 5), new DataBlock(6, 7));
-        IndexData id3 = new IndexData(new DataBlock(8, 9), new DataBlock(10, 11));
+        IndexData id1 = new IndexData(new DataBlock(0, 1), new DataBlock(2, 3), 0, 0);
+        IndexData id2 = new IndexData(new DataBlock(4, 5), new DataBlock(6, 7), 0, 0);
+        IndexData id3 = new IndexData(new DataBlock(8, 9), new DataBlock(10, 11), 0, 0);
 
         id1 = this.indexFile.write(id1);
         Assert.assertEquals(0, id1.getBlockNum());
@@ -84,11 +85,11 @@ public class IndexFileTest
     }
 
     @Test
-    public void testReReadIndex() throws IOException
+    public void testReReadIndex() throws Exception
     {
-        IndexData id1 = new IndexData(new DataBlock(0, 1), new DataBlock(2, 3));
-        IndexData id2 = new IndexData(new DataBlock(4, 5), new DataBlock(6, 7));
-        IndexData id3 = new IndexData(new DataBlock(8, 9), new DataBlock(10, 11));
+        IndexData id1 = new IndexData(new DataBlock(0, 1), new DataBlock(2, 3), 0, 0);
+        IndexData id2 = new IndexData(new DataBlock(4, 5), new DataBlock(6, 7), 0, 0);
+        IndexData id3 = new IndexData(new DataBlock(8, 9), new DataBlock(10, 11), 0, 0);
 
         id1 = this.indexFile.write(id1);
         Assert.assertEquals(0, id1.getBlockNum());
@@ -121,16 +122,41 @@ public class IndexFileTest
         Assert.assertEquals(id3.getValueBlock().getEndPosition(), next.getValueBlock().getEndPosition());
     }
 
+    @Test
+    public void testLegacyMigration() throws IOException
+    {
+        this.indexFile.close();
+        try (RandomAccessFile legacy = new RandomAccessFile(this.file, "rw")) {
+            legacy.setLength(0);
+            for (int i = 0; i < 3; i++) {
+                legacy.writeBoolean(i != 1);
+                legacy.writeLong(i * 4);
+                legacy.writeLong(i * 4 + 1);
+                legacy.writeLong(i * 4 + 2);
+                legacy.writeLong(i * 4 + 3);
+            }
+        }
+
+        this.indexFile = new IndexFile(this.file);
+        final Collection<IndexData> entries = this.indexFile.initialize();
+        Assert.assertEquals(2, entries.size());
+        for (final IndexData entry : entries) {
+            Assert.assertFalse(entry.isStored());
+        }
+        Assert.assertEquals(0, this.indexFile.getNumAllocated());
+        Assert.assertEquals(IndexFile.HEADER_LENGTH, this.indexFile.length());
+    }
+
     @Test
     public void testEnlargingAndShrinking() throws CheckSumNotMatchingException, IOException
     {
         for (int i = 0; i < 10; i++) {
-            IndexData indexData = new IndexData(new DataBlock(i * 4, i * 4 + 1), new DataBlock(i * 4 + 2, i * 4 + 3));
+            IndexData indexData = new IndexData(new DataBlock(i * 4, i * 4 + 1), new DataBlock(i * 4 + 2, i * 4 + 3), 0, 0);
             indexData = this.indexFile.write(indexData);
             Assert.assertEquals(i, indexData.getBlockNum());
         }
         Assert.assertEquals(10, this.indexFile.getNumAllocated());
-        Assert.assertEquals(10 * IndexData.LENGTH, this.indexFile.length());
+        Assert.assertEquals(IndexFile.HEADER_LENGTH + 10 * IndexData.LENGTH, this.indexFile.length());
         this.indexFile.close();
 
         this.indexFile = new IndexFile(this.file);
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.impl.disk.indexed.storage;
+
+import net.dontdrinkandroot.cache.utils.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+public class SegmentedDataFileTest
+{
+    private File baseDir;
+
+    @Before
+    public void before() throws IOException
+    {
+        this.baseDir = File.createTempFile("segmenttest", null);
+        this.baseDir.delete();
+        this.baseDir.mkdirs();
+    }
+
+    @After
+    public void after() throws IOException
+    {
+        FileUtils.deleteDirectory(this.baseDir);
+    }
+
+    @Test
+    public void testSegments() throws IOException
+    {
+        final File file = new File(this.baseDir, "test.data");
+        final SegmentedDataFile dataFile = new SegmentedDataFile(file);
+        dataFile.setMaxSegmentSize(10);
+
+        final DataBlock block1 = dataFile.write("0123456789".getBytes());
+        final DataBlock block2 = dataFile.write("abcde".getBytes());
+        final DataBlock block3 = dataFile.write("fghij".getBytes());
+        final DataBlock block4 = dataFile.write("a block larger than a segment".getBytes());
+
+        Assert.assertEquals(0, block1.getSegment());
+        Assert.assertEquals(1, block2.getSegment());
+        Assert.assertEquals(1, block3.getSegment());
+        Assert.assertEquals(2, block4.getSegment());
+        Assert.assertEquals(3, dataFile.getNumSegments());
+        Assert.assertEquals(49, dataFile.length());
+        Assert.assertTrue(dataFile.getSegmentFile(1).exists());
+
+        Assert.assertEquals("abcde", new String(dataFile.read(block2)));
+        final Map<DataBlock, byte[]> blocks = dataFile.read(Arrays.asList(block1, block3, block4));
+        Assert.assertEquals("0123456789", new String(blocks.get(block1)));
+        Assert.assertEquals("fghij", new String(blocks.get(block3)));
+        Assert.assertEquals("a block larger than a segment", new String(blocks.get(block4)));
+
+        /* Releasing the last block of a segment deletes it right away */
+        dataFile.delete(block2, true);
+        Assert.assertEquals(3, dataFile.getNumSegments());
+        dataFile.delete(block3, true);
+        Assert.assertEquals(2, dataFile.getNumSegments());
+        Assert.assertFalse(dataFile.getSegmentFile(1).exists());
+
+        /* Free segment ids are reused */
+        final DataBlock block5 = dataFile.write("klmno".getBytes());
+        Assert.assertEquals(1, block5.getSegment());
+        dataFile.close();
+
+        /* Existing segments are picked up on reopening */
+        final SegmentedDataFile reopened = new SegmentedDataFile(file);
+        Assert.assertEquals(3, reopened.getNumSegments());
+        reopened.allocateSpace(block1);
+        reopened.allocateSpace(block4);
+        reopened.allocateSpace(block5);
+        Assert.assertTrue(reopened.checkConsistency());
+        Assert.assertEquals("klmno", new String(reopened.read(block5)));
+        Assert.assertEquals("a block larger than a segment", new String(reopened.read(block4)));
+        reopened.close();
+    }
+
+    @Test
+    public void testReleaseEmptySegments() throws IOException
+    {
+        final File file = new File(this.baseDir, "test.data");
+        final SegmentedDataFile dataFile = new SegmentedDataFile(file);
+        dataFile.setMaxSegmentSize(4);
+        final DataBlock block1 = dataFile.write("0123".getBytes());
+        final DataBlock block2 = dataFile.write("4567".getBytes());
+        dataFile.close();
+
+        /* Only the first block is referenced, the orphaned segment is removed */
+        final SegmentedDataFile reopened = new SegmentedDataFile(file);
+        reopened.allocateSpace(block1);
+        Assert.assertEquals(2, reopened.getNumSegments());
+        reopened.releaseEmptySegments();
+        Assert.assertEquals(1, reopened.getNumSegments());
+        Assert.assertFalse(reopened.getSegmentFile(block2.getSegment()).exists());
+        reopened.close();
+    }
+}
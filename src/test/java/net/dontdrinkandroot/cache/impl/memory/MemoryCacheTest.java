@@ -19,13 +19,24 @@ package net.dontdrinkandroot.cache.impl.memory;
 
 import net.dontdrinkandroot.cache.Cache;
 import net.dontdrinkandroot.cache.CacheException;
+import net.dontdrinkandroot.cache.eviction.impl.ClockEvictionPolicy;
+import net.dontdrinkandroot.cache.eviction.impl.FrequencyEvictionPolicy;
+import net.dontdrinkandroot.cache.eviction.impl.FrequencySketch;
+import net.dontdrinkandroot.cache.eviction.impl.LruEvictionPolicy;
 import net.dontdrinkandroot.cache.impl.AbstractSerializableCustomTtlCacheTest;
+import net.dontdrinkandroot.cache.listener.RemovalCause;
+import net.dontdrinkandroot.cache.listener.RemovalNotification;
 import net.dontdrinkandroot.cache.metadata.MetaData;
+import net.dontdrinkandroot.cache.statistics.CacheStatistics;
+import net.dontdrinkandroot.cache.statistics.LatencyMetric;
+import net.dontdrinkandroot.cache.time.impl.ManualTicker;
 import net.dontdrinkandroot.cache.utils.Duration;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 public class MemoryCacheTest extends AbstractSerializableCustomTtlCacheTest
 {
@@ -42,6 +53,259 @@ public class MemoryCacheTest extends AbstractSerializableCustomTtlCacheTest
                 );
 
         this.testCustomGetPutDelete(cache);
+
+        final CacheStatistics statistics = cache.getStatistics();
+        Assert.assertEquals(statistics.getGetCount(), statistics.getLatency(LatencyMetric.GET).getCount());
+        Assert.assertEquals(statistics.getPutCount(), statistics.getLatency(LatencyMetric.PUT).getCount());
+        Assert.assertTrue(statistics.getLatency(LatencyMetric.LOCK_WAIT).getCount() > 0);
+        Assert.assertTrue(statistics.getLatency(LatencyMetric.DELETE).getCount() > 0);
+    }
+
+    @Test
+    public void runBulkTests() throws Exception
+    {
+        final MemoryCache<Serializable, Serializable> cache =
+                new MemoryCache<Serializable, Serializable>(
+                        "testCache",
+                        Duration.days(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        Integer.MAX_VALUE,
+                        Integer.MAX_VALUE
+                );
+
+        this.testBulkPutGetDelete(cache);
+
+        /* Bulk operations record one sample per call */
+        final CacheStatistics statistics = cache.getStatistics();
+        Assert.assertTrue(statistics.getLatency(LatencyMetric.GET).getCount() > 0);
+        Assert.assertTrue(statistics.getLatency(LatencyMetric.PUT).getCount() > 0);
+        Assert.assertTrue(statistics.getLatency(LatencyMetric.DELETE).getCount() > 0);
+        Assert.assertTrue(statistics.getLatency(LatencyMetric.LOCK_WAIT).getCount() > 0);
+    }
+
+    @Test
+    public void runSingleFlightLoadTest() throws Exception
+    {
+        final MemoryCache<Serializable, Serializable> cache =
+                new MemoryCache<Serializable, Serializable>(
+                        "testCache",
+                        Duration.days(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        Integer.MAX_VALUE,
+                        Integer.MAX_VALUE
+                );
+
+        this.testSingleFlightLoad(cache);
+    }
+
+    @Test
+    public void testRefreshAhead() throws Exception
+    {
+        final MemoryCache<Serializable, Serializable> cache =
+                new MemoryCache<Serializable, Serializable>(
+                        "testCache",
+                        500,
+                        Cache.UNLIMITED_IDLE_TIME,
+                        Integer.MAX_VALUE,
+                        Integer.MAX_VALUE
+                );
+        final ManualTicker ticker = new ManualTicker();
+        cache.setTicker(ticker);
+        cache.setRefreshAhead(key -> "refreshed", 0.5, Runnable::run);
+
+        cache.put("1", "initial");
+        final long created = cache.getMetaData("1").getCreated();
+
+        /* Not within the refresh window yet */
+        Assert.assertEquals("initial", cache.get("1"));
+        Assert.assertEquals(created, cache.getMetaData("1").getCreated());
+
+        /* Within the refresh window the old value is still served */
+        ticker.advance(300);
+        Assert.assertEquals("initial", cache.get("1"));
+        Assert.assertEquals(created + 300, cache.getMetaData("1").getCreated());
+        Assert.assertEquals(500, cache.getMetaData("1").getTimeToLive());
+        Assert.assertEquals(1, cache.getStatistics().getCurrentSize());
+
+        /* Refreshed value outlives the original expiry */
+        ticker.advance(300);
+        Assert.assertEquals("refreshed", cache.get("1"));
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() throws Exception
+    {
+        final MemoryCache<Serializable, Serializable> cache =
+                new MemoryCache<Serializable, Serializable>(
+                        "testCache",
+                        200,
+                        Cache.UNLIMITED_IDLE_TIME,
+                        Integer.MAX_VALUE,
+                        Integer.MAX_VALUE
+                );
+        final ManualTicker ticker = new ManualTicker();
+        cache.setTicker(ticker);
+        final List<Runnable> pendingRefreshes = new ArrayList<>();
+        cache.setRefreshAhead(key -> "refreshed", 0, pendingRefreshes::add);
+        cache.setStaleWhileRevalidate(1000);
+
+        cache.put("1", "initial");
+        ticker.advance(300);
+
+        /* Expired entry is served stale while being revalidated */
+        Assert.assertEquals("initial", cache.get("1"));
+        Assert.assertTrue(cache.getMetaData("1").isServedStale());
+        Assert.assertEquals("initial", cache.get("1"));
+        Assert.assertEquals(1, pendingRefreshes.size());
+        Assert.assertEquals(2, cache.getStatistics().getStaleHits());
+        Assert.assertEquals(2, cache.getStatistics().getCacheHits());
+
+        pendingRefreshes.get(0).run();
+        Assert.assertEquals("refreshed", cache.get("1"));
+        Assert.assertFalse(cache.getMetaData("1").isServedStale());
+        Assert.assertEquals(2, cache.getStatistics().getStaleHits());
+
+        /* Without refresh-ahead nobody revalidates, so nothing is served stale */
+        cache.setRefreshAhead(null, 0);
+        cache.put("2", "initial");
+        ticker.advance(300);
+        Assert.assertNull(cache.get("2"));
+    }
+
+    @Test
+    public void testStaleIfError() throws Exception
+    {
+        final MemoryCache<Serializable, Serializable> cache =
+                new MemoryCache<Serializable, Serializable>(
+                        "testCache",
+                        200,
+                        Cache.UNLIMITED_IDLE_TIME,
+                        Integer.MAX_VALUE,
+                        Integer.MAX_VALUE
+                );
+        final ManualTicker ticker = new ManualTicker();
+        cache.setTicker(ticker);
+        cache.setStaleIfError(500);
+
+        cache.put("1", "initial");
+        ticker.advance(300);
+
+        /* Expired entry is a miss but retained as fallback for a failing load */
+        Assert.assertNull(cache.get("1"));
+        Assert.assertEquals(1, cache.getStatistics().getCacheMissesExpired());
+        Assert.assertEquals(1, cache.getStatistics().getCurrentSize());
+        Assert.assertEquals("initial", cache.getWithErrors("1", key -> {
+            throw new IllegalStateException("Origin down");
+        }));
+        Assert.assertEquals(1, cache.getStatistics().getStaleHits());
+
+        /* Successful load replaces the stale entry */
+        Assert.assertEquals("loaded", cache.getWithErrors("1", key -> "loaded"));
+        Assert.assertEquals("loaded", cache.get("1"));
+
+        /* Beyond the stale-if-error window the error is propagated */
+        cache.put("2", "initial");
+        ticker.advance(800);
+        try {
+            cache.getWithErrors("2", key -> {
+                throw new IllegalStateException("Origin down");
+            });
+            Assert.fail("CacheException expected");
+        } catch (CacheException e) {
+            /* Expected */
+        }
+
+        /* Failing refresh-ahead extends serving stale to the stale-if-error window */
+        cache.setRefreshAhead(key -> {
+            throw new IllegalStateException("Origin down");
+        }, 0, Runnable::run);
+        cache.setStaleWhileRevalidate(100);
+        cache.put("3", "initial");
+        ticker.advance(250);
+        Assert.assertEquals("initial", cache.get("3"));
+        Assert.assertTrue(cache.getMetaData("3").isRevalidationFailed());
+        ticker.advance(200);
+        Assert.assertEquals("initial", cache.get("3"));
+    }
+
+    @Test
+    public void testRemovalListener() throws Exception
+    {
+        final MemoryCache<Serializable, Serializable> cache =
+                new MemoryCache<Serializable, Serializable>(
+                        "testCache",
+                        Duration.days(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        2,
+                        0
+                );
+        final List<Runnable> pendingDispatches = new ArrayList<>();
+        final List<RemovalNotification<Serializable, Serializable>> notifications = new ArrayList<>();
+        cache.setRemovalListenerExecutor(pendingDispatches::add);
+        cache.addRemovalListener(notifications::add);
+
+        /* Nothing is dispatched on puts that do not remove anything */
+        cache.put("1", "initial");
+        cache.put("2", "2");
+        Assert.assertTrue(pendingDispatches.isEmpty());
+
+        /* Listeners are only notified once the dispatch runs */
+        cache.put("1", "replaced");
+        Assert.assertEquals(1, pendingDispatches.size());
+        Assert.assertTrue(notifications.isEmpty());
+        pendingDispatches.remove(0).run();
+        this.assertNotification(notifications.remove(0), "1", "initial", RemovalCause.REPLACED);
+
+        cache.delete("2");
+        pendingDispatches.remove(0).run();
+        this.assertNotification(notifications.remove(0), "2", "2", RemovalCause.EXPLICIT);
+
+        /* All evictions of an expunge are dispatched in a single task */
+        cache.put("2", "2");
+        cache.put("3", "3");
+        cache.put("4", "4");
+        Assert.assertEquals(2, pendingDispatches.size());
+        pendingDispatches.forEach(Runnable::run);
+        pendingDispatches.clear();
+        Assert.assertEquals(2, notifications.size());
+        for (final RemovalNotification<Serializable, Serializable> notification : notifications) {
+            Assert.assertEquals(RemovalCause.SIZE, notification.getCause());
+            Assert.assertTrue(notification.wasEvicted());
+        }
+        notifications.clear();
+
+        cache.putWithErrors("5", "5", 1);
+        Thread.sleep(5);
+        Assert.assertNull(cache.get("5"));
+        pendingDispatches.forEach(Runnable::run);
+        pendingDispatches.clear();
+        this.assertNotification(notifications.get(notifications.size() - 1), "5", "5", RemovalCause.EXPIRED);
+        notifications.clear();
+
+        /* Failing listeners do not affect others */
+        final List<RemovalNotification<Serializable, Serializable>> otherNotifications = new ArrayList<>();
+        cache.addRemovalListener(notification -> {
+            throw new IllegalStateException("Failing listener");
+        });
+        cache.addRemovalListener(otherNotifications::add);
+        cache.put("6", "6");
+        cache.delete("6");
+        pendingDispatches.forEach(Runnable::run);
+        Assert.assertEquals(notifications.size(), otherNotifications.size());
+        this.assertNotification(otherNotifications.get(otherNotifications.size() - 1), "6", "6", RemovalCause.EXPLICIT);
+    }
+
+    private void assertNotification(
+            final RemovalNotification<Serializable, Serializable> notification,
+            final Serializable key,
+            final Serializable value,
+            final RemovalCause cause
+    )
+    {
+        Assert.assertEquals(key, notification.getKey());
+        Assert.assertEquals(value, notification.getValue());
+        Assert.assertEquals(cause, notification.getCause());
+        Assert.assertNotNull(notification.getMetaData());
     }
 
     @Override
@@ -55,6 +319,61 @@ public class MemoryCacheTest extends AbstractSerializableCustomTtlCacheTest
         return sb.toString();
     }
 
+    @Test
+    public void testLruEviction() throws Exception
+    {
+        final MemoryCache<Serializable, Serializable> cache =
+                new MemoryCache<Serializable, Serializable>(
+                        "testCache",
+                        Duration.days(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        3,
+                        0
+                );
+        cache.put("1", "1");
+        cache.put("2", "2");
+        cache.setEvictionPolicy(new LruEvictionPolicy<>());
+        cache.put("3", "3");
+
+        /* Access makes "1" the most recently used entry */
+        Assert.assertEquals("1", cache.get("1"));
+        cache.put("4", "4");
+        Assert.assertNull(cache.getMetaData("2"));
+
+        cache.put("5", "5");
+        Assert.assertNull(cache.getMetaData("3"));
+        Assert.assertEquals("1", cache.get("1"));
+        Assert.assertEquals(2, cache.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void testClockEviction() throws Exception
+    {
+        final MemoryCache<Serializable, Serializable> cache =
+                new MemoryCache<Serializable, Serializable>(
+                        "testCache",
+                        Duration.days(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        3,
+                        0
+                );
+        cache.put("1", "1");
+        cache.put("2", "2");
+        cache.setEvictionPolicy(new ClockEvictionPolicy<>());
+        cache.put("3", "3");
+
+        /* A hit gives "1" a second chance, "2" was never read */
+        Assert.assertEquals("1", cache.get("1"));
+        cache.put("4", "4");
+        Assert.assertNull(cache.getMetaData("2"));
+
+        /* The reference bit of "1" was cleared, but the hand moved on to "3" */
+        cache.put("5", "5");
+        Assert.assertNull(cache.getMetaData("3"));
+        Assert.assertEquals("1", cache.get("1"));
+        Assert.assertEquals(2, cache.getStatistics().getEvictions());
+    }
+
     @Test
     public void testLfuDecay() throws InterruptedException, CacheException
     {
@@ -97,8 +416,12 @@ public class MemoryCacheTest extends AbstractSerializableCustomTtlCacheTest
         Assert.assertEquals(3, cache.getStatistics().getCurrentSize());
         Thread.sleep(1);
 
+        /* Entries are not decayed anymore, the frequencies are aged by the sketch */
         MetaData metaData = cache.getMetaData("1");
-        Assert.assertEquals(1, metaData.getHitCount());
+        Assert.assertEquals(2, metaData.getHitCount());
+        final FrequencySketch<Serializable> sketch =
+                ((FrequencyEvictionPolicy<Serializable, ?>) cache.getEvictionPolicy()).getSketch();
+        Assert.assertEquals(2, sketch.frequency("1"));
 
         Assert.assertNull(cache.get("2"));
         Assert.assertNull(cache.get("3"));
@@ -116,9 +439,15 @@ public class MemoryCacheTest extends AbstractSerializableCustomTtlCacheTest
         Assert.assertEquals(3, cache.getStatistics().getCurrentSize());
         Thread.sleep(1);
 
-		/* "1" should now be expunged as it is the oldest entry with hit count 1 */
-        Assert.assertNull(cache.get("1"));
+		/* "1" survives as it is accessed more often than the newer entries */
+        Assert.assertEquals("1", cache.get("1"));
         Assert.assertNull(cache.get("5"));
         Assert.assertNull(cache.get("6"));
+        Assert.assertNull(cache.get("7"));
+
+        /* The frequency survives deleting and putting the entry again */
+        cache.delete("1");
+        cache.put("1", "1");
+        Assert.assertEquals(4, sketch.frequency("1"));
     }
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.impl.sharded;
+
+import net.dontdrinkandroot.cache.Cache;
+import net.dontdrinkandroot.cache.CustomTtlCache;
+import net.dontdrinkandroot.cache.impl.AbstractSerializableCustomTtlCacheTest;
+import net.dontdrinkandroot.cache.impl.disk.indexed.SerializableIndexedDiskCache;
+import net.dontdrinkandroot.cache.utils.Duration;
+import net.dontdrinkandroot.cache.utils.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+
+public class ShardedCacheTest extends AbstractSerializableCustomTtlCacheTest
+{
+    private File baseDir;
+
+    @Before
+    public void before() throws IOException
+    {
+        this.baseDir = File.createTempFile("cachetest", null);
+        this.baseDir.delete();
+    }
+
+    @After
+    public void after() throws IOException
+    {
+        FileUtils.deleteDirectory(this.baseDir);
+    }
+
+    @Test
+    public void testGetPutDelete() throws Exception
+    {
+        final ShardedCache<Serializable, Serializable> cache = this.createCache();
+
+        this.testCustomGetPutDelete(cache);
+
+        cache.close();
+    }
+
+    @Test
+    public void testBulkPutGetDelete() throws Exception
+    {
+        final ShardedCache<Serializable, Serializable> cache = this.createCache();
+
+        this.testBulkPutGetDelete(cache);
+
+        /* Every shard got a share of the entries */
+        int totalSize = 0;
+        for (final CustomTtlCache<Serializable, Serializable> shard : cache.getShards()) {
+            Assert.assertTrue(shard.getStatistics().getCurrentSize() > 0);
+            totalSize += shard.getStatistics().getCurrentSize();
+        }
+        Assert.assertEquals(cache.getStatistics().getCurrentSize(), totalSize);
+
+        cache.getStatistics().reset();
+        Assert.assertEquals(0, cache.getStatistics().getGetCount());
+
+        cache.close();
+    }
+
+    private ShardedCache<Serializable, Serializable> createCache() throws IOException
+    {
+        return new ShardedCache<>(
+                "testCache",
+                4,
+                index -> new SerializableIndexedDiskCache(
+                        "testCache" + index,
+                        Duration.minutes(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        1000,
+                        1000,
+                        new File(this.baseDir, "shard" + index)
+                )
+        );
+    }
+
+    @Override
+    protected Serializable translateKey(int key)
+    {
+        return "key" + key;
+    }
+}
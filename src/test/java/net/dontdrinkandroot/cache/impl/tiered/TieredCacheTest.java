@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.impl.tiered;
+
+import net.dontdrinkandroot.cache.Cache;
+import net.dontdrinkandroot.cache.impl.disk.indexed.SerializableIndexedDiskCache;
+import net.dontdrinkandroot.cache.impl.memory.MemoryCache;
+import net.dontdrinkandroot.cache.utils.Duration;
+import net.dontdrinkandroot.cache.utils.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TieredCacheTest
+{
+    private File baseDir;
+
+    @Before
+    public void before() throws IOException
+    {
+        this.baseDir = File.createTempFile("cachetest", null);
+        this.baseDir.delete();
+    }
+
+    @After
+    public void after() throws IOException
+    {
+        FileUtils.deleteDirectory(this.baseDir);
+    }
+
+    @Test
+    public void testPromotionAndDemotion() throws Exception
+    {
+        final MemoryCache<Serializable, Serializable> firstTier =
+                new MemoryCache<>("firstTier", Duration.minutes(1), Cache.UNLIMITED_IDLE_TIME, 2, 0);
+        final SerializableIndexedDiskCache secondTier =
+                new SerializableIndexedDiskCache(
+                        "secondTier",
+                        Duration.minutes(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        1000,
+                        1000,
+                        this.baseDir
+                );
+        final List<Runnable> pendingDemotions = new ArrayList<>();
+        final List<Runnable> pendingDispatches = new ArrayList<>();
+        final List<Serializable> removedKeys = new ArrayList<>();
+        firstTier.setRemovalListenerExecutor(pendingDispatches::add);
+        firstTier.addRemovalListener(notification -> removedKeys.add(notification.getKey()));
+        final TieredCache<Serializable, Serializable> cache =
+                new TieredCache<>("tieredCache", firstTier, secondTier, pendingDemotions::add);
+
+        cache.putWithErrors("1", "1");
+        final long expiry = cache.getMetaData("1").getExpiry();
+        cache.putWithErrors("2", "2");
+        cache.putWithErrors("3", "3");
+
+        /* "1" was least recently used and is waiting to be demoted */
+        Assert.assertEquals(1, cache.getPendingDemotions());
+        Assert.assertEquals(2, firstTier.getStatistics().getCurrentSize());
+        Assert.assertEquals(0, secondTier.getStatistics().getCurrentSize());
+
+        /* Listeners of the first tier are still dispatched on their own executor */
+        Assert.assertTrue(removedKeys.isEmpty());
+        pendingDispatches.forEach(Runnable::run);
+        Assert.assertEquals(Collections.singletonList("1"), removedKeys);
+
+        /* Pending demotions are served and promoted straight back, evicting "2" */
+        Assert.assertEquals("1", cache.getWithErrors("1"));
+        Assert.assertEquals(expiry, cache.getMetaData("1").getExpiry(), 5);
+        pendingDemotions.forEach(Runnable::run);
+        pendingDemotions.clear();
+        Assert.assertEquals(0, cache.getPendingDemotions());
+        Assert.assertEquals(1, secondTier.getStatistics().getCurrentSize());
+        Assert.assertNotNull(secondTier.getMetaData("2"));
+
+        /* Hits of the second tier are promoted, evicting "3" */
+        Assert.assertEquals("2", cache.getWithErrors("2"));
+        Assert.assertNull(secondTier.getMetaData("2"));
+        pendingDemotions.forEach(Runnable::run);
+        pendingDemotions.clear();
+        Assert.assertNotNull(secondTier.getMetaData("3"));
+        Assert.assertEquals(2, firstTier.getStatistics().getCurrentSize());
+        Assert.assertEquals(1, secondTier.getStatistics().getCurrentSize());
+
+        /* Separate statistics per tier */
+        Assert.assertEquals(3, cache.getStatistics().getCurrentSize());
+        Assert.assertEquals(2, cache.getStatistics().getCacheHits());
+        Assert.assertEquals(2, cache.getFirstTierStatistics().getCacheMisses());
+        Assert.assertEquals(1, cache.getSecondTierStatistics().getCacheHits());
+
+        /* Putting and deleting affects all tiers */
+        cache.putWithErrors("3", "3a");
+        Assert.assertNull(secondTier.getMetaData("3"));
+        Assert.assertEquals("3a", cache.getWithErrors("3"));
+        pendingDemotions.forEach(Runnable::run);
+        pendingDemotions.clear();
+        cache.delete("1");
+        cache.delete("2");
+        cache.delete("3");
+        Assert.assertNull(cache.getWithErrors("1"));
+        Assert.assertNull(cache.getWithErrors("2"));
+        Assert.assertNull(cache.getWithErrors("3"));
+        Assert.assertEquals(0, cache.getStatistics().getCurrentSize());
+
+        secondTier.close();
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.jmx.impl;
+
+import net.dontdrinkandroot.cache.Cache;
+import net.dontdrinkandroot.cache.impl.disk.indexed.BufferedSerializableIndexedDiskCache;
+import net.dontdrinkandroot.cache.impl.memory.MemoryCache;
+import net.dontdrinkandroot.cache.utils.Duration;
+import net.dontdrinkandroot.cache.utils.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+
+public class CacheMXBeanAdapterTest
+{
+    private File baseDir;
+
+    private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    @Before
+    public void before() throws IOException
+    {
+        this.baseDir = File.createTempFile("cachetest", null);
+        this.baseDir.delete();
+    }
+
+    @After
+    public void after() throws IOException
+    {
+        FileUtils.deleteDirectory(this.baseDir);
+    }
+
+    @Test
+    public void testMemoryCache() throws Exception
+    {
+        final MemoryCache<Serializable, Serializable> cache =
+                new MemoryCache<>("jmxTestCache", Duration.days(1), Cache.UNLIMITED_IDLE_TIME, 100, 50);
+        final ObjectName name = new ObjectName("net.dontdrinkandroot.cache:type=MemoryCache,name=\"jmxTestCache\"");
+        Assert.assertNull(cache.getMXBeanName());
+        Assert.assertFalse(this.mBeanServer.isRegistered(name));
+
+        /* Registration is up to the caller once the cache was constructed */
+        cache.registerMXBean();
+        Assert.assertEquals(name, cache.getMXBeanName());
+        Assert.assertTrue(this.mBeanServer.isRegistered(name));
+
+        cache.put("1", "1");
+        cache.get("1");
+        cache.get("2");
+
+        Assert.assertEquals("jmxTestCache", this.mBeanServer.getAttribute(name, "Name"));
+        Assert.assertEquals(1, this.mBeanServer.getAttribute(name, "Size"));
+        Assert.assertEquals(2L, this.mBeanServer.getAttribute(name, "GetCount"));
+        Assert.assertEquals(1L, this.mBeanServer.getAttribute(name, "CacheHits"));
+        Assert.assertEquals(1L, this.mBeanServer.getAttribute(name, "CacheMissesNotFound"));
+        Assert.assertEquals(0L, this.mBeanServer.getAttribute(name, "Evictions"));
+        Assert.assertNotNull(this.mBeanServer.getAttribute(name, "LatencyPercentiles"));
+
+        /* Tuning knobs are writable at runtime */
+        this.mBeanServer.setAttribute(name, new Attribute("MaxSize", 3));
+        this.mBeanServer.setAttribute(name, new Attribute("RecycleSize", 1));
+        Assert.assertEquals(3, cache.getMaxSize());
+        Assert.assertEquals(1, cache.getRecycleSize());
+        for (int i = 2; i <= 5; i++) {
+            cache.put(Integer.toString(i), Integer.toString(i));
+        }
+        Assert.assertTrue((Long) this.mBeanServer.getAttribute(name, "Evictions") > 0);
+
+        this.mBeanServer.invoke(name, "resetStatistics", null, null);
+        Assert.assertEquals(0L, this.mBeanServer.getAttribute(name, "GetCount"));
+
+        /* A newer cache with the same name takes over the registration */
+        final MemoryCache<Serializable, Serializable> replacement =
+                new MemoryCache<>("jmxTestCache", Duration.days(1), Cache.UNLIMITED_IDLE_TIME, 100, 50);
+        replacement.registerMXBean();
+        Assert.assertEquals(0, this.mBeanServer.getAttribute(name, "Size"));
+        cache.unregisterMXBean();
+        Assert.assertTrue(this.mBeanServer.isRegistered(name));
+        replacement.unregisterMXBean();
+        Assert.assertFalse(this.mBeanServer.isRegistered(name));
+    }
+
+    @Test
+    public void testBufferedIndexedDiskCache() throws Exception
+    {
+        final BufferedSerializableIndexedDiskCache<Serializable, Serializable> cache =
+                new BufferedSerializableIndexedDiskCache<>(
+                        "jmxTestCache",
+                        Duration.minutes(1),
+                        Cache.UNLIMITED_IDLE_TIME,
+                        100000,
+                        100000,
+                        this.baseDir,
+                        10
+                );
+        cache.registerMXBean();
+        final ObjectName name = cache.getMXBeanName();
+        Assert.assertTrue(this.mBeanServer.isRegistered(name));
+
+        cache.putWithErrors("1", "1");
+        this.mBeanServer.invoke(name, "flush", null, null);
+        Assert.assertEquals(0, this.mBeanServer.getAttribute(name, "WriteQueueLength"));
+        Assert.assertEquals(true, this.mBeanServer.getAttribute(name, "WriterThreadAlive"));
+        Assert.assertEquals(cache.getDataFileLength(), this.mBeanServer.getAttribute(name, "DataFileLength"));
+        Assert.assertTrue((Long) this.mBeanServer.getAttribute(name, "DataFileAllocated") > 0);
+        Assert.assertEquals(1, this.mBeanServer.getAttribute(name, "BufferCurrentSize"));
+
+        this.mBeanServer.setAttribute(name, new Attribute("BufferSize", 20));
+        Assert.assertEquals(20, cache.getBufferSize());
+
+        /* Maps are exposed as open type tabular data keyed by the map key */
+        final TabularData percentiles = (TabularData) this.mBeanServer.getAttribute(name, "LatencyPercentiles");
+        Assert.assertTrue(percentiles.containsKey(new Object[]{"PUT.p99"}));
+
+        cache.close();
+        Assert.assertFalse(this.mBeanServer.isRegistered(name));
+    }
+}
@@ -32,4 +32,24 @@ public class Md5Test
         Md5 md5_2 = Md5.fromMd5Hex(md5_1.getHex());
         Assert.assertEquals(md5_1, md5_2);
     }
+
+    @Test
+    public void testRepresentations() throws Md5Exception
+    {
+        final Md5 md5 = new Md5("");
+        Assert.assertEquals("d41d8cd98f00b204e9800998ecf8427e", md5.getHex());
+        Assert.assertEquals(0xd41d8cd98f00b204L, md5.getHigh());
+        Assert.assertEquals(0xe9800998ecf8427eL, md5.getLow());
+        Assert.assertEquals(md5, new Md5(md5.getBytes()));
+        Assert.assertEquals(md5, new Md5(md5.getHigh(), md5.getLow()));
+        Assert.assertEquals(md5.hashCode(), new Md5(md5.getHigh(), md5.getLow()).hashCode());
+        Assert.assertNotEquals(md5, new Md5("a"));
+
+        try {
+            Md5.fromMd5Hex("d41d8cd9");
+            Assert.fail("Exception expected");
+        } catch (Md5Exception e) {
+            /* Expected */
+        }
+    }
 }
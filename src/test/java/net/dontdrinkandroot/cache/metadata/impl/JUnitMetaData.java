@@ -34,15 +34,19 @@ public class JUnitMetaData implements MetaData
 
     private int hitCount;
 
+    private boolean servedStale;
+
+    private boolean revalidationFailed;
+
     public JUnitMetaData()
     {
         /* Noop */
     }
 
     @Override
-    public boolean isExpired()
+    public boolean isExpired(long now)
     {
-        return this.created + this.timeToLive < System.currentTimeMillis();
+        return this.created + this.timeToLive < now;
     }
 
     @Override
@@ -52,12 +56,12 @@ public class JUnitMetaData implements MetaData
     }
 
     @Override
-    public void update()
+    public void update(long now)
     {
         if (this.hitCount < Integer.MAX_VALUE) {
             this.hitCount++;
         }
-        this.lastAccess = System.currentTimeMillis();
+        this.lastAccess = now;
     }
 
     @Override
@@ -109,13 +113,13 @@ public class JUnitMetaData implements MetaData
     }
 
     @Override
-    public boolean isStale()
+    public boolean isStale(long now)
     {
         if (this.maxIdleTime == Cache.UNLIMITED_IDLE_TIME) {
             return false;
         }
 
-        return this.lastAccess + this.maxIdleTime < System.currentTimeMillis();
+        return this.lastAccess + this.maxIdleTime < now;
     }
 
     @Override
@@ -131,4 +135,28 @@ public class JUnitMetaData implements MetaData
             this.hitCount = (int) Math.floor(this.hitCount * JUnitMetaData.DECAY_FACTOR);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isServedStale()
+    {
+        return this.servedStale;
+    }
+
+    @Override
+    public void setServedStale(boolean servedStale)
+    {
+        this.servedStale = servedStale;
+    }
+
+    @Override
+    public boolean isRevalidationFailed()
+    {
+        return this.revalidationFailed;
+    }
+
+    @Override
+    public void setRevalidationFailed(boolean revalidationFailed)
+    {
+        this.revalidationFailed = revalidationFailed;
+    }
+}
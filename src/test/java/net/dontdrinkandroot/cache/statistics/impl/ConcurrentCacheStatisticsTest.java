@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.statistics.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ConcurrentCacheStatisticsTest
+{
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException
+    {
+        final ConcurrentCacheStatistics statistics = new ConcurrentCacheStatistics();
+        final int numThreads = 8;
+        final int numIterations = 10000;
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < numIterations; j++) {
+                    statistics.increaseGetCount();
+                    statistics.increaseCacheHits();
+                    statistics.increasePutCount(2);
+                }
+            }));
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(numThreads * numIterations, statistics.getGetCount());
+        Assert.assertEquals(numThreads * numIterations, statistics.getCacheHits());
+        Assert.assertEquals(2 * numThreads * numIterations, statistics.getPutCount());
+        Assert.assertEquals(1f, statistics.getHitRate(), 0f);
+    }
+
+    @Test
+    public void testSnapshot()
+    {
+        final ConcurrentCacheStatistics statistics = new ConcurrentCacheStatistics();
+        statistics.increaseGetCount(4);
+        statistics.increaseCacheHits(3);
+        statistics.increaseCacheMissesNotFound();
+        statistics.setCurrentSize(3);
+
+        final CacheStatisticsSnapshot first = statistics.snapshot();
+
+        statistics.increaseGetCount(4);
+        statistics.increaseCacheHits();
+        statistics.increaseCacheMissesExpired(3);
+        statistics.increaseStaleHits();
+        statistics.setCurrentSize(5);
+
+        /* Snapshots are not affected by later updates */
+        Assert.assertEquals(4, first.getGetCount());
+        Assert.assertEquals(0.75f, first.getHitRate(), 0f);
+
+        final CacheStatisticsSnapshot interval = statistics.snapshot().minus(first);
+        Assert.assertEquals(4, interval.getGetCount());
+        Assert.assertEquals(1, interval.getCacheHits());
+        Assert.assertEquals(0, interval.getCacheMissesNotFound());
+        Assert.assertEquals(3, interval.getCacheMissesExpired());
+        Assert.assertEquals(1, interval.getStaleHits());
+        Assert.assertEquals(5, interval.getCurrentSize());
+        Assert.assertEquals(0.25f, interval.getHitRate(), 0f);
+        Assert.assertTrue(interval.getElapsed() >= 0);
+
+        try {
+            interval.reset();
+            Assert.fail("UnsupportedOperationException expected");
+        } catch (UnsupportedOperationException e) {
+            /* Expected */
+        }
+
+        statistics.reset();
+        Assert.assertEquals(0, statistics.getGetCount());
+        Assert.assertEquals(5, statistics.getCurrentSize());
+    }
+}
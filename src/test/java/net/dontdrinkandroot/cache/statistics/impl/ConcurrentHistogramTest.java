@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.statistics.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentHistogramTest
+{
+    @Test
+    public void testPercentiles()
+    {
+        final ConcurrentHistogram histogram = new ConcurrentHistogram();
+        Assert.assertEquals(0, histogram.getValueAtPercentile(50));
+
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value);
+        }
+
+        Assert.assertEquals(100000, histogram.getCount());
+        Assert.assertEquals(1, histogram.getMin());
+        Assert.assertEquals(100000, histogram.getMax());
+        Assert.assertEquals(50000.5, histogram.getMean(), 0.001);
+        this.assertWithinError(50000, histogram.getValueAtPercentile(50));
+        this.assertWithinError(99000, histogram.getValueAtPercentile(99));
+        this.assertWithinError(99900, histogram.getValueAtPercentile(99.9));
+        Assert.assertEquals(100000, histogram.getValueAtPercentile(100));
+        Assert.assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void testBucketBounds()
+    {
+        for (int i = 0; i < ConcurrentHistogram.BUCKET_COUNT; i++) {
+            final long lowest = ConcurrentHistogram.getLowestValue(i);
+            final long highest = ConcurrentHistogram.getHighestValue(i);
+            Assert.assertEquals(i, ConcurrentHistogram.getBucketIndex(lowest));
+            Assert.assertEquals(i, ConcurrentHistogram.getBucketIndex(highest));
+        }
+        Assert.assertEquals(
+                ConcurrentHistogram.BUCKET_COUNT - 1,
+                ConcurrentHistogram.getBucketIndex(Long.MAX_VALUE)
+        );
+    }
+
+    @Test
+    public void testSnapshotAndReset()
+    {
+        final ConcurrentHistogram histogram = new ConcurrentHistogram();
+        for (int i = 0; i < 100; i++) {
+            histogram.record(10);
+        }
+        final HistogramSnapshot first = histogram.snapshot();
+
+        for (int i = 0; i < 100; i++) {
+            histogram.record(1000);
+        }
+
+        Assert.assertEquals(100, first.getCount());
+        Assert.assertEquals(10, first.getValueAtPercentile(99));
+
+        final HistogramSnapshot interval = histogram.snapshot().minus(first);
+        Assert.assertEquals(100, interval.getCount());
+        Assert.assertEquals(1000, interval.getMean(), 0);
+        this.assertWithinError(1000, interval.getValueAtPercentile(50));
+        this.assertWithinError(1000, interval.getMin());
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMin());
+        Assert.assertEquals(0, histogram.getMax());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testPlus()
+    {
+        final ConcurrentHistogram fast = new ConcurrentHistogram();
+        final ConcurrentHistogram slow = new ConcurrentHistogram();
+        for (int i = 0; i < 90; i++) {
+            fast.record(10);
+        }
+        for (int i = 0; i < 10; i++) {
+            slow.record(1000);
+        }
+
+        final HistogramSnapshot merged = fast.snapshot().plus(slow);
+        Assert.assertEquals(100, merged.getCount());
+        Assert.assertEquals(10, merged.getMin());
+        Assert.assertEquals(1000, merged.getMax());
+        Assert.assertEquals(109, merged.getMean(), 0);
+        Assert.assertEquals(10, merged.getValueAtPercentile(90));
+        this.assertWithinError(1000, merged.getValueAtPercentile(95));
+
+        Assert.assertSame(merged, merged.plus(HistogramSnapshot.EMPTY));
+        Assert.assertEquals(100, HistogramSnapshot.EMPTY.plus(merged).getCount());
+    }
+
+    private void assertWithinError(final long expected, final long actual)
+    {
+        Assert.assertEquals(expected, actual, expected * 1.0 / ConcurrentHistogram.SUB_BUCKET_COUNT);
+    }
+}
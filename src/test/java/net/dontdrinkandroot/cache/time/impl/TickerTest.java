@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2012-2017 Philip Washington Sorst <philip@sorst.net>
+ * and individual contributors as indicated
+ * by the @authors tag.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dontdrinkandroot.cache.time.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TickerTest
+{
+    @Test
+    public void testManualTicker() throws Exception
+    {
+        final ManualTicker ticker = new ManualTicker(1000);
+        Assert.assertEquals(1000, ticker.currentTimeMillis());
+
+        ticker.advance(500);
+        Assert.assertEquals(1500, ticker.currentTimeMillis());
+
+        ticker.setCurrentTimeMillis(42);
+        Assert.assertEquals(42, ticker.currentTimeMillis());
+    }
+
+    @Test
+    public void testCachedTicker() throws Exception
+    {
+        try (CachedTicker ticker = new CachedTicker(1)) {
+            final long start = ticker.currentTimeMillis();
+            Assert.assertTrue(Math.abs(System.currentTimeMillis() - start) < 1000);
+
+            /* The time advances without being read from the system clock by the caller */
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (ticker.currentTimeMillis() == start && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            Assert.assertTrue(ticker.currentTimeMillis() > start);
+        }
+
+        try {
+            new CachedTicker(0);
+            Assert.fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            /* Expected */
+        }
+    }
+}